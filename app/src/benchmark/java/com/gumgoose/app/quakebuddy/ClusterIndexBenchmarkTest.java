@@ -0,0 +1,104 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times building, querying and incrementally updating a {@link ClusterIndex} of 50k
+ * earthquakes; the numbers are printed for comparing changes to the clustering, as a
+ * viewport should fit comfortably in a 60 fps frame
+ */
+public class ClusterIndexBenchmarkTest {
+
+    private static final int EVENTS = 50000;
+    // A 1080 x 1920 screen
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+
+    private static List<Quake> events(long seed, int count) {
+        Random random = new Random(seed);
+        List<Quake> quakes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Most earthquakes fall along a few belts, like the real catalog
+            double belt = random.nextInt(4) * 45 - 60;
+            double latitude = belt + random.nextGaussian() * 8;
+            double longitude = random.nextDouble() * 360 - 180;
+            double magnitude = 1.0 - Math.log10(1.0 - random.nextDouble());
+            quakes.add(ClusterIndexTest.quake("b" + seed + "_" + i, magnitude,
+                    Math.max(-85, Math.min(85, latitude)), longitude));
+        }
+        return quakes;
+    }
+
+    /**
+     * Query viewports centred on random earthquakes, or at every zoom level to warm up
+     *
+     * @return the time taken by each viewport
+     */
+    private static long[] panAround(ClusterIndex index, List<Quake> quakes,
+                                    ClusterIndexTest.Collector sink, int zoomOrFrames) {
+        boolean warmUp = zoomOrFrames > ClusterIndex.MAX_ZOOM + 2;
+        int frames = warmUp ? zoomOrFrames : 500;
+        long[] frameNanos = new long[frames];
+        Random random = new Random(2);
+        sink.clusters = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            int zoom = warmUp ? frame % (ClusterIndex.MAX_ZOOM + 3) : zoomOrFrames;
+            double worldPixels = ClusterIndex.TILE_PIXELS * Math.pow(2, zoom);
+            double width = Math.min(1, SCREEN_WIDTH / worldPixels);
+            double height = Math.min(1, SCREEN_HEIGHT / worldPixels);
+            Quake centre = quakes.get(random.nextInt(quakes.size()));
+            double x = ClusterIndex.longitudeToX(centre.getLongitude()) - width / 2;
+            double y = ClusterIndex.latitudeToY(centre.getLatitude()) - height / 2;
+
+            long start = System.nanoTime();
+            index.query(zoom, x, y, x + width, y + height, sink);
+            frameNanos[frame] = System.nanoTime() - start;
+            sink.strongest.clear();
+            sink.centroids.clear();
+        }
+        return frameNanos;
+    }
+
+    @Test
+    public void benchmark() {
+        List<Quake> quakes = events(1, EVENTS);
+
+        ClusterIndex index = new ClusterIndex();
+        long start = System.nanoTime();
+        index.putAll(quakes);
+        long buildNanos = System.nanoTime() - start;
+
+        // Warm up the JIT before timing viewports
+        ClusterIndexTest.Collector sink = new ClusterIndexTest.Collector();
+        panAround(index, quakes, sink, 200);
+
+        StringBuilder report = new StringBuilder();
+        long worstFrameNanos = 0;
+        for (int zoom = 0; zoom <= ClusterIndex.MAX_ZOOM + 2; zoom += 2) {
+            long[] frameNanos = panAround(index, quakes, sink, zoom);
+            long total = 0;
+            for (long nanos : frameNanos) {
+                total += nanos;
+                worstFrameNanos = Math.max(worstFrameNanos, nanos);
+            }
+            report.append(String.format("  zoom %2d: %7.1f us per viewport, %5d clusters%n",
+                    zoom, total / 1e3 / frameNanos.length, sink.clusters / frameNanos.length));
+        }
+
+        // Merge a refresh's worth of new and revised earthquakes into the built index
+        List<Quake> refresh = events(3, 500);
+        refresh.addAll(events(1, 500));
+        start = System.nanoTime();
+        index.putAll(refresh);
+        long mergeNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("ClusterIndex of %d earthquakes: built in %.1f ms,"
+                        + " merged %d in %.2f ms, worst viewport %.2f ms%n%s", EVENTS,
+                buildNanos / 1e6, refresh.size(), mergeNanos / 1e6, worstFrameNanos / 1e6,
+                report));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times keeping 10k and 100k earthquakes in order while refreshes revise them, against
+ * sorting the whole list again after every refresh; the numbers are printed for
+ * comparing changes to the set, as a refresh should fit in a fraction of a 60 fps frame
+ */
+public class OrderedQuakeSetBenchmarkTest {
+
+    private static final long NOW = 1500000000000L;
+    private static final long YEAR = 365 * 24 * 60 * 60 * 1000L;
+    private static final int REFRESHES = 50;
+    private static final int CHANGES_PER_REFRESH = 100;
+
+    private static Quake quake(Random random, int id) {
+        long time = NOW - (long) (random.nextDouble() * YEAR);
+        return new Quake(2.5 + random.nextInt(60) / 10.0, "Place", time, 0, null, "e" + id,
+                time, null, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * @return the refreshes, each a mix of new earthquakes and revisions of old ones
+     */
+    private static List<List<Quake>> refreshes(Random random, int events) {
+        List<List<Quake>> refreshes = new ArrayList<>();
+        int next = events;
+        for (int r = 0; r < REFRESHES; r++) {
+            List<Quake> refresh = new ArrayList<>();
+            for (int i = 0; i < CHANGES_PER_REFRESH; i++) {
+                refresh.add(quake(random, i % 2 == 0 ? next++ : random.nextInt(events)));
+            }
+            refreshes.add(refresh);
+        }
+        return refreshes;
+    }
+
+    private static void run(int events) {
+        Random random = new Random(events);
+        List<Quake> initial = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            initial.add(quake(random, i));
+        }
+        List<List<Quake>> refreshes = refreshes(random, events);
+
+        long start = System.nanoTime();
+        OrderedQuakeSet set = new OrderedQuakeSet(OrderedQuakeSet.Order.NEWEST_FIRST);
+        set.putAll(initial);
+        long buildNanos = System.nanoTime() - start;
+
+        // Every change is told to the adapter by position, as the list does
+        final int[] notified = new int[1];
+        set.setOnChangeListener(new OrderedQuakeSet.OnChangeListener() {
+            @Override
+            public void onInserted(int position, Quake quake) {
+                notified[0]++;
+            }
+
+            @Override
+            public void onRemoved(int position, Quake quake) {
+                notified[0]++;
+            }
+
+            @Override
+            public void onMoved(int from, int to, Quake quake) {
+                notified[0]++;
+            }
+
+            @Override
+            public void onChanged(int position, Quake quake) {
+                notified[0]++;
+            }
+        });
+        start = System.nanoTime();
+        for (List<Quake> refresh : refreshes) {
+            set.putAll(refresh);
+        }
+        long incrementalNanos = (System.nanoTime() - start) / REFRESHES;
+        assertEquals(REFRESHES * CHANGES_PER_REFRESH, notified[0]);
+
+        start = System.nanoTime();
+        int rankSum = 0;
+        for (int i = 0; i < 10000; i++) {
+            rankSum += set.positionOf(OrderedQuakeSet.Order.STRONGEST_FIRST,
+                    "e" + random.nextInt(events));
+        }
+        long rankNanos = (System.nanoTime() - start) / 10000;
+        assertTrue(rankSum > 0);
+
+        // What a refresh costs when the whole list is sorted again
+        List<Quake> list = new ArrayList<>(initial);
+        start = System.nanoTime();
+        for (List<Quake> refresh : refreshes.subList(0, 10)) {
+            list.addAll(refresh);
+            Collections.sort(list, OrderedQuakeSet.Order.NEWEST_FIRST.comparator());
+        }
+        long resortNanos = (System.nanoTime() - start) / 10;
+
+        System.out.println(String.format("OrderedQuakeSet of %d earthquakes: built in %.1f ms,"
+                        + " refresh of %d changes %.3f ms (re-sorting %.2f ms),"
+                        + " rank lookup %.2f us", events, buildNanos / 1e6,
+                CHANGES_PER_REFRESH, incrementalNanos / 1e6, resortNanos / 1e6,
+                rankNanos / 1e3));
+    }
+
+    @Test
+    public void benchmark10k() {
+        run(10000);
+    }
+
+    @Test
+    public void benchmark100k() {
+        run(100000);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times parsing a 100,000 feature response, as a backfill of months of history returns,
+ * serially and split across 1, 2, 4 and 8 threads; the numbers are printed for comparing
+ * changes to the parser, and only scale on a device with that many cores
+ */
+public class ParallelFeatureParserBenchmarkTest {
+
+    private static final int FEATURES = 100000;
+    private static final int ROUNDS = 3;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    @Test
+    public void benchmarkHundredThousandFeatures() {
+        String json = ParallelFeatureParserTest.collectionOf(
+                SyntheticCatalog.generate(9, FEATURES, NOW, 90 * DAY));
+
+        // Warm up, and check every path gives the same earthquakes
+        List<Quake> serial = QueryUtils.extractFeatureFromJson(json, new ParseReport());
+        assertEquals(FEATURES, serial.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            QueryUtils.extractFeatureFromJson(json, new ParseReport());
+        }
+        long serialNanos = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            ParallelFeatureParser.featureBounds(json);
+        }
+        long scanNanos = (System.nanoTime() - start) / ROUNDS;
+
+        StringBuilder line = new StringBuilder(String.format(
+                "Parsing %d features (%.1f MB): serial %.0f ms, finding features %.1f ms",
+                FEATURES, json.length() / 1e6, serialNanos / 1e6, scanNanos / 1e6));
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                int chunks = threads * 4;
+                List<Quake> parallel =
+                        ParallelFeatureParser.parse(json, new ParseReport(), executor, chunks);
+                assertEquals(serial.size(), parallel.size());
+                assertEquals(serial.get(FEATURES - 1).getQuakeId(),
+                        parallel.get(FEATURES - 1).getQuakeId());
+
+                start = System.nanoTime();
+                for (int i = 0; i < ROUNDS; i++) {
+                    ParallelFeatureParser.parse(json, new ParseReport(), executor, chunks);
+                }
+                long nanos = (System.nanoTime() - start) / ROUNDS;
+                line.append(String.format(", %d threads %.0f ms (%.2fx)", threads, nanos / 1e6,
+                        serialNanos / (double) nanos));
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+        System.out.println(line.append(" on ").append(Runtime.getRuntime().availableProcessors())
+                .append(" cores"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times building a {@link PlaceSearchIndex} of 100k earthquakes and searching it one
+ * keystroke at a time; the numbers are printed for comparing changes to the index, as
+ * results should follow typing within a 60 fps frame
+ */
+public class PlaceSearchIndexBenchmarkTest {
+
+    private static final int EVENTS = 100000;
+    private static final long NOW = 1500000000000L;
+    private static final long YEAR = 365 * 24 * 60 * 60 * 1000L;
+
+    private static final String[] TYPED = {"alaska peninsula", "hualien", "ridgecrest ca",
+            "new zealand", "pahala hawaii", "a", "ier"};
+
+    private static List<Quake> events(long seed, int count) {
+        List<Quake> quakes = new ArrayList<>(count);
+        for (JSONObject feature : SyntheticCatalog.generate(seed, count, NOW, YEAR)) {
+            JSONObject properties = feature.optJSONObject("properties");
+            quakes.add(new Quake(properties.optDouble("mag"), properties.optString("place"),
+                    properties.optLong("time"), 0, null, feature.optString("id"),
+                    properties.optLong("updated"), null, Double.NaN, Double.NaN, Double.NaN));
+        }
+        return quakes;
+    }
+
+    /**
+     * Search every prefix of every typed query, as a search box does while typing
+     *
+     * @return the time taken by the slowest keystroke
+     */
+    private static long typeAll(PlaceSearchIndex index, long since) {
+        long worstNanos = 0;
+        for (String typed : TYPED) {
+            for (int length = 1; length <= typed.length(); length++) {
+                long start = System.nanoTime();
+                index.search(typed.substring(0, length), since, 250);
+                worstNanos = Math.max(worstNanos, System.nanoTime() - start);
+            }
+        }
+        return worstNanos;
+    }
+
+    @Test
+    public void benchmark() {
+        List<Quake> quakes = events(1, EVENTS);
+
+        PlaceSearchIndex index = new PlaceSearchIndex();
+        long start = System.nanoTime();
+        index.addAll(quakes);
+        long buildNanos = System.nanoTime() - start;
+
+        // Warm up the JIT before timing keystrokes
+        for (int i = 0; i < 20; i++) {
+            typeAll(index, 0);
+        }
+        long worstAllTime = typeAll(index, 0);
+        long worstLastWeek = typeAll(index, NOW - 7 * 24 * 60 * 60 * 1000L);
+
+        // Merge a refresh's worth of new and revised earthquakes into the built index
+        List<Quake> refresh = events(2, 500);
+        refresh.addAll(events(1, 500));
+        start = System.nanoTime();
+        index.addAll(refresh);
+        long mergeNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("PlaceSearchIndex of %d earthquakes: built in %.1f ms,"
+                        + " merged %d in %.2f ms, worst keystroke %.2f ms (all time),"
+                        + " %.2f ms (last week)", EVENTS, buildNanos / 1e6, refresh.size(),
+                mergeNanos / 1e6, worstAllTime / 1e6, worstLastWeek / 1e6));
+    }
+}
\ No newline at end of file
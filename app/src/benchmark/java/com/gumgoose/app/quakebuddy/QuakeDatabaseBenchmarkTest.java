@@ -0,0 +1,109 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times ingesting 10k earthquakes into the database in one transaction against one
+ * transaction per earthquake, and the range queries the list and the stats run; the
+ * numbers are printed for comparing changes to the schema
+ *
+ * The bulk ingest should stay well under a second, so a refresh never waits on the database
+ */
+public class QuakeDatabaseBenchmarkTest {
+
+    private static final long NOW = 1500000000000L;
+    private static final long YEAR = 365 * 24 * 60 * 60 * 1000L;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int EVENTS = 10000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<Quake> catalog(Random random, int count) {
+        List<Quake> quakes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long time = NOW - (long) (random.nextDouble() * YEAR);
+            quakes.add(new Quake(2.5 + random.nextInt(60) / 10.0, "Place " + (i % 500), time, 0,
+                    "https://earthquake.usgs.gov/earthquakes/eventpage/e" + i, "e" + i, time,
+                    null, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+                    random.nextDouble() * 100));
+        }
+        return quakes;
+    }
+
+    @Test
+    public void benchmarkIngestAndQueries() {
+        List<Quake> quakes = catalog(new Random(1), EVENTS);
+
+        // Warm up the driver and the JIT on a database of its own
+        QuakeDatabase warmUp = new QuakeDatabase(
+                JdbcSqlConnection.opener(new File(mFolder.getRoot(), "warmup.db")));
+        warmUp.insertAll(quakes.subList(0, 2000));
+        warmUp.query(0, NOW, 0, 100);
+
+        QuakeDatabase database = new QuakeDatabase(
+                JdbcSqlConnection.opener(new File(mFolder.getRoot(), "bulk.db")));
+        database.count();
+        long start = System.nanoTime();
+        assertEquals(EVENTS, database.insertAll(quakes));
+        long bulkNanos = System.nanoTime() - start;
+        assertEquals(EVENTS, database.count());
+
+        // What inserting row by row costs, each in a transaction of its own
+        QuakeDatabase rowByRow = new QuakeDatabase(
+                JdbcSqlConnection.opener(new File(mFolder.getRoot(), "rows.db")));
+        rowByRow.count();
+        List<Quake> sample = quakes.subList(0, 500);
+        start = System.nanoTime();
+        for (Quake quake : sample) {
+            List<Quake> one = new ArrayList<>(1);
+            one.add(quake);
+            rowByRow.insertAll(one);
+        }
+        long rowNanos = (System.nanoTime() - start) / sample.size();
+
+        // Re-ingesting the same revisions writes nothing
+        start = System.nanoTime();
+        assertEquals(0, database.insertAll(quakes));
+        long reingestNanos = System.nanoTime() - start;
+
+        Random random = new Random(2);
+        int queries = 200;
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < queries; i++) {
+            long to = NOW - (long) (random.nextDouble() * YEAR);
+            found += database.query(to - 7 * DAY, to, 4.5, 100).size();
+        }
+        long weekNanos = (System.nanoTime() - start) / queries;
+        assertTrue(found > 0);
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            database.queryStrongest(NOW - YEAR, NOW, 20);
+        }
+        long strongestNanos = (System.nanoTime() - start) / queries;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            database.get("e" + random.nextInt(EVENTS));
+        }
+        long getNanos = (System.nanoTime() - start) / queries;
+
+        System.out.println(String.format("QuakeDatabase of %d earthquakes: bulk ingest %.1f ms"
+                        + " (row by row %.2f ms per earthquake), re-ingest %.1f ms,"
+                        + " week above M4.5 %.2f ms, strongest of the year %.2f ms,"
+                        + " by event ID %.3f ms", EVENTS, bulkNanos / 1e6, rowNanos / 1e6,
+                reingestNanos / 1e6, weekNanos / 1e6, strongestNanos / 1e6, getNanos / 1e6));
+    }
+}
\ No newline at end of file
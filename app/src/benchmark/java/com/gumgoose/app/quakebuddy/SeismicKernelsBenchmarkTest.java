@@ -0,0 +1,92 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times the energy and b-value kernels over a million earthquakes, as boxed earthquakes,
+ * as columns and as columns split across threads; the numbers are printed for comparing
+ * changes to the kernels
+ */
+public class SeismicKernelsBenchmarkTest {
+
+    private static final int EVENTS = 1000000;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void benchmarkMillionEvents() throws Exception {
+        QuakeColumns columns = SeismicKernelsTest.gutenbergRichter(new Random(1), EVENTS, 1.0);
+        List<Quake> quakes = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            quakes.add(new Quake(columns.getMagnitudes()[i], "Place", columns.getTimes()[i], 0,
+                    null, "e" + i, columns.getTimes()[i], null,
+                    Double.NaN, Double.NaN, Double.NaN));
+        }
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Warm up every path before timing
+            double boxed = 0;
+            double serial = 0;
+            double parallel = 0;
+            for (int i = 0; i < 3; i++) {
+                boxed = boxedEnergy(quakes);
+                serial = SeismicKernels.totalEnergy(columns, null);
+                parallel = SeismicKernels.totalEnergy(columns, executor);
+            }
+            assertEquals(boxed, serial, boxed * 1e-9);
+            assertEquals(serial, parallel, serial * 1e-9);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                boxedEnergy(quakes);
+            }
+            long boxedNanos = (System.nanoTime() - start) / ROUNDS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                SeismicKernels.totalEnergy(columns, null);
+            }
+            long serialNanos = (System.nanoTime() - start) / ROUNDS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                SeismicKernels.totalEnergy(columns, executor);
+            }
+            long parallelNanos = (System.nanoTime() - start) / ROUNDS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                SeismicKernels.fitBValue(columns, 2.0, SeismicKernels.DEFAULT_BIN_WIDTH,
+                        executor);
+            }
+            long fitNanos = (System.nanoTime() - start) / ROUNDS;
+
+            System.out.println(String.format("SeismicKernels over %d earthquakes: energy boxed"
+                            + " %.2f ms, columns %.2f ms, columns on %d threads %.2f ms;"
+                            + " b-value fit %.2f ms", columns.size(), boxedNanos / 1e6,
+                    serialNanos / 1e6, threads, parallelNanos / 1e6, fitNanos / 1e6));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The straightforward loop over the earthquake objects the kernels replace
+     */
+    private static double boxedEnergy(List<Quake> quakes) {
+        double sum = 0;
+        for (Quake quake : quakes) {
+            sum += SeismicKernels.energyJoules(quake.getQuakeMagnitude());
+        }
+        return sum;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times the critical path of a cold start against {@link UsgsStandInServer}, before and after
+ * the query was sent ahead of layout inflation and the version check was deferred
+ *
+ * The main thread's own work is modelled by sleeps sized from traces of a mid-range phone;
+ * the request, parsing and hand-over are the app's own code. The inflation and the version
+ * check should come off the critical path, cutting at least half the inflation time
+ */
+public class StartupBenchmarkTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    /**
+     * Main thread work of onCreate: inflating the list layout and building the tabs, and the
+     * version check with its package lookup, change log dialog and preference write
+     */
+    private static final long INFLATE_MILLIS = 180;
+    private static final long VERSION_CHECK_MILLIS = 70;
+
+    private static final long SERVER_LATENCY_MILLIS = 250;
+    private static final int RUNS = 7;
+
+    private UsgsStandInServer mServer;
+    private ResilientFetcher mFetcher;
+    private ExecutorService mNetwork;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new UsgsStandInServer(SyntheticCatalog.generate(5, 500, NOW, DAY), 5);
+        mServer.setLatency(SERVER_LATENCY_MILLIS, 0);
+        mFetcher = new ResilientFetcher(1, 0, 0, 0, new Random(5));
+        mNetwork = new AppScheduler(2).getExecutor(AppScheduler.Pool.NETWORK);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    private String query(String startTime) {
+        return mServer.getQueryUrl() + "?format=geojson&starttime=" + startTime
+                + "&orderby=time&limit=50";
+    }
+
+    private static void mainThreadWork(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /**
+     * Everything on the way to the first row runs one after the other
+     */
+    private long sequentialStart() throws Exception {
+        StartupTracer tracer = new StartupTracer();
+        tracer.begin();
+        mainThreadWork(INFLATE_MILLIS);
+        mainThreadWork(VERSION_CHECK_MILLIS);
+        tracer.mark("activity created");
+        List<Quake> earthquakes = mFetcher.fetchEarthquakes(query("2017-06-14")).getValue();
+        assertEquals(50, earthquakes.size());
+        tracer.finish();
+        return tracer.getTimeToFirstRowMillis();
+    }
+
+    /**
+     * The query is sent before inflation and the version check runs after the first row
+     */
+    private long pipelinedStart() throws Exception {
+        StartupTracer tracer = new StartupTracer();
+        StartupPrefetch prefetch = new StartupPrefetch();
+        tracer.begin();
+        prefetch.start(query("2017-06-14"), mFetcher, mNetwork);
+        mainThreadWork(INFLATE_MILLIS);
+        tracer.mark("activity created");
+        // The Loader builds its URL a moment later, with a later start time
+        FetchOutcome<List<Quake>> outcome = prefetch.claim(query("2017-06-14T00:00:01"));
+        assertEquals(50, outcome.getValue().size());
+        tracer.finish();
+        mainThreadWork(VERSION_CHECK_MILLIS);
+        return tracer.getTimeToFirstRowMillis();
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        // Warm up the connection handling and the parser
+        sequentialStart();
+        pipelinedStart();
+
+        long[] before = new long[RUNS];
+        long[] after = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            before[i] = sequentialStart();
+            after[i] = pipelinedStart();
+        }
+        System.out.println("Time to first row, median of " + RUNS + ": before "
+                + median(before) + " ms, after " + median(after) + " ms (inflate "
+                + INFLATE_MILLIS + " ms, version check " + VERSION_CHECK_MILLIS
+                + " ms, server " + SERVER_LATENCY_MILLIS + " ms)");
+    }
+}
\ No newline at end of file
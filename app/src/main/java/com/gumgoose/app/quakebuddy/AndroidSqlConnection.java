@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Class that runs the {@link SqlConnection} operations on the platform's SQLite
+ */
+public class AndroidSqlConnection implements SqlConnection {
+
+    private final SQLiteDatabase mDatabase;
+
+    /**
+     * Construct a new {@link AndroidSqlConnection}
+     *
+     * @param database is the open database
+     */
+    public AndroidSqlConnection(SQLiteDatabase database) {
+        mDatabase = database;
+    }
+
+    @Override
+    public void execute(String sql) {
+        mDatabase.execSQL(sql);
+    }
+
+    @Override
+    public Statement prepare(String sql) {
+        final SQLiteStatement statement = mDatabase.compileStatement(sql);
+        return new Statement() {
+            @Override
+            public void bindString(int index, String value) {
+                statement.bindString(index, value);
+            }
+
+            @Override
+            public void bindLong(int index, long value) {
+                statement.bindLong(index, value);
+            }
+
+            @Override
+            public void bindDouble(int index, double value) {
+                statement.bindDouble(index, value);
+            }
+
+            @Override
+            public void bindNull(int index) {
+                statement.bindNull(index);
+            }
+
+            @Override
+            public void clearBindings() {
+                statement.clearBindings();
+            }
+
+            @Override
+            public int executeUpdate() {
+                return statement.executeUpdateDelete();
+            }
+
+            @Override
+            public void close() {
+                statement.close();
+            }
+        };
+    }
+
+    @Override
+    public Rows query(String sql, String... args) {
+        final Cursor cursor = mDatabase.rawQuery(sql, args);
+        return new Rows() {
+            @Override
+            public boolean moveToNext() {
+                return cursor.moveToNext();
+            }
+
+            @Override
+            public String getString(int column) {
+                return cursor.getString(column);
+            }
+
+            @Override
+            public long getLong(int column) {
+                return cursor.getLong(column);
+            }
+
+            @Override
+            public double getDouble(int column) {
+                return cursor.getDouble(column);
+            }
+
+            @Override
+            public boolean isNull(int column) {
+                return cursor.isNull(column);
+            }
+
+            @Override
+            public void close() {
+                cursor.close();
+            }
+        };
+    }
+
+    @Override
+    public void beginTransaction() {
+        mDatabase.beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        mDatabase.setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        mDatabase.endTransaction();
+    }
+
+    @Override
+    public int getVersion() {
+        return mDatabase.getVersion();
+    }
+
+    @Override
+    public void setVersion(int version) {
+        mDatabase.setVersion(version);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that owns the app's named background executors and measures how work flows
+ * through them, so jank and slow refreshes can be traced to a source in the logs
+ *
+ * Every task records how long it waited in the queue and how long it ran. Disk and network
+ * code reports StrictMode-style violations when it finds itself on the main thread
+ */
+public class AppScheduler {
+
+    /**
+     * Class name String for the instrumentation log
+     */
+    public static final String LOG_TAG = AppScheduler.class.getSimpleName();
+
+    /**
+     * Kinds of background work, each with its own executor
+     */
+    public enum Pool {
+        /** HTTP requests, which mostly wait on the server */
+        NETWORK,
+        /** Parsing of downloaded responses */
+        PARSE,
+        /** Reading and writing the app's files and preferences */
+        DISK,
+        /** Indexing and statistics over loaded earthquakes */
+        COMPUTE
+    }
+
+    /**
+     * Queue waits and run times above these are logged task by task
+     */
+    static final long SLOW_WAIT_MILLIS = 250;
+    static final long SLOW_RUN_MILLIS = 2000;
+
+    /**
+     * Number of tasks between the summaries logged for each pool
+     */
+    private static final int SUMMARY_INTERVAL = 100;
+
+    // Idle threads above zero are let go after this long
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static AppScheduler sInstance;
+
+    private final Map<Pool, InstrumentedExecutor> mExecutors = new EnumMap<>(Pool.class);
+    private final Map<Pool, PoolStats> mStats = new EnumMap<>(Pool.class);
+
+    // Operations already logged with a stack trace, so a violation in a loop logs once
+    private final Set<String> mReportedViolations = new HashSet<>();
+
+    /**
+     * @return the app-wide {@link AppScheduler}
+     */
+    public static synchronized AppScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new AppScheduler(Runtime.getRuntime().availableProcessors());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link AppScheduler}
+     *
+     * @param processors is the number of CPU cores the parse and compute pools may use
+     */
+    AppScheduler(int processors) {
+        int cpuThreads = Math.max(1, processors);
+        for (Pool pool : Pool.values()) {
+            mStats.put(pool, new PoolStats(pool));
+        }
+        // Requests block on the server, so more of them run than there are cores;
+        // a hedged request needs a thread while its first copy is still waiting
+        mExecutors.put(Pool.NETWORK, new InstrumentedExecutor(Pool.NETWORK, 6,
+                Process.THREAD_PRIORITY_BACKGROUND));
+        mExecutors.put(Pool.PARSE, new InstrumentedExecutor(Pool.PARSE, cpuThreads,
+                Process.THREAD_PRIORITY_BACKGROUND));
+        // Writers of the same file are serialized anyway, a second thread serves reads
+        mExecutors.put(Pool.DISK, new InstrumentedExecutor(Pool.DISK, 2,
+                Process.THREAD_PRIORITY_BACKGROUND));
+        mExecutors.put(Pool.COMPUTE, new InstrumentedExecutor(Pool.COMPUTE, cpuThreads,
+                Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE));
+    }
+
+    /**
+     * @param pool is the kind of work
+     * @return     the executor running that kind of work
+     */
+    public ExecutorService getExecutor(Pool pool) {
+        return mExecutors.get(pool);
+    }
+
+    /**
+     * @param pool is the kind of work
+     * @return     the live counters of the pool
+     */
+    public PoolStats getStats(Pool pool) {
+        return mStats.get(pool);
+    }
+
+    /**
+     * Report a StrictMode-style violation if disk or network work runs on the main thread
+     *
+     * @param pool      is the kind of work about to be done
+     * @param operation names the work, i.e. the method doing it
+     * @return          true if the caller is on the main thread
+     */
+    public boolean checkBackground(Pool pool, String operation) {
+        if (!isMainThread()) {
+            return false;
+        }
+        mStats.get(pool).recordViolation();
+        boolean firstReport;
+        synchronized (mReportedViolations) {
+            firstReport = mReportedViolations.add(pool + " " + operation);
+        }
+        if (firstReport) {
+            Log.w(LOG_TAG, pool + " work on the main thread: " + operation,
+                    new Throwable("Violation stack"));
+        }
+        else {
+            Log.w(LOG_TAG, pool + " work on the main thread: " + operation);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the caller is on the main thread; never on the JVM, where there is none
+     */
+    static boolean isMainThread() {
+        Looper mainLooper = Looper.getMainLooper();
+        return mainLooper != null && mainLooper.getThread() == Thread.currentThread();
+    }
+
+    /**
+     * @return one line of counters per pool, for the instrumentation log
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        for (Pool pool : Pool.values()) {
+            if (description.length() > 0) {
+                description.append('\n');
+            }
+            description.append(mStats.get(pool));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Log the counters of every pool
+     */
+    public void logSummary() {
+        Log.i(LOG_TAG, describe());
+    }
+
+    /**
+     * Counters of a pool: tasks run, queue depth, queue waits, run times and main thread
+     * violations
+     */
+    public static class PoolStats {
+
+        private final Pool mPool;
+
+        private int mCompleted;
+        private int mQueued;
+        private int mRunning;
+        private int mMaxQueued;
+        private long mTotalWaitNanos;
+        private long mMaxWaitNanos;
+        private long mTotalRunNanos;
+        private long mMaxRunNanos;
+        private int mViolations;
+
+        PoolStats(Pool pool) {
+            mPool = pool;
+        }
+
+        synchronized void recordQueued() {
+            mQueued++;
+            mMaxQueued = Math.max(mMaxQueued, mQueued);
+        }
+
+        synchronized void recordStarted(long waitNanos) {
+            mQueued--;
+            mRunning++;
+            mTotalWaitNanos += waitNanos;
+            mMaxWaitNanos = Math.max(mMaxWaitNanos, waitNanos);
+        }
+
+        /**
+         * @return true if a summary is due
+         */
+        synchronized boolean recordFinished(long runNanos) {
+            mRunning--;
+            mCompleted++;
+            mTotalRunNanos += runNanos;
+            mMaxRunNanos = Math.max(mMaxRunNanos, runNanos);
+            return mCompleted % SUMMARY_INTERVAL == 0;
+        }
+
+        synchronized void recordRejected() {
+            mQueued--;
+        }
+
+        synchronized void recordViolation() {
+            mViolations++;
+        }
+
+        public synchronized int getCompleted() {
+            return mCompleted;
+        }
+
+        /**
+         * @return the number of tasks waiting for a thread right now
+         */
+        public synchronized int getQueueDepth() {
+            return mQueued;
+        }
+
+        public synchronized int getMaxQueueDepth() {
+            return mMaxQueued;
+        }
+
+        public synchronized int getRunning() {
+            return mRunning;
+        }
+
+        public synchronized long getMaxWaitMillis() {
+            return mMaxWaitNanos / 1000000L;
+        }
+
+        public synchronized long getMaxRunMillis() {
+            return mMaxRunNanos / 1000000L;
+        }
+
+        public synchronized int getViolations() {
+            return mViolations;
+        }
+
+        @Override
+        public synchronized String toString() {
+            int started = mCompleted + mRunning;
+            return mPool + ": " + mCompleted + " done, " + mRunning + " running, "
+                    + mQueued + " queued (max " + mMaxQueued + "), wait avg "
+                    + (started == 0 ? 0 : mTotalWaitNanos / started / 1000000L)
+                    + " ms max " + mMaxWaitNanos / 1000000L + " ms, run avg "
+                    + (mCompleted == 0 ? 0 : mTotalRunNanos / mCompleted / 1000000L)
+                    + " ms max " + mMaxRunNanos / 1000000L + " ms, "
+                    + mViolations + " main thread violations";
+        }
+    }
+
+    /**
+     * Executor that times every task it is given, including those wrapped by submit()
+     */
+    private final class InstrumentedExecutor extends ThreadPoolExecutor {
+
+        private final Pool mPool;
+
+        InstrumentedExecutor(final Pool pool, int threads, final int priority) {
+            super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger mCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            String name = "QuakeBuddy-" + pool.name().toLowerCase()
+                                    + "-" + mCount.incrementAndGet();
+                            Thread thread = new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Process.setThreadPriority(priority);
+                                    runnable.run();
+                                }
+                            }, name);
+                            // Never keep the process, or a test JVM, alive
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            mPool = pool;
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            final PoolStats stats = mStats.get(mPool);
+            final long queuedAt = System.nanoTime();
+            stats.recordQueued();
+            try {
+                super.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long startedAt = System.nanoTime();
+                        stats.recordStarted(startedAt - queuedAt);
+                        try {
+                            task.run();
+                        }
+                        finally {
+                            long finishedAt = System.nanoTime();
+                            boolean summaryDue = stats.recordFinished(finishedAt - startedAt);
+                            logTask(task, startedAt - queuedAt, finishedAt - startedAt);
+                            if (summaryDue) {
+                                Log.i(LOG_TAG, stats.toString());
+                            }
+                        }
+                    }
+                });
+            }
+            catch (RuntimeException e) {
+                stats.recordRejected();
+                throw e;
+            }
+        }
+
+        private void logTask(Runnable task, long waitNanos, long runNanos) {
+            long waitMillis = waitNanos / 1000000L;
+            long runMillis = runNanos / 1000000L;
+            if (waitMillis >= SLOW_WAIT_MILLIS || runMillis >= SLOW_RUN_MILLIS) {
+                Log.i(LOG_TAG, mPool + " task " + task.getClass().getName() + " waited "
+                        + waitMillis + " ms, ran " + runMillis + " ms");
+            }
+        }
+    }
+}
\ No newline at end of file
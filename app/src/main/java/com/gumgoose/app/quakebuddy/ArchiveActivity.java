@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.View;
+import android.webkit.URLUtil;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Activity that pages through a year of M2.5+ earthquakes from the local
+ * {@link EventArchive}, downloading the days the archive does not cover yet
+ */
+public class ArchiveActivity extends AppCompatActivity {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = ArchiveActivity.class.getSimpleName();
+
+    /**
+     * Number of earthquakes read per page, and the rows left when the next page is read
+     */
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGE_AHEAD_ROWS = 20;
+
+    private QuakeAdapter mAdapter;
+    private ListView mListView;
+    private TextView mStatusView;
+    private View mLoadingIndicator;
+    private TextView mEmptyTextView;
+
+    // Paging state: the last row shown, and whether a page is being read
+    private Quake mOldestShown;
+    private boolean mPageLoading;
+    private boolean mReachedEnd;
+
+    // Set once the activity is finishing, so the backfill stops between windows
+    private volatile boolean mDestroyed;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.archive_activity);
+
+        mListView = (ListView) findViewById(R.id.archive_list);
+        mStatusView = (TextView) findViewById(R.id.archive_status);
+        mLoadingIndicator = findViewById(R.id.archive_loading_indicator);
+        mEmptyTextView = (TextView) findViewById(R.id.archive_empty_view);
+
+        mAdapter = new QuakeAdapter(this, new ArrayList<Quake>());
+        mListView.setAdapter(mAdapter);
+        mListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
+                openQuake(mAdapter.getItem(position));
+            }
+        });
+        mListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                // Paging is driven by onScroll
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+                if (firstVisibleItem + visibleItemCount + PAGE_AHEAD_ROWS >= totalItemCount) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        loadNextPage();
+        startBackfill();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mDestroyed = true;
+        super.onDestroy();
+    }
+
+    /**
+     * Read the next page of older earthquakes from the archive on the disk pool
+     */
+    private void loadNextPage() {
+        if (mPageLoading || mReachedEnd) {
+            return;
+        }
+        mPageLoading = true;
+        final EventArchive archive = EventArchive.getInstance(this);
+        final Quake after = mOldestShown;
+        new AsyncTask<Void, Void, List<Quake>>() {
+            @Override
+            protected List<Quake> doInBackground(Void... params) {
+                try {
+                    List<Quake> page = archive.page(after, EventArchive.MIN_MAGNITUDE, PAGE_SIZE);
+                    FeltEstimator.getInstance().enrich(page, null);
+                    return page;
+                }
+                catch (IOException e) {
+                    // Error caught, print the exception to the logs
+                    Log.e(LOG_TAG, "Problem with reading the archive", e);
+                    return new ArrayList<>();
+                }
+            }
+
+            @Override
+            protected void onPostExecute(List<Quake> page) {
+                mPageLoading = false;
+                mLoadingIndicator.setVisibility(View.GONE);
+                if (page.size() < PAGE_SIZE) {
+                    // Until the backfill archives more days
+                    mReachedEnd = true;
+                }
+                if (!page.isEmpty()) {
+                    mOldestShown = page.get(page.size() - 1);
+                    mAdapter.addAll(page);
+                }
+                mEmptyTextView.setVisibility(mAdapter.getCount() == 0 ? View.VISIBLE : View.GONE);
+            }
+        }.executeOnExecutor(AppScheduler.getInstance().getExecutor(AppScheduler.Pool.DISK));
+    }
+
+    /**
+     * Download the days of the last year the archive does not cover yet, newest first
+     */
+    private void startBackfill() {
+        if (!DataBudget.getInstance().getPolicy().backfills()) {
+            // A year of earthquakes is too much for mobile data
+            mStatusView.setVisibility(View.VISIBLE);
+            mStatusView.setText(R.string.archive_backfill_waiting);
+            return;
+        }
+        final ArchiveBackfill backfill = new ArchiveBackfill(EventArchive.getInstance(this),
+                ResilientFetcher.getInstance(), DataSource.CANONICAL_QUERY_URL,
+                EventArchive.MIN_MAGNITUDE);
+        final int today = EventArchive.dayOf(System.currentTimeMillis());
+        new AsyncTask<Void, Integer, FetchOutcome.Kind>() {
+            @Override
+            protected FetchOutcome.Kind doInBackground(Void... params) {
+                try {
+                    return backfill.run(today - EventArchive.RETENTION_DAYS + 1, today,
+                            new ArchiveBackfill.Listener() {
+                                @Override
+                                public boolean onProgress(int daysDone, int daysTotal) {
+                                    publishProgress(daysDone, daysTotal);
+                                    return !mDestroyed;
+                                }
+                            });
+                }
+                catch (IOException e) {
+                    // Error caught, print the exception to the logs
+                    Log.e(LOG_TAG, "Problem with archiving the backfill", e);
+                    return FetchOutcome.Kind.CLIENT_ERROR;
+                }
+            }
+
+            @Override
+            protected void onProgressUpdate(Integer... progress) {
+                mStatusView.setVisibility(View.VISIBLE);
+                mStatusView.setText(getString(R.string.archive_backfill_progress,
+                        progress[0], progress[1]));
+                // Older days have been archived, the list can page further
+                mReachedEnd = false;
+                if (mAdapter.getCount() < PAGE_SIZE) {
+                    loadNextPage();
+                }
+            }
+
+            @Override
+            protected void onPostExecute(FetchOutcome.Kind kind) {
+                if (kind == FetchOutcome.Kind.SUCCESS) {
+                    mStatusView.setVisibility(View.GONE);
+                }
+                else {
+                    mStatusView.setVisibility(View.VISIBLE);
+                    mStatusView.setText(R.string.archive_backfill_failed);
+                }
+                mReachedEnd = false;
+                loadNextPage();
+            }
+        }.executeOnExecutor(AppScheduler.getInstance().getExecutor(AppScheduler.Pool.NETWORK));
+    }
+
+    private void openQuake(Quake quake) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String detailView = sharedPrefs.getString(
+                getString(R.string.settings_detail_view_key),
+                getString(R.string.settings_detail_view_default));
+        if (getString(R.string.settings_detail_view_native_value).equals(detailView)
+                && quake.getDetailURL() != null) {
+            startActivity(QuakeDetailActivity.newIntent(this, quake));
+        }
+        else if (URLUtil.isValidUrl(quake.getQuakeURL())) {
+            Intent websiteIntent = new Intent(this, WebViewActivity.class);
+            websiteIntent.putExtra("url", quake.getQuakeURL());
+            startActivity(websiteIntent);
+        }
+        else {
+            // Inform the user by Toast message
+            Toast.makeText(this, R.string.error_invalid_url, Toast.LENGTH_LONG).show();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Class that downloads the days missing from the {@link EventArchive}, newest first, a month
+ * per request, so a year of history is fetched once and then read from disk
+ */
+public class ArchiveBackfill {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = ArchiveBackfill.class.getSimpleName();
+
+    /**
+     * Days asked for per request, and the most events USGS returns for one request;
+     * a window that hits the cap is split in half and asked for again, down to spans of
+     * a minute within a single day
+     */
+    static final int DAYS_PER_REQUEST = 30;
+    static final int MAX_EVENTS_PER_REQUEST = 20000;
+    static final long MIN_SPAN_MILLIS = 60 * 1000L;
+
+    /**
+     * Interface for following a backfill
+     */
+    public interface Listener {
+
+        /**
+         * Called on the backfill thread after each window has been archived
+         *
+         * @param daysDone  is the number of days archived so far
+         * @param daysTotal is the number of days the backfill has to download
+         * @return          false to stop the backfill
+         */
+        boolean onProgress(int daysDone, int daysTotal);
+    }
+
+    private final EventArchive mArchive;
+    private final ResilientFetcher mFetcher;
+    private final String mBaseUrl;
+    private final double mMinMagnitude;
+    private final int mMaxEventsPerRequest;
+
+    private int mArchivedCount;
+
+    // Days of the window being fetched with a span that was still cut short at its smallest
+    private final Set<Integer> mTruncatedDays = new HashSet<>();
+
+    /**
+     * Construct a new {@link ArchiveBackfill}
+     *
+     * @param archive      is the archive the earthquakes are written to
+     * @param fetcher      is the fetcher sending the requests
+     * @param baseUrl      is the FDSN event query URL
+     * @param minMagnitude is the weakest magnitude downloaded
+     */
+    public ArchiveBackfill(EventArchive archive, ResilientFetcher fetcher, String baseUrl,
+                           double minMagnitude) {
+        this(archive, fetcher, baseUrl, minMagnitude, MAX_EVENTS_PER_REQUEST);
+    }
+
+    ArchiveBackfill(EventArchive archive, ResilientFetcher fetcher, String baseUrl,
+                    double minMagnitude, int maxEventsPerRequest) {
+        mArchive = archive;
+        mFetcher = fetcher;
+        mBaseUrl = baseUrl;
+        mMinMagnitude = minMagnitude;
+        mMaxEventsPerRequest = maxEventsPerRequest;
+    }
+
+    /**
+     * Download every day of a range not yet covered by the archive
+     *
+     * Days within {@link EventArchive#SETTLED_DAYS} of today are downloaded but not marked
+     * as covered, as their events are still being revised, and so are days holding more
+     * earthquakes than a minute's request can return
+     *
+     * @param fromDay  is the oldest UTC day wanted
+     * @param today    is the current UTC day
+     * @param listener is told about the progress, or null
+     * @return         the kind of the outcome of the last request, SUCCESS once every day
+     *                 is covered
+     */
+    public FetchOutcome.Kind run(int fromDay, int today, Listener listener) throws IOException {
+        int daysTotal = 0;
+        for (int day = fromDay; day <= today; day++) {
+            if (!mArchive.isCovered(day)) {
+                daysTotal++;
+            }
+        }
+        int daysDone = 0;
+        int toDay = today;
+        while (toDay >= fromDay) {
+            // Skip the days already covered, then take a window of uncovered days
+            if (mArchive.isCovered(toDay)) {
+                toDay--;
+                continue;
+            }
+            int windowStart = toDay;
+            while (windowStart > fromDay && toDay - windowStart + 1 < DAYS_PER_REQUEST
+                    && !mArchive.isCovered(windowStart - 1)) {
+                windowStart--;
+            }
+            FetchOutcome.Kind kind = fetchWindow(windowStart, toDay, today);
+            if (kind != FetchOutcome.Kind.SUCCESS) {
+                return kind;
+            }
+            daysDone += toDay - windowStart + 1;
+            if (listener != null && !listener.onProgress(daysDone, daysTotal)) {
+                return FetchOutcome.Kind.SUCCESS;
+            }
+            toDay = windowStart - 1;
+        }
+        return FetchOutcome.Kind.SUCCESS;
+    }
+
+    /**
+     * @return the number of earthquakes archived so far
+     */
+    public int getArchivedCount() {
+        return mArchivedCount;
+    }
+
+    /**
+     * Download and archive the days of a window, marking the settled ones as covered unless
+     * the server cut them short
+     */
+    private FetchOutcome.Kind fetchWindow(int fromDay, int toDay, int today)
+            throws IOException {
+        mTruncatedDays.clear();
+        FetchOutcome.Kind kind = fetchSpan(fromDay * EventArchive.DAY_MILLIS,
+                (toDay + 1) * EventArchive.DAY_MILLIS - 1);
+        if (kind != FetchOutcome.Kind.SUCCESS) {
+            return kind;
+        }
+        // A truncated day is left uncovered, so the next backfill asks for it again
+        int settledDay = Math.min(toDay, today - EventArchive.SETTLED_DAYS);
+        int runStart = fromDay;
+        for (int day = fromDay; day <= settledDay + 1; day++) {
+            if (day > settledDay || mTruncatedDays.contains(day)) {
+                if (day > runStart) {
+                    mArchive.markCovered(runStart, day - 1);
+                }
+                runStart = day + 1;
+            }
+        }
+        return FetchOutcome.Kind.SUCCESS;
+    }
+
+    /**
+     * Download and archive the earthquakes of a span, in halves while the server cuts the
+     * answer short
+     */
+    private FetchOutcome.Kind fetchSpan(long fromTime, long toTime) throws IOException {
+        FetchOutcome<List<Quake>> outcome = mFetcher.fetchEarthquakes(spanUrl(fromTime, toTime));
+        if (!outcome.isSuccess()) {
+            Log.w(LOG_TAG, "Backfill of " + fromTime + " to " + toTime + " failed: " + outcome);
+            return outcome.getKind();
+        }
+        List<Quake> earthquakes = outcome.getValue();
+        if (earthquakes.size() >= mMaxEventsPerRequest) {
+            if (toTime - fromTime < 2 * MIN_SPAN_MILLIS) {
+                // Too many earthquakes to ask for in any span, archive what there is
+                Log.w(LOG_TAG, "Backfill of " + fromTime + " to " + toTime + " cut short");
+                mTruncatedDays.add(EventArchive.dayOf(fromTime));
+                mTruncatedDays.add(EventArchive.dayOf(toTime));
+            }
+            else {
+                // Cut short by the server, ask for each half on its own
+                long middle = middleOf(fromTime, toTime);
+                FetchOutcome.Kind kind = fetchSpan(middle + 1, toTime);
+                return kind != FetchOutcome.Kind.SUCCESS ? kind : fetchSpan(fromTime, middle);
+            }
+        }
+        if (!earthquakes.isEmpty()) {
+            mArchive.add(earthquakes);
+            mArchivedCount += earthquakes.size();
+        }
+        return FetchOutcome.Kind.SUCCESS;
+    }
+
+    /**
+     * @return the end of the first half of a span, between whole days while it has several
+     */
+    private static long middleOf(long fromTime, long toTime) {
+        int fromDay = EventArchive.dayOf(fromTime);
+        int toDay = EventArchive.dayOf(toTime);
+        if (fromDay < toDay) {
+            return (fromDay + (toDay - fromDay) / 2 + 1) * EventArchive.DAY_MILLIS - 1;
+        }
+        return fromTime + (toTime - fromTime) / 2;
+    }
+
+    /**
+     * @return the query URL of every earthquake from fromTime to toTime, both included
+     */
+    String spanUrl(long fromTime, long toTime) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return mBaseUrl + (mBaseUrl.indexOf('?') < 0 ? '?' : '&')
+                + "format=geojson&orderby=time&limit=" + mMaxEventsPerRequest
+                + "&minmagnitude=" + mMinMagnitude
+                + "&starttime=" + format.format(fromTime)
+                + "&endtime=" + format.format(toTime);
+    }
+}
\ No newline at end of file
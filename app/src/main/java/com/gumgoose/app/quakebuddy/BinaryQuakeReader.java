@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Class that reads earthquakes written by {@link BinaryQuakeWriter}
+ */
+public class BinaryQuakeReader extends QuakeReader {
+
+    private final ReadableByteChannel mChannel;
+    private final ChannelSource mSource;
+
+    // Time of the previous record, which the next record's time is relative to
+    private long mPreviousTime;
+    private boolean mFinished;
+
+    BinaryQuakeReader(ReadableByteChannel channel) throws IOException {
+        mChannel = channel;
+        mSource = new ChannelSource(channel);
+        for (byte expected : BinaryQuakeWriter.MAGIC) {
+            if (mSource.get() != expected) {
+                throw new IOException("Not a QuakeBuddy event file");
+            }
+        }
+        int version = mSource.get();
+        if (version != BinaryQuakeWriter.VERSION) {
+            throw new IOException("Unsupported event file version " + version);
+        }
+    }
+
+    @Override
+    public Quake next() throws IOException {
+        if (mFinished) {
+            return null;
+        }
+        int tag = mSource.get();
+        if (tag == BinaryQuakeWriter.TAG_END) {
+            mFinished = true;
+            return null;
+        }
+        if (tag != BinaryQuakeWriter.TAG_RECORD) {
+            throw new IOException("Unexpected record tag " + tag);
+        }
+
+        int flags = mSource.get();
+        long time = mPreviousTime + mSource.getZigZag();
+        long updated = time + mSource.getZigZag();
+        double magnitude = mSource.getZigZag() / BinaryQuakeWriter.MAGNITUDE_SCALE;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        double depth = Double.NaN;
+        if ((flags & BinaryQuakeWriter.FLAG_COORDINATES) != 0) {
+            latitude = mSource.getZigZag() / BinaryQuakeWriter.DEGREE_SCALE;
+            longitude = mSource.getZigZag() / BinaryQuakeWriter.DEGREE_SCALE;
+            if ((flags & BinaryQuakeWriter.FLAG_DEPTH) != 0) {
+                depth = mSource.getZigZag() / BinaryQuakeWriter.DEPTH_SCALE;
+            }
+        }
+        String id = mSource.getString();
+        String place = mSource.getString();
+        String url = mSource.getString();
+        String detail = mSource.getString();
+        mPreviousTime = time;
+
+        int tsunami = (flags & BinaryQuakeWriter.FLAG_TSUNAMI) != 0 ? 1 : 0;
+        return new Quake(magnitude, place, time, tsunami, url, id, updated, detail,
+                latitude, longitude, depth);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class that writes earthquakes in the compact QuakeBuddy event format
+ *
+ * The file starts with the "QBEV" magic and a version byte, followed by one record per
+ * earthquake and a zero end tag. Times are stored as deltas from the previous record, and
+ * magnitudes, coordinates and depths as scaled integers, all in variable length encoding
+ */
+public class BinaryQuakeWriter extends QuakeWriter {
+
+    /**
+     * File magic, format version and record tags
+     */
+    static final byte[] MAGIC = {'Q', 'B', 'E', 'V'};
+    static final int VERSION = 1;
+    static final int TAG_END = 0;
+    static final int TAG_RECORD = 1;
+
+    /**
+     * Record flags
+     */
+    static final int FLAG_TSUNAMI = 1;
+    static final int FLAG_COORDINATES = 1 << 1;
+    static final int FLAG_DEPTH = 1 << 2;
+
+    /**
+     * Scales applied before rounding to integers: 0.01 magnitude units,
+     * 0.00001 degrees (about 1 metre) and 10 metres of depth
+     */
+    static final double MAGNITUDE_SCALE = 100;
+    static final double DEGREE_SCALE = 100000;
+    static final double DEPTH_SCALE = 100;
+
+    // Time of the previous record, which the next record's time is relative to
+    private long mPreviousTime;
+
+    BinaryQuakeWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        mSink.put(MAGIC);
+        mSink.put(VERSION);
+    }
+
+    @Override
+    protected void writeRecord(Quake quake) throws IOException {
+        long time = quake.getQuakeUnixTime();
+        int flags = quake.getTsunamiWarning() == 1 ? FLAG_TSUNAMI : 0;
+        boolean hasCoordinates = !Double.isNaN(quake.getLatitude())
+                && !Double.isNaN(quake.getLongitude());
+        if (hasCoordinates) {
+            flags |= FLAG_COORDINATES;
+            if (!Double.isNaN(quake.getDepthKm())) {
+                flags |= FLAG_DEPTH;
+            }
+        }
+
+        mSink.put(TAG_RECORD);
+        mSink.put(flags);
+        mSink.putZigZag(time - mPreviousTime);
+        mSink.putZigZag(quake.getQuakeUpdated() - time);
+        mSink.putZigZag(Math.round(quake.getQuakeMagnitude() * MAGNITUDE_SCALE));
+        if (hasCoordinates) {
+            mSink.putZigZag(Math.round(quake.getLatitude() * DEGREE_SCALE));
+            mSink.putZigZag(Math.round(quake.getLongitude() * DEGREE_SCALE));
+            if ((flags & FLAG_DEPTH) != 0) {
+                mSink.putZigZag(Math.round(quake.getDepthKm() * DEPTH_SCALE));
+            }
+        }
+        mSink.putString(quake.getQuakeId());
+        mSink.putString(quake.getQuakeLocation());
+        mSink.putString(quake.getQuakeURL());
+        mSink.putString(quake.getDetailURL());
+        mPreviousTime = time;
+    }
+
+    @Override
+    protected void writeTrailer() throws IOException {
+        mSink.put(TAG_END);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that tracks every in-process cache by tier and evicts the tiers in priority order
+ * when the system reports memory pressure through onTrimMemory
+ */
+public final class CacheManager {
+
+    private static final CacheManager sInstance = new CacheManager();
+
+    // Registered caches of each tier
+    private final EnumMap<CacheTier, List<TrimmableCache>> mTiers = new EnumMap<>(CacheTier.class);
+
+    /**
+     * @return the app-wide {@link CacheManager}
+     */
+    public static CacheManager getInstance() {
+        return sInstance;
+    }
+
+    CacheManager() {
+        for (CacheTier tier : CacheTier.values()) {
+            mTiers.put(tier, new ArrayList<TrimmableCache>());
+        }
+    }
+
+    /**
+     * Register a cache so that it is trimmed along with its tier
+     *
+     * @param tier  is the tier the cache belongs to
+     * @param cache is the cache to register
+     */
+    public synchronized void register(CacheTier tier, TrimmableCache cache) {
+        List<TrimmableCache> caches = mTiers.get(tier);
+        if (!caches.contains(cache)) {
+            caches.add(cache);
+        }
+    }
+
+    /**
+     * @param cache is the cache to stop trimming
+     */
+    public synchronized void unregister(TrimmableCache cache) {
+        for (List<TrimmableCache> caches : mTiers.values()) {
+            caches.remove(cache);
+        }
+    }
+
+    /**
+     * Trim every tier to the share it keeps at the given level, lowest priority tier first
+     *
+     * @param level is the {@link android.content.ComponentCallbacks2} trim level
+     */
+    public synchronized void onTrimMemory(int level) {
+        for (CacheTier tier : CacheTier.values()) {
+            float fraction = tier.retainedFraction(level);
+            if (fraction >= 1f) {
+                continue;
+            }
+            for (TrimmableCache cache : mTiers.get(tier)) {
+                cache.trimToFraction(fraction);
+            }
+        }
+    }
+
+    /**
+     * @return the estimated memory held by each tier in bytes
+     */
+    public synchronized Map<CacheTier, Long> getUsageByTier() {
+        EnumMap<CacheTier, Long> usage = new EnumMap<>(CacheTier.class);
+        for (Map.Entry<CacheTier, List<TrimmableCache>> tier : mTiers.entrySet()) {
+            long bytes = 0;
+            for (TrimmableCache cache : tier.getValue()) {
+                bytes += cache.getSizeBytes();
+            }
+            usage.put(tier.getKey(), bytes);
+        }
+        return usage;
+    }
+
+    /**
+     * @return the estimated memory held by every registered cache in bytes
+     */
+    public long getTotalUsage() {
+        long total = 0;
+        for (long bytes : getUsageByTier().values()) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * @return a one line summary of the memory held by each tier, for the logs
+     */
+    public String describeUsage() {
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<CacheTier, Long> tier : getUsageByTier().entrySet()) {
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(tier.getKey().name()).append('=')
+                    .append(tier.getValue() / 1024).append("KB");
+        }
+        return summary.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.ComponentCallbacks2;
+
+/**
+ * Enum of the in-process cache tiers, listed in the order they are evicted under memory
+ * pressure, along with the trim levels at which each tier is halved and cleared
+ *
+ * Trim levels are the {@link ComponentCallbacks2} TRIM_MEMORY constants
+ */
+public enum CacheTier {
+
+    // Parsed detail feeds, which can be read again from the disk cache
+    DETAIL_PAYLOADS(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW),
+
+    // Date and number formatters, which are cheap to build again
+    FORMATTERS(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
+            ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN),
+
+    // Parsed earthquake lists, which would otherwise be fetched again on return
+    PARSED_RESULTS(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
+            ComponentCallbacks2.TRIM_MEMORY_BACKGROUND),
+
+    // Shared place name Strings, which keep every other tier small
+    INTERNED_PLACES(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+            ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+
+    private final int mHalveLevel;
+    private final int mClearLevel;
+
+    CacheTier(int halveLevel, int clearLevel) {
+        mHalveLevel = halveLevel;
+        mClearLevel = clearLevel;
+    }
+
+    /**
+     * @param level is the trim level reported by the system
+     * @return      the share of the tier to keep at that level
+     */
+    public float retainedFraction(int level) {
+        if (level >= mClearLevel) {
+            return 0f;
+        }
+        if (level >= mHalveLevel) {
+            return 0.5f;
+        }
+        return 1f;
+    }
+}
\ No newline at end of file
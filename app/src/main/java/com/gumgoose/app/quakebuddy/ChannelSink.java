@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Class that buffers bytes and text on their way to an NIO channel, so that writers can
+ * stream one record at a time through a fixed-size buffer
+ */
+public class ChannelSink {
+
+    /**
+     * Size of the write buffer
+     */
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder mEncoder = Charset.forName("UTF-8").newEncoder();
+
+    // Total bytes handed to the channel so far
+    private long mBytesWritten;
+
+    /**
+     * Construct a new {@link ChannelSink}
+     *
+     * @param channel is the channel the bytes are written to
+     */
+    public ChannelSink(WritableByteChannel channel) {
+        mChannel = channel;
+    }
+
+    /**
+     * @param b is a single byte to write
+     */
+    public void put(int b) throws IOException {
+        ensureRoom(1);
+        mBuffer.put((byte) b);
+    }
+
+    /**
+     * @param bytes is the array of bytes to write
+     */
+    public void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensureRoom(1);
+            int count = Math.min(mBuffer.remaining(), bytes.length - offset);
+            mBuffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Write an unsigned value in 7 bit groups, so small values take a single byte
+     *
+     * @param value is the non-negative value to write
+     */
+    public void putVarLong(long value) throws IOException {
+        ensureRoom(10);
+        while ((value & ~0x7FL) != 0) {
+            mBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mBuffer.put((byte) value);
+    }
+
+    /**
+     * Write a signed value so that small negative values also take few bytes
+     *
+     * @param value is the value to write
+     */
+    public void putZigZag(long value) throws IOException {
+        putVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 String, where null is written as length 0
+     *
+     * @param text is the String to write, or null
+     */
+    public void putString(String text) throws IOException {
+        if (text == null) {
+            putVarLong(0);
+            return;
+        }
+        putVarLong(utf8Length(text) + 1);
+        putText(text);
+    }
+
+    /**
+     * Encode text as UTF-8 straight into the buffer, without a length prefix
+     *
+     * @param text is the text to write
+     */
+    public void putText(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        mEncoder.reset();
+        while (true) {
+            CoderResult result = mEncoder.encode(chars, mBuffer, true);
+            if (result.isOverflow()) {
+                flush();
+            }
+            else if (result.isUnderflow()) {
+                break;
+            }
+            else {
+                result.throwException();
+            }
+        }
+        while (mEncoder.flush(mBuffer).isOverflow()) {
+            flush();
+        }
+    }
+
+    /**
+     * Hand every buffered byte to the channel
+     */
+    public void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mBytesWritten += mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    /** Getter method for bytes handed to the channel, excluding any still buffered */
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (mBuffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * @param text is the String to measure
+     * @return     the number of bytes the String takes in UTF-8
+     */
+    static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
\ No newline at end of file
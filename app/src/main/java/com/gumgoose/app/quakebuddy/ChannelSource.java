@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Class that reads bytes from an NIO channel through a fixed-size buffer, the reading
+ * counterpart of {@link ChannelSink}
+ */
+public class ChannelSource {
+
+    /**
+     * Size of the read buffer
+     */
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ReadableByteChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    // Reused for decoding Strings, grown to the longest String seen
+    private byte[] mScratch = new byte[256];
+
+    /**
+     * Construct a new {@link ChannelSource}
+     *
+     * @param channel is the channel the bytes are read from
+     */
+    public ChannelSource(ReadableByteChannel channel) {
+        mChannel = channel;
+        // Start with an empty buffer in read mode
+        mBuffer.limit(0);
+    }
+
+    /**
+     * @return the next byte, from 0 to 255
+     * @throws EOFException if the channel has no more bytes
+     */
+    public int get() throws IOException {
+        if (!mBuffer.hasRemaining() && !fill()) {
+            throw new EOFException();
+        }
+        return mBuffer.get() & 0xFF;
+    }
+
+    /**
+     * @param bytes  is the array to read into
+     * @param length is the number of bytes to read from the start of the array
+     */
+    public void get(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!mBuffer.hasRemaining() && !fill()) {
+                throw new EOFException();
+            }
+            int count = Math.min(mBuffer.remaining(), length - offset);
+            mBuffer.get(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * @return the next value written by {@link ChannelSink#putVarLong(long)}
+     */
+    public long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length value");
+    }
+
+    /**
+     * @return the next value written by {@link ChannelSink#putZigZag(long)}
+     */
+    public long getZigZag() throws IOException {
+        long value = getVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the next String written by {@link ChannelSink#putString(String)}, or null
+     */
+    public String getString() throws IOException {
+        long prefix = getVarLong();
+        if (prefix == 0) {
+            return null;
+        }
+        int length = (int) (prefix - 1);
+        if (mScratch.length < length) {
+            mScratch = new byte[Math.max(length, mScratch.length * 2)];
+        }
+        get(mScratch, length);
+        return new String(mScratch, 0, length, UTF_8);
+    }
+
+    /**
+     * Refill the buffer from the channel
+     *
+     * @return false if the channel has no more bytes
+     */
+    private boolean fill() throws IOException {
+        mBuffer.clear();
+        int read = 0;
+        while (read == 0) {
+            read = mChannel.read(mBuffer);
+        }
+        mBuffer.flip();
+        return read > 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Class that stops requests to a failing server for a while, so a struggling upstream is
+ * not hammered by every refresh
+ *
+ * The breaker opens after a run of consecutive failures. Once the cool-down has passed,
+ * a single trial request is let through: its success closes the breaker, and its failure
+ * opens it again for twice as long, up to a limit
+ */
+public class CircuitBreaker {
+
+    /**
+     * States of the breaker
+     */
+    public enum State {
+        /** Requests flow normally */
+        CLOSED,
+        /** Requests are refused until the cool-down has passed */
+        OPEN,
+        /** A single trial request is in flight */
+        HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+    private final long mCoolDownMillis;
+    private final long mMaxCoolDownMillis;
+
+    private State mState = State.CLOSED;
+    private int mConsecutiveFailures;
+    private long mCurrentCoolDownMillis;
+    private long mOpenedAtMillis;
+
+    /**
+     * Construct a new {@link CircuitBreaker}
+     *
+     * @param failureThreshold  is the number of consecutive failures that opens the breaker
+     * @param coolDownMillis    is the time the breaker first stays open
+     * @param maxCoolDownMillis is the longest the breaker stays open after repeated trials fail
+     */
+    public CircuitBreaker(int failureThreshold, long coolDownMillis, long maxCoolDownMillis) {
+        mFailureThreshold = failureThreshold;
+        mCoolDownMillis = coolDownMillis;
+        mMaxCoolDownMillis = maxCoolDownMillis;
+        mCurrentCoolDownMillis = coolDownMillis;
+    }
+
+    /**
+     * Ask to send a request, which turns an open breaker half open once it has cooled down
+     *
+     * @param nowMillis is the current time on a monotonic clock
+     * @return          true if the request may be sent
+     */
+    public synchronized boolean allowRequest(long nowMillis) {
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowMillis - mOpenedAtMillis >= mCurrentCoolDownMillis) {
+                    mState = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // Only the trial request is let through while half open
+                return false;
+        }
+    }
+
+    /**
+     * Record a request that reached a healthy server
+     */
+    public synchronized void recordSuccess() {
+        mState = State.CLOSED;
+        mConsecutiveFailures = 0;
+        mCurrentCoolDownMillis = mCoolDownMillis;
+    }
+
+    /**
+     * Record a request that failed because of the server or the connection
+     *
+     * @param nowMillis is the current time on a monotonic clock
+     */
+    public synchronized void recordFailure(long nowMillis) {
+        mConsecutiveFailures++;
+        if (mState == State.HALF_OPEN) {
+            // The trial failed, back off for longer
+            mCurrentCoolDownMillis = Math.min(mMaxCoolDownMillis, mCurrentCoolDownMillis * 2);
+            open(nowMillis);
+        }
+        else if (mState == State.CLOSED && mConsecutiveFailures >= mFailureThreshold) {
+            open(nowMillis);
+        }
+    }
+
+    private void open(long nowMillis) {
+        mState = State.OPEN;
+        mOpenedAtMillis = nowMillis;
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+
+    /**
+     * @param nowMillis is the current time on a monotonic clock
+     * @return          the time until a trial request is allowed, or 0 if one is allowed now
+     */
+    public synchronized long getRemainingCoolDownMillis(long nowMillis) {
+        if (mState != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, mOpenedAtMillis + mCurrentCoolDownMillis - nowMillis);
+    }
+}
\ No newline at end of file
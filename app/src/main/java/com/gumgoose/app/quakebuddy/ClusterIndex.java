@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Class that clusters earthquakes for the map with a precomputed grid per zoom level
+ *
+ * Coordinates are Web Mercator world coordinates between 0 and 1. At zoom level z the world
+ * is 256 * 2^z pixels wide and is divided into square cells of {@link #CELL_PIXELS} pixels;
+ * every cell keeps the count, centroid and strongest earthquake of the events inside it.
+ * The cells of a level are the parents of four cells of the level below, so an earthquake
+ * is added or removed by updating one cell per level, and a viewport is drawn by visiting
+ * only the cells on screen, however many earthquakes are indexed
+ */
+public class ClusterIndex {
+
+    /**
+     * Deepest zoom level that is clustered; deeper zooms show every earthquake on its own
+     */
+    public static final int MAX_ZOOM = 14;
+
+    /**
+     * Size of a tile and of a cluster cell in pixels at their own zoom level
+     */
+    public static final int TILE_PIXELS = 256;
+    public static final int CELL_PIXELS = 64;
+
+    // Cells per tile side, as a power of two
+    private static final int CELL_SHIFT = 2;
+
+    // Latitude limit of the Web Mercator projection
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    /**
+     * Interface for visiting the clusters of a viewport without allocating
+     */
+    public interface ClusterVisitor {
+
+        /**
+         * @param x         is the world x coordinate of the cluster's centroid
+         * @param y         is the world y coordinate of the cluster's centroid
+         * @param count     is the number of earthquakes in the cluster
+         * @param strongest is the earthquake with the highest magnitude in the cluster
+         */
+        void onCluster(double x, double y, int count, Quake strongest);
+    }
+
+    // Indexed earthquakes and their world coordinates, by point number
+    private Quake[] mQuakes = new Quake[64];
+    private double[] mX = new double[64];
+    private double[] mY = new double[64];
+    // Next point in the same cell of the deepest level, or -1
+    private int[] mNext = new int[64];
+    private int mPointCount;
+
+    // Point numbers freed by removals, reused before the arrays grow
+    private int[] mFree = new int[16];
+    private int mFreeCount;
+
+    private final HashMap<String, Integer> mPointById = new HashMap<>();
+    private final CellLevel[] mLevels = new CellLevel[MAX_ZOOM + 1];
+
+    private int mSize;
+
+    /**
+     * Construct a new, empty {@link ClusterIndex}
+     */
+    public ClusterIndex() {
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            mLevels[zoom] = new CellLevel(zoom == MAX_ZOOM);
+        }
+    }
+
+    /**
+     * @param longitude is a longitude in degrees
+     * @return          the world x coordinate
+     */
+    public static double longitudeToX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * @param latitude is a latitude in degrees
+     * @return         the world y coordinate, 0 at the north edge of the map
+     */
+    public static double latitudeToY(double latitude) {
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double sin = Math.sin(Math.toRadians(clamped));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    /**
+     * @param y is a world y coordinate
+     * @return  the latitude in degrees
+     */
+    public static double yToLatitude(double y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+    }
+
+    /**
+     * @return the number of earthquakes in the index
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Add earthquakes to the index, replacing earthquakes with the same event ID
+     *
+     * @param earthquakes is the earthquakes to add; those without coordinates are skipped
+     */
+    public synchronized void putAll(Iterable<Quake> earthquakes) {
+        for (Quake quake : earthquakes) {
+            put(quake);
+        }
+    }
+
+    /**
+     * Add an earthquake to the index, replacing an earthquake with the same event ID
+     *
+     * @param quake is the earthquake to add; it is skipped if it has no coordinates
+     * @return      true if the earthquake was added
+     */
+    public synchronized boolean put(Quake quake) {
+        if (Double.isNaN(quake.getLatitude()) || Double.isNaN(quake.getLongitude())) {
+            return false;
+        }
+        if (quake.getQuakeId() != null) {
+            Integer existing = mPointById.get(quake.getQuakeId());
+            if (existing != null) {
+                removePoint(existing);
+            }
+        }
+
+        int point = mFreeCount > 0 ? mFree[--mFreeCount] : mPointCount++;
+        if (point >= mQuakes.length) {
+            int capacity = mQuakes.length * 2;
+            mQuakes = Arrays.copyOf(mQuakes, capacity);
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+            mNext = Arrays.copyOf(mNext, capacity);
+        }
+        mQuakes[point] = quake;
+        mX[point] = Math.min(Math.nextAfter(1.0, 0), longitudeToX(quake.getLongitude()));
+        mY[point] = Math.min(Math.nextAfter(1.0, 0), latitudeToY(quake.getLatitude()));
+        if (quake.getQuakeId() != null) {
+            mPointById.put(quake.getQuakeId(), point);
+        }
+
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            CellLevel level = mLevels[zoom];
+            int slot = level.findOrInsert(cellKey(zoom, mX[point], mY[point]));
+            level.mCounts[slot]++;
+            level.mSumX[slot] += mX[point];
+            level.mSumY[slot] += mY[point];
+            int best = level.mBest[slot];
+            if (best < 0 || magnitude(point) > magnitude(best)) {
+                level.mBest[slot] = point;
+            }
+            if (level.mHeads != null) {
+                mNext[point] = level.mHeads[slot];
+                level.mHeads[slot] = point;
+            }
+        }
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Remove an earthquake from the index
+     *
+     * @param eventId is the event ID of the earthquake
+     * @return        true if the earthquake was in the index
+     */
+    public synchronized boolean remove(String eventId) {
+        Integer point = mPointById.get(eventId);
+        if (point == null) {
+            return false;
+        }
+        removePoint(point);
+        return true;
+    }
+
+    /**
+     * Remove every earthquake from the index
+     */
+    public synchronized void clear() {
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            mLevels[zoom] = new CellLevel(zoom == MAX_ZOOM);
+        }
+        Arrays.fill(mQuakes, null);
+        mPointById.clear();
+        mPointCount = 0;
+        mFreeCount = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Visit the clusters whose cells overlap a viewport
+     *
+     * The map repeats to the east and west, so a viewport may reach past either edge of the
+     * world; the clusters of every copy of the world it shows are visited, with the x
+     * coordinates of that copy
+     *
+     * @param zoom    is the zoom level; above {@link #MAX_ZOOM} every earthquake is visited
+     * @param minX    is the world x coordinate of the left edge of the viewport
+     * @param minY    is the world y coordinate of the top edge of the viewport
+     * @param maxX    is the world x coordinate of the right edge of the viewport
+     * @param maxY    is the world y coordinate of the bottom edge of the viewport
+     * @param visitor is told about every cluster
+     */
+    public synchronized void query(int zoom, double minX, double minY, double maxX, double maxY,
+                                   ClusterVisitor visitor) {
+        boolean singles = zoom > MAX_ZOOM;
+        int levelZoom = Math.max(0, Math.min(MAX_ZOOM, zoom));
+        CellLevel level = mLevels[levelZoom];
+        long cells = 1L << (levelZoom + CELL_SHIFT);
+        long firstY = clampCell((long) Math.floor(minY * cells), cells);
+        long lastY = clampCell((long) Math.floor(maxY * cells), cells);
+
+        // Split the viewport where it crosses the antimeridian, one range per world copy
+        long lastCopy = (long) Math.ceil(maxX) - 1;
+        for (long copy = (long) Math.floor(minX); copy <= lastCopy; copy++) {
+            double copyMinX = Math.max(minX, copy) - copy;
+            double copyMaxX = Math.min(maxX, copy + 1) - copy;
+            long firstX = clampCell((long) Math.floor(copyMinX * cells), cells);
+            long lastX = clampCell((long) Math.floor(copyMaxX * cells), cells);
+            queryCells(level, singles, firstX, firstY, lastX, lastY, copy, visitor);
+        }
+    }
+
+    private void queryCells(CellLevel level, boolean singles, long firstX, long firstY,
+                            long lastX, long lastY, double offsetX, ClusterVisitor visitor) {
+        if ((lastX - firstX + 1) * (lastY - firstY + 1) > level.mKeys.length) {
+            // The viewport spans more cells than exist, so walk the cells instead
+            for (int slot = 0; slot < level.mKeys.length; slot++) {
+                long key = level.mKeys[slot];
+                if (key == CellLevel.EMPTY || level.mCounts[slot] == 0) {
+                    continue;
+                }
+                long cellX = key >>> 32;
+                long cellY = key & 0xffffffffL;
+                if (cellX >= firstX && cellX <= lastX && cellY >= firstY && cellY <= lastY) {
+                    visitCell(level, slot, singles, offsetX, visitor);
+                }
+            }
+            return;
+        }
+        for (long cellX = firstX; cellX <= lastX; cellX++) {
+            for (long cellY = firstY; cellY <= lastY; cellY++) {
+                int slot = level.find((cellX << 32) | cellY);
+                if (slot >= 0 && level.mCounts[slot] > 0) {
+                    visitCell(level, slot, singles, offsetX, visitor);
+                }
+            }
+        }
+    }
+
+    private void visitCell(CellLevel level, int slot, boolean singles, double offsetX,
+                           ClusterVisitor visitor) {
+        int count = level.mCounts[slot];
+        if (!singles || count == 1) {
+            visitor.onCluster(offsetX + level.mSumX[slot] / count, level.mSumY[slot] / count,
+                    count, mQuakes[level.mBest[slot]]);
+            return;
+        }
+        for (int point = level.mHeads[slot]; point >= 0; point = mNext[point]) {
+            visitor.onCluster(offsetX + mX[point], mY[point], 1, mQuakes[point]);
+        }
+    }
+
+    private void removePoint(int point) {
+        // Deepest level first, so a coarser cell can recompute its strongest from its children
+        for (int zoom = MAX_ZOOM; zoom >= 0; zoom--) {
+            CellLevel level = mLevels[zoom];
+            int slot = level.find(cellKey(zoom, mX[point], mY[point]));
+            level.mCounts[slot]--;
+            if (level.mHeads != null) {
+                unlink(level, slot, point);
+            }
+            if (level.mCounts[slot] == 0) {
+                level.mSumX[slot] = 0;
+                level.mSumY[slot] = 0;
+                level.mBest[slot] = -1;
+                continue;
+            }
+            level.mSumX[slot] -= mX[point];
+            level.mSumY[slot] -= mY[point];
+            if (level.mBest[slot] == point) {
+                level.mBest[slot] = level.mHeads != null
+                        ? strongestInCell(level.mHeads[slot])
+                        : strongestOfChildren(zoom, mX[point], mY[point]);
+            }
+        }
+
+        Quake quake = mQuakes[point];
+        if (quake.getQuakeId() != null) {
+            mPointById.remove(quake.getQuakeId());
+        }
+        mQuakes[point] = null;
+        if (mFreeCount == mFree.length) {
+            mFree = Arrays.copyOf(mFree, mFree.length * 2);
+        }
+        mFree[mFreeCount++] = point;
+        mSize--;
+    }
+
+    private void unlink(CellLevel level, int slot, int point) {
+        if (level.mHeads[slot] == point) {
+            level.mHeads[slot] = mNext[point];
+            return;
+        }
+        for (int previous = level.mHeads[slot]; previous >= 0; previous = mNext[previous]) {
+            if (mNext[previous] == point) {
+                mNext[previous] = mNext[point];
+                return;
+            }
+        }
+    }
+
+    private int strongestInCell(int head) {
+        int best = -1;
+        for (int point = head; point >= 0; point = mNext[point]) {
+            if (best < 0 || magnitude(point) > magnitude(best)) {
+                best = point;
+            }
+        }
+        return best;
+    }
+
+    private int strongestOfChildren(int zoom, double x, double y) {
+        CellLevel children = mLevels[zoom + 1];
+        long cells = 1L << (zoom + CELL_SHIFT);
+        long childX = 2 * Math.min(cells - 1, (long) (x * cells));
+        long childY = 2 * Math.min(cells - 1, (long) (y * cells));
+        int best = -1;
+        for (long dx = 0; dx < 2; dx++) {
+            for (long dy = 0; dy < 2; dy++) {
+                int slot = children.find(((childX + dx) << 32) | (childY + dy));
+                if (slot < 0 || children.mCounts[slot] == 0) {
+                    continue;
+                }
+                int candidate = children.mBest[slot];
+                if (best < 0 || magnitude(candidate) > magnitude(best)) {
+                    best = candidate;
+                }
+            }
+        }
+        return best;
+    }
+
+    private double magnitude(int point) {
+        return mQuakes[point].getQuakeMagnitude();
+    }
+
+    private static long cellKey(int zoom, double x, double y) {
+        long cells = 1L << (zoom + CELL_SHIFT);
+        long cellX = Math.min(cells - 1, (long) (x * cells));
+        long cellY = Math.min(cells - 1, (long) (y * cells));
+        return (cellX << 32) | cellY;
+    }
+
+    private static long clampCell(long cell, long cells) {
+        return Math.max(0, Math.min(cells - 1, cell));
+    }
+
+    /**
+     * Cells of one zoom level in an open addressing hash table of primitive arrays, so that
+     * tens of thousands of cells do not cost an object each
+     */
+    private static final class CellLevel {
+
+        static final long EMPTY = -1;
+
+        long[] mKeys;
+        int[] mCounts;
+        double[] mSumX;
+        double[] mSumY;
+        int[] mBest;
+        // First point of each cell, only kept by the deepest level
+        int[] mHeads;
+        private int mUsed;
+
+        CellLevel(boolean withPoints) {
+            allocate(16, withPoints);
+        }
+
+        private void allocate(int capacity, boolean withPoints) {
+            mKeys = new long[capacity];
+            Arrays.fill(mKeys, EMPTY);
+            mCounts = new int[capacity];
+            mSumX = new double[capacity];
+            mSumY = new double[capacity];
+            mBest = new int[capacity];
+            Arrays.fill(mBest, -1);
+            mHeads = withPoints ? new int[capacity] : null;
+            if (mHeads != null) {
+                Arrays.fill(mHeads, -1);
+            }
+            mUsed = 0;
+        }
+
+        int find(long key) {
+            int mask = mKeys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (mKeys[slot] == key) {
+                    return slot;
+                }
+                if (mKeys[slot] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        int findOrInsert(long key) {
+            int slot = find(key);
+            if (slot >= 0) {
+                return slot;
+            }
+            // Keep the table at most half full so probe sequences stay short
+            if (2 * (mUsed + 1) > mKeys.length) {
+                rehash();
+            }
+            int mask = mKeys.length - 1;
+            slot = hash(key) & mask;
+            while (mKeys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            mKeys[slot] = key;
+            mUsed++;
+            return slot;
+        }
+
+        private void rehash() {
+            long[] keys = mKeys;
+            int[] counts = mCounts;
+            double[] sumX = mSumX;
+            double[] sumY = mSumY;
+            int[] best = mBest;
+            int[] heads = mHeads;
+
+            // Cells emptied by removals are dropped rather than copied
+            int live = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY && counts[slot] > 0) {
+                    live++;
+                }
+            }
+            int capacity = 16;
+            while (capacity < 4 * (live + 1)) {
+                capacity *= 2;
+            }
+            allocate(capacity, heads != null);
+
+            int mask = capacity - 1;
+            for (int old = 0; old < keys.length; old++) {
+                if (keys[old] == EMPTY || counts[old] == 0) {
+                    continue;
+                }
+                int slot = hash(keys[old]) & mask;
+                while (mKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                mKeys[slot] = keys[old];
+                mCounts[slot] = counts[old];
+                mSumX[slot] = sumX[old];
+                mSumY[slot] = sumY[old];
+                mBest[slot] = best[old];
+                if (heads != null) {
+                    mHeads[slot] = heads[old];
+                }
+                mUsed++;
+            }
+        }
+
+        private static int hash(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
\ No newline at end of file
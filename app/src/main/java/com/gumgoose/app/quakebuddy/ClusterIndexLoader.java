@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Class that reads the whole local event history into a {@link ClusterIndex} for the map,
+ * so that the clusters of every zoom level are built off the main thread
+ */
+public class ClusterIndexLoader extends AsyncTaskLoader<ClusterIndex> {
+
+    // Loaded result, kept so a configuration change does not load again
+    private ClusterIndex mIndex;
+
+    /**
+     * Construct a new {@link ClusterIndexLoader}
+     *
+     * @param context of the activity
+     */
+    public ClusterIndexLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mIndex != null) {
+            deliverResult(mIndex);
+        }
+        if (mIndex == null || takeContentChanged()) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    /**
+     * This task runs on a background thread
+     */
+    public ClusterIndex loadInBackground() {
+        ClusterIndex index = new ClusterIndex();
+        try {
+            QuakeReader reader = EventHistory.getInstance(getContext()).openReader();
+            if (reader == null) {
+                return index;
+            }
+            try {
+                Quake quake = reader.next();
+                while (quake != null) {
+                    index.put(quake);
+                    quake = reader.next();
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException e) {
+            // Error caught, print the exception to the logs
+            Log.e(EventHistory.LOG_TAG, "Problem with reading the earthquake history", e);
+        }
+        return index;
+    }
+
+    @Override
+    public void deliverResult(ClusterIndex index) {
+        mIndex = index;
+        super.deliverResult(index);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Class that reads earthquakes written by {@link CsvQuakeWriter}; the columns are matched
+ * by their header names, so files that were reordered in a spreadsheet still import
+ */
+public class CsvQuakeReader extends QuakeReader {
+
+    private final BufferedReader mReader;
+    private final SimpleDateFormat mTimeFormat =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+
+    // Position of each known column in a line, or -1 when the file lacks it
+    private final int mId;
+    private final int mTime;
+    private final int mUpdated;
+    private final int mMagnitude;
+    private final int mPlace;
+    private final int mLatitude;
+    private final int mLongitude;
+    private final int mDepth;
+    private final int mTsunami;
+    private final int mUrl;
+    private final int mDetail;
+
+    // Reused between lines
+    private final List<String> mFields = new ArrayList<>();
+    private final StringBuilder mField = new StringBuilder();
+
+    CsvQuakeReader(ReadableByteChannel channel) throws IOException {
+        mReader = new BufferedReader(Channels.newReader(channel, "UTF-8"));
+        mTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        if (!readFields()) {
+            throw new IOException("CSV file is empty");
+        }
+        List<String> header = new ArrayList<>(mFields);
+        mId = header.indexOf("id");
+        mTime = header.indexOf("time");
+        mUpdated = header.indexOf("updated");
+        mMagnitude = header.indexOf("magnitude");
+        mPlace = header.indexOf("place");
+        mLatitude = header.indexOf("latitude");
+        mLongitude = header.indexOf("longitude");
+        mDepth = header.indexOf("depth_km");
+        mTsunami = header.indexOf("tsunami");
+        mUrl = header.indexOf("url");
+        mDetail = header.indexOf("detail");
+        if (mTime < 0 || mMagnitude < 0) {
+            throw new IOException("CSV file needs at least time and magnitude columns");
+        }
+    }
+
+    @Override
+    public Quake next() throws IOException {
+        // Skip blank lines, such as a trailing newline
+        do {
+            if (!readFields()) {
+                return null;
+            }
+        } while (mFields.size() == 1 && mFields.get(0).isEmpty());
+
+        long time = parseTime(field(mTime));
+        String updated = field(mUpdated);
+        String tsunami = field(mTsunami);
+        try {
+            return new Quake(Double.parseDouble(field(mMagnitude)), field(mPlace), time,
+                    tsunami == null ? 0 : Integer.parseInt(tsunami),
+                    field(mUrl), field(mId),
+                    updated == null ? time : parseTime(updated),
+                    field(mDetail),
+                    parseNumber(field(mLatitude)),
+                    parseNumber(field(mLongitude)),
+                    parseNumber(field(mDepth)));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed number in CSV line: " + mFields, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    /**
+     * @return the field at a column, or null if the column is missing or the field empty
+     */
+    private String field(int column) {
+        if (column < 0 || column >= mFields.size()) {
+            return null;
+        }
+        String value = mFields.get(column);
+        return value.isEmpty() ? null : value;
+    }
+
+    private long parseTime(String value) throws IOException {
+        if (value == null) {
+            throw new IOException("CSV line is missing its time");
+        }
+        try {
+            return mTimeFormat.parse(value).getTime();
+        }
+        catch (ParseException e) {
+            // Also accept unix times in milliseconds, as in the USGS feed
+            try {
+                return Long.parseLong(value);
+            }
+            catch (NumberFormatException notMillis) {
+                throw new IOException("Malformed time in CSV line: " + value, e);
+            }
+        }
+    }
+
+    private static double parseNumber(String value) {
+        return value == null ? Double.NaN : Double.parseDouble(value);
+    }
+
+    /**
+     * Split the next record into mFields, following quoted fields across line breaks
+     *
+     * @return false at the end of the file
+     */
+    private boolean readFields() throws IOException {
+        String line = mReader.readLine();
+        if (line == null) {
+            return false;
+        }
+        mFields.clear();
+        mField.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        mField.append('"');
+                        i++;
+                    }
+                    else if (c == '"') {
+                        quoted = false;
+                    }
+                    else {
+                        mField.append(c);
+                    }
+                }
+                else if (c == '"') {
+                    quoted = true;
+                }
+                else if (c == ',') {
+                    mFields.add(mField.toString());
+                    mField.setLength(0);
+                }
+                else {
+                    mField.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            // The quoted field continues on the next line
+            line = mReader.readLine();
+            if (line == null) {
+                throw new IOException("Unterminated quoted field in CSV file");
+            }
+            mField.append('\n');
+        }
+        mFields.add(mField.toString());
+        return true;
+    }
+}
\ No newline at end of file
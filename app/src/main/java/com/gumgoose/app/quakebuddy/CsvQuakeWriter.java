@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Class that writes earthquakes as comma separated values with a header line
+ */
+public class CsvQuakeWriter extends QuakeWriter {
+
+    /**
+     * Column names, in the order they are written
+     */
+    static final String HEADER =
+            "id,time,updated,magnitude,place,latitude,longitude,depth_km,tsunami,url,detail";
+
+    // ISO 8601 times in UTC, which spreadsheets and pandas both understand
+    private final SimpleDateFormat mTimeFormat =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+
+    // Reused for every line to avoid building a new String per field
+    private final StringBuilder mLine = new StringBuilder(256);
+
+    CsvQuakeWriter(WritableByteChannel channel) {
+        super(channel);
+        mTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        mSink.putText(HEADER + "\n");
+    }
+
+    @Override
+    protected void writeRecord(Quake quake) throws IOException {
+        mLine.setLength(0);
+        appendField(quake.getQuakeId()).append(',');
+        mLine.append(mTimeFormat.format(quake.getQuakeUnixTime())).append(',');
+        mLine.append(mTimeFormat.format(quake.getQuakeUpdated())).append(',');
+        mLine.append(quake.getQuakeMagnitude()).append(',');
+        appendField(quake.getQuakeLocation()).append(',');
+        appendNumber(quake.getLatitude()).append(',');
+        appendNumber(quake.getLongitude()).append(',');
+        appendNumber(quake.getDepthKm()).append(',');
+        mLine.append(quake.getTsunamiWarning()).append(',');
+        appendField(quake.getQuakeURL()).append(',');
+        appendField(quake.getDetailURL()).append('\n');
+        mSink.putText(mLine);
+    }
+
+    @Override
+    protected void writeTrailer() {
+        // CSV has no trailer
+    }
+
+    private StringBuilder appendNumber(double value) {
+        // Unknown coordinates are left empty rather than written as "NaN"
+        return Double.isNaN(value) ? mLine : mLine.append(value);
+    }
+
+    private StringBuilder appendField(String value) {
+        if (value == null) {
+            return mLine;
+        }
+        // Quote fields containing separators, doubling any quotes within
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return mLine.append(value);
+        }
+        mLine.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                mLine.append('"');
+            }
+            mLine.append(c);
+        }
+        return mLine.append('"');
+    }
+}
\ No newline at end of file
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+
+import java.util.TimeZone;
+
+/**
+ * Class that counts the bytes the app downloads each day on metered and unmetered
+ * networks, and picks the {@link SyncPolicy} for the active network so that mobile data
+ * stays within a daily budget
+ *
+ * The counts are kept in a preferences file of their own, so a new day starts from zero
+ * even across restarts
+ */
+public class DataBudget {
+
+    /**
+     * Default daily budget of metered data
+     */
+    static final long DEFAULT_METERED_LIMIT_BYTES = 5 * 1024 * 1024;
+
+    /**
+     * Budget value standing for no limit
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final String PREFS_NAME = "data_budget";
+    private static final String KEY_DAY = "day";
+    private static final String KEY_METERED_BYTES = "metered_bytes";
+    private static final String KEY_UNMETERED_BYTES = "unmetered_bytes";
+
+    private static final DataBudget sInstance = new DataBudget();
+
+    // State of the active network, updated as connectivity changes
+    private volatile boolean mMetered;
+
+    private long mMeteredLimitBytes = DEFAULT_METERED_LIMIT_BYTES;
+
+    // Bytes downloaded on the current local day, and the day they are counted for
+    private long mDay = -1;
+    private long mMeteredBytes;
+    private long mUnmeteredBytes;
+
+    // Where the counts are saved, or null to keep them in memory only
+    private SharedPreferences mPrefs;
+
+    /**
+     * @return the app-wide {@link DataBudget}
+     */
+    public static DataBudget getInstance() {
+        return sInstance;
+    }
+
+    DataBudget() {
+        // Use getInstance() outside of tests
+    }
+
+    /**
+     * Load the day's counts saved by an earlier run on the disk pool, and save every count
+     * from then on
+     *
+     * @param context of the app
+     */
+    public void attach(Context context) {
+        mMetered = isActiveNetworkMetered(context);
+        final Context appContext = context.getApplicationContext();
+        AppScheduler.getInstance().getExecutor(AppScheduler.Pool.DISK).execute(new Runnable() {
+            @Override
+            public void run() {
+                SharedPreferences prefs =
+                        appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                restore(prefs.getLong(KEY_DAY, -1), prefs.getLong(KEY_METERED_BYTES, 0),
+                        prefs.getLong(KEY_UNMETERED_BYTES, 0), System.currentTimeMillis());
+                attachPrefs(prefs);
+            }
+        });
+    }
+
+    /**
+     * Add the counts saved by an earlier run to those counted since the app started
+     *
+     * @param day            is the local day the saved counts are for
+     * @param meteredBytes   is the saved count of metered bytes
+     * @param unmeteredBytes is the saved count of unmetered bytes
+     * @param nowMillis      is the current time
+     */
+    synchronized void restore(long day, long meteredBytes, long unmeteredBytes,
+                              long nowMillis) {
+        rollOver(nowMillis);
+        if (day == mDay) {
+            mMeteredBytes += meteredBytes;
+            mUnmeteredBytes += unmeteredBytes;
+        }
+    }
+
+    private synchronized void attachPrefs(SharedPreferences prefs) {
+        mPrefs = prefs;
+        save();
+    }
+
+    /**
+     * @param context of the caller
+     * @return        true if the active network is metered, or roaming
+     */
+    public static boolean isActiveNetworkMetered(Context context) {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo == null) {
+            return false;
+        }
+        if (networkInfo.isRoaming()) {
+            // Charged by the byte whatever the platform thinks
+            return true;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return connMgr.isActiveNetworkMetered();
+        }
+        // Before Jelly Bean only the network type is known
+        return networkInfo.getType() == ConnectivityManager.TYPE_MOBILE;
+    }
+
+    /**
+     * @param metered is true if the active network is metered
+     */
+    public void setMetered(boolean metered) {
+        mMetered = metered;
+    }
+
+    /**
+     * @param limitBytes is the metered data allowed per day, or {@link #UNLIMITED}
+     */
+    public synchronized void setMeteredLimitBytes(long limitBytes) {
+        mMeteredLimitBytes = limitBytes;
+    }
+
+    /** Getter method for the metered data allowed per day */
+    public synchronized long getMeteredLimitBytes() {
+        return mMeteredLimitBytes;
+    }
+
+    /**
+     * @return the policy for the active network and the day's usage
+     */
+    public SyncPolicy getPolicy() {
+        return getPolicy(System.currentTimeMillis());
+    }
+
+    synchronized SyncPolicy getPolicy(long nowMillis) {
+        rollOver(nowMillis);
+        return SyncPolicy.forNetwork(mMetered, mMeteredBytes >= mMeteredLimitBytes);
+    }
+
+    /**
+     * Count bytes downloaded on the active network
+     *
+     * @param bytes is the size of a response body
+     */
+    public void record(long bytes) {
+        record(bytes, System.currentTimeMillis());
+    }
+
+    synchronized void record(long bytes, long nowMillis) {
+        rollOver(nowMillis);
+        if (mMetered) {
+            mMeteredBytes += bytes;
+        }
+        else {
+            mUnmeteredBytes += bytes;
+        }
+        save();
+    }
+
+    /**
+     * @param metered is true for the bytes downloaded on metered networks
+     * @return        the bytes downloaded today on that kind of network
+     */
+    public long getBytesToday(boolean metered) {
+        return getBytesToday(metered, System.currentTimeMillis());
+    }
+
+    synchronized long getBytesToday(boolean metered, long nowMillis) {
+        rollOver(nowMillis);
+        return metered ? mMeteredBytes : mUnmeteredBytes;
+    }
+
+    /**
+     * Start the counts from zero once the local day has changed
+     */
+    private void rollOver(long nowMillis) {
+        long day = (nowMillis + TimeZone.getDefault().getOffset(nowMillis)) / DAY_MILLIS;
+        if (day != mDay) {
+            mDay = day;
+            mMeteredBytes = 0;
+            mUnmeteredBytes = 0;
+            save();
+        }
+    }
+
+    private void save() {
+        if (mPrefs != null) {
+            mPrefs.edit()
+                    .putLong(KEY_DAY, mDay)
+                    .putLong(KEY_METERED_BYTES, mMeteredBytes)
+                    .putLong(KEY_UNMETERED_BYTES, mUnmeteredBytes)
+                    .apply();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "metered " + mMeteredBytes + " of "
+                + (mMeteredLimitBytes == UNLIMITED ? "unlimited" : mMeteredLimitBytes)
+                + " bytes, unmetered " + mUnmeteredBytes + " bytes today";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class of a service earthquakes can be fetched from
+ *
+ * The app builds every query as a USGS FDSN URL on {@link #CANONICAL_QUERY_URL}, which also
+ * keys its cached results; a source turns that query into a request of its own and turns
+ * the response back into the earthquakes the query asked for
+ */
+public abstract class DataSource {
+
+    /**
+     * Endpoint the app's queries are built on, whichever source answers them
+     */
+    public static final String CANONICAL_QUERY_URL =
+            "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    private static final String[] TIME_FORMATS = {
+            "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd"};
+
+    private final String mName;
+
+    /**
+     * @param name identifies the source in the settings and the logs
+     */
+    protected DataSource(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @param canonicalUrl is a query built on {@link #CANONICAL_QUERY_URL}
+     * @param nowMillis    is the current wall clock time
+     * @return             the URL asking this source for the query's earthquakes, or null if
+     *                     the source cannot answer the query
+     */
+    public abstract String queryUrl(String canonicalUrl, long nowMillis);
+
+    /**
+     * @return the URL of a small request telling whether the source is up, and how fast
+     */
+    public abstract String getProbeUrl();
+
+    /**
+     * @return the parser of the source's query responses
+     */
+    public FetchOutcome.Parser<List<Quake>> getParser() {
+        return QueryUtils.EARTHQUAKE_PARSER;
+    }
+
+    /**
+     * Apply the parts of the query the source could not, for sources that cannot filter
+     *
+     * @param canonicalUrl is the query
+     * @param earthquakes  is the earthquakes the source returned
+     * @return             the earthquakes the query asked for
+     */
+    public List<Quake> select(String canonicalUrl, List<Quake> earthquakes) {
+        return earthquakes;
+    }
+
+    /**
+     * @return true if the source reports USGS's own event IDs and revision times, which the
+     *         app's cached results and sync cursors are built on
+     */
+    public boolean isCanonical() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+    /**
+     * @param url  is a query URL
+     * @param name is the name of a parameter
+     * @return     the decoded value of the parameter, or null if the URL has none
+     */
+    static String parameterOf(String url, String name) {
+        Matcher matcher = Pattern.compile("[?&]" + Pattern.quote(name) + "=([^&]*)").matcher(url);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(matcher.group(1), "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            // Every JVM supports UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param url  is a query URL
+     * @param name is the name of a parameter
+     * @return     the number held by the parameter, or NaN if the URL has no valid one
+     */
+    static double numberOf(String url, String name) {
+        String value = parameterOf(url, name);
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @param url  is a query URL
+     * @param name is the name of a time parameter, in UTC as the FDSN query takes it
+     * @return     the time held by the parameter, or Long.MIN_VALUE if the URL has no
+     *             valid one
+     */
+    static long timeOf(String url, String name) {
+        String value = parameterOf(url, name);
+        if (value == null) {
+            return Long.MIN_VALUE;
+        }
+        for (String pattern : TIME_FORMATS) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            format.setLenient(false);
+            try {
+                return format.parse(value).getTime();
+            }
+            catch (ParseException e) {
+                // Try the next, shorter format
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * @param canonicalUrl is a query built on {@link #CANONICAL_QUERY_URL}
+     * @param baseUrl      is another query endpoint
+     * @return             the query with its parameters sent to the other endpoint
+     */
+    static String rebase(String canonicalUrl, String baseUrl) {
+        int question = canonicalUrl.indexOf('?');
+        return question < 0 ? baseUrl : baseUrl + canonicalUrl.substring(question);
+    }
+}
\ No newline at end of file
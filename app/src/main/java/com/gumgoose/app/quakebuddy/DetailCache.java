@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that keeps USGS event detail feeds on disk, evicting the least recently used
+ * feeds once the cache grows beyond its size limit
+ *
+ * Entries are keyed by event ID and revision time, so a revised event is fetched again
+ * and its stale revision ages out of the cache on its own
+ */
+public class DetailCache {
+
+    /**
+     * Name of the cache directory and its default size limit
+     */
+    private static final String CACHE_DIR_NAME = "event_details";
+    private static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    private static final String FILE_SUFFIX = ".json";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static DetailCache sInstance;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    // Cached files in least to most recently used order
+    private final LinkedHashMap<String, File> mEntries = new LinkedHashMap<>(32, 0.75f, true);
+    private long mTotalBytes;
+
+    /**
+     * Get the app-wide detail cache, stored in the app's cache directory
+     *
+     * @param context of the caller
+     * @return        the shared {@link DetailCache}
+     */
+    public static synchronized DetailCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME);
+            sInstance = new DetailCache(directory, DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link DetailCache} and index the feeds already on disk
+     *
+     * @param directory is the directory the feeds are written to
+     * @param maxBytes  is the total size the cache is trimmed back to
+     */
+    public DetailCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+
+        // Rebuild the usage order from the modified times recorded on each access
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(FILE_SUFFIX)) {
+                mEntries.put(name.substring(0, name.length() - FILE_SUFFIX.length()), file);
+                mTotalBytes += file.length();
+            }
+            else {
+                // Leftover from an interrupted write
+                file.delete();
+            }
+        }
+        trimToSize();
+    }
+
+    /**
+     * @param quake is the earthquake to look up
+     * @return      true if the earthquake's current revision is cached
+     */
+    public synchronized boolean contains(Quake quake) {
+        return mEntries.containsKey(keyFor(quake.getQuakeId(), quake.getQuakeUpdated()));
+    }
+
+    /**
+     * Read a cached detail feed and mark it as recently used
+     *
+     * @param eventId is the USGS event ID
+     * @param updated is the revision time of the event
+     * @return        the JSON String of the feed, or null if it is not cached
+     */
+    public String get(String eventId, long updated) {
+        File file;
+        synchronized (this) {
+            file = mEntries.get(keyFor(eventId, updated));
+        }
+        if (file == null) {
+            return null;
+        }
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.DISK, "DetailCache.get");
+        try {
+            String json = readFile(file);
+            // Persist the access so the usage order survives a restart
+            file.setLastModified(System.currentTimeMillis());
+            return json;
+        }
+        catch (IOException e) {
+            // The file vanished or is unreadable, forget about it
+            remove(eventId, updated);
+            return null;
+        }
+    }
+
+    /**
+     * Write a detail feed to the cache, evicting older feeds when over the size limit
+     *
+     * @param eventId is the USGS event ID
+     * @param updated is the revision time of the event
+     * @param json    is the JSON String of the feed
+     */
+    public void put(String eventId, long updated, String json) {
+        String key = keyFor(eventId, updated);
+        File file = new File(mDirectory, key + FILE_SUFFIX);
+        File temp = new File(mDirectory, key + ".tmp");
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.DISK, "DetailCache.put");
+
+        // Write to a temporary file first so readers never see a partial feed
+        try {
+            writeFile(temp, json);
+        }
+        catch (IOException e) {
+            temp.delete();
+            return;
+        }
+
+        synchronized (this) {
+            File previous = mEntries.remove(key);
+            if (previous != null) {
+                mTotalBytes -= previous.length();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+            mEntries.put(key, file);
+            mTotalBytes += file.length();
+            trimToSize();
+        }
+    }
+
+    /**
+     * @return the total size of the cached feeds in bytes
+     */
+    public synchronized long sizeBytes() {
+        return mTotalBytes;
+    }
+
+    /**
+     * @return the number of cached feeds
+     */
+    public synchronized int entryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Delete every cached feed
+     */
+    public synchronized void clear() {
+        for (File file : mEntries.values()) {
+            file.delete();
+        }
+        mEntries.clear();
+        mTotalBytes = 0;
+    }
+
+    private synchronized void remove(String eventId, long updated) {
+        File file = mEntries.remove(keyFor(eventId, updated));
+        if (file != null) {
+            mTotalBytes -= file.length();
+            file.delete();
+        }
+    }
+
+    private synchronized void trimToSize() {
+        // Evict from the least recently used end until the cache fits again
+        List<File> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, File>> iterator = mEntries.entrySet().iterator();
+        while (mTotalBytes > mMaxBytes && iterator.hasNext()) {
+            File file = iterator.next().getValue();
+            mTotalBytes -= file.length();
+            iterator.remove();
+            evicted.add(file);
+        }
+        for (File file : evicted) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Build a file-system safe cache key from an event ID and revision
+     */
+    private static String keyFor(String eventId, long updated) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < eventId.length(); i++) {
+            char c = eventId.charAt(i);
+            key.append(Character.isLetterOrDigit(c) ? c : '_');
+        }
+        return key.append('@').append(updated).toString();
+    }
+
+    private static String readFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+            return new String(bytes, 0, offset, UTF_8);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static void writeFile(File file, String json) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(json.getBytes(UTF_8));
+        }
+        finally {
+            out.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Class that fetches the detail feeds of earthquakes near the visible rows of the list
+ * in the background, so that opening an earthquake reads its details from the cache
+ *
+ * Fetches run on the scheduler's network pool, so they count in its metrics like every
+ * other request
+ */
+public class DetailPrefetcher {
+
+    /**
+     * Number of rows above and below the visible rows that are prefetched
+     */
+    private static final int ROWS_BEHIND = 2;
+    private static final int ROWS_AHEAD = 5;
+
+    private final DetailCache mCache;
+    private final Executor mExecutor;
+
+    // Fetches handed to the executor and not finished, so shutting down can cancel them
+    private final Set<FutureTask<Void>> mPending = new HashSet<>();
+    private boolean mShutdown;
+
+    // Event IDs queued or being fetched, so a row is never fetched twice at once
+    private final Set<String> mInFlight = new HashSet<>();
+
+    // Event IDs in the most recently requested window; anything else is skipped as stale
+    private Set<String> mWindow = new HashSet<>();
+
+    // Bounds of the last requested window, so repeated scroll callbacks are ignored
+    private int mLastFirst = -1;
+    private int mLastLast = -1;
+
+    /**
+     * Construct a new {@link DetailPrefetcher}
+     *
+     * @param cache is the cache the fetched detail feeds are written to
+     */
+    public DetailPrefetcher(DetailCache cache) {
+        this(cache, AppScheduler.getInstance().getExecutor(AppScheduler.Pool.NETWORK));
+    }
+
+    /**
+     * Construct a new {@link DetailPrefetcher}
+     *
+     * @param cache    is the cache the fetched detail feeds are written to
+     * @param executor runs the fetches
+     */
+    DetailPrefetcher(DetailCache cache, Executor executor) {
+        mCache = cache;
+        mExecutor = executor;
+    }
+
+    /**
+     * Prefetch the details of the rows around the visible part of the list
+     *
+     * @param earthquakes  is the list bound to the ListView
+     * @param firstVisible is the position of the first visible row
+     * @param visibleCount is the number of visible rows
+     */
+    public synchronized void prefetchAround(List<Quake> earthquakes, int firstVisible,
+                                            int visibleCount) {
+        int first = Math.max(0, firstVisible - ROWS_BEHIND);
+        int last = Math.min(earthquakes.size(), firstVisible + visibleCount + ROWS_AHEAD);
+        if (mShutdown || (first == mLastFirst && last == mLastLast)) {
+            // onScroll fires every frame; nothing changed since the last window
+            return;
+        }
+        mLastFirst = first;
+        mLastLast = last;
+
+        Set<String> window = new HashSet<>();
+        for (int i = first; i < last; i++) {
+            final Quake quake = earthquakes.get(i);
+            if (quake.getQuakeId() == null || TextUtils.isEmpty(quake.getDetailURL())) {
+                continue;
+            }
+            window.add(quake.getQuakeId());
+            if (mInFlight.contains(quake.getQuakeId()) || mCache.contains(quake)) {
+                continue;
+            }
+            mInFlight.add(quake.getQuakeId());
+            FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+                @Override
+                public void run() {
+                    fetch(quake);
+                }
+            }, null) {
+                @Override
+                protected void done() {
+                    // Finished or cancelled, either way nothing is left to cancel
+                    synchronized (DetailPrefetcher.this) {
+                        mPending.remove(this);
+                    }
+                }
+            };
+            mPending.add(task);
+            mExecutor.execute(task);
+        }
+        mWindow = window;
+    }
+
+    /**
+     * Forget the last window so the next call always schedules work, i.e. after a reload
+     */
+    public synchronized void reset() {
+        mLastFirst = -1;
+        mLastLast = -1;
+    }
+
+    /**
+     * Stop prefetching; this prefetcher's queued fetches are cancelled, while the shared pool
+     * keeps running everyone else's work
+     */
+    public synchronized void shutdown() {
+        mShutdown = true;
+        for (FutureTask<Void> task : new ArrayList<>(mPending)) {
+            task.cancel(false);
+        }
+        mPending.clear();
+        mInFlight.clear();
+    }
+
+    /**
+     * @return the number of fetches queued or running
+     */
+    synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * This task runs on the network pool
+     */
+    private void fetch(Quake quake) {
+        try {
+            synchronized (this) {
+                // The user has scrolled away from this row since it was queued
+                if (!mWindow.contains(quake.getQuakeId())) {
+                    return;
+                }
+            }
+            String json = QueryUtils.fetchDetailJson(quake.getDetailURL());
+            if (!TextUtils.isEmpty(json)) {
+                mCache.put(quake.getQuakeId(), quake.getQuakeUpdated(), json);
+            }
+        }
+        finally {
+            synchronized (this) {
+                mInFlight.remove(quake.getQuakeId());
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.format.Formatter;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.DecimalFormat;
+import java.util.Map;
+
+/**
+ * Activity that shows how requests and refreshes have behaved since launch: latencies,
+ * response sizes, parse times, cache hit rates and outcome counts, and exports them with
+ * the other instrumentation as JSON for bug reports
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = DiagnosticsActivity.class.getSimpleName();
+
+    // Spaces of indentation in the exported JSON
+    private static final int EXPORT_INDENT = 2;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.diagnostics_activity);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        bindMetrics();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.diagnostics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+
+            // If "Export" in the menu is clicked on
+            case R.id.action_export_diagnostics:
+                exportReport();
+                return true;
+
+            // If "Reset" in the menu is clicked on
+            case R.id.action_reset_diagnostics:
+                Metrics.getInstance().reset();
+                bindMetrics();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void bindMetrics() {
+        Metrics metrics = Metrics.getInstance();
+        setText(R.id.diagnostics_fetch, describe(metrics, Metrics.Series.FETCH_MILLIS));
+        setText(R.id.diagnostics_payload, describe(metrics, Metrics.Series.PAYLOAD_BYTES));
+        setText(R.id.diagnostics_parse, describe(metrics, Metrics.Series.PARSE_MICROS));
+        setText(R.id.diagnostics_load, describe(metrics, Metrics.Series.LOAD_MILLIS));
+        setText(R.id.diagnostics_events, describe(metrics, Metrics.Series.REFRESH_EVENTS));
+
+        DecimalFormat percent = new DecimalFormat("0.0");
+        StringBuilder caches = new StringBuilder();
+        for (Map.Entry<String, Double> entry : metrics.getCacheHitRates().entrySet()) {
+            if (entry.getValue().isNaN()) {
+                continue;
+            }
+            appendLine(caches, getString(R.string.diagnostics_cache_line, entry.getKey(),
+                    percent.format(entry.getValue() * 100), lookupsOf(entry.getKey())));
+        }
+        setText(R.id.diagnostics_caches, caches.toString());
+
+        StringBuilder requests = new StringBuilder();
+        StringBuilder refreshes = new StringBuilder();
+        for (FetchOutcome.Kind kind : FetchOutcome.Kind.values()) {
+            if (metrics.getRequestCount(kind) > 0) {
+                appendLine(requests, getString(R.string.diagnostics_count_line, kind.name(),
+                        metrics.getRequestCount(kind)));
+            }
+            if (metrics.getRefreshCount(kind) > 0) {
+                appendLine(refreshes, getString(R.string.diagnostics_count_line, kind.name(),
+                        metrics.getRefreshCount(kind)));
+            }
+        }
+        setText(R.id.diagnostics_requests, requests.toString());
+        setText(R.id.diagnostics_refreshes, refreshes.toString());
+
+        SourceRouter router = SourceRouter.getInstance();
+        String lastSource = router.getLastSource();
+        setText(R.id.diagnostics_sources, lastSource == null ? ""
+                : getString(R.string.diagnostics_sources_value, lastSource,
+                        router.getFailoverCount()));
+    }
+
+    /**
+     * @return the percentiles of a series in its own unit, or an empty String if nothing
+     *         was recorded
+     */
+    private String describe(Metrics metrics, Metrics.Series series) {
+        Histogram histogram = metrics.getHistogram(series);
+        if (histogram.getCount() == 0) {
+            return "";
+        }
+        return getString(R.string.diagnostics_histogram_value,
+                format(series, histogram.getValueAtPercentile(50)),
+                format(series, histogram.getValueAtPercentile(90)),
+                format(series, histogram.getValueAtPercentile(99)),
+                format(series, histogram.getMax()), histogram.getCount());
+    }
+
+    private String format(Metrics.Series series, long value) {
+        switch (series) {
+            case PAYLOAD_BYTES:
+                return Formatter.formatShortFileSize(this, value);
+            case PARSE_MICROS:
+                return new DecimalFormat("0.0").format(value / 1000.0) + " ms";
+            case REFRESH_EVENTS:
+                return String.valueOf(value);
+            default:
+                return value + " ms";
+        }
+    }
+
+    private static long lookupsOf(String cache) {
+        MemoryCache<?, ?> memoryCache = Metrics.getInstance().getCache(cache);
+        return memoryCache == null ? 0 : memoryCache.getHitCount() + memoryCache.getMissCount();
+    }
+
+    private static void appendLine(StringBuilder lines, String line) {
+        if (lines.length() > 0) {
+            lines.append('\n');
+        }
+        lines.append(line);
+    }
+
+    private void setText(int viewId, String text) {
+        ((TextView) findViewById(viewId)).setText(text.isEmpty()
+                ? getString(R.string.diagnostics_none) : text);
+    }
+
+    /**
+     * @return the metrics and the other instrumentation counters as one JSON object
+     */
+    private JSONObject buildReport() throws JSONException {
+        JSONObject report = Metrics.getInstance().toJson();
+        report.put("generated", System.currentTimeMillis());
+        report.put("version", BuildConfig.VERSION_NAME);
+        report.put("startup_ms", StartupTracer.getInstance().getTimeToFirstRowMillis());
+
+        ParseReport parse = QueryUtils.getParseTotals();
+        report.put("parse", new JSONObject()
+                .put("features", parse.getFeatureCount())
+                .put("skipped", parse.getSkippedCount())
+                .put("summary", parse.toString()));
+
+        SourceRouter router = SourceRouter.getInstance();
+        report.put("sources", new JSONObject()
+                .put("last", router.getLastSource() == null ? JSONObject.NULL
+                        : router.getLastSource())
+                .put("failovers", router.getFailoverCount()));
+
+        FrameTrace trace = FrameMonitor.getInstance().getTrace();
+        report.put("frames", new JSONObject()
+                .put("count", trace.getFrameCount())
+                .put("slow", trace.getSlowFrameCount()));
+
+        DataBudget budget = DataBudget.getInstance();
+        report.put("data_today", new JSONObject()
+                .put("metered_bytes", budget.getBytesToday(true))
+                .put("unmetered_bytes", budget.getBytesToday(false)));
+        report.put("scheduler", AppScheduler.getInstance().describe());
+        return report;
+    }
+
+    /**
+     * Send the report as JSON text to whichever app the user picks, i.e. mail or a bug
+     * tracker
+     */
+    private void exportReport() {
+        String json;
+        try {
+            json = buildReport().toString(EXPORT_INDENT);
+        }
+        catch (JSONException e) {
+            Log.e(LOG_TAG, "Problem building the diagnostics report", e);
+            Toast.makeText(this, R.string.diagnostics_export_failed, Toast.LENGTH_LONG).show();
+            return;
+        }
+        Intent sendIntent = new Intent(Intent.ACTION_SEND);
+        sendIntent.setType("text/plain");
+        sendIntent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.diagnostics_export_subject));
+        sendIntent.putExtra(Intent.EXTRA_TEXT, json);
+        startActivity(Intent.createChooser(sendIntent,
+                getString(R.string.diagnostics_export_chooser)));
+    }
+}
\ No newline at end of file
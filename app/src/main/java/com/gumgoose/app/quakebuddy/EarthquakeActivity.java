@@ -21,6 +21,7 @@ import android.app.LoaderManager;
 import android.app.LoaderManager.LoaderCallbacks;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
@@ -32,29 +33,48 @@ import android.graphics.drawable.ColorDrawable;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
+import android.support.design.widget.TabLayout;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.Window;
 import android.webkit.URLUtil;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class EarthquakeActivity extends AppCompatActivity implements LoaderCallbacks<List<Quake>>,
         SwipeRefreshLayout.OnRefreshListener {
 
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = EarthquakeActivity.class.getSimpleName();
+
     /**
      * Resources for monitoring the QuakeBuddy app version
      */
@@ -62,15 +82,30 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
     private static final String VERSION_KEY = "version_number";
 
     /**
-     * Base URL String for obtaining earthquake data from USGS dataset
+     * Unique ID of the first profile's Loader; every profile tab adds its position
+     */
+    private static final int PROFILE_LOADER_ID = 10;
+
+    /**
+     * Unique ID for the Loader reading the local history when offline
      */
-    private static final String USGS_BASE_URL =
-            "https://earthquake.usgs.gov/fdsnws/event/1/query";
+    private static final int HISTORY_LOADER_ID = 2;
 
     /**
-     * Unique ID for app Loader
+     * Loader argument that fetches a profile even if its last result is still fresh
      */
-    private static final int EARTHQUAKE_LOADER_ID = 1;
+    private static final String ARG_REFRESH = "refresh";
+
+    /**
+     * Request codes for picking the documents to export to and import from
+     */
+    private static final int REQUEST_EXPORT = 1;
+    private static final int REQUEST_IMPORT = 2;
+
+    /**
+     * Saved state key of the selected profile tab
+     */
+    private static final String STATE_SELECTED_PROFILE = "selected_profile";
 
     /**
      * Swipe to refresh enabler
@@ -78,20 +113,92 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
     SwipeRefreshLayout swipe;
 
     private QuakeAdapter mAdapter;
+    // Created once the main thread is idle after start-up
+    private DetailPrefetcher mDetailPrefetcher;
+
+    // Start-up work deferred until the first screen is up
+    private final IdleTaskQueue mIdleTasks = new IdleTaskQueue();
+    private List<Quake> mEarthquakes = new ArrayList<>();
+    // Rows bound to the adapter, and the same rows kept in order, so a refresh of the
+    // shown list moves only the rows that changed
+    private final ArrayList<Quake> mRows = new ArrayList<>();
+    private OrderedQuakeSet mShownRows;
+    private String mShownKey;
+    private List<Quake> mLoadedEarthquakes = new ArrayList<>();
+    private ListView mEarthquakeListView;
     private TextView mEmptyTextView;
     private View mEmptyStateView;
     private View mLoadingIndicator;
 
+    // Query profiles shown as tabs, and the latest result of each by profile ID
+    private List<QueryProfile> mProfiles;
+    private final Map<String, List<Quake>> mProfileResults = new HashMap<>();
+    private final Map<String, FetchOutcome<List<Quake>>> mProfileOutcomes = new HashMap<>();
+    private int mSelectedProfile;
+    private TabLayout mProfileTabs;
+    private boolean mPopulatingTabs;
+
+    // Earthquakes read from the local history while offline
+    private List<Quake> mHistoryResult;
+
+    // Export options chosen before picking the destination document
+    private ExportFormat mExportFormat;
+    private boolean mExportHistory;
+
+    // Place search typed into the action bar, or null while the list is not being searched
+    private String mSearchQuery;
+
+    // Whether earthquakes open in the native detail screen, read once and kept up to date
+    // by the listener so scrolling never touches the preferences
+    private boolean mNativeDetails;
+    private final SharedPreferences.OnSharedPreferenceChangeListener mDetailViewListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                    if (getString(R.string.settings_detail_view_key).equals(key)) {
+                        mNativeDetails = readNativeDetails(prefs);
+                    }
+                }
+            };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.earthquake_activity);
+        StartupTracer tracer = StartupTracer.getInstance();
+        if (!tracer.isTracing()) {
+            // Not a cold start, time from the activity instead of the process
+            tracer.begin();
+        }
+
+        // Read the query profiles first, so the selected one can be sent before the layout
+        // is inflated; a recreated activity gets its results back from its Loaders
+        mProfiles = QueryProfileStore.load(this);
+        applyPointsOfInterest();
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        mNativeDetails = readNativeDetails(sharedPrefs);
+        sharedPrefs.registerOnSharedPreferenceChangeListener(mDetailViewListener);
+        if (savedInstanceState != null) {
+            mSelectedProfile = Math.min(mProfiles.size() - 1,
+                    savedInstanceState.getInt(STATE_SELECTED_PROFILE, 0));
+        }
+        boolean connected = isConnected();
+        String selectedUrl = buildProfileUrl(mSelectedProfile);
+        // Only a full query can be sent ahead, a cached result is refreshed with its revisions
+        SyncPolicy policy = DataBudget.getInstance().getPolicy();
+        if (connected && savedInstanceState == null && policy.sendsRequests()
+                && EarthquakeLoader.needsFullFetch(selectedUrl, mProfiles.get(mSelectedProfile))) {
+            StartupPrefetch.getInstance().start(policy.applyTo(selectedUrl),
+                    ResilientFetcher.getInstance(),
+                    AppScheduler.getInstance().getExecutor(AppScheduler.Pool.NETWORK));
+        }
+        tracer.mark("query sent");
 
-        // Monitor upgrades in QuakeBuddy and trigger the changes dialog
-        detectVersionChange();
+        setContentView(R.layout.earthquake_activity);
+        tracer.mark("layout inflated");
 
         // Find a reference to the ListView in the layout
         ListView earthquakeListView = (ListView) findViewById(R.id.list);
+        mEarthquakeListView = earthquakeListView;
 
         // Find a reference to the loading indicator in the layout
         mLoadingIndicator = findViewById(R.id.loading_indicator);
@@ -106,7 +213,7 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
         earthquakeListView.setEmptyView(mEmptyStateView);
 
         // Make a new adapter and enable it on the earthquake ListView
-        mAdapter = new QuakeAdapter(this, new ArrayList<Quake>());
+        mAdapter = new QuakeAdapter(this, mRows);
         earthquakeListView.setAdapter(mAdapter);
 
         // Find a reference to the swipe to refresh feature
@@ -114,12 +221,41 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
         swipe.setOnRefreshListener(EarthquakeActivity.this);
         swipe.setColorSchemeColors(getResources().getColor(R.color.colorAccent));
 
+        // Show one tab per query profile, switching straight to its latest result
+        mProfileTabs = (TabLayout) findViewById(R.id.profile_tabs);
+        mProfileTabs.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
+            @Override
+            public void onTabSelected(TabLayout.Tab tab) {
+                selectProfile(tab.getPosition());
+            }
+
+            @Override
+            public void onTabUnselected(TabLayout.Tab tab) {
+                // Every profile keeps loading in the background
+            }
+
+            @Override
+            public void onTabReselected(TabLayout.Tab tab) {
+                // Scroll back to the top of the list
+                mEarthquakeListView.setSelection(0);
+            }
+        });
+        populateProfileTabs();
+
         // Set an OnItemClick listener on the ListView
         earthquakeListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
+                Quake quake = mAdapter.getItem(position);
+
+                // Open the native detail screen unless the user prefers the event page
+                if (quake.getDetailURL() != null && mNativeDetails) {
+                    startActivity(QuakeDetailActivity.newIntent(EarthquakeActivity.this, quake));
+                    return;
+                }
+
                 // Fetch the USGS earthquake URL and check whether the URL is valid
-                String quakeUrl = mAdapter.getItem(position).getQuakeURL();
+                String quakeUrl = quake.getQuakeURL();
 
                 if (URLUtil.isValidUrl(quakeUrl)) {
                     // URL is valid, start WebViewActivity with URL intent
@@ -136,38 +272,208 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
             }
         });
 
-        // Connect to the ConnectivityManager system service
-        ConnectivityManager connMgr = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Prefetch the detail feeds of the rows around the viewport while scrolling
+        earthquakeListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                // Prefetching is driven by onScroll, frames are timed until the list settles
+                if (scrollState == SCROLL_STATE_IDLE) {
+                    FrameMonitor.getInstance().onScrollStopped();
+                }
+                else {
+                    FrameMonitor.getInstance().onScrollStarted();
+                }
+            }
 
-        // Check whether there is an active network connection
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+                prefetchVisibleDetails(firstVisibleItem, visibleItemCount);
+            }
+        });
 
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Network detected, initialize the Loader
+        if (connected) {
+            // Network detected, initialize a Loader per profile; they all load at once
             LoaderManager loaderManager = getLoaderManager();
-            loaderManager.initLoader(EARTHQUAKE_LOADER_ID, null, this);
+            for (int i = 0; i < mProfiles.size(); i++) {
+                loaderManager.initLoader(PROFILE_LOADER_ID + i, null, this);
+            }
         } else {
-            // Display the empty View on ListView with no internet message
-            mLoadingIndicator.setVisibility(View.GONE);
-            swipe.setRefreshing(false);
-            mEmptyTextView.setText(R.string.no_internet_connection);
-            mEmptyStateView.setVisibility(View.VISIBLE);
+            // No network, show the earthquakes kept in the local history instead;
+            // the no internet message is shown if the history is empty
+            getLoaderManager().initLoader(HISTORY_LOADER_ID, null, this);
         }
+        tracer.mark("activity created");
+
+        // Work the first screen does not need waits until the main thread is idle
+        mIdleTasks.post(new Runnable() {
+            @Override
+            public void run() {
+                // Opening the detail cache lists its directory
+                mDetailPrefetcher = new DetailPrefetcher(
+                        DetailCache.getInstance(EarthquakeActivity.this));
+                prefetchVisibleDetails(mEarthquakeListView.getFirstVisiblePosition(),
+                        Math.max(1, mEarthquakeListView.getLastVisiblePosition()
+                                - mEarthquakeListView.getFirstVisiblePosition() + 1));
+            }
+        });
+        mIdleTasks.post(new Runnable() {
+            @Override
+            public void run() {
+                // Monitor upgrades in QuakeBuddy and trigger the changes dialog
+                detectVersionChange();
+            }
+        });
     }
 
-    @Override
-    public void onRefresh() {
-        // Refresh the earthquake ListView with current data
+    /**
+     * @return true if there is an active network connection
+     */
+    private boolean isConnected() {
+        // Connect to the ConnectivityManager system service
         ConnectivityManager connMgr = (ConnectivityManager)
                 getSystemService(Context.CONNECTIVITY_SERVICE);
 
         // Check whether there is an active network connection
         NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
 
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Network detected, restart the Loader
-            getLoaderManager().restartLoader(EARTHQUAKE_LOADER_ID, null, this);
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_SELECTED_PROFILE, mSelectedProfile);
+    }
+
+    /**
+     * Add a tab for every query profile, keeping the selected tab
+     */
+    private void populateProfileTabs() {
+        // Ignore the selection callbacks while the tabs are rebuilt
+        mPopulatingTabs = true;
+        mProfileTabs.removeAllTabs();
+        for (QueryProfile profile : mProfiles) {
+            mProfileTabs.addTab(mProfileTabs.newTab().setText(profile.getName()), false);
+        }
+        TabLayout.Tab tab = mProfileTabs.getTabAt(mSelectedProfile);
+        if (tab != null) {
+            tab.select();
+        }
+        mPopulatingTabs = false;
+    }
+
+    /**
+     * @param position is the position of the tab the user selected
+     */
+    private void selectProfile(int position) {
+        if (mPopulatingTabs || position == mSelectedProfile
+                || position < 0 || position >= mProfiles.size()) {
+            return;
+        }
+        mSelectedProfile = position;
+        mEarthquakeListView.setSelection(0);
+        showSelectedProfile();
+    }
+
+    /**
+     * Show the latest result of the selected profile, or the loading indicator if it has
+     * none yet
+     */
+    private void showSelectedProfile() {
+        List<Quake> result = mProfileResults.get(mProfiles.get(mSelectedProfile).getId());
+        if (result == null) {
+            result = mHistoryResult;
+        }
+        if (result != null) {
+            showLoadedEarthquakes(result);
+            showFetchError(mProfileOutcomes.get(mProfiles.get(mSelectedProfile).getId()));
+        }
+        else {
+            // Still loading, clear the previous profile's rows meanwhile
+            mAdapter.clear();
+            mEarthquakes = new ArrayList<>();
+            mEmptyStateView.setVisibility(View.INVISIBLE);
+            mLoadingIndicator.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Estimate how strongly earthquakes are felt at the centres of the region profiles
+     */
+    private void applyPointsOfInterest() {
+        FeltEstimator.getInstance().setPointsOfInterest(FeltEstimator.pointsOf(mProfiles),
+                getString(R.string.felt_estimate));
+    }
+
+    /**
+     * Restart every profile Loader, i.e. after a refresh or a change to the profiles
+     *
+     * @param previousCount is the number of profile Loaders that may be running
+     */
+    private void restartProfileLoaders(int previousCount) {
+        LoaderManager loaderManager = getLoaderManager();
+        for (int i = mProfiles.size(); i < previousCount; i++) {
+            loaderManager.destroyLoader(PROFILE_LOADER_ID + i);
+        }
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_REFRESH, true);
+        for (int i = 0; i < mProfiles.size(); i++) {
+            loaderManager.restartLoader(PROFILE_LOADER_ID + i, args, this);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // A fling cut short by leaving never reports the list settling
+        FrameMonitor.getInstance().onScrollStopped();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mIdleTasks.cancel();
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(mDetailViewListener);
+        // Drop any queued detail prefetches
+        if (mDetailPrefetcher != null) {
+            mDetailPrefetcher.shutdown();
+        }
+    }
+
+    /**
+     * Queue detail prefetches for the rows around the visible part of the list
+     *
+     * @param firstVisible is the position of the first visible row
+     * @param visibleCount is the number of visible rows
+     */
+    private void prefetchVisibleDetails(int firstVisible, int visibleCount) {
+        if (mDetailPrefetcher == null || mRows.isEmpty() || !mNativeDetails
+                || !DataBudget.getInstance().getPolicy().prefetchesDetails()) {
+            return;
+        }
+        // The rows as shown, which may order ties differently from the server
+        mDetailPrefetcher.prefetchAround(mRows, firstVisible, visibleCount);
+    }
+
+    /**
+     * @param sharedPrefs are the default preferences of the app
+     * @return            true if earthquakes open in the native detail screen rather than
+     *                    the WebView
+     */
+    private boolean readNativeDetails(SharedPreferences sharedPrefs) {
+        String detailView = sharedPrefs.getString(
+                getString(R.string.settings_detail_view_key),
+                getString(R.string.settings_detail_view_default));
+        return detailView.equals(getString(R.string.settings_detail_view_native_value));
+    }
+
+    @Override
+    public void onRefresh() {
+        // Refresh the earthquake ListView with current data
+        if (isConnected()) {
+            // Network detected, refresh every profile
+            restartProfileLoaders(mProfiles.size());
         }
         else {
             // Display the empty View on ListView with no internet message
@@ -233,8 +539,17 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
      * @return           the period's starting date as a String
      */
     private static String startDateCalculator(String timePeriod) {
-        //
         SimpleDateFormat startDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        return startDate.format(new Date(startTimeCalculator(timePeriod)));
+    }
+
+    /**
+     * Calculate the starting time for earthquake results based on user's preference setting
+     *
+     * @param timePeriod is the user's String preference for the search time period
+     * @return           the period's starting time in milliseconds
+     */
+    private static long startTimeCalculator(String timePeriod) {
         Calendar calendar = Calendar.getInstance();
         switch(timePeriod) {
             case "24": // User has chosen "up to 24 hours"
@@ -250,8 +565,8 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
                 calendar.add(Calendar.DAY_OF_YEAR, -14);
                 break;
         }
-        // Return the starting date as a String
-        return startDate.format(new Date(calendar.getTimeInMillis()));
+        // Return the starting time in milliseconds
+        return calendar.getTimeInMillis();
     }
 
     /**
@@ -260,27 +575,266 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
      */
     @Override
     public void onLoadFinished(Loader<List<Quake>> loader, List<Quake> earthquakes) {
-        // Loader finished, hide all loading indicators from the screen
+        if (loader.getId() == HISTORY_LOADER_ID) {
+            mHistoryResult = earthquakes;
+            showLoadedEarthquakes(earthquakes);
+            // Offline and nothing in the history, display the no internet message
+            mEmptyTextView.setText(R.string.no_internet_connection);
+            return;
+        }
+
+        // Keep every profile's result, so switching tabs shows it at once
+        EarthquakeLoader earthquakeLoader = (EarthquakeLoader) loader;
+        QueryProfile profile = earthquakeLoader.getProfile();
+        mProfileResults.put(profile.getId(), earthquakes);
+        mProfileOutcomes.put(profile.getId(), earthquakeLoader.getLastOutcome());
+        if (loader.getId() - PROFILE_LOADER_ID == mSelectedProfile) {
+            showLoadedEarthquakes(earthquakes);
+            showFetchError(earthquakeLoader.getLastOutcome());
+        }
+    }
+
+    /**
+     * Tell the user why the earthquakes could not be fetched, in place of the no earthquakes
+     * message; a list kept from an earlier fetch stays on screen
+     *
+     * @param outcome is the outcome of the latest fetch, or null if it is still running
+     */
+    private void showFetchError(FetchOutcome<List<Quake>> outcome) {
+        if (outcome == null || outcome.isSuccess()) {
+            return;
+        }
+        int message;
+        switch (outcome.getKind()) {
+            case TIMEOUT:
+                message = R.string.fetch_error_timeout;
+                break;
+            case NETWORK_ERROR:
+                message = R.string.fetch_error_network;
+                break;
+            case RATE_LIMITED:
+                message = R.string.fetch_error_rate_limited;
+                break;
+            case SERVER_ERROR:
+                message = R.string.fetch_error_server;
+                break;
+            case CLIENT_ERROR:
+                message = R.string.fetch_error_client;
+                break;
+            case MALFORMED_BODY:
+                message = R.string.fetch_error_malformed;
+                break;
+            case CIRCUIT_OPEN:
+                message = R.string.fetch_error_circuit_open;
+                break;
+            case BUDGET_SPENT:
+                message = R.string.fetch_error_budget_spent;
+                break;
+            default:
+                return;
+        }
+        if (mEarthquakes.isEmpty()) {
+            mEmptyTextView.setText(message);
+        }
+        else {
+            Toast.makeText(this, getString(R.string.fetch_error_showing_saved, getString(message)),
+                    Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Keep a freshly loaded list, showing it unless the list is being searched; a search
+     * is run again instead, as the loaded earthquakes have been merged into its index
+     *
+     * @param earthquakes is the earthquakes loaded
+     */
+    private void showLoadedEarthquakes(List<Quake> earthquakes) {
+        mLoadedEarthquakes = earthquakes != null ? earthquakes : new ArrayList<Quake>();
+        if (mSearchQuery != null) {
+            searchPlaces(mSearchQuery);
+        }
+        else {
+            showEarthquakes(earthquakes);
+        }
+    }
+
+    /**
+     * Show the newest earthquakes in the selected time period whose place names match
+     * the search, i.e. "alas" for every earthquake in Alaska
+     *
+     * @param query is the text typed into the search box
+     */
+    private void searchPlaces(String query) {
+        mSearchQuery = query;
+        PlaceSearchIndex index = PlaceSearchIndex.getInstance();
+        if (query.trim().isEmpty()) {
+            // Nothing typed yet, keep showing the loaded list
+            showEarthquakes(mLoadedEarthquakes);
+            return;
+        }
+        if (!index.isBuilt()) {
+            // The search runs again once the history has been read into the index
+            buildSearchIndex();
+            return;
+        }
+
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String timePeriod = sharedPrefs.getString(
+                getString(R.string.settings_time_period_key),
+                getString(R.string.settings_time_period_default));
+
+        showEarthquakes(index.search(query, startTimeCalculator(timePeriod),
+                Integer.parseInt(getString(R.string.display_in_view_quantity))));
+        mEmptyTextView.setText(R.string.search_no_matches);
+    }
+
+    /**
+     * Read the event history into the place search index on a background thread
+     */
+    private void buildSearchIndex() {
+        final EventHistory history = EventHistory.getInstance(this);
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                try {
+                    PlaceSearchIndex.getInstance().ensureBuilt(history);
+                }
+                catch (IOException e) {
+                    // Error caught, print the exception to the logs
+                    Log.e(LOG_TAG, "Problem with reading the history for searching", e);
+                }
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                if (mSearchQuery != null && PlaceSearchIndex.getInstance().isBuilt()) {
+                    searchPlaces(mSearchQuery);
+                }
+            }
+        }.executeOnExecutor(AppScheduler.getInstance().getExecutor(AppScheduler.Pool.COMPUTE));
+    }
+
+    /**
+     * Replace the earthquakes in the ListView, or display the empty View if there are none
+     *
+     * @param earthquakes is the earthquakes to display
+     */
+    private void showEarthquakes(List<Quake> earthquakes) {
+        // Loading finished, hide all loading indicators from the screen
         mLoadingIndicator.setVisibility(View.GONE);
         swipe.setRefreshing(false);
 
         // Populate the mEmptyTextView to display no earthquakes message
         mEmptyTextView.setText(R.string.no_earthquakes);
 
-        // Clear out existing data from the Adapter
-        mAdapter.clear();
+        mEarthquakes = new ArrayList<>();
 
         // If there are earthquakes to be displayed,
-        // trigger the Adapter to add, and hence update the ListView
+        // trigger the Adapter to update, and hence update the ListView
         if (earthquakes != null && !earthquakes.isEmpty()) {
-            mAdapter.addAll(earthquakes);
+            bindRows(earthquakes);
+            mEarthquakes = earthquakes;
+            if (StartupTracer.getInstance().isTracing()) {
+                // Runs once the rows have been laid out
+                mEarthquakeListView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        StartupTracer.getInstance().finish();
+                    }
+                });
+            }
+
+            // Prefetch the details of the first screen of rows straight away
+            if (mDetailPrefetcher != null) {
+                mDetailPrefetcher.reset();
+            }
+            prefetchVisibleDetails(mEarthquakeListView.getFirstVisiblePosition(),
+                    Math.max(1, mEarthquakeListView.getLastVisiblePosition()
+                            - mEarthquakeListView.getFirstVisiblePosition() + 1));
         }
         else {
+            // Clear out existing data from the Adapter
+            mAdapter.clear();
+            mShownRows = null;
             // Set the empty View on ListView to be visible
             mEmptyStateView.setVisibility(View.VISIBLE);
         }
     }
 
+    /**
+     * Bind earthquakes to the adapter; when they refresh the list already showing, only
+     * the rows that changed are moved and the first visible row keeps its place on screen
+     *
+     * @param earthquakes is the earthquakes to display, in the list's order
+     */
+    private void bindRows(List<Quake> earthquakes) {
+        OrderedQuakeSet.Order order = OrderedQuakeSet.Order.of(earthquakes);
+        boolean searching = mSearchQuery != null && !mSearchQuery.trim().isEmpty();
+        String key = mProfiles.get(mSelectedProfile).getId()
+                + (searching ? "?" + mSearchQuery : "");
+        if (order == null || mShownRows == null || mShownRows.getObservedOrder() != order
+                || mShownRows.size() != mRows.size() || !key.equals(mShownKey)) {
+            // A different list, or one in no order the rows can be kept in
+            mShownKey = key;
+            mRows.clear();
+            if (order == null) {
+                mShownRows = null;
+                mRows.addAll(earthquakes);
+            }
+            else {
+                mShownRows = new OrderedQuakeSet(order);
+                mShownRows.putAll(earthquakes);
+                // Ties follow the set, so positions in the set and the rows always agree
+                mRows.addAll(mShownRows.toList(order, earthquakes.size()));
+                mShownRows.setOnChangeListener(mRowUpdater);
+            }
+            mAdapter.notifyDataSetChanged();
+            return;
+        }
+
+        // Remember which earthquake is at the top of the screen and how far it is scrolled
+        int first = mEarthquakeListView.getFirstVisiblePosition();
+        View firstView = mEarthquakeListView.getChildAt(0);
+        int offset = firstView != null ? firstView.getTop() : 0;
+        String anchorId = first < mRows.size() ? mRows.get(first).getQuakeId() : null;
+
+        mShownRows.replaceWith(earthquakes);
+        mAdapter.notifyDataSetChanged();
+
+        int anchor = mShownRows.positionOf(order, anchorId);
+        if (anchor >= 0 && anchor != first) {
+            mEarthquakeListView.setSelectionFromTop(anchor, offset);
+        }
+    }
+
+    /**
+     * Applies the positional changes of the shown set to the adapter's rows
+     */
+    private final OrderedQuakeSet.OnChangeListener mRowUpdater =
+            new OrderedQuakeSet.OnChangeListener() {
+                @Override
+                public void onInserted(int position, Quake quake) {
+                    mRows.add(position, quake);
+                }
+
+                @Override
+                public void onRemoved(int position, Quake quake) {
+                    mRows.remove(position);
+                }
+
+                @Override
+                public void onMoved(int from, int to, Quake quake) {
+                    mRows.remove(from);
+                    mRows.add(to, quake);
+                }
+
+                @Override
+                public void onChanged(int position, Quake quake) {
+                    mRows.set(position, quake);
+                }
+            };
+
     /**
      * @param id   is the ID of the Loader to be created
      * @param args are arguments supplied by the caller
@@ -288,7 +842,30 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
      */
     @Override
     public Loader<List<Quake>> onCreateLoader(int id, Bundle args) {
-        // Loader created, obtain user's shared preferences
+        if (id == HISTORY_LOADER_ID) {
+            // Read the most recent earthquakes from the local history
+            return new HistoryLoader(this,
+                    Integer.parseInt(getString(R.string.display_in_view_quantity)));
+        }
+
+        int position = id - PROFILE_LOADER_ID;
+        if (position == mSelectedProfile) {
+            // Hide the empty state View while Loader is running
+            mEmptyStateView.setVisibility(View.INVISIBLE);
+        }
+
+        // Start Loader and pass in the complete query URL String; unless refreshing, a
+        // result fetched moments ago, i.e. before opening the settings, is shown as it is
+        return new EarthquakeLoader(this, buildProfileUrl(position), mProfiles.get(position),
+                args != null && args.getBoolean(ARG_REFRESH));
+    }
+
+    /**
+     * @param position is the position of a query profile
+     * @return         the profile's query URL, filling in what it leaves to the settings
+     */
+    private String buildProfileUrl(int position) {
+        // Obtain user's shared preferences
         SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
 
         String timePeriod = sharedPrefs.getString(
@@ -303,22 +880,12 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
                 getString(R.string.settings_min_magnitude_key),
                 getString(R.string.settings_min_magnitude_default));
 
-        // Create a URL builder object for querying the server
-        Uri baseUri = Uri.parse(USGS_BASE_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-
-        // Append query parameters to the URL builder
-        uriBuilder.appendQueryParameter("format", "geojson");
-        uriBuilder.appendQueryParameter("starttime", startDateCalculator(timePeriod));
-        uriBuilder.appendQueryParameter("limit", getString(R.string.display_in_view_quantity));
-        uriBuilder.appendQueryParameter("minmagnitude", minMagnitude);
-        uriBuilder.appendQueryParameter("orderby", orderBy);
-
-        // Hide the empty state View while Loader is running
-        mEmptyStateView.setVisibility(View.INVISIBLE);
-
-        // Start Loader and pass in the complete query URL String
-        return new EarthquakeLoader(this, uriBuilder.toString());
+        // Build the profile's query URL, filling in what it leaves to the settings; the
+        // Loader leaves out the weaker earthquakes on a metered network
+        return mProfiles.get(position).buildUrl(DataSource.CANONICAL_QUERY_URL,
+                startDateCalculator(timePeriod),
+                Integer.parseInt(getString(R.string.display_in_view_quantity)), orderBy,
+                minMagnitude);
     }
 
     /**
@@ -326,8 +893,11 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
      */
     @Override
     public void onLoaderReset(Loader<List<Quake>> loader) {
-        // Clear out existing data from the Adapter
-        mAdapter.clear();
+        if (loader.getId() == HISTORY_LOADER_ID
+                || loader.getId() - PROFILE_LOADER_ID == mSelectedProfile) {
+            // Clear out existing data from the Adapter
+            mAdapter.clear();
+        }
     }
 
     @Override
@@ -353,6 +923,46 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
                 showWhatsNewDialog();
                 return true;
 
+            // If "Map" in the menu is clicked on
+            case R.id.action_map:
+                startActivity(new Intent(this, MapActivity.class));
+                return true;
+
+            // If "Archive" in the menu is clicked on
+            case R.id.action_archive:
+                startActivity(new Intent(this, ArchiveActivity.class));
+                return true;
+
+            // If "Statistics" in the menu is clicked on
+            case R.id.action_stats:
+                startActivity(new Intent(this, StatsActivity.class));
+                return true;
+
+            // If "Diagnostics" in the menu is clicked on
+            case R.id.action_diagnostics:
+                startActivity(new Intent(this, DiagnosticsActivity.class));
+                return true;
+
+            // If "Add profile" in the menu is clicked on
+            case R.id.action_add_profile:
+                showAddProfileDialog();
+                return true;
+
+            // If "Remove profile" in the menu is clicked on
+            case R.id.action_remove_profile:
+                confirmRemoveProfile();
+                return true;
+
+            // If "Export events" in the menu is clicked on
+            case R.id.action_export:
+                showExportDialog();
+                return true;
+
+            // If "Import events" in the menu is clicked on
+            case R.id.action_import:
+                pickImportDocument();
+                return true;
+
             // If "Rate this app" in the menu is clicked on
             case R.id.action_rate_app:
                 openGooglePlay(this);
@@ -361,9 +971,258 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Ask for the name and filters of a new query profile and add it as the last tab
+     */
+    private void showAddProfileDialog() {
+        final View form = getLayoutInflater().inflate(R.layout.dialog_query_profile, null);
+        final AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.profile_add_title)
+                .setView(form)
+                .setPositiveButton(android.R.string.ok, null)
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+        // Replace the positive button's listener, so an invalid profile keeps the dialog open
+        dialog.getButton(DialogInterface.BUTTON_POSITIVE).setOnClickListener(
+                new View.OnClickListener() {
+                    @Override
+                    public void onClick(View view) {
+                        QueryProfile profile = readProfileForm(form);
+                        if (profile == null) {
+                            Toast.makeText(EarthquakeActivity.this, R.string.profile_invalid,
+                                    Toast.LENGTH_LONG).show();
+                            return;
+                        }
+                        dialog.dismiss();
+                        int previousCount = mProfiles.size();
+                        mProfiles.add(profile);
+                        QueryProfileStore.save(EarthquakeActivity.this, mProfiles);
+                        applyPointsOfInterest();
+                        mSelectedProfile = mProfiles.size() - 1;
+                        populateProfileTabs();
+                        restartProfileLoaders(previousCount);
+                        showSelectedProfile();
+                    }
+                });
+    }
+
+    /**
+     * @param form is the inflated profile dialog
+     * @return     the profile entered, or null if the entry is incomplete
+     */
+    private static QueryProfile readProfileForm(View form) {
+        String name = ((EditText) form.findViewById(R.id.profile_name)).getText().toString().trim();
+        double minMagnitude = readNumber(form, R.id.profile_min_magnitude);
+        double latitude = readNumber(form, R.id.profile_latitude);
+        double longitude = readNumber(form, R.id.profile_longitude);
+        double radiusKm = readNumber(form, R.id.profile_radius);
+        boolean tsunamiOnly = ((CheckBox) form.findViewById(R.id.profile_tsunami_only)).isChecked();
+
+        // A region needs all three of its values
+        boolean partialRegion = (Double.isNaN(latitude) || Double.isNaN(longitude)
+                || Double.isNaN(radiusKm))
+                && !(Double.isNaN(latitude) && Double.isNaN(longitude) && Double.isNaN(radiusKm));
+        if (name.isEmpty() || partialRegion) {
+            return null;
+        }
+        return new QueryProfile("profile_" + System.currentTimeMillis(), name, minMagnitude,
+                tsunamiOnly, latitude, longitude, radiusKm);
+    }
+
+    /**
+     * @return the number in a form field, or NaN if it is blank or not a number
+     */
+    private static double readNumber(View form, int fieldId) {
+        String text = ((EditText) form.findViewById(fieldId)).getText().toString().trim();
+        try {
+            return text.isEmpty() ? Double.NaN : Double.parseDouble(text);
+        }
+        catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Ask before removing the selected profile's tab
+     */
+    private void confirmRemoveProfile() {
+        final QueryProfile profile = mProfiles.get(mSelectedProfile);
+        if (QueryProfile.SETTINGS_ID.equals(profile.getId())) {
+            Toast.makeText(this, R.string.profile_settings_locked, Toast.LENGTH_LONG).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.profile_remove_title, profile.getName()))
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        int previousCount = mProfiles.size();
+                        mProfiles.remove(profile);
+                        mProfileResults.remove(profile.getId());
+                        QueryProfileStore.save(EarthquakeActivity.this, mProfiles);
+                        applyPointsOfInterest();
+                        mSelectedProfile = 0;
+                        populateProfileTabs();
+                        restartProfileLoaders(previousCount);
+                        showSelectedProfile();
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Ask for the export format and whether to export the current list or the whole history
+     */
+    private void showExportDialog() {
+        final ExportFormat[] formats = ExportFormat.values();
+        final int[] choice = {0};
+        DialogInterface.OnClickListener startExport = new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                mExportFormat = formats[choice[0]];
+                mExportHistory = which == DialogInterface.BUTTON_NEUTRAL;
+                pickExportDocument();
+            }
+        };
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_title)
+                .setSingleChoiceItems(R.array.export_format_labels, 0,
+                        new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                choice[0] = which;
+                            }
+                        })
+                .setPositiveButton(R.string.export_current_list, startExport)
+                .setNeutralButton(R.string.export_full_history, startExport)
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void pickExportDocument() {
+        String fileName = "quakebuddy-" + new SimpleDateFormat("yyyyMMdd-HHmm")
+                .format(new Date()) + "." + mExportFormat.getExtension();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // Let the user choose where the export is saved
+            Intent createIntent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            createIntent.addCategory(Intent.CATEGORY_OPENABLE);
+            createIntent.setType(mExportFormat.getMimeType());
+            createIntent.putExtra(Intent.EXTRA_TITLE, fileName);
+            startActivityForResult(createIntent, REQUEST_EXPORT);
+        }
+        else {
+            // No document picker before KitKat, save to the app's external files directory
+            File directory = getExternalFilesDir(null);
+            if (directory == null) {
+                Toast.makeText(this, R.string.export_failed, Toast.LENGTH_LONG).show();
+                return;
+            }
+            startExport(Uri.fromFile(new File(directory, fileName)));
+        }
+    }
+
+    private void startExport(Uri uri) {
+        List<Quake> earthquakes = mExportHistory ? null : mEarthquakes;
+        new EventTransferTask.Export(this, uri, mExportFormat, earthquakes,
+                new EventTransferTask.Listener() {
+                    @Override
+                    public void onTransferFinished(int count, List<Quake> recent) {
+                        Toast.makeText(EarthquakeActivity.this, count < 0
+                                        ? getString(R.string.export_failed)
+                                        : getString(R.string.export_finished, count),
+                                Toast.LENGTH_LONG).show();
+                    }
+                }).start();
+    }
+
+    private void pickImportDocument() {
+        Intent openIntent = new Intent(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                ? Intent.ACTION_OPEN_DOCUMENT : Intent.ACTION_GET_CONTENT);
+        openIntent.addCategory(Intent.CATEGORY_OPENABLE);
+        openIntent.setType("*/*");
+        startActivityForResult(openIntent, REQUEST_IMPORT);
+    }
+
+    private void startImport(Uri uri) {
+        mLoadingIndicator.setVisibility(View.VISIBLE);
+        new EventTransferTask.Import(this, uri,
+                Integer.parseInt(getString(R.string.display_in_view_quantity)),
+                new EventTransferTask.Listener() {
+                    @Override
+                    public void onTransferFinished(int count, List<Quake> recent) {
+                        mLoadingIndicator.setVisibility(View.GONE);
+                        Toast.makeText(EarthquakeActivity.this, count < 0
+                                        ? getString(R.string.import_failed)
+                                        : getString(R.string.import_finished, count),
+                                Toast.LENGTH_LONG).show();
+                        if (recent != null) {
+                            // Show the seeded history straight away
+                            showLoadedEarthquakes(recent);
+                        }
+                    }
+                }).start();
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            // The user backed out of the document picker
+            return;
+        }
+        if (requestCode == REQUEST_EXPORT && mExportFormat != null) {
+            startExport(data.getData());
+        }
+        else if (requestCode == REQUEST_IMPORT) {
+            startImport(data.getData());
+        }
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // Search place names as the user types, over every earthquake in the history
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchPlaces(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                // Only search while the search box is open
+                if (mSearchQuery != null) {
+                    searchPlaces(query);
+                }
+                return true;
+            }
+        });
+        MenuItemCompat.setOnActionExpandListener(searchItem,
+                new MenuItemCompat.OnActionExpandListener() {
+                    @Override
+                    public boolean onMenuItemActionExpand(MenuItem item) {
+                        mSearchQuery = "";
+                        if (!PlaceSearchIndex.getInstance().isBuilt()) {
+                            buildSearchIndex();
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onMenuItemActionCollapse(MenuItem item) {
+                        // Search closed, go back to the loaded list
+                        mSearchQuery = null;
+                        showEarthquakes(mLoadedEarthquakes);
+                        return true;
+                    }
+                });
         return true;
     }
 
@@ -386,7 +1245,8 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderCallb
             showWhatsNewDialog();
             SharedPreferences.Editor editor = sharedPref.edit();
             editor.putInt(VERSION_KEY, thisVersionNumber);
-            editor.commit();
+            // Write on a background thread rather than blocking the first frame
+            editor.apply();
         }
         // Nothing new in this version of QuakeBuddy, exit gracefully
     }
@@ -18,17 +18,93 @@ package com.gumgoose.app.quakebuddy;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Class that obtains a list of earthquakes from the server using an AsyncTask
+ *
+ * The query is fetched in pages sized by {@link FetchPlanner}; every page but the last is
+ * delivered as soon as it arrives, so a slow connection shows the first screen early. Once
+ * a query's result is cached, later loads fetch only the earthquakes revised since then
+ *
+ * Each {@link QueryProfile} tab has a Loader of its own; Loaders run on the framework's
+ * bounded AsyncTask pool, so every profile is fetched at the same time
+ *
+ * Results are kept in the {@link QuakeRepository}, which every screen shares: a Loader
+ * started again within {@link #FRESH_MILLIS} of the last fetch shows the repository's
+ * snapshot without fetching, and a snapshot published by another load of the same query
+ * is delivered as it arrives
  */
 public class EarthquakeLoader extends AsyncTaskLoader<List<Quake>> {
 
+    /**
+     * Age up to which a snapshot is shown without fetching the query again, i.e. when
+     * coming back from the settings
+     */
+    static final long FRESH_MILLIS = 60 * 1000;
+
+    /**
+     * Number of earthquakes requested when the query URL does not set a limit
+     */
+    private static final int DEFAULT_LIMIT = 50;
+
+    // Sync cursor of every cached result by repository key, taken from the unfiltered
+    // responses, as a profile's filtered result may hold none of the latest revisions
+    private static final Map<String, Long> sSyncCursors = new ConcurrentHashMap<>();
+
+    // Sync cursor of the responses fetched over metered networks, which leave out the weaker
+    // earthquakes; Wi-Fi syncs on from the unfiltered cursor, so the weaker ones still arrive
+    private static final Map<String, Long> sMeteredCursors = new ConcurrentHashMap<>();
+
     // Initialize local URL String
     private String mUrl;
 
+    // Profile the query belongs to, or null for a query of its own
+    private QueryProfile mProfile;
+
+    // Fetch even if the repository's snapshot is fresh, i.e. on pull to refresh
+    private boolean mRefresh;
+
+    private final QuakeRepository mRepository = QuakeRepository.getInstance();
+
+    // Posts the pages fetched so far to the main thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Delivers snapshots of the query published by other loads while this one is started
+    private final QuakeRepository.Subscriber mSubscriber = new QuakeRepository.Subscriber() {
+        @Override
+        public void onPublished(QuakeRepository.Snapshot snapshot, QuakeRepository.Delta delta) {
+            if (isStarted() && snapshot.getKey().equals(cacheKey())) {
+                deliverResult(snapshot.getEarthquakes());
+            }
+        }
+    };
+
+    // Runs the subscriber on the main thread, where results are delivered
+    private final Executor mMainExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mMainHandler.post(command);
+        }
+    };
+
+    // A cached result is already showing, so partial pages would only shrink the list
+    private boolean mShowingCached;
+
+    // The last list delivered, as a load's own snapshot also arrives through the subscriber
+    private List<Quake> mDelivered;
+
+    // Outcome of the last request, so a failed load can say why it failed
+    private volatile FetchOutcome<List<Quake>> mLastOutcome;
+
     /**
      * Construct a new {@link EarthquakeLoader}
      *
@@ -36,13 +112,75 @@ public class EarthquakeLoader extends AsyncTaskLoader<List<Quake>> {
      * @param url     to load data from
      */
     public EarthquakeLoader(Context context, String url) {
+        this(context, url, null);
+    }
+
+    /**
+     * Construct a new {@link EarthquakeLoader} for a profile's query
+     *
+     * @param context of the activity
+     * @param url     to load data from
+     * @param profile is the profile the query was built from, or null
+     */
+    public EarthquakeLoader(Context context, String url, QueryProfile profile) {
+        this(context, url, profile, false);
+    }
+
+    /**
+     * Construct a new {@link EarthquakeLoader} for a profile's query
+     *
+     * @param context of the activity
+     * @param url     to load data from
+     * @param profile is the profile the query was built from, or null
+     * @param refresh is true to fetch even if the repository's snapshot is fresh
+     */
+    public EarthquakeLoader(Context context, String url, QueryProfile profile,
+                            boolean refresh) {
         super(context);
         mUrl = url;
+        mProfile = profile;
+        mRefresh = refresh;
+    }
+
+    /**
+     * @return the outcome of the last request of the latest load, or null before any
+     */
+    public FetchOutcome<List<Quake>> getLastOutcome() {
+        return mLastOutcome;
+    }
+
+    /**
+     * @return the profile the query was built from, or null
+     */
+    public QueryProfile getProfile() {
+        return mProfile;
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        mRepository.subscribe(mSubscriber, mMainExecutor);
+
+        // Show the last result of the same query while the fresh one loads
+        QuakeRepository.Snapshot snapshot = mRepository.get(cacheKey());
+        mShowingCached = snapshot != null;
+        if (snapshot != null) {
+            deliverEnriched(snapshot);
+        }
+        if (mRefresh || takeContentChanged() || !hasFreshResult(mUrl, mProfile)) {
+            mRefresh = false;
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        mRepository.unsubscribe(mSubscriber);
+    }
+
+    @Override
+    protected void onReset() {
+        mRepository.unsubscribe(mSubscriber);
+        mDelivered = null;
     }
 
     @Override
@@ -55,9 +193,267 @@ public class EarthquakeLoader extends AsyncTaskLoader<List<Quake>> {
             return null;
         }
 
-        // Perform the network request for fetching and parsing
-        List<Quake> earthquakes = QueryUtils.fetchEarthquakeData(mUrl);
+        // Overlapping loads of the query, i.e. from a recreated activity, share one fetch
+        String key = cacheKey();
+        mLastOutcome = mRepository.fetch(key, new QuakeRepository.Fetcher() {
+            @Override
+            public FetchOutcome<List<Quake>> fetch(QuakeRepository.Snapshot current) {
+                long start = SystemClock.elapsedRealtime();
+                FetchOutcome<List<Quake>> outcome =
+                        fetchQuery(current == null ? null : current.getEarthquakes());
+                Metrics.getInstance().recordRefresh(outcome.getKind(),
+                        SystemClock.elapsedRealtime() - start,
+                        outcome.isSuccess() ? outcome.getValue().size() : -1);
+                if (outcome.isSuccess()) {
+                    // Rows show the felt estimates without computing any while binding
+                    FeltEstimator.getInstance().enrich(outcome.getValue(),
+                            AppScheduler.getInstance().getExecutor(AppScheduler.Pool.COMPUTE));
+                }
+                return outcome;
+            }
+        });
+        QuakeRepository.Snapshot snapshot = mRepository.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        // A failed or joined load shows a snapshot this fetch did not estimate, and the
+        // points of interest may have changed since it was
+        FeltEstimator.getInstance().enrich(snapshot.getEarthquakes(),
+                AppScheduler.getInstance().getExecutor(AppScheduler.Pool.COMPUTE));
         // Return a list of earthquakes
-        return earthquakes;
+        return snapshot.getEarthquakes();
+    }
+
+    /**
+     * Deliver a cached snapshot once its felt estimates are made on the compute pool; a
+     * snapshot replaced in the meantime, i.e. by a load that finished first, is dropped
+     *
+     * @param snapshot is the snapshot of the query
+     */
+    private void deliverEnriched(final QuakeRepository.Snapshot snapshot) {
+        final Executor compute = AppScheduler.getInstance().getExecutor(AppScheduler.Pool.COMPUTE);
+        compute.execute(new Runnable() {
+            @Override
+            public void run() {
+                FeltEstimator.getInstance().enrich(snapshot.getEarthquakes(), compute);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isStarted() && mRepository.get(cacheKey()) == snapshot) {
+                            deliverResult(snapshot.getEarthquakes());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Fetch the query, or only the earthquakes revised since the cached result
+     *
+     * @param cached is the current result of the query, or null if it has none
+     * @return       the outcome; a successful outcome holds the new result of the query
+     */
+    private FetchOutcome<List<Quake>> fetchQuery(List<Quake> cached) {
+        int limit = FetchPlanner.limitOf(mUrl, DEFAULT_LIMIT);
+        SyncPolicy policy = DataBudget.getInstance().getPolicy();
+        // The repository key stays the query's own, only the requests follow the network
+        String url = policy.applyTo(mUrl);
+        if (!policy.sendsRequests()) {
+            // The day's mobile data is spent, show what there is without asking the server
+            StartupPrefetch.getInstance().cancel(url);
+            return FetchOutcome.failure(FetchOutcome.Kind.BUDGET_SPENT,
+                    FetchOutcome.NO_RESPONSE, -1);
+        }
+        if (cached != null && !cached.isEmpty()) {
+            FetchOutcome<List<Quake>> synced = syncUpdates(cached, limit, policy);
+            if (synced != null) {
+                // Nothing claims the whole query now, so it need not keep downloading
+                StartupPrefetch.getInstance().cancel(url);
+                return synced;
+            }
+        }
+
+        // The query may already be in flight since the activity started
+        FetchOutcome<List<Quake>> outcome;
+        List<Quake> earthquakes;
+        FetchOutcome<List<Quake>> prefetched = StartupPrefetch.getInstance().claim(url);
+        if (prefetched != null && prefetched.isSuccess()) {
+            outcome = prefetched;
+            earthquakes = prefetched.getValue();
+        }
+        else {
+            // Perform the network requests for fetching and parsing, page by page
+            FetchPlanner planner = new FetchPlanner(ThroughputEstimator.getInstance(),
+                    FetchPlanner.DEFAULT_BUDGET_MILLIS, ResilientFetcher.getInstance());
+            earthquakes = planner.fetchPages(url, limit,
+                    new FetchPlanner.PageListener() {
+                        @Override
+                        public boolean onPageFetched(List<Quake> earthquakes) {
+                            deliverPartialResult(filter(earthquakes));
+                            // Stop fetching once the Loader has been reset
+                            return !isReset();
+                        }
+                    });
+            outcome = planner.getLastOutcome();
+        }
+        if (earthquakes == null) {
+            // Nothing to publish, the current result keeps showing
+            return outcome;
+        }
+        if (policy.isMetered()) {
+            // Without the weaker earthquakes, Wi-Fi fetches the whole query again
+            sSyncCursors.remove(cacheKey());
+            sMeteredCursors.put(cacheKey(), IncrementalSync.cursorOf(earthquakes));
+        }
+        else {
+            sSyncCursors.put(cacheKey(), IncrementalSync.cursorOf(earthquakes));
+            sMeteredCursors.remove(cacheKey());
+        }
+        if (!earthquakes.isEmpty()) {
+            // Keep the earthquakes in the local history for export and offline use
+            EventHistory.getInstance(getContext()).mergeQuietly(earthquakes);
+        }
+        return FetchOutcome.success(filter(earthquakes),
+                outcome != null ? outcome.getHttpCode() : FetchOutcome.NO_RESPONSE);
+    }
+
+    /**
+     * Refresh a cached result with the earthquakes revised since it was fetched
+     *
+     * @param cached is the cached result of the query
+     * @param limit  is the number of earthquakes the query asks for
+     * @param policy is the sync policy of the active network
+     * @return       the outcome holding the refreshed result, a failure if the server
+     *               could not be reached, or null if the whole query must be fetched again
+     */
+    private FetchOutcome<List<Quake>> syncUpdates(List<Quake> cached, int limit,
+                                                  SyncPolicy policy) {
+        Long stored = sSyncCursors.get(cacheKey());
+        if (stored == null && !policy.isMetered()) {
+            // Only fetched over a metered network so far, the weaker earthquakes are missing
+            return null;
+        }
+        long cursor = stored != null ? stored : IncrementalSync.cursorOf(cached);
+        Long metered = policy.isMetered() ? sMeteredCursors.get(cacheKey()) : null;
+        if (metered != null) {
+            cursor = Math.max(cursor, metered);
+        }
+        String url = IncrementalSync.updatesUrl(
+                FetchPlanner.pageUrl(policy.applyTo(mUrl), 0, limit), cursor);
+        FetchOutcome<List<Quake>> outcome = ResilientFetcher.getInstance().fetchEarthquakes(url);
+        if (!outcome.isSuccess()) {
+            // Already retried, keep showing the cached result rather than an empty list
+            return outcome;
+        }
+        List<Quake> updates = outcome.getValue();
+        if (updates.size() >= limit && !policy.isDeltasOnly()) {
+            // So much has changed that the updates may have been cut short
+            return null;
+        }
+        if (updates.isEmpty()) {
+            return FetchOutcome.success(cached, outcome.getHttpCode());
+        }
+        (policy.isMetered() ? sMeteredCursors : sSyncCursors).put(cacheKey(),
+                Math.max(cursor, IncrementalSync.cursorOf(updates)));
+        List<Quake> revised = new ArrayList<>(updates.size());
+        for (Quake quake : updates) {
+            if (!quake.isDeleted()) {
+                revised.add(quake);
+            }
+        }
+        if (!revised.isEmpty()) {
+            EventHistory.getInstance(getContext()).mergeQuietly(revised);
+        }
+        // Filter after merging, so a revision that clears a tsunami flag drops the event
+        return FetchOutcome.success(filter(IncrementalSync.merge(cached, updates, mUrl, limit)),
+                outcome.getHttpCode());
+    }
+
+    /**
+     * Deliver every snapshot once, leaving out the earthquakes too weak for the active
+     * network, which the repository keeps for when it is unmetered again
+     */
+    @Override
+    public void deliverResult(List<Quake> earthquakes) {
+        if (earthquakes != null && earthquakes == mDelivered) {
+            // Already delivered by the subscriber or as the result of the load
+            return;
+        }
+        mDelivered = earthquakes;
+        super.deliverResult(earthquakes == null
+                ? null : DataBudget.getInstance().getPolicy().filter(earthquakes));
+    }
+
+    private List<Quake> filter(List<Quake> earthquakes) {
+        return mProfile == null ? earthquakes : mProfile.filter(earthquakes);
+    }
+
+    private String cacheKey() {
+        return repositoryKeyFor(mUrl, mProfile);
+    }
+
+    /**
+     * @param url     is the query URL
+     * @param profile is the profile the query was built from, or null
+     * @return        the key of the query's results in the {@link QuakeRepository}
+     */
+    static String repositoryKeyFor(String url, QueryProfile profile) {
+        String key = cacheKeyFor(url);
+        // Profiles with the same query may still filter its result differently
+        return profile == null ? key : profile.getId() + "|" + key;
+    }
+
+    /**
+     * @param url     is the query URL
+     * @param profile is the profile the query was built from, or null
+     * @return        true if a Loader of the query would fetch the whole query rather than
+     *                only the earthquakes revised since its cached result
+     */
+    public static boolean needsFullFetch(String url, QueryProfile profile) {
+        QuakeRepository.Snapshot snapshot =
+                QuakeRepository.getInstance().get(repositoryKeyFor(url, profile));
+        return snapshot == null || snapshot.getEarthquakes().isEmpty();
+    }
+
+    /**
+     * @param url     is the query URL
+     * @param profile is the profile the query was built from, or null
+     * @return        true if a Loader of the query would show its result without fetching
+     */
+    public static boolean hasFreshResult(String url, QueryProfile profile) {
+        QuakeRepository.Snapshot snapshot =
+                QuakeRepository.getInstance().get(repositoryKeyFor(url, profile));
+        return snapshot != null
+                && System.currentTimeMillis() - snapshot.getPublishedAt() <= FRESH_MILLIS;
+    }
+
+    /**
+     * Show the pages fetched so far while the rest of the query loads
+     *
+     * @param earthquakes is a copy of the earthquakes fetched so far
+     */
+    private void deliverPartialResult(final List<Quake> earthquakes) {
+        if (mShowingCached) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isStarted()) {
+                    deliverResult(earthquakes);
+                }
+            }
+        });
+    }
+
+    /**
+     * The start time of a query follows the clock, so it is left out of the cache key
+     *
+     * @param url is the query URL
+     * @return    the URL without its starttime parameter
+     */
+    static String cacheKeyFor(String url) {
+        return url == null ? "" : url.replaceAll("starttime=[^&]*&?", "");
     }
 }
\ No newline at end of file
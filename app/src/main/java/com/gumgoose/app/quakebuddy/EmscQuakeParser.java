@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parser of the EMSC's FDSN JSON responses, a GeoJSON FeatureCollection whose times are
+ * ISO 8601 Strings and whose places are Flinn-Engdahl region names
+ */
+final class EmscQuakeParser implements FetchOutcome.Parser<List<Quake>> {
+
+    /**
+     * Class name String for Log messages
+     */
+    private static final String LOG_TAG = EmscQuakeParser.class.getSimpleName();
+
+    static final EmscQuakeParser INSTANCE = new EmscQuakeParser();
+
+    /**
+     * Event page of the EMSC, completed with the event's unique ID
+     */
+    private static final String EVENT_PAGE_URL =
+            "https://www.seismicportal.eu/eventdetails.html?unid=";
+
+    private EmscQuakeParser() {
+    }
+
+    @Override
+    public List<Quake> parse(String body) {
+        if (body == null || body.isEmpty()) {
+            return null;
+        }
+        JSONArray features;
+        try {
+            features = new JSONObject(body).getJSONArray("features");
+        }
+        catch (JSONException e) {
+            Log.e(LOG_TAG, "Malformed EMSC JSON response", e);
+            return null;
+        }
+        List<Quake> earthquakes = new ArrayList<>(features.length());
+        for (int i = 0; i < features.length(); i++) {
+            Quake quake = parseFeature(features.optJSONObject(i));
+            if (quake != null) {
+                earthquakes.add(quake);
+            }
+        }
+        ThroughputEstimator.getInstance().recordEvents(QueryUtils.utf8Length(body),
+                earthquakes.size());
+        return earthquakes;
+    }
+
+    /**
+     * @return the earthquake of a feature, or null if it has no magnitude or time
+     */
+    static Quake parseFeature(JSONObject feature) {
+        JSONObject properties = feature == null ? null : feature.optJSONObject("properties");
+        if (properties == null) {
+            return null;
+        }
+        double magnitude = properties.optDouble("mag");
+        long time = parseTime(properties.optString("time", null));
+        if (Double.isNaN(magnitude) || time == Long.MIN_VALUE) {
+            return null;
+        }
+        long updated = parseTime(properties.optString("lastupdate", null));
+        String id = properties.optString("unid", feature.optString("id", null));
+        String place = titleCase(properties.optString("flynn_region", ""));
+        double latitude = properties.optDouble("lat");
+        double longitude = properties.optDouble("lon");
+        // The geometry holds the elevation, the properties the depth
+        double depth = properties.optDouble("depth");
+        // The EMSC has no tsunami flag and no USGS style detail feed
+        return new Quake(magnitude, PlaceInterner.getInstance().intern(place), time, 0,
+                id == null ? null : EVENT_PAGE_URL + id, id,
+                updated < time ? time : updated, null, latitude, longitude, depth);
+    }
+
+    /**
+     * @param value is a UTC time such as "2017-06-15T04:13:56.4Z", with any number of
+     *              fraction digits
+     * @return      the time, or Long.MIN_VALUE if it cannot be read
+     */
+    static long parseTime(String value) {
+        if (value == null || value.length() < 19) {
+            return Long.MIN_VALUE;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        format.setLenient(false);
+        long seconds;
+        try {
+            seconds = format.parse(value.substring(0, 19)).getTime();
+        }
+        catch (ParseException e) {
+            return Long.MIN_VALUE;
+        }
+        // Read the fraction as milliseconds, however many digits it has
+        int millis = 0;
+        int digits = 0;
+        if (value.length() > 20 && value.charAt(19) == '.') {
+            for (int i = 20; i < value.length() && Character.isDigit(value.charAt(i)); i++) {
+                if (digits < 3) {
+                    millis = millis * 10 + (value.charAt(i) - '0');
+                    digits++;
+                }
+            }
+        }
+        while (digits > 0 && digits < 3) {
+            millis *= 10;
+            digits++;
+        }
+        return seconds + millis;
+    }
+
+    /**
+     * @return an upper case region name such as "NEAR COAST OF CENTRAL CHILE" in title
+     *         case, the way USGS writes its places
+     */
+    static String titleCase(String region) {
+        StringBuilder out = new StringBuilder(region.length());
+        boolean wordStart = true;
+        for (int i = 0; i < region.length(); i++) {
+            char c = region.charAt(i);
+            out.append(wordStart ? Character.toUpperCase(c) : Character.toLowerCase(c));
+            wordStart = c == ' ' || c == '-' || c == ',' || c == '(';
+        }
+        return out.toString();
+    }
+}
\ No newline at end of file
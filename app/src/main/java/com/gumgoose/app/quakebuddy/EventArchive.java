@@ -0,0 +1,761 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class that keeps months of earthquakes on disk in immutable, compressed segment files,
+ * one or more per UTC day, so history beyond the query window needs no download
+ *
+ * A small manifest records the time span, strongest magnitude and magnitude histogram of
+ * every segment, so a range query opens only the days that can match. New earthquakes
+ * for a day are written as a new segment rather than rewriting the old ones; compaction
+ * later folds a day's segments into one, keeping the latest revision of each event, and
+ * drops the days older than a year
+ */
+public class EventArchive {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = EventArchive.class.getSimpleName();
+
+    static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Number of whole magnitude buckets in each segment's histogram; the last bucket holds
+     * everything from M9 up
+     */
+    static final int MAGNITUDE_BUCKETS = 10;
+
+    /**
+     * A day with this many segments is compacted straight away; older days are compacted
+     * as soon as they have two
+     */
+    static final int COMPACT_SEGMENTS = 4;
+    static final int SETTLED_DAYS = 2;
+
+    /**
+     * Weakest magnitude and number of days kept in the archive
+     */
+    static final double MIN_MAGNITUDE = 2.5;
+    static final int RETENTION_DAYS = 365;
+
+    private static final String DIRECTORY_NAME = "archive";
+    private static final String MANIFEST_NAME = "manifest.json";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int MANIFEST_VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Newest first; earthquakes of the same millisecond in order of ID, so a page can end
+     * between them
+     */
+    private static final Comparator<Quake> NEWEST_FIRST = new Comparator<Quake>() {
+        @Override
+        public int compare(Quake a, Quake b) {
+            int byTime = b.getQuakeUnixTime().compareTo(a.getQuakeUnixTime());
+            if (byTime != 0) {
+                return byTime;
+            }
+            String aId = a.getQuakeId() != null ? a.getQuakeId() : "";
+            String bId = b.getQuakeId() != null ? b.getQuakeId() : "";
+            return aId.compareTo(bId);
+        }
+    };
+
+    private static EventArchive sInstance;
+
+    /**
+     * Entry of the manifest describing one segment file
+     */
+    public static final class Segment {
+
+        private final int mDay;
+        private final int mGeneration;
+        private final int mCount;
+        private final long mMinTime;
+        private final long mMaxTime;
+        private final double mMaxMagnitude;
+        private final int[] mMagnitudeCounts;
+
+        Segment(int day, int generation, int count, long minTime, long maxTime,
+                double maxMagnitude, int[] magnitudeCounts) {
+            mDay = day;
+            mGeneration = generation;
+            mCount = count;
+            mMinTime = minTime;
+            mMaxTime = maxTime;
+            mMaxMagnitude = maxMagnitude;
+            mMagnitudeCounts = magnitudeCounts;
+        }
+
+        /** Getter method for the UTC day number of the segment */
+        public int getDay() {
+            return mDay;
+        }
+
+        /** Getter method for the write order of the segment within its day */
+        public int getGeneration() {
+            return mGeneration;
+        }
+
+        /** Getter method for the number of earthquakes in the segment */
+        public int getCount() {
+            return mCount;
+        }
+
+        /** Getter method for the strongest magnitude in the segment */
+        public double getMaxMagnitude() {
+            return mMaxMagnitude;
+        }
+
+        String getFileName() {
+            return mDay + "-" + mGeneration + SEGMENT_SUFFIX;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONArray counts = new JSONArray();
+            for (int count : mMagnitudeCounts) {
+                counts.put(count);
+            }
+            return new JSONObject()
+                    .put("day", mDay)
+                    .put("generation", mGeneration)
+                    .put("count", mCount)
+                    .put("minTime", mMinTime)
+                    .put("maxTime", mMaxTime)
+                    .put("maxMagnitude", mMaxMagnitude)
+                    .put("magnitudes", counts);
+        }
+
+        static Segment fromJson(JSONObject json) throws JSONException {
+            JSONArray counts = json.getJSONArray("magnitudes");
+            int[] magnitudeCounts = new int[MAGNITUDE_BUCKETS];
+            for (int i = 0; i < Math.min(counts.length(), MAGNITUDE_BUCKETS); i++) {
+                magnitudeCounts[i] = counts.getInt(i);
+            }
+            return new Segment(json.getInt("day"), json.getInt("generation"),
+                    json.getInt("count"), json.getLong("minTime"), json.getLong("maxTime"),
+                    json.getDouble("maxMagnitude"), magnitudeCounts);
+        }
+    }
+
+    private final File mDirectory;
+    private final Executor mDiskExecutor;
+
+    // Segments by day, oldest generation first within a day
+    private final TreeMap<Integer, List<Segment>> mSegments = new TreeMap<>();
+
+    // Days fully downloaded by a backfill, which never need downloading again
+    private final TreeSet<Integer> mCoveredDays = new TreeSet<>();
+
+    private boolean mLoaded;
+
+    // Earthquakes of loaded lists waiting to be written together on the disk pool
+    private final List<Quake> mPending = new ArrayList<>();
+    private boolean mFlushScheduled;
+
+    /**
+     * Get the app-wide archive, stored in the app's files directory
+     *
+     * @param context of the caller
+     * @return        the shared {@link EventArchive}
+     */
+    public static synchronized EventArchive getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new EventArchive(
+                    new File(context.getApplicationContext().getFilesDir(), DIRECTORY_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link EventArchive}
+     *
+     * @param directory is the directory holding the manifest and the segments
+     */
+    public EventArchive(File directory) {
+        this(directory, AppScheduler.getInstance().getExecutor(AppScheduler.Pool.DISK));
+    }
+
+    EventArchive(File directory, Executor diskExecutor) {
+        mDirectory = directory;
+        mDiskExecutor = diskExecutor;
+    }
+
+    /**
+     * @param time is a time in milliseconds since the epoch
+     * @return     the number of the UTC day the time falls on
+     */
+    public static int dayOf(long time) {
+        return (int) Math.floor((double) time / DAY_MILLIS);
+    }
+
+    /**
+     * Write earthquakes to the archive, as a new segment for every day they fall on
+     *
+     * @param earthquakes is the earthquakes to add; later revisions replace earlier ones
+     * @return            true if a day now has enough segments to be worth compacting
+     */
+    public synchronized boolean add(Collection<Quake> earthquakes) throws IOException {
+        ensureLoaded();
+        Map<Integer, List<Quake>> byDay = new TreeMap<>();
+        for (Quake quake : earthquakes) {
+            int day = dayOf(quake.getQuakeUnixTime());
+            List<Quake> quakes = byDay.get(day);
+            if (quakes == null) {
+                quakes = new ArrayList<>();
+                byDay.put(day, quakes);
+            }
+            quakes.add(quake);
+        }
+        for (Map.Entry<Integer, List<Quake>> entry : byDay.entrySet()) {
+            List<Segment> segments = segmentsOf(entry.getKey());
+            int generation = segments.isEmpty()
+                    ? 0 : segments.get(segments.size() - 1).getGeneration() + 1;
+            segments.add(writeSegment(entry.getKey(), generation,
+                    latestRevisions(entry.getValue())));
+        }
+        writeManifest();
+        return needsCompaction(dayOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Queue freshly loaded earthquakes for the archive and write them on the disk pool,
+     * logging rather than throwing on failure, and compact when it is due
+     *
+     * Only earthquakes the archive keeps are written, and the lists of refreshes arriving
+     * while a write is queued go into the same segments
+     *
+     * @param earthquakes is the earthquakes to add
+     */
+    public void addQuietly(Collection<Quake> earthquakes) {
+        int oldestDay = dayOf(System.currentTimeMillis()) - RETENTION_DAYS + 1;
+        synchronized (mPending) {
+            for (Quake quake : earthquakes) {
+                if (quake.getQuakeMagnitude() >= MIN_MAGNITUDE
+                        && dayOf(quake.getQuakeUnixTime()) >= oldestDay) {
+                    mPending.add(quake);
+                }
+            }
+            if (mPending.isEmpty() || mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushPending();
+            }
+        });
+    }
+
+    /**
+     * Write the queued earthquakes, compacting afterwards when it is due
+     */
+    private void flushPending() {
+        List<Quake> pending;
+        synchronized (mPending) {
+            pending = new ArrayList<>(mPending);
+            mPending.clear();
+            mFlushScheduled = false;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            if (add(pending)) {
+                int days = compact(dayOf(System.currentTimeMillis()));
+                Log.i(LOG_TAG, "Compacted " + days + " days");
+            }
+        }
+        catch (IOException e) {
+            // Error caught, print the exception to the logs
+            Log.e(LOG_TAG, "Problem with archiving earthquakes", e);
+        }
+    }
+
+    /**
+     * Record days whose earthquakes have all been downloaded
+     *
+     * @param fromDay is the first day covered
+     * @param toDay   is the last day covered
+     */
+    public synchronized void markCovered(int fromDay, int toDay) throws IOException {
+        ensureLoaded();
+        for (int day = fromDay; day <= toDay; day++) {
+            mCoveredDays.add(day);
+        }
+        writeManifest();
+    }
+
+    /**
+     * @param day is a UTC day number
+     * @return    true if every earthquake of the day has been downloaded
+     */
+    public synchronized boolean isCovered(int day) throws IOException {
+        ensureLoaded();
+        return mCoveredDays.contains(day);
+    }
+
+    /**
+     * Read the earthquakes of a time range, newest first
+     *
+     * Only the days overlapping the range with a strong enough earthquake are opened
+     *
+     * @param fromTime     is the earliest time included
+     * @param toTime       is the latest time included
+     * @param minMagnitude is the weakest magnitude included
+     * @param limit        is the maximum number of earthquakes returned
+     * @return             the matching earthquakes, newest first
+     */
+    public synchronized List<Quake> query(long fromTime, long toTime, double minMagnitude,
+                                          int limit) throws IOException {
+        return collect(fromTime, toTime, null, minMagnitude, limit);
+    }
+
+    /**
+     * Read the next page of earthquakes after the last one shown
+     *
+     * Earthquakes of the same millisecond as the last one shown are told apart by their ID,
+     * so none of them is skipped or shown twice
+     *
+     * @param after        is the last earthquake shown, or null for the first page
+     * @param minMagnitude is the weakest magnitude included
+     * @param limit        is the size of the page
+     * @return             up to a page of the earthquakes ordered after the last one shown,
+     *                     newest first
+     */
+    public synchronized List<Quake> page(Quake after, double minMagnitude, int limit)
+            throws IOException {
+        long toTime = after != null ? after.getQuakeUnixTime() : Long.MAX_VALUE / 2;
+        return collect(Long.MIN_VALUE / 2, toTime, after, minMagnitude, limit);
+    }
+
+    private List<Quake> collect(long fromTime, long toTime, Quake after, double minMagnitude,
+                                int limit) throws IOException {
+        ensureLoaded();
+        List<Quake> result = new ArrayList<>();
+        Integer day = mSegments.floorKey(dayOf(toTime));
+        int fromDay = dayOf(fromTime);
+        while (day != null && day >= fromDay && result.size() < limit) {
+            List<Segment> segments = mSegments.get(day);
+            if (mayMatch(segments, fromTime, toTime, minMagnitude)) {
+                List<Quake> quakes = readDay(segments);
+                for (Quake quake : quakes) {
+                    long time = quake.getQuakeUnixTime();
+                    if (time >= fromTime && time <= toTime
+                            && quake.getQuakeMagnitude() >= minMagnitude
+                            && (after == null || NEWEST_FIRST.compare(quake, after) > 0)) {
+                        result.add(quake);
+                        if (result.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+            }
+            day = mSegments.lowerKey(day);
+        }
+        return result;
+    }
+
+    /**
+     * Read the magnitudes and times of a time range into columns, one day at a time, so
+     * only a single day's earthquakes are ever held as objects
+     *
+     * @param fromTime     is the earliest time included
+     * @param toTime       is the latest time included
+     * @param minMagnitude is the weakest magnitude included
+     * @return             the columns of the matching earthquakes, oldest day first
+     */
+    public synchronized QuakeColumns readColumns(long fromTime, long toTime, double minMagnitude)
+            throws IOException {
+        ensureLoaded();
+        QuakeColumns columns = new QuakeColumns();
+        for (List<Segment> segments
+                : mSegments.subMap(dayOf(fromTime), true, dayOf(toTime), true).values()) {
+            if (!mayMatch(segments, fromTime, toTime, minMagnitude)) {
+                continue;
+            }
+            for (Quake quake : readDay(segments)) {
+                long time = quake.getQuakeUnixTime();
+                if (time >= fromTime && time <= toTime
+                        && quake.getQuakeMagnitude() >= minMagnitude) {
+                    columns.add(quake.getQuakeMagnitude(), time);
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Count the earthquakes of whole days by magnitude without opening any segment; exact
+     * for compacted days, an overcount for days holding revisions not yet compacted
+     *
+     * @param fromDay is the first day counted
+     * @param toDay   is the last day counted
+     * @return        the counts by whole magnitude, M9 and up in the last bucket
+     */
+    public synchronized int[] countByMagnitude(int fromDay, int toDay) throws IOException {
+        ensureLoaded();
+        int[] counts = new int[MAGNITUDE_BUCKETS];
+        for (List<Segment> segments : mSegments.subMap(fromDay, true, toDay, true).values()) {
+            for (Segment segment : segments) {
+                for (int i = 0; i < MAGNITUDE_BUCKETS; i++) {
+                    counts[i] += segment.mMagnitudeCounts[i];
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of segment files in the archive
+     */
+    public synchronized int segmentCount() throws IOException {
+        ensureLoaded();
+        int count = 0;
+        for (List<Segment> segments : mSegments.values()) {
+            count += segments.size();
+        }
+        return count;
+    }
+
+    /**
+     * @param today is the current UTC day number
+     * @return      true if any day has segments that compaction would fold together
+     */
+    public synchronized boolean needsCompaction(int today) throws IOException {
+        ensureLoaded();
+        int oldestDay = today - RETENTION_DAYS + 1;
+        if ((!mSegments.isEmpty() && mSegments.firstKey() < oldestDay)
+                || (!mCoveredDays.isEmpty() && mCoveredDays.first() < oldestDay)) {
+            return true;
+        }
+        for (Map.Entry<Integer, List<Segment>> entry : mSegments.entrySet()) {
+            if (isDue(entry.getKey(), entry.getValue().size(), today)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop the days older than {@link #RETENTION_DAYS}, and fold the segments of every day
+     * that is due into a single segment per day
+     *
+     * @param today is the current UTC day number
+     * @return      the number of days compacted
+     */
+    public synchronized int compact(int today) throws IOException {
+        ensureLoaded();
+        dropExpired(today - RETENTION_DAYS + 1);
+        int compacted = 0;
+        for (Map.Entry<Integer, List<Segment>> entry : mSegments.entrySet()) {
+            List<Segment> segments = entry.getValue();
+            if (!isDue(entry.getKey(), segments.size(), today)) {
+                continue;
+            }
+            Segment merged = writeSegment(entry.getKey(),
+                    segments.get(segments.size() - 1).getGeneration() + 1, readDay(segments));
+            List<Segment> replaced = new ArrayList<>(segments);
+            segments.clear();
+            segments.add(merged);
+            // The manifest stops naming the old files before they are deleted
+            writeManifest();
+            for (Segment segment : replaced) {
+                new File(mDirectory, segment.getFileName()).delete();
+            }
+            compacted++;
+        }
+        return compacted;
+    }
+
+    /**
+     * Delete the segments of the days before the oldest day kept, and forget their coverage
+     */
+    private void dropExpired(int oldestDay) throws IOException {
+        Map<Integer, List<Segment>> expired = mSegments.headMap(oldestDay);
+        if (expired.isEmpty() && mCoveredDays.headSet(oldestDay).isEmpty()) {
+            return;
+        }
+        List<Segment> deleted = new ArrayList<>();
+        for (List<Segment> segments : expired.values()) {
+            deleted.addAll(segments);
+        }
+        expired.clear();
+        mCoveredDays.headSet(oldestDay).clear();
+        // The manifest stops naming the old files before they are deleted
+        writeManifest();
+        for (Segment segment : deleted) {
+            new File(mDirectory, segment.getFileName()).delete();
+        }
+    }
+
+    private static boolean isDue(int day, int segmentCount, int today) {
+        return segmentCount >= COMPACT_SEGMENTS
+                || (segmentCount > 1 && day <= today - SETTLED_DAYS);
+    }
+
+    private List<Segment> segmentsOf(int day) {
+        List<Segment> segments = mSegments.get(day);
+        if (segments == null) {
+            segments = new ArrayList<>();
+            mSegments.put(day, segments);
+        }
+        return segments;
+    }
+
+    /**
+     * A day can only be skipped if none of its segments can match, as a later segment
+     * may revise an event of an earlier one
+     */
+    private static boolean mayMatch(List<Segment> segments, long fromTime, long toTime,
+                                    double minMagnitude) {
+        for (Segment segment : segments) {
+            if (segment.mMaxMagnitude >= minMagnitude
+                    && segment.mMaxTime >= fromTime && segment.mMinTime <= toTime) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the latest revision of every earthquake of a day's segments, newest first
+     */
+    private List<Quake> readDay(List<Segment> segments) throws IOException {
+        List<Quake> quakes = new ArrayList<>();
+        for (Segment segment : segments) {
+            QuakeReader reader = openSegment(segment);
+            try {
+                Quake quake = reader.next();
+                while (quake != null) {
+                    quakes.add(quake);
+                    quake = reader.next();
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        if (segments.size() == 1) {
+            // Segments written before ties were ordered by ID may hold them in any order
+            Collections.sort(quakes, NEWEST_FIRST);
+            return quakes;
+        }
+        return latestRevisions(quakes);
+    }
+
+    /**
+     * @return one earthquake per event ID, the most recently updated, newest first
+     */
+    private static List<Quake> latestRevisions(List<Quake> quakes) {
+        Map<String, Quake> byId = new HashMap<>();
+        List<Quake> latest = new ArrayList<>(quakes.size());
+        for (Quake quake : quakes) {
+            if (quake.getQuakeId() == null) {
+                latest.add(quake);
+                continue;
+            }
+            Quake previous = byId.get(quake.getQuakeId());
+            // Later segments win ties, they were written after the earlier ones
+            if (previous == null || quake.getQuakeUpdated() >= previous.getQuakeUpdated()) {
+                byId.put(quake.getQuakeId(), quake);
+            }
+        }
+        latest.addAll(byId.values());
+        Collections.sort(latest, NEWEST_FIRST);
+        return latest;
+    }
+
+    private QuakeReader openSegment(Segment segment) throws IOException {
+        File file = new File(mDirectory, segment.getFileName());
+        GZIPInputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            return QuakeReader.create(ExportFormat.BINARY, Channels.newChannel(in));
+        }
+        catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the earthquakes of a day, newest first, to a new segment file
+     */
+    private Segment writeSegment(int day, int generation, List<Quake> quakes)
+            throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create " + mDirectory);
+        }
+        int[] magnitudeCounts = new int[MAGNITUDE_BUCKETS];
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        double maxMagnitude = Double.NEGATIVE_INFINITY;
+
+        File file = new File(mDirectory, day + "-" + generation + SEGMENT_SUFFIX);
+        File temp = new File(file.getPath() + ".tmp");
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(temp));
+        try {
+            QuakeWriter writer = QuakeWriter.create(ExportFormat.BINARY, Channels.newChannel(out));
+            writer.begin();
+            for (Quake quake : quakes) {
+                writer.write(quake);
+                long time = quake.getQuakeUnixTime();
+                double magnitude = quake.getQuakeMagnitude();
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time);
+                maxMagnitude = Math.max(maxMagnitude, magnitude);
+                magnitudeCounts[(int) Math.max(0, Math.min(MAGNITUDE_BUCKETS - 1,
+                        Math.floor(magnitude)))]++;
+            }
+            writer.finish();
+        }
+        finally {
+            out.close();
+        }
+        // Swap the finished file in, so readers never see a half-written segment
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not write " + file);
+        }
+        return new Segment(day, generation, quakes.size(), minTime, maxTime, maxMagnitude,
+                magnitudeCounts);
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (mLoaded) {
+            return;
+        }
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.DISK, "EventArchive.load");
+        File manifest = new File(mDirectory, MANIFEST_NAME);
+        StringBuilder text = new StringBuilder();
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(manifest), UTF_8));
+            try {
+                String line = reader.readLine();
+                while (line != null) {
+                    text.append(line);
+                    line = reader.readLine();
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (FileNotFoundException e) {
+            // A new archive
+            mLoaded = true;
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(text.toString());
+            JSONArray segments = json.getJSONArray("segments");
+            for (int i = 0; i < segments.length(); i++) {
+                Segment segment = Segment.fromJson(segments.getJSONObject(i));
+                segmentsOf(segment.getDay()).add(segment);
+            }
+            JSONArray covered = json.getJSONArray("covered");
+            for (int i = 0; i < covered.length(); i++) {
+                mCoveredDays.add(covered.getInt(i));
+            }
+        }
+        catch (JSONException e) {
+            // Left unloaded, so every call fails rather than writing over what it names
+            mSegments.clear();
+            mCoveredDays.clear();
+            throw new IOException("Unreadable archive manifest", e);
+        }
+        mLoaded = true;
+    }
+
+    private void writeManifest() throws IOException {
+        String text;
+        try {
+            JSONArray segments = new JSONArray();
+            for (List<Segment> daySegments : mSegments.values()) {
+                for (Segment segment : daySegments) {
+                    segments.put(segment.toJson());
+                }
+            }
+            JSONArray covered = new JSONArray();
+            for (int day : mCoveredDays) {
+                covered.put(day);
+            }
+            text = new JSONObject()
+                    .put("version", MANIFEST_VERSION)
+                    .put("segments", segments)
+                    .put("covered", covered)
+                    .toString();
+        }
+        catch (JSONException e) {
+            throw new IOException("Could not build the archive manifest", e);
+        }
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create " + mDirectory);
+        }
+        File manifest = new File(mDirectory, MANIFEST_NAME);
+        File temp = new File(mDirectory, MANIFEST_NAME + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+        try {
+            writer.write(text);
+        }
+        finally {
+            writer.close();
+        }
+        if (!temp.renameTo(manifest)) {
+            temp.delete();
+            throw new IOException("Could not replace " + manifest);
+        }
+    }
+}
\ No newline at end of file
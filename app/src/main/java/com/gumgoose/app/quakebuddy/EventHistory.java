@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class that keeps every earthquake the app has loaded or imported in a local event file,
+ * so that the history can be exported and shown without network access
+ *
+ * The file is written in the {@link BinaryQuakeWriter} format and is only ever streamed,
+ * never held in memory as a whole. It keeps at most {@link #MAX_EVENTS} earthquakes,
+ * dropping those merged longest ago first, and a refresh that brings no new revisions
+ * leaves it untouched
+ */
+public class EventHistory {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = EventHistory.class.getSimpleName();
+
+    private static final String FILE_NAME = "history.qbev";
+
+    /**
+     * Number of earthquakes the history keeps
+     */
+    static final int MAX_EVENTS = 100000;
+
+    /**
+     * Number of recently merged revisions remembered to skip unchanged refreshes
+     */
+    private static final int RECENT_REVISIONS = 4096;
+
+    private static EventHistory sInstance;
+
+    /**
+     * Interface for being told when earthquakes are merged into the history
+     */
+    public interface OnMergeListener {
+
+        /**
+         * Called on the thread that merged the earthquakes
+         *
+         * @param earthquakes is the earthquakes merged, or null if they were streamed from
+         *                    an import and the whole history should be read again
+         */
+        void onMerged(List<Quake> earthquakes);
+    }
+
+    private final File mFile;
+    private final int mMaxEvents;
+
+    private final List<OnMergeListener> mListeners = new CopyOnWriteArrayList<>();
+
+    // Revision times of the most recently merged earthquakes by event ID; each of them is
+    // still in the file, as the history drops the earthquakes merged longest ago first
+    private final LinkedHashMap<String, Long> mRecent =
+            new LinkedHashMap<String, Long>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > RECENT_REVISIONS;
+                }
+            };
+
+    /**
+     * Get the app-wide event history, stored in the app's files directory
+     *
+     * @param context of the caller
+     * @return        the shared {@link EventHistory}
+     */
+    public static synchronized EventHistory getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new EventHistory(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link EventHistory}
+     *
+     * @param file is the event file backing the history
+     */
+    public EventHistory(File file) {
+        this(file, MAX_EVENTS);
+    }
+
+    /**
+     * Construct a new {@link EventHistory} keeping a given number of earthquakes
+     *
+     * @param file      is the event file backing the history
+     * @param maxEvents is the number of earthquakes the history keeps
+     */
+    EventHistory(File file, int maxEvents) {
+        mFile = file;
+        mMaxEvents = maxEvents;
+    }
+
+    /**
+     * Merge earthquakes into the history; an incoming earthquake replaces any earthquake
+     * with the same event ID already in the history
+     *
+     * Only the event IDs of the incoming earthquakes are held in memory while merging
+     *
+     * @param incoming is the source of the earthquakes to merge
+     * @return         the number of earthquakes in the history afterwards
+     */
+    public int merge(QuakeReader incoming) throws IOException {
+        int count;
+        synchronized (this) {
+            // An import may push the remembered revisions out of the history
+            mRecent.clear();
+            count = mergeStream(incoming);
+        }
+        notifyMerged(null);
+        return count;
+    }
+
+    private synchronized int mergeStream(QuakeReader incoming) throws IOException {
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.DISK, "EventHistory.merge");
+        File temp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        int count;
+        try {
+            QuakeWriter writer = QuakeWriter.create(ExportFormat.BINARY, out.getChannel());
+            writer.begin();
+
+            // Write the incoming earthquakes first, remembering which events they replace
+            Set<String> replaced = new HashSet<>();
+            Quake quake = incoming.next();
+            while (quake != null && writer.getCount() < mMaxEvents) {
+                if (quake.getQuakeId() == null || replaced.add(quake.getQuakeId())) {
+                    writer.write(quake);
+                }
+                quake = incoming.next();
+            }
+
+            // Then carry over the earthquakes from the history that were not replaced, up
+            // to the limit, so the ones merged longest ago fall off the end
+            QuakeReader existing = openReader();
+            if (existing != null) {
+                try {
+                    quake = existing.next();
+                    while (quake != null && writer.getCount() < mMaxEvents) {
+                        if (quake.getQuakeId() == null
+                                || !replaced.contains(quake.getQuakeId())) {
+                            writer.write(quake);
+                        }
+                        quake = existing.next();
+                    }
+                }
+                finally {
+                    existing.close();
+                }
+            }
+            writer.finish();
+            count = writer.getCount();
+        }
+        finally {
+            out.close();
+        }
+
+        // Swap the new file in, so readers never see a half-written history
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            throw new IOException("Could not replace " + mFile);
+        }
+        return count;
+    }
+
+    /**
+     * Merge a freshly loaded list into the history, logging rather than throwing on failure
+     *
+     * Earthquakes whose revision was merged recently are skipped, and the file is only
+     * rewritten if any earthquake is left
+     *
+     * @param earthquakes is the list to merge
+     */
+    public void mergeQuietly(List<Quake> earthquakes) {
+        List<Quake> changed = new ArrayList<>();
+        try {
+            synchronized (this) {
+                for (Quake quake : earthquakes) {
+                    Long merged = quake.getQuakeId() == null
+                            ? null : mRecent.get(quake.getQuakeId());
+                    if (merged == null || merged != quake.getQuakeUpdated()) {
+                        changed.add(quake);
+                    }
+                }
+                if (changed.isEmpty()) {
+                    return;
+                }
+                mergeStream(QuakeReader.of(changed));
+                for (Quake quake : changed) {
+                    if (quake.getQuakeId() != null) {
+                        mRecent.put(quake.getQuakeId(), quake.getQuakeUpdated());
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            // Error caught, print the exception to the logs
+            Log.e(LOG_TAG, "Problem with saving earthquakes to the history", e);
+            return;
+        }
+        // Listeners only hear about the earthquakes that were new or revised
+        notifyMerged(changed);
+    }
+
+    /**
+     * @param listener is told about every merge until it is removed
+     */
+    public void addOnMergeListener(OnMergeListener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * @param listener is the listener to stop telling about merges
+     */
+    public void removeOnMergeListener(OnMergeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void notifyMerged(List<Quake> earthquakes) {
+        for (OnMergeListener listener : mListeners) {
+            listener.onMerged(earthquakes);
+        }
+    }
+
+    /**
+     * Open a reader that streams the whole history; the caller must close it
+     *
+     * A merge replaces the file rather than rewriting it, so an open reader keeps
+     * seeing the history as it was when the reader was opened
+     *
+     * @return a reader over the history, or null if the history is empty
+     */
+    public synchronized QuakeReader openReader() throws IOException {
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.DISK,
+                "EventHistory.openReader");
+        if (!mFile.exists()) {
+            return null;
+        }
+        FileInputStream in = new FileInputStream(mFile);
+        try {
+            return QuakeReader.create(ExportFormat.BINARY, in.getChannel());
+        }
+        catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the most recent earthquakes from the history
+     *
+     * @param limit is the maximum number of earthquakes to return
+     * @return      the most recent earthquakes, newest first
+     */
+    public synchronized List<Quake> readRecent(int limit) throws IOException {
+        // Keep only the newest earthquakes seen so far, oldest at the head
+        Comparator<Quake> byTime = new Comparator<Quake>() {
+            @Override
+            public int compare(Quake a, Quake b) {
+                return a.getQuakeUnixTime().compareTo(b.getQuakeUnixTime());
+            }
+        };
+        PriorityQueue<Quake> newest = new PriorityQueue<>(Math.max(1, limit), byTime);
+        QuakeReader reader = openReader();
+        if (reader != null) {
+            try {
+                Quake quake = reader.next();
+                while (quake != null) {
+                    newest.add(quake);
+                    if (newest.size() > limit) {
+                        newest.poll();
+                    }
+                    quake = reader.next();
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        List<Quake> recent = new ArrayList<>(newest);
+        Collections.sort(recent, Collections.reverseOrder(byTime));
+        return recent;
+    }
+
+    /**
+     * @return the size of the event file in bytes
+     */
+    public long sizeBytes() {
+        return mFile.length();
+    }
+}
\ No newline at end of file
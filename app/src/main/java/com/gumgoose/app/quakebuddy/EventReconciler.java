@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class that gives an earthquake the same event ID whichever source reported it, so an
+ * earthquake fetched from a mirror after a failover does not show twice
+ *
+ * The first ID seen for an earthquake becomes its ID in the app. A report from another
+ * source with an unknown ID is matched to a known earthquake by its origin time, position
+ * and magnitude, and its ID is then remembered as an alias
+ *
+ * The canonical sources, which report USGS's own IDs and revision times, own the fields of
+ * the earthquakes they report: a mirror's report of such an earthquake comes back as the
+ * canonical one. A mirror's revision times run on another clock, so an earthquake only a
+ * mirror reported carries none, and never moves the sync cursor of a USGS query
+ */
+public class EventReconciler {
+
+    /**
+     * Largest differences between two sources' reports of the same earthquake
+     */
+    static final long MATCH_WINDOW_MILLIS = 30 * 1000;
+    static final double MATCH_DISTANCE_KM = 100;
+    static final double MATCH_MAGNITUDE = 1.0;
+
+    /**
+     * Default number of earthquakes remembered, the oldest by origin time are forgotten
+     */
+    static final int DEFAULT_CAPACITY = 20000;
+
+    /**
+     * An earthquake as first reported
+     */
+    private static final class Event {
+        final String mId;
+        // Source of the first report, or null for an earthquake seeded from the cache
+        final String mSource;
+        final long mTime;
+        final double mLatitude;
+        final double mLongitude;
+        final double mMagnitude;
+        // IDs other sources report the earthquake under, and those sources
+        final List<String> mAliases = new ArrayList<>(1);
+        final List<String> mAliasSources = new ArrayList<>(1);
+        // The report shown under the app's ID, canonical once a canonical source reported it
+        Quake mQuake;
+        boolean mCanonical;
+
+        Event(String source, boolean canonical, Quake quake) {
+            mId = quake.getQuakeId();
+            mSource = source;
+            mTime = quake.getQuakeUnixTime();
+            mLatitude = quake.getLatitude();
+            mLongitude = quake.getLongitude();
+            mMagnitude = quake.getQuakeMagnitude();
+            mQuake = quake;
+            mCanonical = canonical;
+        }
+    }
+
+    private final int mCapacity;
+
+    // Known earthquakes by origin time, and by every ID they are reported under
+    private final TreeMap<Long, List<Event>> mByTime = new TreeMap<>();
+    private final Map<String, Event> mById = new HashMap<>();
+    private int mEventCount;
+    private int mMatchCount;
+
+    /**
+     * Construct a new {@link EventReconciler}
+     *
+     * @param capacity is the number of earthquakes remembered
+     */
+    public EventReconciler(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * Rewrite the IDs of a source's earthquakes to the IDs the app knows them by
+     *
+     * @param source      is the name of the source the earthquakes came from
+     * @param canonical   is true if the source reports USGS's own IDs and revision times
+     * @param earthquakes is the earthquakes as the source reported them
+     * @return            the earthquakes, those known under another ID carrying that ID and
+     *                    those a canonical source reported carrying its fields
+     */
+    public synchronized List<Quake> reconcile(String source, boolean canonical,
+                                              List<Quake> earthquakes) {
+        List<Quake> reconciled = new ArrayList<>(earthquakes.size());
+        for (Quake quake : earthquakes) {
+            String id = quake.getQuakeId();
+            if (id == null || quake.isDeleted()) {
+                // A deleted event has no origin to match, it only removes its own ID
+                reconciled.add(quake);
+                continue;
+            }
+            if (!canonical) {
+                quake = withId(quake, id, 0);
+            }
+            Event event = mById.get(id);
+            if (event == null) {
+                event = match(source, canonical, quake);
+                if (event != null) {
+                    event.mAliases.add(id);
+                    event.mAliasSources.add(source);
+                    mById.put(id, event);
+                    mMatchCount++;
+                }
+                else {
+                    event = new Event(source, canonical, quake);
+                    remember(event);
+                }
+            }
+            reconciled.add(report(event, canonical, quake));
+        }
+        return reconciled;
+    }
+
+    /**
+     * Remember earthquakes shown before the app started, i.e. read from the history, so a
+     * mirror's reports of them are matched after a failover; those with a revision time
+     * came from a canonical source
+     *
+     * @param earthquakes is the earthquakes as the app shows them
+     */
+    public synchronized void seed(List<Quake> earthquakes) {
+        for (Quake quake : earthquakes) {
+            String id = quake.getQuakeId();
+            if (id == null || quake.isDeleted() || mById.containsKey(id)) {
+                continue;
+            }
+            remember(new Event(null, quake.getQuakeUpdated() != 0, quake));
+        }
+    }
+
+    /**
+     * @return the number of reports matched to an earthquake known under another ID
+     */
+    public synchronized int getMatchCount() {
+        return mMatchCount;
+    }
+
+    /**
+     * @return the report to show of a known earthquake: a canonical report takes over the
+     *         fields of the earthquake, other reports only show while it has none
+     */
+    private static Quake report(Event event, boolean canonical, Quake quake) {
+        if (event.mCanonical && !canonical) {
+            return event.mQuake;
+        }
+        Quake shown = event.mId.equals(quake.getQuakeId()) ? quake
+                : withId(quake, event.mId, quake.getQuakeUpdated());
+        if (!event.mCanonical && canonical
+                || shown.getQuakeUpdated() >= event.mQuake.getQuakeUpdated()) {
+            event.mQuake = shown;
+            event.mCanonical |= canonical;
+        }
+        return shown;
+    }
+
+    /**
+     * @return the closest earthquake first reported by another source, or null if none is
+     *         close enough to be the same one
+     */
+    private Event match(String source, boolean canonical, Quake quake) {
+        long time = quake.getQuakeUnixTime();
+        double latitude = quake.getLatitude();
+        double longitude = quake.getLongitude();
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return null;
+        }
+        Event best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (List<Event> events : mByTime.subMap(time - MATCH_WINDOW_MILLIS, true,
+                time + MATCH_WINDOW_MILLIS, true).values()) {
+            for (Event event : events) {
+                if (source.equals(event.mSource) || event.mAliasSources.contains(source)
+                        || canonical && event.mCanonical) {
+                    // A source never reports one earthquake twice, nor do the canonical
+                    // sources, which share their IDs
+                    continue;
+                }
+                double distance = FeltIntensity.distanceKm(latitude, longitude,
+                        event.mLatitude, event.mLongitude);
+                double magnitude = Math.abs(quake.getQuakeMagnitude() - event.mMagnitude);
+                if (!(distance <= MATCH_DISTANCE_KM) || magnitude > MATCH_MAGNITUDE) {
+                    continue;
+                }
+                // Each difference as a share of its limit
+                double score = Math.abs(time - event.mTime) / (double) MATCH_WINDOW_MILLIS
+                        + distance / MATCH_DISTANCE_KM + magnitude / MATCH_MAGNITUDE;
+                if (score < bestScore) {
+                    best = event;
+                    bestScore = score;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void remember(Event event) {
+        List<Event> events = mByTime.get(event.mTime);
+        if (events == null) {
+            events = new ArrayList<>(1);
+            mByTime.put(event.mTime, events);
+        }
+        events.add(event);
+        mById.put(event.mId, event);
+        mEventCount++;
+        // Forget the oldest earthquakes, which no source reports any more
+        while (mEventCount > mCapacity) {
+            List<Event> oldest = mByTime.pollFirstEntry().getValue();
+            for (Event forgotten : oldest) {
+                mById.remove(forgotten.mId);
+                for (String alias : forgotten.mAliases) {
+                    mById.remove(alias);
+                }
+                mEventCount--;
+            }
+        }
+    }
+
+    private static Quake withId(Quake quake, String id, long updated) {
+        return new Quake(quake.getQuakeMagnitude(), quake.getQuakeLocation(),
+                quake.getQuakeUnixTime(), quake.getTsunamiWarning(), quake.getQuakeURL(), id,
+                updated, quake.getDetailURL(), quake.getLatitude(), quake.getLongitude(),
+                quake.getDepthKm());
+    }
+}
\ No newline at end of file
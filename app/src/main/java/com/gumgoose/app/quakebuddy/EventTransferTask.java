@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that exports or imports earthquakes on a background thread and reports the
+ * outcome back on the main thread
+ */
+public abstract class EventTransferTask extends AsyncTask<Void, Void, Integer> {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = EventTransferTask.class.getSimpleName();
+
+    /**
+     * Interface for receiving the outcome of a transfer on the main thread
+     */
+    public interface Listener {
+        /**
+         * @param count  is the number of earthquakes transferred, or -1 if the transfer failed
+         * @param recent is the most recent earthquakes in the history after an import,
+         *               or null after an export
+         */
+        void onTransferFinished(int count, List<Quake> recent);
+    }
+
+    // Application context, so the task does not hold on to the activity
+    protected final Context mContext;
+    protected final Uri mUri;
+    private final Listener mListener;
+
+    protected EventTransferTask(Context context, Uri uri, Listener listener) {
+        mContext = context.getApplicationContext();
+        mUri = uri;
+        mListener = listener;
+    }
+
+    /**
+     * Run the transfer on the app's disk pool, so it is measured with the other disk work
+     *
+     * @return this task
+     */
+    public EventTransferTask start() {
+        executeOnExecutor(AppScheduler.getInstance().getExecutor(AppScheduler.Pool.DISK));
+        return this;
+    }
+
+    @Override
+    protected Integer doInBackground(Void... params) {
+        try {
+            return transfer();
+        }
+        catch (IOException e) {
+            // Error caught, print the exception to the logs
+            Log.e(LOG_TAG, "Problem with transferring earthquakes", e);
+            return -1;
+        }
+    }
+
+    @Override
+    protected void onPostExecute(Integer count) {
+        mListener.onTransferFinished(count, getRecent());
+    }
+
+    /**
+     * This task runs on a background thread
+     *
+     * @return the number of earthquakes transferred
+     */
+    protected abstract int transfer() throws IOException;
+
+    /**
+     * @return the earthquakes to show once the transfer has finished, or null
+     */
+    protected List<Quake> getRecent() {
+        return null;
+    }
+
+    /**
+     * Task that streams the current list or the whole history to a document
+     */
+    public static class Export extends EventTransferTask {
+
+        private final ExportFormat mFormat;
+        private final List<Quake> mEarthquakes;
+
+        /**
+         * @param context     of the caller
+         * @param uri         is the document to write, a content:// or file:// Uri
+         * @param format      is the export format
+         * @param earthquakes is the list to export, or null to export the whole history
+         * @param listener    receives the outcome
+         */
+        public Export(Context context, Uri uri, ExportFormat format, List<Quake> earthquakes,
+                      Listener listener) {
+            super(context, uri, listener);
+            mFormat = format;
+            // Copy the list so the adapter can change while the export runs
+            mEarthquakes = earthquakes == null ? null : new ArrayList<>(earthquakes);
+        }
+
+        @Override
+        protected int transfer() throws IOException {
+            QuakeReader source = mEarthquakes != null
+                    ? QuakeReader.of(mEarthquakes)
+                    : EventHistory.getInstance(mContext).openReader();
+            if (source == null) {
+                source = QuakeReader.of(new ArrayList<Quake>());
+            }
+            OutputStream out = mContext.getContentResolver().openOutputStream(mUri);
+            if (out == null) {
+                throw new IOException("Could not open " + mUri);
+            }
+            try {
+                return QuakeWriter.export(mFormat, source, Channels.newChannel(out));
+            }
+            finally {
+                source.close();
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Task that streams a document into the history, seeding it without network access
+     */
+    public static class Import extends EventTransferTask {
+
+        private final int mDisplayLimit;
+        private List<Quake> mRecent;
+
+        /**
+         * @param context      of the caller
+         * @param uri          is the document to read
+         * @param displayLimit is the number of recent earthquakes to return for display
+         * @param listener     receives the outcome
+         */
+        public Import(Context context, Uri uri, int displayLimit, Listener listener) {
+            super(context, uri, listener);
+            mDisplayLimit = displayLimit;
+        }
+
+        @Override
+        protected int transfer() throws IOException {
+            InputStream in = mContext.getContentResolver().openInputStream(mUri);
+            if (in == null) {
+                throw new IOException("Could not open " + mUri);
+            }
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            QuakeReader reader = null;
+            try {
+                ExportFormat format = ExportFormat.fromFileName(mUri.getLastPathSegment());
+                if (format == null) {
+                    format = ExportFormat.sniff(peekFirstByte(buffered));
+                }
+                reader = QuakeReader.create(format, Channels.newChannel(buffered));
+
+                // Count the earthquakes as they stream through into the history
+                final QuakeReader source = reader;
+                final int[] count = {0};
+                EventHistory history = EventHistory.getInstance(mContext);
+                history.merge(new QuakeReader() {
+                    @Override
+                    public Quake next() throws IOException {
+                        Quake quake = source.next();
+                        if (quake != null) {
+                            count[0]++;
+                        }
+                        return quake;
+                    }
+                });
+                mRecent = history.readRecent(mDisplayLimit);
+                return count[0];
+            }
+            finally {
+                if (reader != null) {
+                    reader.close();
+                }
+                buffered.close();
+            }
+        }
+
+        @Override
+        protected List<Quake> getRecent() {
+            return mRecent;
+        }
+
+        /**
+         * @return the first non-whitespace byte, leaving the stream where it was
+         */
+        private static int peekFirstByte(BufferedInputStream in) throws IOException {
+            in.mark(64);
+            int b = in.read();
+            for (int i = 1; i < 64 && Character.isWhitespace(b); i++) {
+                b = in.read();
+            }
+            in.reset();
+            return b;
+        }
+    }
+}
\ No newline at end of file
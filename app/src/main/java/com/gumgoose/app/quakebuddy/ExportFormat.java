@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Enum of the file formats earthquakes can be exported to and imported from
+ */
+public enum ExportFormat {
+
+    // Comma separated values, one earthquake per line, for spreadsheets
+    CSV("csv", "text/csv"),
+
+    // GeoJSON FeatureCollection in the same shape as the USGS feed, for GIS tools
+    GEOJSON("geojson", "application/geo+json"),
+
+    // Compact QuakeBuddy event file, for moving events between devices
+    BINARY("qbev", "application/octet-stream");
+
+    private final String mExtension;
+    private final String mMimeType;
+
+    ExportFormat(String extension, String mimeType) {
+        mExtension = extension;
+        mMimeType = mimeType;
+    }
+
+    /** Getter method for file name extension of the format */
+    public String getExtension() {
+        return mExtension;
+    }
+
+    /** Getter method for MIME type of the format */
+    public String getMimeType() {
+        return mMimeType;
+    }
+
+    /**
+     * @param fileName is the name of a file to import
+     * @return         the format matching the file's extension, or null if not recognised
+     */
+    public static ExportFormat fromFileName(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        String lowerCase = fileName.toLowerCase();
+        for (ExportFormat format : values()) {
+            if (lowerCase.endsWith("." + format.mExtension)) {
+                return format;
+            }
+        }
+        // USGS downloads are commonly saved with a plain .json extension
+        return lowerCase.endsWith(".json") ? GEOJSON : null;
+    }
+
+    /**
+     * Recognise a file by its first non-blank byte, for documents without a usable name
+     *
+     * @param firstByte is the first non-whitespace byte of the file
+     * @return          the format the file is most likely written in
+     */
+    public static ExportFormat sniff(int firstByte) {
+        if (firstByte == BinaryQuakeWriter.MAGIC[0]) {
+            return BINARY;
+        }
+        return firstByte == '{' ? GEOJSON : CSV;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class of a source speaking the FDSN event web service, either USGS itself or a mirror
+ * such as the EMSC, which differs in its response format and radius parameter
+ */
+public class FdsnDataSource extends DataSource {
+
+    /**
+     * Names of the built-in FDSN sources
+     */
+    public static final String USGS = "usgs";
+    public static final String EMSC = "emsc";
+
+    /**
+     * Query endpoint of the European-Mediterranean Seismological Centre
+     */
+    static final String EMSC_QUERY_URL = "https://www.seismicportal.eu/fdsnws/event/1/query";
+
+    /**
+     * Length of a degree of arc on the Earth's surface
+     */
+    private static final double KM_PER_DEGREE = 111.19;
+
+    private final String mBaseUrl;
+    private final boolean mEmscFormat;
+
+    /**
+     * @param baseUrl is the query endpoint of a USGS compatible server
+     * @return        the source
+     */
+    public static FdsnDataSource usgs(String baseUrl) {
+        return new FdsnDataSource(USGS, baseUrl, false);
+    }
+
+    /**
+     * @param baseUrl is the query endpoint of an EMSC compatible server
+     * @return        the source
+     */
+    public static FdsnDataSource emsc(String baseUrl) {
+        return new FdsnDataSource(EMSC, baseUrl, true);
+    }
+
+    /**
+     * Construct a new {@link FdsnDataSource}
+     *
+     * @param name       identifies the source
+     * @param baseUrl    is the query endpoint of the source
+     * @param emscFormat is true if the source answers in the EMSC's JSON rather than
+     *                   USGS GeoJSON
+     */
+    public FdsnDataSource(String name, String baseUrl, boolean emscFormat) {
+        super(name);
+        mBaseUrl = baseUrl;
+        mEmscFormat = emscFormat;
+    }
+
+    @Override
+    public String queryUrl(String canonicalUrl, long nowMillis) {
+        String url = rebase(canonicalUrl, mBaseUrl);
+        if (!mEmscFormat) {
+            return url;
+        }
+        // The EMSC names its GeoJSON "json", and takes the radius in degrees only
+        url = url.replaceAll("([?&])format=geojson", "$1format=json");
+        double radiusKm = numberOf(url, "maxradiuskm");
+        if (!Double.isNaN(radiusKm)) {
+            url = url.replaceAll("([?&])maxradiuskm=[^&]*", "$1maxradius="
+                    + String.format(Locale.US, "%.4f", radiusKm / KM_PER_DEGREE));
+        }
+        return url;
+    }
+
+    @Override
+    public boolean isCanonical() {
+        return USGS.equals(getName());
+    }
+
+    @Override
+    public String getProbeUrl() {
+        return mBaseUrl + "?format=" + (mEmscFormat ? "json" : "geojson") + "&limit=1";
+    }
+
+    @Override
+    public FetchOutcome.Parser<List<Quake>> getParser() {
+        return mEmscFormat ? EmscQuakeParser.INSTANCE : super.getParser();
+    }
+}
\ No newline at end of file
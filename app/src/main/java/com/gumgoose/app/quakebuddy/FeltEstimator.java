@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Class that estimates how strongly each earthquake is felt at the user's points of
+ * interest, so a list row only looks up a finished label while it binds
+ *
+ * Estimates are computed in batches as results arrive, once per revision of an earthquake,
+ * and large batches are split across the executor with {@link ParallelChunks}
+ */
+public final class FeltEstimator {
+
+    /**
+     * Batches shorter than this are estimated on the calling thread alone
+     */
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    /**
+     * Widest region whose centre is taken as a point of interest; wider ones are oceans or
+     * continents rather than places the user lives
+     */
+    static final double MAX_POINT_RADIUS_KM = 1000;
+
+    /**
+     * Size limit of the estimates kept in memory
+     */
+    private static final long MAX_BYTES = 512 * 1024;
+
+    /**
+     * Estimated size of a cache entry on top of its Strings' characters
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    /**
+     * Cached in place of an estimate for earthquakes felt nowhere, so they are not computed
+     * again on the next refresh
+     */
+    private static final Estimate NOT_FELT = new Estimate(null, Double.NaN, 0, null);
+
+    private static final FeltEstimator sInstance = new FeltEstimator(MAX_BYTES);
+
+    /**
+     * A place the user wants felt estimates for
+     */
+    public static final class PointOfInterest {
+        private final String mName;
+        private final double mLatitude;
+        private final double mLongitude;
+
+        /**
+         * @param name      is the name shown in the estimate
+         * @param latitude  is the latitude of the place in degrees
+         * @param longitude is the longitude of the place in degrees
+         */
+        public PointOfInterest(String name, double latitude, double longitude) {
+            mName = name;
+            mLatitude = latitude;
+            mLongitude = longitude;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PointOfInterest)) {
+                return false;
+            }
+            PointOfInterest point = (PointOfInterest) other;
+            return mName.equals(point.mName) && mLatitude == point.mLatitude
+                    && mLongitude == point.mLongitude;
+        }
+
+        @Override
+        public int hashCode() {
+            return mName.hashCode() * 31 + Double.valueOf(mLatitude).hashCode() * 17
+                    + Double.valueOf(mLongitude).hashCode();
+        }
+    }
+
+    /**
+     * The strongest shaking an earthquake is expected to cause at any point of interest
+     */
+    public static final class Estimate {
+        private final String mPlace;
+        private final double mDistanceKm;
+        private final double mIntensity;
+        private final String mLabel;
+
+        Estimate(String place, double distanceKm, double intensity, String label) {
+            mPlace = place;
+            mDistanceKm = distanceKm;
+            mIntensity = intensity;
+            mLabel = label;
+        }
+
+        /** Getter method for name of the point of interest shaken most */
+        public String getPlace() {
+            return mPlace;
+        }
+
+        /** Getter method for epicentral distance to the point of interest in kilometres */
+        public double getDistanceKm() {
+            return mDistanceKm;
+        }
+
+        /** Getter method for Modified Mercalli Intensity expected at the point of interest */
+        public double getIntensity() {
+            return mIntensity;
+        }
+
+        /** Getter method for text shown in the list row, i.e. "~MMI IV at Home" */
+        public String getLabel() {
+            return mLabel;
+        }
+    }
+
+    /**
+     * The points of interest together with the label format, replaced as a whole so a batch
+     * never mixes two configurations
+     */
+    private static final class Config {
+        final List<PointOfInterest> mPoints;
+        final String mLabelFormat;
+
+        Config(List<PointOfInterest> points, String labelFormat) {
+            mPoints = points;
+            mLabelFormat = labelFormat;
+        }
+    }
+
+    private final MemoryCache<String, Estimate> mEstimates;
+    private volatile Config mConfig =
+            new Config(Collections.<PointOfInterest>emptyList(), "%1$s %2$s");
+
+    /**
+     * @return the app-wide {@link FeltEstimator}
+     */
+    public static FeltEstimator getInstance() {
+        return sInstance;
+    }
+
+    FeltEstimator(long maxBytes) {
+        // Use getInstance() outside of tests
+        mEstimates = new MemoryCache<>(maxBytes, new MemoryCache.Weigher<String, Estimate>() {
+            @Override
+            public int weigh(String key, Estimate value) {
+                int label = value.mLabel == null ? 0 : value.mLabel.length();
+                return ENTRY_OVERHEAD_BYTES + 2 * (key.length() + label);
+            }
+        });
+    }
+
+    /**
+     * @param profiles is the user's query profiles
+     * @return         the centres of the profiles with a local region, named after the
+     *                 profile
+     */
+    public static List<PointOfInterest> pointsOf(List<QueryProfile> profiles) {
+        List<PointOfInterest> points = new ArrayList<>();
+        for (QueryProfile profile : profiles) {
+            if (profile.hasRegion() && profile.getRadiusKm() <= MAX_POINT_RADIUS_KM) {
+                points.add(new PointOfInterest(profile.getName(), profile.getLatitude(),
+                        profile.getLongitude()));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Replace the points of interest, dropping every estimate made for the old ones
+     *
+     * @param points      is the places to estimate the shaking at
+     * @param labelFormat is the format of the label, given the Roman numeral intensity
+     *                    and the name of the place
+     */
+    public synchronized void setPointsOfInterest(List<PointOfInterest> points,
+                                                 String labelFormat) {
+        Config config = mConfig;
+        if (config.mPoints.equals(points) && config.mLabelFormat.equals(labelFormat)) {
+            return;
+        }
+        mConfig = new Config(Collections.unmodifiableList(new ArrayList<>(points)), labelFormat);
+        mEstimates.clear();
+    }
+
+    /**
+     * Estimate every earthquake whose current revision has not been estimated yet
+     *
+     * @param earthquakes is the earthquakes to estimate
+     * @param executor    runs the chunks of large batches, or null to stay on this thread
+     * @return            the number of earthquakes estimated
+     */
+    public int enrich(List<Quake> earthquakes, Executor executor) {
+        final Config config = mConfig;
+        if (config.mPoints.isEmpty() || earthquakes == null) {
+            return 0;
+        }
+        // Only new events and new revisions need any work
+        final List<Quake> pending = new ArrayList<>();
+        for (Quake quake : earthquakes) {
+            if (mEstimates.get(keyOf(quake)) == null) {
+                pending.add(quake);
+            }
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        final Estimate[] estimates = new Estimate[pending.size()];
+        int chunks = pending.size() < PARALLEL_THRESHOLD ? 1
+                : ParallelChunks.chunksFor(pending.size(), PARALLEL_THRESHOLD / 4);
+        ParallelChunks.run(pending.size(), chunks, executor, new ParallelChunks.Body() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    estimates[i] = estimate(pending.get(i), config);
+                }
+            }
+        });
+        synchronized (this) {
+            // Estimates made for points of interest since replaced are thrown away
+            if (mConfig == config) {
+                for (int i = 0; i < estimates.length; i++) {
+                    mEstimates.put(keyOf(pending.get(i)), estimates[i]);
+                }
+            }
+        }
+        return estimates.length;
+    }
+
+    /**
+     * @param quake is an earthquake
+     * @return      the estimate of its current revision, or null if it is felt at no point
+     *              of interest or has not been estimated
+     */
+    public Estimate get(Quake quake) {
+        Estimate estimate = mEstimates.get(keyOf(quake));
+        return estimate == NOT_FELT ? null : estimate;
+    }
+
+    /**
+     * @return the in-memory cache of estimates, for registering with the {@link CacheManager}
+     *         and the {@link Metrics}
+     */
+    public MemoryCache<String, Estimate> getCache() {
+        return mEstimates;
+    }
+
+    private static String keyOf(Quake quake) {
+        return quake.getQuakeId() + "@" + quake.getQuakeUpdated();
+    }
+
+    private static Estimate estimate(Quake quake, Config config) {
+        double latitude = quake.getLatitude();
+        double longitude = quake.getLongitude();
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return NOT_FELT;
+        }
+        PointOfInterest strongest = null;
+        double strongestDistance = Double.NaN;
+        double strongestIntensity = 0;
+        for (PointOfInterest point : config.mPoints) {
+            double distance = FeltIntensity.distanceKm(latitude, longitude, point.mLatitude,
+                    point.mLongitude);
+            double intensity = FeltIntensity.intensity(quake.getQuakeMagnitude(),
+                    FeltIntensity.hypocentralKm(distance, quake.getDepthKm()));
+            if (intensity > strongestIntensity) {
+                strongest = point;
+                strongestDistance = distance;
+                strongestIntensity = intensity;
+            }
+        }
+        if (strongest == null
+                || Math.round(strongestIntensity) < FeltIntensity.MIN_FELT_INTENSITY) {
+            return NOT_FELT;
+        }
+        String label = String.format(config.mLabelFormat,
+                FeltIntensity.romanNumeral(strongestIntensity), strongest.mName);
+        return new Estimate(strongest.mName, strongestDistance, strongestIntensity, label);
+    }
+}
\ No newline at end of file
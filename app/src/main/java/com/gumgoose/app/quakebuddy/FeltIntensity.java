@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Class of the distance and shaking intensity arithmetic behind the felt estimates
+ *
+ * Intensities follow the Atkinson and Wald (2007) relation for California, which predicts
+ * the Modified Mercalli Intensity from the magnitude and the distance to the hypocenter
+ */
+public final class FeltIntensity {
+
+    /**
+     * Mean radius of the Earth in kilometres
+     */
+    static final double EARTH_RADIUS_KM = 6371.0;
+
+    /**
+     * Weakest intensity worth showing, below it hardly anyone feels the earthquake
+     */
+    public static final int MIN_FELT_INTENSITY = 2;
+
+    // Coefficients of the Atkinson and Wald (2007) relation
+    private static final double C1 = 12.27;
+    private static final double C2 = 2.270;
+    private static final double C3 = 0.1304;
+    private static final double C4 = -1.30;
+    private static final double C5 = -0.0007070;
+    private static final double C6 = 1.95;
+    private static final double C7 = -0.577;
+    private static final double H_KM = 14.0;
+    private static final double TRANSITION_KM = 30.0;
+
+    private static final String[] ROMAN_NUMERALS = {
+            "I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX", "X", "XI", "XII"
+    };
+
+    private FeltIntensity() {
+    }
+
+    /**
+     * @param latitude1  is the latitude of the first point in degrees
+     * @param longitude1 is the longitude of the first point in degrees
+     * @param latitude2  is the latitude of the second point in degrees
+     * @param longitude2 is the longitude of the second point in degrees
+     * @return           the great circle distance between the points in kilometres
+     */
+    public static double distanceKm(double latitude1, double longitude1,
+                                    double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfPhi = Math.sin((phi2 - phi1) / 2);
+        double sinHalfLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinHalfPhi * sinHalfPhi
+                + Math.cos(phi1) * Math.cos(phi2) * sinHalfLambda * sinHalfLambda;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @param magnitude     is the moment magnitude of the earthquake
+     * @param hypocentralKm is the distance to the hypocenter in kilometres
+     * @return              the expected Modified Mercalli Intensity, between 1 and 12
+     */
+    public static double intensity(double magnitude, double hypocentralKm) {
+        double r = Math.sqrt(hypocentralKm * hypocentralKm + H_KM * H_KM);
+        double logR = Math.log10(r);
+        double b = Math.max(0, Math.log10(r / TRANSITION_KM));
+        double m = magnitude - 6;
+        double mmi = C1 + C2 * m + C3 * m * m + C4 * logR + C5 * r + C6 * b
+                + C7 * magnitude * logR;
+        return Math.max(1, Math.min(12, mmi));
+    }
+
+    /**
+     * @param epicentralKm is the distance to the epicenter in kilometres
+     * @param depthKm      is the depth of the earthquake in kilometres, or NaN if unknown
+     * @return             the distance to the hypocenter in kilometres
+     */
+    public static double hypocentralKm(double epicentralKm, double depthKm) {
+        if (Double.isNaN(depthKm) || depthKm <= 0) {
+            return epicentralKm;
+        }
+        return Math.sqrt(epicentralKm * epicentralKm + depthKm * depthKm);
+    }
+
+    /**
+     * @param mmi is an intensity between 1 and 12
+     * @return    the intensity rounded to the Roman numeral it is reported in
+     */
+    public static String romanNumeral(double mmi) {
+        int level = (int) Math.round(mmi);
+        return ROMAN_NUMERALS[Math.max(1, Math.min(12, level)) - 1];
+    }
+}
\ No newline at end of file
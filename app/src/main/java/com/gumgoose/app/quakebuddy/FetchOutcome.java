@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Class for the typed outcome of an HTTP fetch, so callers can tell a timeout from a
+ * rate limit from a malformed body rather than seeing an empty result
+ *
+ * @param <T> is the type of the parsed response body
+ */
+public final class FetchOutcome<T> {
+
+    /**
+     * Kinds of outcome, each either final or worth retrying
+     */
+    public enum Kind {
+        /** The body was fetched and parsed */
+        SUCCESS(false),
+        /** The server answered 304 Not Modified without a body */
+        NOT_MODIFIED(false),
+        /** The connection or the response timed out */
+        TIMEOUT(true),
+        /** The connection failed or closed before the whole body arrived */
+        NETWORK_ERROR(true),
+        /** The server answered 429 Too Many Requests */
+        RATE_LIMITED(true),
+        /** The server answered with a 5xx status */
+        SERVER_ERROR(true),
+        /** The server rejected the request with a 4xx status, or the URL was invalid */
+        CLIENT_ERROR(false),
+        /** The body arrived but could not be parsed */
+        MALFORMED_BODY(true),
+        /** The request was not sent, as the server has been failing */
+        CIRCUIT_OPEN(false),
+        /** The request was not sent, as the day's mobile data budget is spent */
+        BUDGET_SPENT(false);
+
+        private final boolean mRetryable;
+
+        Kind(boolean retryable) {
+            mRetryable = retryable;
+        }
+
+        /**
+         * @return true if the same request may succeed when sent again
+         */
+        public boolean isRetryable() {
+            return mRetryable;
+        }
+    }
+
+    /**
+     * Interface for parsing a response body
+     *
+     * @param <T> is the type of the parsed body
+     */
+    public interface Parser<T> {
+
+        /**
+         * @param body is the response body
+         * @return     the parsed body, or null if the body is malformed
+         */
+        T parse(String body);
+    }
+
+    /**
+     * Parser that keeps the body as it is
+     */
+    public static final Parser<String> RAW = new Parser<String>() {
+        @Override
+        public String parse(String body) {
+            return body;
+        }
+    };
+
+    /**
+     * HTTP code used when no response was received
+     */
+    public static final int NO_RESPONSE = -1;
+
+    private final Kind mKind;
+    private final T mValue;
+    private final int mHttpCode;
+    private final long mRetryAfterMillis;
+    private final int mAttempts;
+
+    private FetchOutcome(Kind kind, T value, int httpCode, long retryAfterMillis, int attempts) {
+        mKind = kind;
+        mValue = value;
+        mHttpCode = httpCode;
+        mRetryAfterMillis = retryAfterMillis;
+        mAttempts = attempts;
+    }
+
+    /**
+     * @param value    is the parsed body
+     * @param httpCode is the HTTP status code of the response
+     * @return         a successful outcome
+     */
+    public static <T> FetchOutcome<T> success(T value, int httpCode) {
+        return new FetchOutcome<>(Kind.SUCCESS, value, httpCode, -1, 1);
+    }
+
+    /**
+     * @param kind             is the kind of failure
+     * @param httpCode         is the HTTP status code, or {@link #NO_RESPONSE}
+     * @param retryAfterMillis is the wait asked for by a Retry-After header, or -1
+     * @return                 a failed outcome
+     */
+    public static <T> FetchOutcome<T> failure(Kind kind, int httpCode, long retryAfterMillis) {
+        return new FetchOutcome<>(kind, null, httpCode, retryAfterMillis, 1);
+    }
+
+    /**
+     * @param attempts is the number of requests sent for the outcome
+     * @return         a copy of the outcome counting the given number of attempts
+     */
+    public FetchOutcome<T> withAttempts(int attempts) {
+        return new FetchOutcome<>(mKind, mValue, mHttpCode, mRetryAfterMillis, attempts);
+    }
+
+    public Kind getKind() {
+        return mKind;
+    }
+
+    public boolean isSuccess() {
+        return mKind == Kind.SUCCESS;
+    }
+
+    /**
+     * @return the parsed body, or null unless the fetch succeeded
+     */
+    public T getValue() {
+        return mValue;
+    }
+
+    public int getHttpCode() {
+        return mHttpCode;
+    }
+
+    /**
+     * @return the wait asked for by the server's Retry-After header, or -1 if it sent none
+     */
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    public int getAttempts() {
+        return mAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return mKind + (mHttpCode == NO_RESPONSE ? "" : " (HTTP " + mHttpCode + ")")
+                + " after " + mAttempts + (mAttempts == 1 ? " attempt" : " attempts");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class that splits an earthquake query into pages, so that the first screen of earthquakes
+ * arrives within a latency budget and the rest of the query streams in after it
+ *
+ * Pages are requested with the FDSN "limit" and "offset" parameters, which keeps the order
+ * chosen by the user: the newest or the strongest earthquakes always arrive first. A query
+ * is only split when the rest of it takes longer to download than another round trip, and
+ * an earthquake pushed into a later page by a new one is kept only once
+ */
+public class FetchPlanner {
+
+    /**
+     * Default time within which the first page should arrive
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 1500;
+
+    /**
+     * Smallest page worth a request, roughly one screen of rows
+     */
+    static final int MIN_PAGE_SIZE = 10;
+
+    // Pages after the first are given this many times the budget, as the list is showing
+    private static final int BACKFILL_BUDGET_FACTOR = 4;
+
+    private static final Pattern LIMIT_PARAMETER = Pattern.compile("[?&]limit=(\\d+)");
+
+    /**
+     * Interface for receiving the earthquakes of a query while its later pages load
+     */
+    public interface PageListener {
+
+        /**
+         * @param earthquakes is a copy of the earthquakes fetched so far
+         * @return            true to fetch the next page, false to stop the query early
+         */
+        boolean onPageFetched(List<Quake> earthquakes);
+    }
+
+    private final ThroughputEstimator mEstimator;
+    private final long mBudgetMillis;
+    private final ResilientFetcher mFetcher;
+
+    // Outcome of the last page requested, so a failed query can say why it failed
+    private FetchOutcome<List<Quake>> mLastOutcome;
+
+    /**
+     * Construct a new {@link FetchPlanner}
+     *
+     * @param estimator    is the source of the measured latency and bandwidth
+     * @param budgetMillis is the time within which the first page should arrive
+     */
+    public FetchPlanner(ThroughputEstimator estimator, long budgetMillis) {
+        this(estimator, budgetMillis, null);
+    }
+
+    /**
+     * Construct a new {@link FetchPlanner} that retries failed pages
+     *
+     * @param estimator    is the source of the measured latency and bandwidth
+     * @param budgetMillis is the time within which the first page should arrive
+     * @param fetcher      is the fetcher retrying failed pages, or null to send each once
+     */
+    public FetchPlanner(ThroughputEstimator estimator, long budgetMillis,
+                        ResilientFetcher fetcher) {
+        mEstimator = estimator;
+        mBudgetMillis = budgetMillis;
+        mFetcher = fetcher;
+    }
+
+    /**
+     * @return the outcome of the last page requested, or null if none was requested
+     */
+    public FetchOutcome<List<Quake>> getLastOutcome() {
+        return mLastOutcome;
+    }
+
+    /**
+     * Size the next page of a query from the current throughput estimates
+     *
+     * @param fetched    is the number of earthquakes already fetched by earlier pages
+     * @param totalLimit is the number of earthquakes the whole query asks for
+     * @return           the limit of the next page, or 0 when the query is complete
+     */
+    public int nextPageSize(int fetched, int totalLimit) {
+        int remaining = totalLimit - fetched;
+        if (remaining <= 0) {
+            return 0;
+        }
+        long budget = fetched == 0 ? mBudgetMillis : mBudgetMillis * BACKFILL_BUDGET_FACTOR;
+        int size = Math.max(MIN_PAGE_SIZE, mEstimator.eventsWithin(budget));
+        // Never leave a remainder too small to be worth its own request
+        if (remaining - size < MIN_PAGE_SIZE) {
+            return remaining;
+        }
+        // Nor one that downloads faster than the round trip another request costs, as on a
+        // distant or mobile link, where splitting only delays the whole list
+        long restMillis = mEstimator.estimateMillis(remaining - size)
+                - mEstimator.estimateMillis(0);
+        if (restMillis <= mEstimator.getLatencyMillis()) {
+            return remaining;
+        }
+        return size;
+    }
+
+    /**
+     * Fetch a query in pages sized to the measured throughput
+     *
+     * @param url        is the query URL
+     * @param totalLimit is the number of earthquakes the whole query asks for
+     * @param listener   is told about every page but the last, or null
+     * @return           the earthquakes of every page fetched, each once, or null if the
+     *                   first page failed
+     */
+    public List<Quake> fetchPages(String url, int totalLimit, PageListener listener) {
+        List<Quake> earthquakes = null;
+        // Event IDs already fetched, and the position of the next page in the server's order
+        Set<String> fetchedIds = new HashSet<>();
+        int offset = 0;
+        int pageSize = nextPageSize(0, totalLimit);
+        while (pageSize > 0) {
+            String pageQuery = pageUrl(url, offset, pageSize);
+            mLastOutcome = mFetcher != null ? mFetcher.fetchEarthquakes(pageQuery)
+                    : QueryUtils.fetchEarthquakes(pageQuery);
+            List<Quake> page = mLastOutcome.getValue();
+            if (page == null) {
+                // Request failed, keep whatever the earlier pages returned
+                break;
+            }
+            if (earthquakes == null) {
+                earthquakes = new ArrayList<>(totalLimit);
+            }
+            // An earthquake reported since the last page shifts the order by one, repeating
+            // the last earthquake of that page at the start of this one
+            for (Quake quake : page) {
+                if (quake.getQuakeId() == null || fetchedIds.add(quake.getQuakeId())) {
+                    earthquakes.add(quake);
+                }
+            }
+            offset += page.size();
+            if (page.size() < pageSize) {
+                // The server has no more earthquakes matching the query
+                break;
+            }
+
+            // Size the next page from the timings of the one just fetched
+            pageSize = nextPageSize(earthquakes.size(), totalLimit);
+            if (pageSize > 0 && listener != null
+                    && !listener.onPageFetched(new ArrayList<>(earthquakes))) {
+                break;
+            }
+        }
+        return earthquakes;
+    }
+
+    /**
+     * Rewrite a query URL to request a single page
+     *
+     * @param url    is the query URL, with or without limit and offset parameters
+     * @param offset is the number of earthquakes to skip
+     * @param limit  is the number of earthquakes to request
+     * @return       the URL of the page
+     */
+    public static String pageUrl(String url, int offset, int limit) {
+        String page = url.replaceAll("([?&])(limit|offset)=[^&]*", "$1").replaceAll("&{2,}", "&");
+        if (!page.endsWith("?") && !page.endsWith("&")) {
+            page += page.indexOf('?') < 0 ? "?" : "&";
+        }
+        // FDSN offsets count from 1
+        return page + "limit=" + limit + "&offset=" + (offset + 1);
+    }
+
+    /**
+     * @param url      is the query URL
+     * @param fallback is the value returned when the URL has no valid limit parameter
+     * @return         the limit parameter of the URL
+     */
+    public static int limitOf(String url, int fallback) {
+        Matcher matcher = LIMIT_PARAMETER.matcher(url);
+        if (!matcher.find()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(matcher.group(1));
+        }
+        catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
\ No newline at end of file
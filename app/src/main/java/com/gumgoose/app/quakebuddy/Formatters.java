@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Class that keeps the formatters used when binding list items, so that they are not
+ * built again for every row
+ *
+ * The formatters are not thread-safe and must only be used from the main thread. They are
+ * built for the system locale and time zone, and are built again when either changes
+ */
+public final class Formatters implements TrimmableCache {
+
+    /**
+     * Rough size of a formatter and its symbol tables
+     */
+    private static final int FORMATTER_BYTES = 2 * 1024;
+
+    private static final Formatters sInstance = new Formatters();
+
+    private DecimalFormat mMagnitudeFormat;
+    private SimpleDateFormat mDateFormat;
+    private SimpleDateFormat mTime24Format;
+    private SimpleDateFormat mTime12Format;
+
+    // The system defaults the formatters above were built for
+    private Locale mLocale;
+    private TimeZone mTimeZone;
+
+    /**
+     * @return the app-wide {@link Formatters}
+     */
+    public static Formatters getInstance() {
+        return sInstance;
+    }
+
+    private Formatters() {
+        // Use getInstance()
+    }
+
+    /**
+     * @return the formatter showing a magnitude with 1 decimal place
+     */
+    public synchronized DecimalFormat magnitude() {
+        checkDefaults();
+        if (mMagnitudeFormat == null) {
+            mMagnitudeFormat = new DecimalFormat("0.0", new DecimalFormatSymbols(mLocale));
+        }
+        return mMagnitudeFormat;
+    }
+
+    /**
+     * @return the formatter showing a date such as "Feb 11, 2017" in the system time zone
+     */
+    public synchronized SimpleDateFormat date() {
+        checkDefaults();
+        if (mDateFormat == null) {
+            mDateFormat = new SimpleDateFormat("MMM d, yyyy", mLocale);
+            mDateFormat.setTimeZone(mTimeZone);
+        }
+        return mDateFormat;
+    }
+
+    /**
+     * @param is24Hour is whether the system is using the 24-hour time format
+     * @return         the formatter showing a time in the system time zone
+     */
+    public synchronized SimpleDateFormat time(boolean is24Hour) {
+        checkDefaults();
+        if (is24Hour) {
+            if (mTime24Format == null) {
+                mTime24Format = new SimpleDateFormat("HH:mm", mLocale);
+                mTime24Format.setTimeZone(mTimeZone);
+            }
+            return mTime24Format;
+        }
+        if (mTime12Format == null) {
+            mTime12Format = new SimpleDateFormat("hh:mm a", mLocale);
+            mTime12Format.setTimeZone(mTimeZone);
+        }
+        return mTime12Format;
+    }
+
+    /**
+     * Drops the formatters if the system locale or time zone changed since they were built,
+     * so month names, AM/PM markers and decimal separators follow the user's settings
+     */
+    private void checkDefaults() {
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        // getDefault() hands out a copy of the time zone, so compare the IDs
+        if (!locale.equals(mLocale) || mTimeZone == null
+                || !timeZone.getID().equals(mTimeZone.getID())) {
+            clear();
+            mLocale = locale;
+            mTimeZone = timeZone;
+        }
+    }
+
+    private void clear() {
+        mMagnitudeFormat = null;
+        mDateFormat = null;
+        mTime24Format = null;
+        mTime12Format = null;
+    }
+
+    @Override
+    public synchronized long getSizeBytes() {
+        Object[] formatters = {mMagnitudeFormat, mDateFormat, mTime24Format, mTime12Format};
+        int count = 0;
+        for (Object formatter : formatters) {
+            if (formatter != null) {
+                count++;
+            }
+        }
+        return count * FORMATTER_BYTES;
+    }
+
+    @Override
+    public synchronized void trimToFraction(float fraction) {
+        if (fraction < 1f) {
+            clear();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * Class that times every frame while a list scrolls, through {@link Choreographer} frame
+ * callbacks, and logs a {@link FrameTrace} blaming any slow frame on the row binds in it
+ *
+ * Frame callbacks need Jelly Bean; on older platforms only the binds are recorded
+ */
+public final class FrameMonitor {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = FrameMonitor.class.getSimpleName();
+
+    private static final FrameMonitor sInstance = new FrameMonitor();
+
+    private final FrameTrace mTrace = new FrameTrace(FrameTrace.DEFAULT_CAPACITY);
+    private FrameListener mListener;
+
+    /**
+     * @return the app-wide {@link FrameMonitor}
+     */
+    public static FrameMonitor getInstance() {
+        return sInstance;
+    }
+
+    private FrameMonitor() {
+    }
+
+    /**
+     * @return the trace the list binds are recorded into
+     */
+    public FrameTrace getTrace() {
+        return mTrace;
+    }
+
+    /**
+     * Start timing frames as a scroll starts, from the main thread
+     */
+    public void onScrollStarted() {
+        if (mTrace.isRecording()) {
+            return;
+        }
+        mTrace.start();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mListener == null) {
+                mListener = new FrameListener(mTrace);
+            }
+            mListener.post();
+        }
+    }
+
+    /**
+     * Stop timing frames once the list settles, and log the trace if any frame was slow
+     */
+    public void onScrollStopped() {
+        if (!mTrace.isRecording()) {
+            return;
+        }
+        if (mListener != null) {
+            mListener.cancel();
+        }
+        mTrace.stop();
+        if (mTrace.getSlowFrameCount() > 0) {
+            Log.i(LOG_TAG, mTrace.export());
+        }
+    }
+
+    /**
+     * Kept apart from {@link FrameMonitor} so older platforms never load the callback
+     * interface
+     */
+    private static final class FrameListener implements Choreographer.FrameCallback {
+        private final FrameTrace mTrace;
+
+        FrameListener(FrameTrace trace) {
+            mTrace = trace;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void cancel() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // The time the callback runs, not the vsync time, bounds the work of a late frame
+            mTrace.onFrame();
+            if (mTrace.isRecording()) {
+                post();
+            }
+        }
+    }
+}
\ No newline at end of file
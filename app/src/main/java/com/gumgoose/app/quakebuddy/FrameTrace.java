@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Class that records frame intervals and the list row binds that ran in each frame into
+ * fixed ring buffers, so slow frames can be blamed on the binding work inside them
+ *
+ * Recording allocates nothing and reads the clock only while recording, and every method
+ * must be called from the main thread
+ */
+public final class FrameTrace {
+
+    /**
+     * The timed sub-steps of binding a list row, in the order they run
+     */
+    public enum Step {
+        // Inflating a row layout when there is no view to reuse
+        INFLATE,
+        // Splitting the place and setting the row's texts
+        TEXT,
+        // Recolouring the magnitude circle
+        RECOLOUR
+    }
+
+    /**
+     * Number of frames and binds the buffers hold before overwriting the oldest
+     */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Interval of a frame at 60 frames per second
+     */
+    public static final long FRAME_NANOS = 16666667L;
+
+    /**
+     * Frames taking longer than this missed at least one vsync
+     */
+    public static final long SLOW_FRAME_NANOS = FRAME_NANOS * 3 / 2;
+
+    private static final int STEPS = Step.values().length;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final int mCapacity;
+
+    // Start of each frame, a frame ending where the next one starts
+    private final long[] mFrameStarts;
+    private int mFrameCount;
+
+    // Start, end, list position and sub-step durations of each bind
+    private final long[] mBindStarts;
+    private final long[] mBindEnds;
+    private final int[] mBindPositions;
+    private final long[] mBindSteps;
+    private int mBindCount;
+
+    private boolean mRecording;
+    private boolean mInBind;
+    private long mLastMark;
+
+    FrameTrace(int capacity) {
+        mCapacity = capacity;
+        mFrameStarts = new long[capacity];
+        mBindStarts = new long[capacity];
+        mBindEnds = new long[capacity];
+        mBindPositions = new int[capacity];
+        mBindSteps = new long[capacity * STEPS];
+    }
+
+    /**
+     * Start recording, forgetting the frames and binds of the last recording
+     */
+    public void start() {
+        mFrameCount = 0;
+        mBindCount = 0;
+        mInBind = false;
+        mRecording = true;
+    }
+
+    /**
+     * Stop recording, keeping what was recorded for {@link #export()}
+     */
+    public void stop() {
+        mRecording = false;
+        mInBind = false;
+    }
+
+    /**
+     * @return true while frames and binds are being recorded
+     */
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    /**
+     * Record the start of a frame, which ends the frame before it
+     */
+    public void onFrame() {
+        if (mRecording) {
+            onFrame(System.nanoTime());
+        }
+    }
+
+    void onFrame(long nanos) {
+        if (mRecording) {
+            mFrameStarts[mFrameCount++ % mCapacity] = nanos;
+        }
+    }
+
+    /**
+     * Record the start of binding a list row
+     *
+     * @param position is the position of the row in the list
+     */
+    public void beginBind(int position) {
+        if (mRecording) {
+            beginBind(position, System.nanoTime());
+        }
+    }
+
+    void beginBind(int position, long nanos) {
+        if (!mRecording) {
+            return;
+        }
+        int slot = mBindCount % mCapacity;
+        mBindStarts[slot] = nanos;
+        mBindEnds[slot] = nanos;
+        mBindPositions[slot] = position;
+        Arrays.fill(mBindSteps, slot * STEPS, slot * STEPS + STEPS, 0);
+        mLastMark = nanos;
+        mInBind = true;
+    }
+
+    /**
+     * Record the end of a sub-step of the current bind, which ran since the previous mark
+     *
+     * @param step is the sub-step that just finished
+     */
+    public void mark(Step step) {
+        if (mInBind) {
+            mark(step, System.nanoTime());
+        }
+    }
+
+    void mark(Step step, long nanos) {
+        if (!mInBind) {
+            return;
+        }
+        mBindSteps[(mBindCount % mCapacity) * STEPS + step.ordinal()] += nanos - mLastMark;
+        mLastMark = nanos;
+    }
+
+    /**
+     * Record the end of binding the current list row
+     */
+    public void endBind() {
+        if (mInBind) {
+            endBind(System.nanoTime());
+        }
+    }
+
+    void endBind(long nanos) {
+        if (!mInBind) {
+            return;
+        }
+        mBindEnds[mBindCount % mCapacity] = nanos;
+        mBindCount++;
+        mInBind = false;
+    }
+
+    /**
+     * @return the number of whole frames held, each bounded by the start of the next
+     */
+    public int getFrameCount() {
+        return Math.max(0, Math.min(mFrameCount, mCapacity) - 1);
+    }
+
+    /**
+     * @return the number of frames held that took longer than {@link #SLOW_FRAME_NANOS}
+     */
+    public int getSlowFrameCount() {
+        int slow = 0;
+        int first = firstFrame();
+        for (int i = first; i < mFrameCount - 1; i++) {
+            if (frameNanos(i) > SLOW_FRAME_NANOS) {
+                slow++;
+            }
+        }
+        return slow;
+    }
+
+    /**
+     * @return the duration of every whole frame held in nanoseconds, oldest first
+     */
+    public long[] getFrameNanos() {
+        int first = firstFrame();
+        long[] durations = new long[Math.max(0, mFrameCount - 1 - first)];
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = frameNanos(first + i);
+        }
+        return durations;
+    }
+
+    /**
+     * Export a compact trace: a summary line, then a line per slow frame holding the binds
+     * that ran in it and the time spent in each sub-step, i.e.
+     * "slow +1204.3ms 51.2ms binds=3 bind=38.0ms inflate=30.1ms text=7.2ms recolour=0.4ms
+     * rows=14-16"
+     *
+     * @return the trace
+     */
+    public String export() {
+        long[] durations = getFrameNanos();
+        StringBuilder out = new StringBuilder();
+        long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        out.append(String.format(Locale.US, "frames=%d slow=%d p50=%.1fms p90=%.1fms max=%.1fms",
+                sorted.length, getSlowFrameCount(), millis(percentile(sorted, 50)),
+                millis(percentile(sorted, 90)),
+                millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1])));
+
+        int first = firstFrame();
+        // Binds are in time order, so one pass pairs them with the frames they ran in
+        int bind = Math.max(0, mBindCount - mCapacity);
+        long origin = first < mFrameCount ? mFrameStarts[first % mCapacity] : 0;
+        long[] steps = new long[STEPS];
+        for (int i = first; i < mFrameCount - 1; i++) {
+            long start = mFrameStarts[i % mCapacity];
+            long end = mFrameStarts[(i + 1) % mCapacity];
+            while (bind < mBindCount && mBindStarts[bind % mCapacity] < start) {
+                bind++;
+            }
+            if (end - start <= SLOW_FRAME_NANOS) {
+                continue;
+            }
+            Arrays.fill(steps, 0);
+            int binds = 0;
+            long bindNanos = 0;
+            int firstRow = Integer.MAX_VALUE;
+            int lastRow = Integer.MIN_VALUE;
+            for (int b = bind; b < mBindCount && mBindStarts[b % mCapacity] < end; b++) {
+                int slot = b % mCapacity;
+                binds++;
+                bindNanos += mBindEnds[slot] - mBindStarts[slot];
+                for (int s = 0; s < STEPS; s++) {
+                    steps[s] += mBindSteps[slot * STEPS + s];
+                }
+                firstRow = Math.min(firstRow, mBindPositions[slot]);
+                lastRow = Math.max(lastRow, mBindPositions[slot]);
+            }
+            out.append(String.format(Locale.US, "\nslow +%.1fms %.1fms binds=%d bind=%.1fms",
+                    millis(start - origin), millis(end - start), binds, millis(bindNanos)));
+            for (Step step : Step.values()) {
+                out.append(' ').append(step.name().toLowerCase(Locale.US)).append('=')
+                        .append(String.format(Locale.US, "%.1fms",
+                                millis(steps[step.ordinal()])));
+            }
+            if (binds > 0) {
+                out.append(" rows=").append(firstRow).append('-').append(lastRow);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return the index of the oldest frame start still held
+     */
+    private int firstFrame() {
+        return Math.max(0, mFrameCount - mCapacity);
+    }
+
+    private long frameNanos(int frame) {
+        return mFrameStarts[(frame + 1) % mCapacity] - mFrameStarts[frame % mCapacity];
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+}
\ No newline at end of file
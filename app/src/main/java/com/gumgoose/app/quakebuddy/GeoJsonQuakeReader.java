@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Class that reads earthquakes from a GeoJSON FeatureCollection, either written by
+ * {@link GeoJsonQuakeWriter} or downloaded from USGS, one feature at a time
+ */
+public class GeoJsonQuakeReader extends QuakeReader {
+
+    private final JsonReader mReader;
+    private boolean mFinished;
+
+    GeoJsonQuakeReader(ReadableByteChannel channel) throws IOException {
+        mReader = new JsonReader(Channels.newReader(channel, "UTF-8"));
+
+        // Move to the start of the features array, skipping the metadata object
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            if (mReader.nextName().equals("features")) {
+                mReader.beginArray();
+                return;
+            }
+            mReader.skipValue();
+        }
+        throw new IOException("GeoJSON file has no features array");
+    }
+
+    @Override
+    public Quake next() throws IOException {
+        while (!mFinished) {
+            if (!mReader.hasNext()) {
+                mFinished = true;
+                break;
+            }
+            Quake quake = readFeature();
+            if (quake != null) {
+                return quake;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    /**
+     * @return the next feature, or null if it has no magnitude and cannot be listed
+     */
+    private Quake readFeature() throws IOException {
+        String id = null;
+        double magnitude = Double.NaN;
+        String place = null;
+        long time = 0;
+        long updated = 0;
+        int tsunami = 0;
+        String url = null;
+        String detail = null;
+        double[] coordinates = {Double.NaN, Double.NaN, Double.NaN};
+
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            if (name.equals("id") && mReader.peek() == JsonToken.STRING) {
+                id = mReader.nextString();
+            }
+            else if (name.equals("geometry") && mReader.peek() == JsonToken.BEGIN_OBJECT) {
+                readCoordinates(coordinates);
+            }
+            else if (name.equals("properties")) {
+                mReader.beginObject();
+                while (mReader.hasNext()) {
+                    String property = mReader.nextName();
+                    if (mReader.peek() == JsonToken.NULL) {
+                        mReader.nextNull();
+                    }
+                    else if (property.equals("mag")) {
+                        magnitude = mReader.nextDouble();
+                    }
+                    else if (property.equals("place")) {
+                        place = mReader.nextString();
+                    }
+                    else if (property.equals("time")) {
+                        time = mReader.nextLong();
+                    }
+                    else if (property.equals("updated")) {
+                        updated = mReader.nextLong();
+                    }
+                    else if (property.equals("tsunami")) {
+                        tsunami = mReader.nextInt();
+                    }
+                    else if (property.equals("url")) {
+                        url = mReader.nextString();
+                    }
+                    else if (property.equals("detail")) {
+                        detail = mReader.nextString();
+                    }
+                    else {
+                        mReader.skipValue();
+                    }
+                }
+                mReader.endObject();
+            }
+            else {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+
+        if (Double.isNaN(magnitude)) {
+            return null;
+        }
+        // GeoJSON coordinates are ordered as longitude, latitude, depth
+        return new Quake(magnitude, place, time, tsunami, url, id,
+                updated == 0 ? time : updated, detail,
+                coordinates[1], coordinates[0], coordinates[2]);
+    }
+
+    private void readCoordinates(double[] coordinates) throws IOException {
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            if (mReader.nextName().equals("coordinates")
+                    && mReader.peek() == JsonToken.BEGIN_ARRAY) {
+                mReader.beginArray();
+                for (int i = 0; mReader.hasNext(); i++) {
+                    if (i < coordinates.length && mReader.peek() == JsonToken.NUMBER) {
+                        coordinates[i] = mReader.nextDouble();
+                    }
+                    else {
+                        mReader.skipValue();
+                    }
+                }
+                mReader.endArray();
+            }
+            else {
+                mReader.skipValue();
+            }
+        }
+        mReader.endObject();
+    }
+}
\ No newline at end of file
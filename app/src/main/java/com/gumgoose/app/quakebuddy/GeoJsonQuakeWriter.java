@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class that writes earthquakes as a GeoJSON FeatureCollection shaped like the USGS feed,
+ * so that an export can be read back by {@link QueryUtils} as well as by GIS tools
+ */
+public class GeoJsonQuakeWriter extends QuakeWriter {
+
+    // Reused for every feature to avoid building a new String per field
+    private final StringBuilder mFeature = new StringBuilder(512);
+
+    private boolean mFirst = true;
+
+    GeoJsonQuakeWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        mSink.putText("{\"type\":\"FeatureCollection\",\"features\":[");
+    }
+
+    @Override
+    protected void writeRecord(Quake quake) throws IOException {
+        mFeature.setLength(0);
+        if (!mFirst) {
+            mFeature.append(",\n");
+        }
+        mFirst = false;
+
+        mFeature.append("{\"type\":\"Feature\",\"properties\":{\"mag\":")
+                .append(quake.getQuakeMagnitude());
+        mFeature.append(",\"place\":");
+        appendString(quake.getQuakeLocation());
+        mFeature.append(",\"time\":").append(quake.getQuakeUnixTime());
+        mFeature.append(",\"updated\":").append(quake.getQuakeUpdated());
+        mFeature.append(",\"tsunami\":").append(quake.getTsunamiWarning());
+        mFeature.append(",\"url\":");
+        appendString(quake.getQuakeURL());
+        mFeature.append(",\"detail\":");
+        appendString(quake.getDetailURL());
+        mFeature.append("},\"geometry\":");
+        if (Double.isNaN(quake.getLatitude())) {
+            mFeature.append("null");
+        }
+        else {
+            // GeoJSON coordinates are ordered as longitude, latitude, depth
+            mFeature.append("{\"type\":\"Point\",\"coordinates\":[")
+                    .append(quake.getLongitude()).append(',')
+                    .append(quake.getLatitude()).append(',')
+                    .append(Double.isNaN(quake.getDepthKm()) ? 0 : quake.getDepthKm())
+                    .append("]}");
+        }
+        mFeature.append(",\"id\":");
+        appendString(quake.getQuakeId());
+        mFeature.append('}');
+        mSink.putText(mFeature);
+    }
+
+    @Override
+    protected void writeTrailer() throws IOException {
+        mSink.putText("]}\n");
+    }
+
+    private void appendString(String value) {
+        if (value == null) {
+            mFeature.append("null");
+            return;
+        }
+        mFeature.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    mFeature.append("\\\"");
+                    break;
+                case '\\':
+                    mFeature.append("\\\\");
+                    break;
+                case '\n':
+                    mFeature.append("\\n");
+                    break;
+                case '\r':
+                    mFeature.append("\\r");
+                    break;
+                case '\t':
+                    mFeature.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        mFeature.append("\\u");
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            mFeature.append('0');
+                        }
+                        mFeature.append(hex);
+                    }
+                    else {
+                        mFeature.append(c);
+                    }
+                    break;
+            }
+        }
+        mFeature.append('"');
+    }
+}
\ No newline at end of file
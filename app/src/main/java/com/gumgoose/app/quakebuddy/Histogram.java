@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class that counts non-negative values into fixed log-linear buckets, the way an HDR
+ * histogram does, so percentiles are known within a few percent at any magnitude
+ *
+ * Each power of two is split into {@link #SUB_BUCKETS} equal buckets. Recording takes
+ * a few atomic increments and never allocates or locks, so it may be called from any
+ * thread on a hot path
+ */
+public final class Histogram {
+
+    /**
+     * Buckets each power of two is split into; a value is known within 1/16 of itself
+     */
+    static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Number of buckets, enough for any non-negative long
+     */
+    static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Count a value
+     *
+     * @param value is the value, negative values are counted as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts.incrementAndGet(bucketOf(value));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * @param value is a non-negative value
+     * @return      the index of the bucket holding the value
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            // Small values get a bucket each
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @param bucket is the index of a bucket
+     * @return       the smallest value counted in the bucket
+     */
+    static long lowestOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket - shift * SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @param bucket is the index of a bucket
+     * @return       the largest value counted in the bucket
+     */
+    static long highestOf(int bucket) {
+        return bucket + 1 < BUCKET_COUNT ? lowestOf(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * @return the mean of the values, or 0 if none was counted
+     */
+    public double getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotal.get() / (double) count;
+    }
+
+    /**
+     * @param percentile is a percentile between 0 and 100
+     * @return           the largest value of the bucket the percentile falls in, at most
+     *                   the largest value counted, or 0 if none was counted
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestOf(i), mMax.get());
+            }
+        }
+        // Values recorded while counting are not all in the count yet
+        return mMax.get();
+    }
+
+    /**
+     * Forget every value counted
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mTotal.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * @return the summary and the non-empty buckets as a JSON object, each bucket a pair
+     *         of its smallest value and its count
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", getCount());
+        json.put("mean", Math.round(getMean() * 100) / 100.0);
+        json.put("p50", getValueAtPercentile(50));
+        json.put("p90", getValueAtPercentile(90));
+        json.put("p99", getValueAtPercentile(99));
+        json.put("max", getMax());
+        JSONArray buckets = new JSONArray();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = mCounts.get(i);
+            if (count > 0) {
+                buckets.put(new JSONArray().put(lowestOf(i)).put(count));
+            }
+        }
+        json.put("buckets", buckets);
+        return json;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Class that obtains the most recent earthquakes from the local event history,
+ * for when there is no network connection
+ */
+public class HistoryLoader extends AsyncTaskLoader<List<Quake>> {
+
+    // Maximum number of earthquakes to load
+    private int mLimit;
+
+    /**
+     * Construct a new {@link HistoryLoader}
+     *
+     * @param context of the activity
+     * @param limit   is the maximum number of earthquakes to load
+     */
+    public HistoryLoader(Context context, int limit) {
+        super(context);
+        mLimit = limit;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        forceLoad();
+    }
+
+    @Override
+    /**
+     * This task runs on a background thread
+     */
+    public List<Quake> loadInBackground() {
+        try {
+            return EventHistory.getInstance(getContext()).readRecent(mLimit);
+        }
+        catch (IOException e) {
+            // Error caught, print the exception to the logs
+            Log.e(EventHistory.LOG_TAG, "Problem with reading the earthquake history", e);
+            return null;
+        }
+    }
+}
\ No newline at end of file
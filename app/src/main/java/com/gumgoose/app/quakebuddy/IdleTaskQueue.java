@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Class that runs work on the main thread once it has nothing else to do, one task per
+ * idle pass, so deferred start-up work never delays a frame by more than a single task
+ *
+ * Tasks still waiting after {@link #MAX_DELAY_MILLIS} are run anyway, so a busy main
+ * thread cannot postpone them for ever
+ */
+public class IdleTaskQueue implements MessageQueue.IdleHandler {
+
+    /**
+     * Longest a task waits for idle time before it is run regardless
+     */
+    static final long MAX_DELAY_MILLIS = 3000;
+
+    private final Deque<Runnable> mTasks = new ArrayDeque<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private boolean mRegistered;
+
+    // Runs whatever is left once the deadline has passed
+    private final Runnable mDeadline = new Runnable() {
+        @Override
+        public void run() {
+            while (!mTasks.isEmpty()) {
+                mTasks.poll().run();
+            }
+            unregister();
+        }
+    };
+
+    // Posted after each task, so the queue goes idle again and the next task runs
+    private final Runnable mWake = new Runnable() {
+        @Override
+        public void run() {
+            // Nothing to do, the next idle pass runs the next task
+        }
+    };
+
+    /**
+     * Queue a task; must be called on the main thread
+     *
+     * @param task is the work to run once the main thread is idle
+     */
+    public void post(Runnable task) {
+        mTasks.add(task);
+        if (!mRegistered) {
+            mRegistered = true;
+            Looper.myQueue().addIdleHandler(this);
+            mHandler.postDelayed(mDeadline, MAX_DELAY_MILLIS);
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        Runnable task = mTasks.poll();
+        if (task != null) {
+            task.run();
+        }
+        if (mTasks.isEmpty()) {
+            mRegistered = false;
+            mHandler.removeCallbacks(mDeadline);
+            return false;
+        }
+        mHandler.post(mWake);
+        return true;
+    }
+
+    /**
+     * Drop every task not yet run, i.e. when the activity is destroyed
+     */
+    public void cancel() {
+        mTasks.clear();
+        unregister();
+    }
+
+    private void unregister() {
+        if (mRegistered) {
+            mRegistered = false;
+            Looper.myQueue().removeIdleHandler(this);
+            mHandler.removeCallbacks(mDeadline);
+            mHandler.removeCallbacks(mWake);
+        }
+    }
+}
\ No newline at end of file
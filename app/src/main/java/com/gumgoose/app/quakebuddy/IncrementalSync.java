@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class that refreshes a cached query result by fetching only the earthquakes revised
+ * since the result was fetched, using the FDSN "updatedafter" parameter
+ *
+ * The sync cursor of a result is the newest revision time among its earthquakes. Updates
+ * ask for deleted events too, which {@link #merge(List, List, String, int)} drops from the
+ * result
+ */
+public final class IncrementalSync {
+
+    private static final Pattern STARTTIME_PARAMETER = Pattern.compile("[?&]starttime=([^&]*)");
+
+    private IncrementalSync() {
+    }
+
+    /**
+     * @param earthquakes is a cached query result
+     * @return            the newest revision time in the result, or 0 if it has none
+     */
+    public static long cursorOf(List<Quake> earthquakes) {
+        long cursor = 0;
+        for (Quake quake : earthquakes) {
+            cursor = Math.max(cursor, quake.getQuakeUpdated());
+        }
+        return cursor;
+    }
+
+    /**
+     * Rewrite a query URL to return only the earthquakes revised after the cursor
+     *
+     * @param url    is the query URL
+     * @param cursor is the sync cursor of the cached result
+     * @return       the URL of the incremental query
+     */
+    public static String updatesUrl(String url, long cursor) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        // The cursor's own revision was already fetched
+        String updated = url.replaceAll("(?<=[?&])(updatedafter|includedeleted)=[^&]*&?", "");
+        if (!updated.endsWith("?") && !updated.endsWith("&")) {
+            updated += updated.indexOf('?') < 0 ? "?" : "&";
+        }
+        return updated + "includedeleted=true&updatedafter=" + format.format(new Date(cursor + 1));
+    }
+
+    /**
+     * Merge the earthquakes revised since a cached result into it
+     *
+     * @param cached  is the cached result
+     * @param updates is the earthquakes revised or deleted since the cached result's cursor
+     * @param url     is the query URL, whose start time and order the result keeps to
+     * @param limit   is the number of earthquakes the query asks for
+     * @return        the refreshed result
+     */
+    public static List<Quake> merge(List<Quake> cached, List<Quake> updates, String url,
+                                    int limit) {
+        // Revisions replace the cached earthquake with the same event ID, in place
+        OrderedQuakeSet.Order order = OrderedQuakeSet.Order.forUrl(url);
+        OrderedQuakeSet merged = new OrderedQuakeSet(order);
+        merged.putAll(cached);
+        for (Quake quake : updates) {
+            if (quake.isDeleted()) {
+                merged.remove(quake.getQuakeId());
+            }
+            else {
+                merged.put(quake);
+            }
+        }
+
+        // Drop earthquakes that have aged out of the query's time range
+        merged.removeOlderThan(startTimeOf(url));
+        return merged.toList(order, limit);
+    }
+
+    /**
+     * @param url is the query URL
+     * @return    the time of the query's starttime parameter, or 0 if it has none
+     */
+    static long startTimeOf(String url) {
+        Matcher matcher = STARTTIME_PARAMETER.matcher(url);
+        if (!matcher.find()) {
+            return 0;
+        }
+        try {
+            String startTime = URLDecoder.decode(matcher.group(1), "UTF-8");
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US)
+                    .parse(startTime).getTime();
+        }
+        catch (ParseException | UnsupportedEncodingException e) {
+            return 0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.support.v4.content.ContextCompat;
+import android.view.View;
+
+/**
+ * Class that resolves the magnitude colors once and keeps a ready colored circle per
+ * magnitude bucket, so binding a list row only swaps the background it points to
+ *
+ * Every row gets its own circle per bucket, built from the bucket's template and never
+ * changed afterwards, so no row can recolor the circle of another
+ */
+public final class MagnitudeCircles {
+
+    /**
+     * Bucket of the black circle marking a tsunami watch
+     */
+    public static final int TSUNAMI = 0;
+
+    /**
+     * Number of buckets, the tsunami bucket and magnitudes below 2 up to 10 and above
+     */
+    static final int BUCKETS = 11;
+
+    private static MagnitudeCircles sInstance;
+
+    private final Resources mResources;
+    private final int[] mColors = new int[BUCKETS];
+    private final Drawable.ConstantState[] mTemplates = new Drawable.ConstantState[BUCKETS];
+
+    /**
+     * @param context is any context of the app
+     * @return        the app-wide {@link MagnitudeCircles}
+     */
+    public static synchronized MagnitudeCircles getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MagnitudeCircles(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private MagnitudeCircles(Context context) {
+        mResources = context.getResources();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            mColors[bucket] = bucket == TSUNAMI ? Color.BLACK
+                    : ContextCompat.getColor(context, colorResourceOf(bucket));
+            // A mutated copy owns its color instead of sharing the resource's
+            GradientDrawable circle = (GradientDrawable) ContextCompat.getDrawable(context,
+                    R.drawable.magnitude_circle).mutate();
+            circle.setColor(mColors[bucket]);
+            mTemplates[bucket] = circle.getConstantState();
+        }
+    }
+
+    /**
+     * @param magnitude is the earthquake magnitude
+     * @return          the bucket of the magnitude, from 1 for magnitudes below 2 to 10 for
+     *                  magnitudes of 10 and above
+     */
+    static int bucketOf(double magnitude) {
+        if (!(magnitude >= 2)) {
+            return 1;
+        }
+        return (int) Math.min(10, Math.floor(magnitude));
+    }
+
+    /**
+     * @param bucket is a magnitude bucket
+     * @return       the color resource of the bucket
+     */
+    static int colorResourceOf(int bucket) {
+        switch (bucket) {
+            case 1:
+                return R.color.magnitude1;
+            case 2:
+                return R.color.magnitude2;
+            case 3:
+                return R.color.magnitude3;
+            case 4:
+                return R.color.magnitude4;
+            case 5:
+                return R.color.magnitude5;
+            case 6:
+                return R.color.magnitude6;
+            case 7:
+                return R.color.magnitude7;
+            case 8:
+                return R.color.magnitude8;
+            case 9:
+                return R.color.magnitude9;
+            default:
+                return R.color.magnitude10plus;
+        }
+    }
+
+    /**
+     * @param magnitude is the earthquake magnitude
+     * @return          the resolved color of the magnitude
+     */
+    public int getColor(double magnitude) {
+        return mColors[bucketOf(magnitude)];
+    }
+
+    /**
+     * Point a view's background at its circle of a bucket, building that circle on first use
+     *
+     * @param view   is the view showing the circle
+     * @param bucket is the magnitude bucket, or {@link #TSUNAMI}
+     */
+    @SuppressWarnings("deprecation")
+    public void bind(View view, int bucket) {
+        // The view keeps its circles, built lazily so a row only holds the buckets it showed
+        Object tag = view.getTag();
+        Drawable[] circles;
+        if (tag instanceof Drawable[]) {
+            circles = (Drawable[]) tag;
+        }
+        else {
+            circles = new Drawable[BUCKETS];
+            view.setTag(circles);
+        }
+        Drawable circle = circles[bucket];
+        if (circle == null) {
+            circle = mTemplates[bucket].newDrawable(mResources);
+            circles[bucket] = circle;
+        }
+        if (view.getBackground() != circle) {
+            // setBackground() needs Jelly Bean
+            view.setBackgroundDrawable(circle);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.app.LoaderManager.LoaderCallbacks;
+import android.content.Intent;
+import android.content.Loader;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.webkit.URLUtil;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.util.List;
+
+/**
+ * Activity that plots every earthquake in the local event history on a clustered map
+ *
+ * Earthquakes merged into the history while the map is showing are added to the clusters
+ * incrementally; an import reloads the whole history
+ */
+public class MapActivity extends AppCompatActivity
+        implements LoaderCallbacks<ClusterIndex>, EventHistory.OnMergeListener {
+
+    /**
+     * Unique ID for the cluster index Loader
+     */
+    private static final int INDEX_LOADER_ID = 1;
+
+    /**
+     * Keys for keeping the map position across configuration changes
+     */
+    private static final String STATE_CENTRE_X = "centre_x";
+    private static final String STATE_CENTRE_Y = "centre_y";
+    private static final String STATE_ZOOM = "zoom";
+
+    private QuakeMapView mMapView;
+    private View mLoadingIndicator;
+    private TextView mEmptyTextView;
+    private ClusterIndex mIndex;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.map_activity);
+
+        mMapView = (QuakeMapView) findViewById(R.id.map);
+        mLoadingIndicator = findViewById(R.id.map_loading_indicator);
+        mEmptyTextView = (TextView) findViewById(R.id.map_empty_view);
+
+        if (savedInstanceState != null) {
+            mMapView.setPosition(savedInstanceState.getDouble(STATE_CENTRE_X),
+                    savedInstanceState.getDouble(STATE_CENTRE_Y),
+                    savedInstanceState.getFloat(STATE_ZOOM));
+        }
+
+        // Open tapped earthquakes the same way the list does
+        mMapView.setOnQuakeClickListener(new QuakeMapView.OnQuakeClickListener() {
+            @Override
+            public void onQuakeClick(Quake quake) {
+                openQuake(quake);
+            }
+        });
+
+        getLoaderManager().initLoader(INDEX_LOADER_ID, null, this);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        EventHistory.getInstance(this).addOnMergeListener(this);
+    }
+
+    @Override
+    protected void onStop() {
+        EventHistory.getInstance(this).removeOnMergeListener(this);
+        super.onStop();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putDouble(STATE_CENTRE_X, mMapView.getCentreX());
+        outState.putDouble(STATE_CENTRE_Y, mMapView.getCentreY());
+        outState.putFloat(STATE_ZOOM, mMapView.getZoom());
+    }
+
+    @Override
+    public void onMerged(final List<Quake> earthquakes) {
+        // Merges happen on background threads, the clusters are updated on the main thread
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (earthquakes == null || mIndex == null) {
+                    // An import streamed into the history, read it again
+                    getLoaderManager().restartLoader(INDEX_LOADER_ID, null, MapActivity.this);
+                    return;
+                }
+                mIndex.putAll(earthquakes);
+                showIndex(mIndex);
+            }
+        });
+    }
+
+    @Override
+    public Loader<ClusterIndex> onCreateLoader(int id, Bundle args) {
+        mLoadingIndicator.setVisibility(View.VISIBLE);
+        return new ClusterIndexLoader(this);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<ClusterIndex> loader, ClusterIndex index) {
+        mLoadingIndicator.setVisibility(View.GONE);
+        mIndex = index;
+        showIndex(index);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<ClusterIndex> loader) {
+        mIndex = null;
+        mMapView.setIndex(new ClusterIndex());
+    }
+
+    private void showIndex(ClusterIndex index) {
+        mMapView.setIndex(index);
+        mEmptyTextView.setVisibility(index.size() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    private void openQuake(Quake quake) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String detailView = sharedPrefs.getString(
+                getString(R.string.settings_detail_view_key),
+                getString(R.string.settings_detail_view_default));
+        if (getString(R.string.settings_detail_view_native_value).equals(detailView)
+                && quake.getDetailURL() != null) {
+            startActivity(QuakeDetailActivity.newIntent(this, quake));
+        }
+        else if (URLUtil.isValidUrl(quake.getQuakeURL())) {
+            Intent websiteIntent = new Intent(this, WebViewActivity.class);
+            websiteIntent.putExtra("url", quake.getQuakeURL());
+            startActivity(websiteIntent);
+        }
+        else {
+            // Inform the user by Toast message
+            Toast.makeText(this, R.string.error_invalid_url, Toast.LENGTH_LONG).show();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class that keeps values in memory up to a size limit, evicting the least recently used
+ * values first, and that can be trimmed by the {@link CacheManager}
+ *
+ * @param <K> is the key type
+ * @param <V> is the value type
+ */
+public class MemoryCache<K, V> implements TrimmableCache {
+
+    /**
+     * Interface for estimating the memory held by a single cached value
+     */
+    public interface Weigher<K, V> {
+        /**
+         * @param key   is the key of the entry
+         * @param value is the value of the entry
+         * @return      the estimated size of the entry in bytes
+         */
+        int weigh(K key, V value);
+    }
+
+    private final LinkedHashMap<K, V> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Weigher<K, V> mWeigher;
+    private final long mMaxBytes;
+    private long mSizeBytes;
+
+    // Lookup counters for reporting hit rates
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * Construct a new {@link MemoryCache}
+     *
+     * @param maxBytes is the size limit of the cache in bytes
+     * @param weigher  estimates the size of each entry
+     */
+    public MemoryCache(long maxBytes, Weigher<K, V> weigher) {
+        mMaxBytes = maxBytes;
+        mWeigher = weigher;
+    }
+
+    /**
+     * @param key is the key to look up
+     * @return    the cached value, or null if it is not cached
+     */
+    public synchronized V get(K key) {
+        V value = mEntries.get(key);
+        if (value != null) {
+            mHitCount++;
+        }
+        else {
+            mMissCount++;
+        }
+        return value;
+    }
+
+    /**
+     * Cache a value, evicting the least recently used values if over the size limit
+     *
+     * @param key   is the key of the entry
+     * @param value is the value to cache
+     */
+    public synchronized void put(K key, V value) {
+        V previous = mEntries.put(key, value);
+        if (previous != null) {
+            mSizeBytes -= mWeigher.weigh(key, previous);
+        }
+        mSizeBytes += mWeigher.weigh(key, value);
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * @param key is the key of the entry to remove
+     */
+    public synchronized void remove(K key) {
+        V previous = mEntries.remove(key);
+        if (previous != null) {
+            mSizeBytes -= mWeigher.weigh(key, previous);
+        }
+    }
+
+    /**
+     * Evict every entry
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mSizeBytes = 0;
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /** Getter method for number of lookups that found a value */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /** Getter method for number of lookups that found nothing */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public synchronized long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    @Override
+    public synchronized void trimToFraction(float fraction) {
+        trimToSize((long) (mSizeBytes * fraction));
+    }
+
+    private void trimToSize(long maxBytes) {
+        // Evict from the least recently used end until the cache fits again
+        Iterator<Map.Entry<K, V>> iterator = mEntries.entrySet().iterator();
+        while (mSizeBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            mSizeBytes -= mWeigher.weigh(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class that keeps the request and refresh measurements behind the diagnostics screen:
+ * a {@link Histogram} per measured series, counters of every outcome, and the hit rates
+ * of the memory caches
+ *
+ * Everything is sized when the app starts, so recording costs a few atomic increments
+ */
+public class Metrics {
+
+    /**
+     * The measured series, each with the name it is exported under
+     */
+    public enum Series {
+        // From sending a request to its response headers
+        FETCH_MILLIS("fetch_ms"),
+        // Size of each response body
+        PAYLOAD_BYTES("payload_bytes"),
+        // Parsing a response body
+        PARSE_MICROS("parse_us"),
+        // A whole refresh of a list, with its retries, pages and failovers
+        LOAD_MILLIS("load_ms"),
+        // Earthquakes a successful refresh returned
+        REFRESH_EVENTS("refresh_events");
+
+        private final String mName;
+
+        Series(String name) {
+            mName = name;
+        }
+
+        public String getName() {
+            return mName;
+        }
+    }
+
+    private static final FetchOutcome.Kind[] KINDS = FetchOutcome.Kind.values();
+
+    private static Metrics sInstance;
+
+    private final Histogram[] mHistograms = new Histogram[Series.values().length];
+    // Outcomes of single requests and of whole refreshes, by kind
+    private final AtomicLongArray mRequests = new AtomicLongArray(KINDS.length);
+    private final AtomicLongArray mRefreshes = new AtomicLongArray(KINDS.length);
+    // Caches whose hit rates are shown, by name
+    private final Map<String, MemoryCache<?, ?>> mCaches = new LinkedHashMap<>();
+
+    public static synchronized Metrics getInstance() {
+        if (sInstance == null) {
+            sInstance = new Metrics();
+        }
+        return sInstance;
+    }
+
+    Metrics() {
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * @param series is a measured series
+     * @return       the histogram of the series
+     */
+    public Histogram getHistogram(Series series) {
+        return mHistograms[series.ordinal()];
+    }
+
+    /**
+     * Record a single request
+     *
+     * @param kind          is the kind of its outcome
+     * @param latencyMillis is the time to the response, or to the failure
+     * @param bytes         is the size of the body read, or -1 if none was
+     * @param parseMicros   is the time taken to parse the body, or -1 if it was not parsed
+     */
+    public void recordRequest(FetchOutcome.Kind kind, long latencyMillis, long bytes,
+                              long parseMicros) {
+        mRequests.incrementAndGet(kind.ordinal());
+        getHistogram(Series.FETCH_MILLIS).record(latencyMillis);
+        if (bytes >= 0) {
+            getHistogram(Series.PAYLOAD_BYTES).record(bytes);
+        }
+        if (parseMicros >= 0) {
+            getHistogram(Series.PARSE_MICROS).record(parseMicros);
+        }
+    }
+
+    /**
+     * Record a refresh of a list of earthquakes
+     *
+     * @param kind   is the kind of its outcome
+     * @param millis is the time the refresh took
+     * @param events is the number of earthquakes returned, or -1 if the refresh failed
+     */
+    public void recordRefresh(FetchOutcome.Kind kind, long millis, int events) {
+        mRefreshes.incrementAndGet(kind.ordinal());
+        getHistogram(Series.LOAD_MILLIS).record(millis);
+        if (events >= 0) {
+            getHistogram(Series.REFRESH_EVENTS).record(events);
+        }
+    }
+
+    /**
+     * @param kind is the kind of an outcome
+     * @return     the number of requests with the outcome
+     */
+    public long getRequestCount(FetchOutcome.Kind kind) {
+        return mRequests.get(kind.ordinal());
+    }
+
+    /**
+     * @param kind is the kind of an outcome
+     * @return     the number of refreshes with the outcome
+     */
+    public long getRefreshCount(FetchOutcome.Kind kind) {
+        return mRefreshes.get(kind.ordinal());
+    }
+
+    /**
+     * Show the hit rate of a memory cache
+     *
+     * @param name  is the name the cache is shown under
+     * @param cache is the cache
+     */
+    public synchronized void registerCache(String name, MemoryCache<?, ?> cache) {
+        mCaches.put(name, cache);
+    }
+
+    /**
+     * @param name is the name a cache was registered under
+     * @return     the cache, or null if none was registered under the name
+     */
+    public synchronized MemoryCache<?, ?> getCache(String name) {
+        return mCaches.get(name);
+    }
+
+    /**
+     * @return the share of lookups of each registered cache that were hits, NaN for a cache
+     *         never looked up
+     */
+    public synchronized Map<String, Double> getCacheHitRates() {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        for (Map.Entry<String, MemoryCache<?, ?>> entry : mCaches.entrySet()) {
+            long hits = entry.getValue().getHitCount();
+            long lookups = hits + entry.getValue().getMissCount();
+            rates.put(entry.getKey(), lookups == 0 ? Double.NaN : hits / (double) lookups);
+        }
+        return rates;
+    }
+
+    /**
+     * Forget everything recorded; the registered caches keep their own counts
+     */
+    public void reset() {
+        for (Histogram histogram : mHistograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < KINDS.length; i++) {
+            mRequests.set(i, 0);
+            mRefreshes.set(i, 0);
+        }
+    }
+
+    /**
+     * @return every series, outcome counter and cache as a JSON object
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject histograms = new JSONObject();
+        for (Series series : Series.values()) {
+            histograms.put(series.getName(), getHistogram(series).toJson());
+        }
+        JSONObject json = new JSONObject();
+        json.put("histograms", histograms);
+        json.put("requests", countsOf(mRequests));
+        json.put("refreshes", countsOf(mRefreshes));
+
+        JSONObject caches = new JSONObject();
+        synchronized (this) {
+            for (Map.Entry<String, MemoryCache<?, ?>> entry : mCaches.entrySet()) {
+                MemoryCache<?, ?> cache = entry.getValue();
+                JSONObject counts = new JSONObject();
+                counts.put("hits", cache.getHitCount());
+                counts.put("misses", cache.getMissCount());
+                counts.put("bytes", cache.getSizeBytes());
+                caches.put(entry.getKey(), counts);
+            }
+        }
+        json.put("caches", caches);
+        return json;
+    }
+
+    /**
+     * @return the non-zero counters, by the lower case name of their outcome
+     */
+    private static JSONObject countsOf(AtomicLongArray counters) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (FetchOutcome.Kind kind : KINDS) {
+            long count = counters.get(kind.ordinal());
+            if (count > 0) {
+                json.put(kind.name().toLowerCase(Locale.US), count);
+            }
+        }
+        return json;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,588 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class that keeps a set of earthquakes ordered both newest first and strongest first
+ * while earthquakes are inserted, revised and removed
+ *
+ * Each order is an order statistic tree (a treap whose nodes count their subtree), so an
+ * insert, a revision, a removal, the earthquake at a position and the position of an
+ * earthquake all take O(log n), rather than the O(n log n) of sorting the list again
+ */
+public class OrderedQuakeSet {
+
+    /**
+     * The orders the set is kept in
+     */
+    public enum Order {
+        NEWEST_FIRST, STRONGEST_FIRST;
+
+        /**
+         * @param url is a query URL
+         * @return    the order of the query's "orderby" parameter, newest first by default
+         */
+        public static Order forUrl(String url) {
+            Matcher matcher = ORDERBY_PARAMETER.matcher(url);
+            return matcher.find() && matcher.group(1).startsWith("magnitude")
+                    ? STRONGEST_FIRST : NEWEST_FIRST;
+        }
+
+        /**
+         * @param earthquakes is a list of earthquakes
+         * @return            the order the list is in, ignoring how ties are broken, or
+         *                    null if it is in neither order
+         */
+        public static Order of(List<Quake> earthquakes) {
+            boolean newest = true;
+            boolean strongest = true;
+            for (int i = 1; i < earthquakes.size() && (newest || strongest); i++) {
+                Quake previous = earthquakes.get(i - 1);
+                Quake quake = earthquakes.get(i);
+                newest &= previous.getQuakeUnixTime() >= quake.getQuakeUnixTime();
+                strongest &= previous.getQuakeMagnitude() >= quake.getQuakeMagnitude();
+            }
+            return newest ? NEWEST_FIRST : (strongest ? STRONGEST_FIRST : null);
+        }
+
+        /**
+         * @return the comparator of the order
+         */
+        public Comparator<Quake> comparator() {
+            return this == NEWEST_FIRST ? NEWEST : STRONGEST;
+        }
+    }
+
+    /**
+     * Interface for being told where the earthquakes of one order have moved
+     */
+    public interface OnChangeListener {
+
+        /**
+         * @param position is the position the earthquake was inserted at
+         * @param quake    is the earthquake
+         */
+        void onInserted(int position, Quake quake);
+
+        /**
+         * @param position is the position the earthquake was removed from
+         * @param quake    is the earthquake
+         */
+        void onRemoved(int position, Quake quake);
+
+        /**
+         * @param from  is the position of the earthquake before it was revised
+         * @param to    is the position of the revision, counted once the earthquake has
+         *              been taken out of its old position
+         * @param quake is the revision
+         */
+        void onMoved(int from, int to, Quake quake);
+
+        /**
+         * @param position is the position of a revision that kept its place
+         * @param quake    is the revision
+         */
+        void onChanged(int position, Quake quake);
+    }
+
+    private static final Pattern ORDERBY_PARAMETER = Pattern.compile("[?&]orderby=([^&]*)");
+
+    private static final Comparator<Quake> NEWEST = new Comparator<Quake>() {
+        @Override
+        public int compare(Quake a, Quake b) {
+            return b.getQuakeUnixTime().compareTo(a.getQuakeUnixTime());
+        }
+    };
+
+    private static final Comparator<Quake> STRONGEST = new Comparator<Quake>() {
+        @Override
+        public int compare(Quake a, Quake b) {
+            int byMagnitude = Double.compare(b.getQuakeMagnitude(), a.getQuakeMagnitude());
+            return byMagnitude != 0 ? byMagnitude : NEWEST.compare(a, b);
+        }
+    };
+
+    /**
+     * An earthquake in the set; the sequence breaks ties between equal earthquakes in
+     * the order they first arrived, and survives revisions
+     */
+    private static final class Entry {
+        final long mSequence;
+        Quake mQuake;
+
+        Entry(long sequence, Quake quake) {
+            mSequence = sequence;
+            mQuake = quake;
+        }
+    }
+
+    private static final class Node {
+        final Entry mEntry;
+        final int mPriority;
+        int mSize = 1;
+        Node mLeft;
+        Node mRight;
+
+        Node(Entry entry, int priority) {
+            mEntry = entry;
+            mPriority = priority;
+        }
+    }
+
+    /**
+     * An order statistic treap over the entries in one order
+     */
+    private static final class RankedTree {
+        private final Comparator<Quake> mOrder;
+        private final Random mRandom;
+        private final Node[] mSplit = new Node[2];
+        private Node mRoot;
+
+        RankedTree(Comparator<Quake> order, Random random) {
+            mOrder = order;
+            mRandom = random;
+        }
+
+        int compare(Entry a, Entry b) {
+            int order = mOrder.compare(a.mQuake, b.mQuake);
+            if (order != 0) {
+                return order;
+            }
+            return a.mSequence < b.mSequence ? -1 : (a.mSequence > b.mSequence ? 1 : 0);
+        }
+
+        int size() {
+            return sizeOf(mRoot);
+        }
+
+        /**
+         * @return the position the entry was inserted at
+         */
+        int insert(Entry entry) {
+            mRoot = insert(mRoot, new Node(entry, mRandom.nextInt()));
+            return rank(entry);
+        }
+
+        private Node insert(Node tree, Node node) {
+            if (tree == null) {
+                return node;
+            }
+            if (node.mPriority > tree.mPriority) {
+                split(tree, node.mEntry);
+                node.mLeft = mSplit[0];
+                node.mRight = mSplit[1];
+                return update(node);
+            }
+            if (compare(node.mEntry, tree.mEntry) < 0) {
+                tree.mLeft = insert(tree.mLeft, node);
+            }
+            else {
+                tree.mRight = insert(tree.mRight, node);
+            }
+            return update(tree);
+        }
+
+        /**
+         * Split a tree into the nodes before the entry and the rest, into mSplit
+         */
+        private void split(Node tree, Entry entry) {
+            if (tree == null) {
+                mSplit[0] = null;
+                mSplit[1] = null;
+                return;
+            }
+            if (compare(tree.mEntry, entry) < 0) {
+                split(tree.mRight, entry);
+                tree.mRight = mSplit[0];
+                mSplit[0] = update(tree);
+            }
+            else {
+                split(tree.mLeft, entry);
+                tree.mLeft = mSplit[1];
+                mSplit[1] = update(tree);
+            }
+        }
+
+        /**
+         * Remove an entry, which must still be where its current quake sorts
+         */
+        void remove(Entry entry) {
+            mRoot = remove(mRoot, entry);
+        }
+
+        private Node remove(Node tree, Entry entry) {
+            if (tree == null) {
+                return null;
+            }
+            int order = compare(entry, tree.mEntry);
+            if (order == 0) {
+                return merge(tree.mLeft, tree.mRight);
+            }
+            if (order < 0) {
+                tree.mLeft = remove(tree.mLeft, entry);
+            }
+            else {
+                tree.mRight = remove(tree.mRight, entry);
+            }
+            return update(tree);
+        }
+
+        /**
+         * Join two trees whose every node in the first sorts before the second
+         */
+        private static Node merge(Node first, Node second) {
+            if (first == null) {
+                return second;
+            }
+            if (second == null) {
+                return first;
+            }
+            if (first.mPriority > second.mPriority) {
+                first.mRight = merge(first.mRight, second);
+                return update(first);
+            }
+            second.mLeft = merge(first, second.mLeft);
+            return update(second);
+        }
+
+        /**
+         * @return the position of an entry in the set, which must still be where its
+         *         current quake sorts
+         */
+        int rank(Entry entry) {
+            int rank = 0;
+            Node node = mRoot;
+            while (node != null) {
+                int order = compare(entry, node.mEntry);
+                if (order == 0) {
+                    return rank + sizeOf(node.mLeft);
+                }
+                if (order < 0) {
+                    node = node.mLeft;
+                }
+                else {
+                    rank += sizeOf(node.mLeft) + 1;
+                    node = node.mRight;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the number of entries that sort before the probe earthquake, or with it
+         *         if inclusive
+         */
+        int countBefore(Quake probe, boolean inclusive) {
+            int count = 0;
+            Node node = mRoot;
+            while (node != null) {
+                int order = mOrder.compare(node.mEntry.mQuake, probe);
+                if (order < 0 || (inclusive && order == 0)) {
+                    count += sizeOf(node.mLeft) + 1;
+                    node = node.mRight;
+                }
+                else {
+                    node = node.mLeft;
+                }
+            }
+            return count;
+        }
+
+        Entry select(int position) {
+            Node node = mRoot;
+            while (node != null) {
+                int left = sizeOf(node.mLeft);
+                if (position < left) {
+                    node = node.mLeft;
+                }
+                else if (position == left) {
+                    return node.mEntry;
+                }
+                else {
+                    position -= left + 1;
+                    node = node.mRight;
+                }
+            }
+            throw new IndexOutOfBoundsException("Position " + position);
+        }
+
+        void collect(Node node, List<Quake> into, int limit) {
+            if (node == null || into.size() >= limit) {
+                return;
+            }
+            collect(node.mLeft, into, limit);
+            if (into.size() < limit) {
+                into.add(node.mEntry.mQuake);
+                collect(node.mRight, into, limit);
+            }
+        }
+
+        private static int sizeOf(Node node) {
+            return node == null ? 0 : node.mSize;
+        }
+
+        private static Node update(Node node) {
+            node.mSize = 1 + sizeOf(node.mLeft) + sizeOf(node.mRight);
+            return node;
+        }
+    }
+
+    // The set in both orders, and every entry by event ID (or a key of its own if it has none)
+    private final RankedTree mNewest;
+    private final RankedTree mStrongest;
+    private final Map<String, Entry> mById = new HashMap<>();
+    private long mNextSequence;
+
+    // The order whose positions are reported to the listener
+    private final Order mObservedOrder;
+    private OnChangeListener mListener;
+
+    /**
+     * Construct a new {@link OrderedQuakeSet}
+     *
+     * @param observedOrder is the order whose positions are reported to the listener
+     */
+    public OrderedQuakeSet(Order observedOrder) {
+        Random random = new Random();
+        mNewest = new RankedTree(NEWEST, random);
+        mStrongest = new RankedTree(STRONGEST, random);
+        mObservedOrder = observedOrder;
+    }
+
+    /**
+     * @return the order whose positions are reported to the listener
+     */
+    public Order getObservedOrder() {
+        return mObservedOrder;
+    }
+
+    /**
+     * @param listener is told the position of every change in the observed order, or null
+     */
+    public void setOnChangeListener(OnChangeListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @return the number of earthquakes in the set
+     */
+    public int size() {
+        return mById.size();
+    }
+
+    /**
+     * Insert an earthquake, or revise the earthquake with the same event ID
+     *
+     * @param quake is the earthquake
+     * @return      true if the earthquake was not in the set before
+     */
+    public boolean put(Quake quake) {
+        Entry entry = quake.getQuakeId() != null ? mById.get(quake.getQuakeId()) : null;
+        if (entry == null) {
+            entry = new Entry(mNextSequence++, quake);
+            mById.put(keyOf(entry), entry);
+            int newest = mNewest.insert(entry);
+            int strongest = mStrongest.insert(entry);
+            if (mListener != null) {
+                mListener.onInserted(mObservedOrder == Order.NEWEST_FIRST ? newest : strongest,
+                        quake);
+            }
+            return true;
+        }
+        if (entry.mQuake.getQuakeUpdated() == quake.getQuakeUpdated()) {
+            // The same revision, loaded again
+            return false;
+        }
+        if (STRONGEST.compare(entry.mQuake, quake) == 0) {
+            // Revised without moving in either order
+            entry.mQuake = quake;
+            if (mListener != null) {
+                mListener.onChanged(tree(mObservedOrder).rank(entry), quake);
+            }
+            return false;
+        }
+        int from = tree(mObservedOrder).rank(entry);
+        mNewest.remove(entry);
+        mStrongest.remove(entry);
+        entry.mQuake = quake;
+        int newest = mNewest.insert(entry);
+        int strongest = mStrongest.insert(entry);
+        if (mListener != null) {
+            int to = mObservedOrder == Order.NEWEST_FIRST ? newest : strongest;
+            if (from == to) {
+                mListener.onChanged(to, quake);
+            }
+            else {
+                mListener.onMoved(from, to, quake);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param earthquakes is the earthquakes to insert or revise, in any order
+     */
+    public void putAll(Collection<Quake> earthquakes) {
+        for (Quake quake : earthquakes) {
+            put(quake);
+        }
+    }
+
+    /**
+     * Remove the earthquake with an event ID
+     *
+     * @param eventId is the USGS event ID
+     * @return        the earthquake removed, or null if it was not in the set
+     */
+    public Quake remove(String eventId) {
+        Entry entry = mById.get(eventId);
+        if (entry == null) {
+            return null;
+        }
+        removeEntry(entry);
+        return entry.mQuake;
+    }
+
+    private void removeEntry(Entry entry) {
+        int position = tree(mObservedOrder).rank(entry);
+        mNewest.remove(entry);
+        mStrongest.remove(entry);
+        mById.remove(keyOf(entry));
+        if (mListener != null) {
+            mListener.onRemoved(position, entry.mQuake);
+        }
+    }
+
+    /**
+     * Remove every earthquake older than a time, i.e. once it has aged out of a query
+     *
+     * @param time is the time of the oldest earthquake kept
+     * @return     the number of earthquakes removed
+     */
+    public int removeOlderThan(long time) {
+        // Newest first, so the earthquakes to drop are the tail of the time order
+        int kept = countSince(time);
+        int removed = 0;
+        while (mNewest.size() > kept) {
+            removeEntry(mNewest.select(mNewest.size() - 1));
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Make the set hold exactly the earthquakes of a fresh result, telling the listener
+     * only about the earthquakes that were removed, inserted or revised
+     *
+     * @param earthquakes is the fresh result
+     */
+    public void replaceWith(List<Quake> earthquakes) {
+        Set<String> incoming = new HashSet<>();
+        for (Quake quake : earthquakes) {
+            if (quake.getQuakeId() != null) {
+                incoming.add(quake.getQuakeId());
+            }
+        }
+        // Earthquakes without an event ID cannot be matched, so they are always replaced
+        List<Entry> gone = new ArrayList<>();
+        for (Entry entry : mById.values()) {
+            String id = entry.mQuake.getQuakeId();
+            if (id == null || !incoming.contains(id)) {
+                gone.add(entry);
+            }
+        }
+        for (Entry entry : gone) {
+            removeEntry(entry);
+        }
+        putAll(earthquakes);
+    }
+
+    /**
+     * @param order    is the order to count positions in
+     * @param position is a position in the order
+     * @return         the earthquake at the position
+     */
+    public Quake get(Order order, int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size());
+        }
+        return tree(order).select(position).mQuake;
+    }
+
+    /**
+     * @param order   is the order to count positions in
+     * @param eventId is the USGS event ID
+     * @return        the position of the earthquake, or -1 if it is not in the set
+     */
+    public int positionOf(Order order, String eventId) {
+        Entry entry = eventId != null ? mById.get(eventId) : null;
+        return entry == null ? -1 : tree(order).rank(entry);
+    }
+
+    /**
+     * @param magnitude is a magnitude
+     * @return          the number of earthquakes at least as strong
+     */
+    public int countAtLeast(double magnitude) {
+        // Sorts after every earthquake of the magnitude, whatever its time
+        Quake probe = new Quake(magnitude, "", Long.MIN_VALUE, 0, null);
+        return mStrongest.countBefore(probe, false);
+    }
+
+    /**
+     * @param time is a time
+     * @return     the number of earthquakes at or after the time
+     */
+    public int countSince(long time) {
+        return mNewest.countBefore(new Quake(0.0, "", time, 0, null), true);
+    }
+
+    /**
+     * @param order is the order of the list
+     * @param limit is the maximum number of earthquakes returned
+     * @return      the first earthquakes of the order
+     */
+    public List<Quake> toList(Order order, int limit) {
+        List<Quake> list = new ArrayList<>(Math.min(limit, size()));
+        RankedTree tree = tree(order);
+        tree.collect(tree.mRoot, list, limit);
+        return list;
+    }
+
+    private RankedTree tree(Order order) {
+        return order == Order.NEWEST_FIRST ? mNewest : mStrongest;
+    }
+
+    private static String keyOf(Entry entry) {
+        String id = entry.mQuake.getQuakeId();
+        // Event IDs never start with '#', so unidentified earthquakes cannot collide
+        return id != null ? id : "#" + entry.mSequence;
+    }
+}
\ No newline at end of file
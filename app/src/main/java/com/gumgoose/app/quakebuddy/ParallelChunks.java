@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Class that splits a loop over a range into chunks run on an executor
+ *
+ * The calling thread takes any chunk no pool thread has started, so a caller on the same
+ * pool cannot deadlock waiting for its own chunks
+ */
+final class ParallelChunks {
+
+    /**
+     * The work done on one chunk of the range
+     */
+    interface Body {
+        /**
+         * @param chunk is the index of the chunk, from 0
+         * @param from  is the first index of the chunk
+         * @param to    is the index after the last of the chunk
+         */
+        void run(int chunk, int from, int to);
+    }
+
+    private ParallelChunks() {
+    }
+
+    /**
+     * @param size         is the length of the range
+     * @param minChunkSize is the shortest chunk worth handing to another thread
+     * @return             the number of chunks to split the range into
+     */
+    static int chunksFor(int size, int minChunkSize) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (processors < 2) {
+            return 1;
+        }
+        // A few chunks per thread, so one slow thread does not hold up the rest
+        return Math.max(1, Math.min(processors * 4, size / minChunkSize));
+    }
+
+    /**
+     * Run the body over the range, returning once every chunk has finished
+     *
+     * @param size     is the length of the range
+     * @param chunks   is the number of chunks to split the range into
+     * @param executor runs the chunks, or null to stay on this thread
+     * @param body     is the work done on each chunk
+     */
+    static void run(int size, int chunks, Executor executor, final Body body) {
+        if (executor == null || chunks < 2) {
+            body.run(0, 0, size);
+            return;
+        }
+        int chunkSize = (size + chunks - 1) / chunks;
+        List<FutureTask<Void>> tasks = new ArrayList<>(chunks);
+        int chunk = 0;
+        for (int from = 0; from < size; from += chunkSize) {
+            final int index = chunk++;
+            final int start = from;
+            final int end = Math.min(size, from + chunkSize);
+            tasks.add(new FutureTask<Void>(new Runnable() {
+                @Override
+                public void run() {
+                    body.run(index, start, end);
+                }
+            }, null));
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            executor.execute(tasks.get(i));
+        }
+        // Run every chunk no pool thread has picked up yet; running a started one is a no-op
+        for (FutureTask<Void> task : tasks) {
+            task.run();
+        }
+        try {
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running chunks", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Chunk failed", e.getCause());
+        }
+    }
+}
\ No newline at end of file
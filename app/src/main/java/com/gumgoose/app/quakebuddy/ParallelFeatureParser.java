@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Class that parses a large USGS GeoJSON response on several threads
+ *
+ * One pass over the characters finds where each feature of the "features" array starts
+ * and ends, without building any object. The features are then split into chunks, and
+ * each chunk parses its own features into its own slice of the results and its own
+ * {@link ParseReport}, so the threads share no lock until the reports are merged. The
+ * place names are interned after the merge, in one pass under the {@link PlaceInterner}'s
+ * lock
+ */
+final class ParallelFeatureParser {
+
+    /**
+     * Fewest features worth parsing on another thread
+     */
+    static final int MIN_CHUNK_FEATURES = 256;
+
+    private ParallelFeatureParser() {
+    }
+
+    /**
+     * Parse a response the way {@link QueryUtils#extractFeatureFromJson(String, ParseReport)}
+     * does, giving the same earthquakes in the same order
+     *
+     * @param earthquakeJSON is the JSON response String
+     * @param report         is told about every feature skipped and field defaulted
+     * @param executor       parses the chunks, or null to parse on this thread
+     * @param chunks         is the number of chunks to split the features into
+     * @return               a list of earthquakes, or null if the response is not a
+     *                       FeatureCollection
+     */
+    static List<Quake> parse(final String earthquakeJSON, ParseReport report,
+                             Executor executor, int chunks) {
+        final int[] bounds = featureBounds(earthquakeJSON);
+        if (bounds == null) {
+            // Not a plain FeatureCollection; the serial parser decides what is wrong with it
+            return QueryUtils.extractFeatureFromJson(earthquakeJSON, report);
+        }
+        int count = bounds.length / 2;
+        final Quake[] parsed = new Quake[count];
+        final ParseReport[] reports = new ParseReport[Math.max(1, chunks)];
+        // Set by any chunk holding a feature that is not valid JSON; chunks only ever set it
+        final boolean[] malformed = new boolean[1];
+        ParallelChunks.run(count, reports.length, executor, new ParallelChunks.Body() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                ParseReport chunkReport = new ParseReport();
+                for (int i = from; i < to; i++) {
+                    chunkReport.recordFeature();
+                    JSONObject feature;
+                    try {
+                        feature = new JSONObject(
+                                earthquakeJSON.substring(bounds[2 * i], bounds[2 * i + 1]));
+                    }
+                    catch (JSONException e) {
+                        // The body does not parse as a whole either
+                        malformed[0] = true;
+                        return;
+                    }
+                    parsed[i] = QueryUtils.extractFeature(feature, chunkReport, null);
+                }
+                reports[chunk] = chunkReport;
+            }
+        });
+        if (malformed[0]) {
+            // Rare enough to parse again on this thread, which logs and rejects the body
+            return QueryUtils.extractFeatureFromJson(earthquakeJSON, report);
+        }
+
+        // Merge the chunks in order, leaving out the skipped features
+        for (ParseReport chunkReport : reports) {
+            if (chunkReport != null) {
+                report.addAll(chunkReport);
+            }
+        }
+        List<Quake> earthquakes = new ArrayList<>(count);
+        for (Quake quake : parsed) {
+            if (quake != null) {
+                earthquakes.add(quake);
+            }
+        }
+        PlaceInterner.getInstance().internAll(earthquakes);
+        return earthquakes;
+    }
+
+    /**
+     * Find each object of the top level "features" array
+     *
+     * @param json is a JSON response String
+     * @return     the offset of the first character and the offset after the last of each
+     *             feature, in pairs, or null if the response is not an object whose
+     *             "features" array holds only objects, or is cut off
+     */
+    static int[] featureBounds(String json) {
+        if (json == null) {
+            return null;
+        }
+        int[] bounds = new int[64];
+        int count = 0;
+        int length = json.length();
+        int depth = 0;
+        // Depth inside the features array, or -1 outside it
+        int featuresDepth = -1;
+        boolean seenFeatures = false;
+        for (int i = 0; i < length; i++) {
+            char c = json.charAt(i);
+            switch (c) {
+                case '"': {
+                    int end = skipString(json, i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    if (depth == 1 && !seenFeatures && end == i + 9
+                            && json.startsWith("features", i + 1)) {
+                        // The key must be followed by its array
+                        int next = skipWhitespace(json, end + 1);
+                        if (next < length && json.charAt(next) == ':') {
+                            next = skipWhitespace(json, next + 1);
+                            if (next < length && json.charAt(next) == '[') {
+                                seenFeatures = true;
+                                featuresDepth = depth + 1;
+                                depth = featuresDepth;
+                                i = next;
+                                continue;
+                            }
+                        }
+                        return null;
+                    }
+                    if (depth == featuresDepth) {
+                        // A String where a feature should be
+                        return null;
+                    }
+                    i = end;
+                    break;
+                }
+                case '{':
+                case '[':
+                    if (depth == featuresDepth) {
+                        if (c != '{') {
+                            return null;
+                        }
+                        if (2 * count == bounds.length) {
+                            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                        }
+                        bounds[2 * count] = i;
+                    }
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    if (depth < 0) {
+                        return null;
+                    }
+                    if (depth == featuresDepth && c == '}') {
+                        bounds[2 * count + 1] = i + 1;
+                        count++;
+                    }
+                    else if (depth == featuresDepth - 1 && featuresDepth > 0) {
+                        if (c != ']') {
+                            return null;
+                        }
+                        featuresDepth = -1;
+                    }
+                    break;
+                case ',':
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                    break;
+                default:
+                    if (depth == featuresDepth) {
+                        // A number or literal where a feature should be
+                        return null;
+                    }
+                    break;
+            }
+        }
+        if (depth != 0 || !seenFeatures || featuresDepth != -1) {
+            return null;
+        }
+        return Arrays.copyOf(bounds, 2 * count);
+    }
+
+    /**
+     * @return the offset of the quote closing the String opened at the offset, or -1 if
+     *         the String is never closed
+     */
+    private static int skipString(String json, int open) {
+        int length = json.length();
+        for (int i = open + 1; i < length; i++) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            }
+            else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String json, int from) {
+        int i = from;
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class that counts what the lenient feature parser had to skip or default, per field,
+ * so upstream data quirks show up in the logs rather than as a failed refresh
+ *
+ * A feature is skipped when a field it cannot be listed without is missing or invalid,
+ * i.e. its magnitude or time; any other bad field is replaced by a default value
+ */
+public class ParseReport {
+
+    private int mFeatureCount;
+    private int mSkippedCount;
+
+    // Counters keyed by field name, sorted so the log lines are stable
+    private final Map<String, Integer> mSkipped = new TreeMap<>();
+    private final Map<String, Integer> mDefaulted = new TreeMap<>();
+
+    /**
+     * Record a feature that was parsed, whether or not it was kept
+     */
+    public synchronized void recordFeature() {
+        mFeatureCount++;
+    }
+
+    /**
+     * Record a feature dropped because of a field it cannot be listed without
+     *
+     * @param field is the name of the missing or invalid field
+     */
+    public synchronized void recordSkipped(String field) {
+        mSkippedCount++;
+        increment(mSkipped, field);
+    }
+
+    /**
+     * Record a missing or invalid field that was replaced by a default value
+     *
+     * @param field is the name of the field
+     */
+    public synchronized void recordDefaulted(String field) {
+        increment(mDefaulted, field);
+    }
+
+    private static void increment(Map<String, Integer> counters, String field) {
+        Integer count = counters.get(field);
+        counters.put(field, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Add the counters of another report to this one
+     *
+     * @param other is the report to add
+     */
+    public void addAll(ParseReport other) {
+        // Copy the other report first, so two locks are never held at once
+        int featureCount;
+        int skippedCount;
+        Map<String, Integer> skipped;
+        Map<String, Integer> defaulted;
+        synchronized (other) {
+            featureCount = other.mFeatureCount;
+            skippedCount = other.mSkippedCount;
+            skipped = new TreeMap<>(other.mSkipped);
+            defaulted = new TreeMap<>(other.mDefaulted);
+        }
+        synchronized (this) {
+            mFeatureCount += featureCount;
+            mSkippedCount += skippedCount;
+            for (Map.Entry<String, Integer> entry : skipped.entrySet()) {
+                Integer count = mSkipped.get(entry.getKey());
+                mSkipped.put(entry.getKey(), (count == null ? 0 : count) + entry.getValue());
+            }
+            for (Map.Entry<String, Integer> entry : defaulted.entrySet()) {
+                Integer count = mDefaulted.get(entry.getKey());
+                mDefaulted.put(entry.getKey(), (count == null ? 0 : count) + entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the number of features seen
+     */
+    public synchronized int getFeatureCount() {
+        return mFeatureCount;
+    }
+
+    /**
+     * @return the number of features dropped
+     */
+    public synchronized int getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * @param field is the name of a field
+     * @return      the number of features dropped because of the field
+     */
+    public synchronized int getSkipped(String field) {
+        Integer count = mSkipped.get(field);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @param field is the name of a field
+     * @return      the number of times the field was replaced by a default value
+     */
+    public synchronized int getDefaulted(String field) {
+        Integer count = mDefaulted.get(field);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return true if every feature was parsed without skipping or defaulting anything
+     */
+    public synchronized boolean isClean() {
+        return mSkipped.isEmpty() && mDefaulted.isEmpty();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mFeatureCount + " features, " + mSkippedCount + " skipped " + mSkipped
+                + ", defaulted " + mDefaulted;
+    }
+}
\ No newline at end of file
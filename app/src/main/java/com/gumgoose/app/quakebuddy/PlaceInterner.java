@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Class that shares a single String instance per place name, so that the same earthquake
+ * parsed on every refresh does not keep a fresh copy of its location in memory
+ */
+public final class PlaceInterner implements TrimmableCache {
+
+    /**
+     * Estimated size of a table entry on top of the String's characters
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private static final PlaceInterner sInstance = new PlaceInterner();
+
+    private final HashMap<String, String> mPlaces = new HashMap<>();
+    private long mSizeBytes;
+
+    /**
+     * @return the app-wide {@link PlaceInterner}
+     */
+    public static PlaceInterner getInstance() {
+        return sInstance;
+    }
+
+    PlaceInterner() {
+        // Use getInstance() outside of tests
+    }
+
+    /**
+     * @param place is a place name as parsed from the USGS response
+     * @return      the shared instance of an equal place name
+     */
+    public synchronized String intern(String place) {
+        if (place == null) {
+            return null;
+        }
+        return share(place);
+    }
+
+    /**
+     * Give every earthquake the shared instance of its place name, taking the lock once for
+     * the whole list rather than once per earthquake
+     *
+     * @param earthquakes is earthquakes not yet handed to any other thread
+     */
+    public synchronized void internAll(List<Quake> earthquakes) {
+        for (Quake quake : earthquakes) {
+            String place = quake.getQuakeLocation();
+            if (place != null) {
+                quake.setQuakeLocation(share(place));
+            }
+        }
+    }
+
+    private String share(String place) {
+        String shared = mPlaces.get(place);
+        if (shared == null) {
+            mPlaces.put(place, place);
+            mSizeBytes += ENTRY_OVERHEAD_BYTES + 2 * place.length();
+            shared = place;
+        }
+        return shared;
+    }
+
+    @Override
+    public synchronized long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    @Override
+    public synchronized void trimToFraction(float fraction) {
+        // Entries carry no usage order, so any trim starts the table over;
+        // places still in use are simply interned again on the next parse
+        if (fraction < 1f) {
+            mPlaces.clear();
+            mSizeBytes = 0;
+        }
+    }
+}
\ No newline at end of file
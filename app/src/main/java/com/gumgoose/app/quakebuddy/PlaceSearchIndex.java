@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Class that finds earthquakes by the words of their place names, matching every word of
+ * a query as a prefix so that results can follow the user's typing
+ *
+ * Place names are split into normalised words (lower case, without accents) and each word
+ * keeps a posting list of the earthquakes using it. The words are kept sorted, so a prefix
+ * selects a range of words; their posting lists are unioned into a bit set per query word
+ * and the bit sets intersected. Earthquakes are added incrementally, and replaced
+ * revisions are marked dead until enough of them pile up to compact the postings
+ */
+public class PlaceSearchIndex {
+
+    // Words of USGS place names that carry no meaning for a search
+    private static final Set<String> IGNORED_WORDS = new HashSet<>(Arrays.asList(
+            "of", "the", "km", "n", "nne", "ne", "ene", "e", "ese", "se", "sse",
+            "s", "ssw", "sw", "wsw", "w", "wnw", "nw", "nnw"));
+
+    private static final Comparator<Quake> OLDEST_FIRST = new Comparator<Quake>() {
+        @Override
+        public int compare(Quake a, Quake b) {
+            return a.getQuakeUnixTime().compareTo(b.getQuakeUnixTime());
+        }
+    };
+
+    private static PlaceSearchIndex sInstance;
+
+    // Posting lists of document numbers by word, in ascending document order
+    private final TreeMap<String, Postings> mWords = new TreeMap<>();
+
+    // Earthquakes by document number; null once replaced or removed
+    private Quake[] mDocuments = new Quake[256];
+    private int mDocumentCount;
+    private int mDeadCount;
+
+    // Whether the index holds the whole event history, or must read it again
+    private boolean mBuilt;
+
+    // Held while the history is read, so only one build runs at a time
+    private final Object mBuildLock = new Object();
+    // Merges that arrive while the history is read, applied once it has been; the read
+    // may have started before they were written
+    private boolean mBuilding;
+    private final List<Quake> mPendingMerges = new ArrayList<>();
+    private boolean mPendingRebuild;
+
+    // Live document number of every event ID
+    private final Map<String, Integer> mDocumentById = new HashMap<>();
+
+    /**
+     * @return the app-wide {@link PlaceSearchIndex}
+     */
+    public static synchronized PlaceSearchIndex getInstance() {
+        if (sInstance == null) {
+            sInstance = new PlaceSearchIndex();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new, empty {@link PlaceSearchIndex}; the app uses {@link #getInstance()}
+     */
+    PlaceSearchIndex() {
+    }
+
+    /**
+     * Split a place name or query into normalised words
+     *
+     * @param text is the text to split
+     * @return     the words, lower case and without accents, in order
+     */
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String normalised = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                .toLowerCase(Locale.US);
+        int start = -1;
+        for (int i = 0; i <= normalised.length(); i++) {
+            boolean letter = i < normalised.length()
+                    && Character.isLetterOrDigit(normalised.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            }
+            else if (!letter && start >= 0) {
+                words.add(normalised.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Read the whole event history into the index unless it is already up to date
+     *
+     * This task streams the event file, so it must run on a background thread
+     *
+     * @param history is the event history to index
+     */
+    public void ensureBuilt(EventHistory history) throws IOException {
+        synchronized (mBuildLock) {
+            synchronized (this) {
+                if (mBuilt) {
+                    return;
+                }
+                mBuilding = true;
+                mPendingRebuild = false;
+            }
+            List<Quake> earthquakes = new ArrayList<>();
+            try {
+                QuakeReader reader = history.openReader();
+                if (reader != null) {
+                    try {
+                        Quake quake = reader.next();
+                        while (quake != null) {
+                            earthquakes.add(quake);
+                            quake = reader.next();
+                        }
+                    }
+                    finally {
+                        reader.close();
+                    }
+                }
+            }
+            catch (IOException e) {
+                synchronized (this) {
+                    mBuilding = false;
+                    mPendingMerges.clear();
+                }
+                throw e;
+            }
+            synchronized (this) {
+                clear();
+                addAll(earthquakes);
+                // Newer than anything read, so they replace what the history held
+                addAll(mPendingMerges);
+                mPendingMerges.clear();
+                mBuilding = false;
+                // An import during the read may have replaced the file after it was opened
+                mBuilt = !mPendingRebuild;
+            }
+        }
+    }
+
+    /**
+     * @return true if the index holds the whole event history
+     */
+    public synchronized boolean isBuilt() {
+        return mBuilt;
+    }
+
+    /**
+     * Keep the index in step with a merge into the event history; a merge that arrives
+     * while the history is being read is applied once the read is done
+     *
+     * @param earthquakes is the earthquakes merged, or null if the whole history has to be
+     *                    read again on the next {@link #ensureBuilt(EventHistory)}
+     */
+    public synchronized void onHistoryMerged(List<Quake> earthquakes) {
+        if (earthquakes == null) {
+            mBuilt = false;
+            mPendingRebuild = mBuilding;
+            mPendingMerges.clear();
+        }
+        else if (mBuilding) {
+            mPendingMerges.addAll(earthquakes);
+        }
+        else if (mBuilt) {
+            addAll(earthquakes);
+        }
+    }
+
+    /**
+     * @return the number of live earthquakes in the index
+     */
+    public synchronized int size() {
+        return mDocumentById.size();
+    }
+
+    /**
+     * Add earthquakes to the index, replacing earthquakes with the same event ID
+     *
+     * @param earthquakes is the earthquakes to add
+     */
+    public synchronized void addAll(Iterable<Quake> earthquakes) {
+        for (Quake quake : earthquakes) {
+            add(quake);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Add an earthquake to the index, replacing an earthquake with the same event ID
+     *
+     * @param quake is the earthquake to add
+     */
+    public synchronized void add(Quake quake) {
+        if (quake.getQuakeId() != null) {
+            Integer previous = mDocumentById.remove(quake.getQuakeId());
+            if (previous != null) {
+                mDocuments[previous] = null;
+                mDeadCount++;
+            }
+        }
+        if (mDocumentCount == mDocuments.length) {
+            mDocuments = Arrays.copyOf(mDocuments, mDocumentCount * 2);
+        }
+        int document = mDocumentCount++;
+        mDocuments[document] = quake;
+        if (quake.getQuakeId() != null) {
+            mDocumentById.put(quake.getQuakeId(), document);
+        }
+        indexWords(quake, document);
+    }
+
+    /**
+     * Remove every earthquake from the index
+     */
+    public synchronized void clear() {
+        mWords.clear();
+        mDocumentById.clear();
+        Arrays.fill(mDocuments, null);
+        mDocumentCount = 0;
+        mDeadCount = 0;
+    }
+
+    /**
+     * Find the earthquakes whose place names contain a word starting with every word of
+     * the query, i.e. "hok" or "alas peninsula"
+     *
+     * @param query is the text typed by the user
+     * @param since is the time of the oldest earthquake to return
+     * @param limit is the maximum number of earthquakes to return
+     * @return      the newest matching earthquakes, newest first
+     */
+    public synchronized List<Quake> search(String query, long since, int limit) {
+        List<String> queryWords = tokenize(query);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        long[] matches = null;
+        for (String prefix : queryWords) {
+            long[] wordMatches = new long[(mDocumentCount + 63) >>> 6];
+            // Every word starting with the prefix sorts between the prefix and its successor
+            SortedMap<String, Postings> range = mWords.subMap(prefix, prefix + Character.MAX_VALUE);
+            for (Postings postings : range.values()) {
+                for (int i = 0; i < postings.mSize; i++) {
+                    int document = postings.mDocuments[i];
+                    wordMatches[document >>> 6] |= 1L << document;
+                }
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            }
+            else {
+                for (int i = 0; i < matches.length; i++) {
+                    matches[i] &= wordMatches[i];
+                }
+            }
+        }
+
+        // Keep the newest matches, oldest at the head so it is the one dropped
+        PriorityQueue<Quake> newest = new PriorityQueue<>(limit, OLDEST_FIRST);
+        for (int word = 0; word < matches.length; word++) {
+            long bits = matches[word];
+            while (bits != 0) {
+                int document = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                Quake quake = mDocuments[document];
+                if (quake == null || quake.getQuakeUnixTime() < since) {
+                    continue;
+                }
+                if (newest.size() < limit) {
+                    newest.add(quake);
+                }
+                else if (OLDEST_FIRST.compare(quake, newest.peek()) > 0) {
+                    newest.poll();
+                    newest.add(quake);
+                }
+            }
+        }
+        List<Quake> results = new ArrayList<>(newest);
+        Collections.sort(results, Collections.reverseOrder(OLDEST_FIRST));
+        return results;
+    }
+
+    private void indexWords(Quake quake, int document) {
+        List<String> words = tokenize(quake.getQuakeLocation());
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            if (isIgnored(word) || words.indexOf(word) < i) {
+                // Skip filler words and a word repeated within the same place
+                continue;
+            }
+            Postings postings = mWords.get(word);
+            if (postings == null) {
+                postings = new Postings();
+                mWords.put(word, postings);
+            }
+            postings.add(document);
+        }
+    }
+
+    private static boolean isIgnored(String word) {
+        if (IGNORED_WORDS.contains(word)) {
+            return true;
+        }
+        // Distances such as "10km"
+        return word.endsWith("km") && word.length() > 2
+                && Character.isDigit(word.charAt(0));
+    }
+
+    /**
+     * Renumber the live earthquakes once replaced revisions make up a third of the index
+     */
+    private void compactIfNeeded() {
+        if (mDeadCount < 1024 || mDeadCount * 3 < mDocumentCount) {
+            return;
+        }
+        Quake[] live = new Quake[Math.max(256, mDocumentById.size() * 2)];
+        int count = 0;
+        for (int document = 0; document < mDocumentCount; document++) {
+            if (mDocuments[document] != null) {
+                live[count++] = mDocuments[document];
+            }
+        }
+        clear();
+        mDocuments = live;
+        for (int document = 0; document < count; document++) {
+            Quake quake = live[document];
+            if (quake.getQuakeId() != null) {
+                mDocumentById.put(quake.getQuakeId(), document);
+            }
+            indexWords(quake, document);
+        }
+        mDocumentCount = count;
+    }
+
+    /**
+     * Growable list of document numbers
+     */
+    private static final class Postings {
+
+        int[] mDocuments = new int[4];
+        int mSize;
+
+        void add(int document) {
+            if (mSize == mDocuments.length) {
+                mDocuments = Arrays.copyOf(mDocuments, mSize * 2);
+            }
+            mDocuments[mSize++] = document;
+        }
+    }
+}
\ No newline at end of file
@@ -33,6 +33,23 @@ public class Quake {
     // URL address of the earthquake
     private String mQuakeURL;
 
+    // USGS event ID of the earthquake (i.e. "us10007xyz")
+    private String mQuakeId;
+
+    // Time the earthquake's USGS record was last revised
+    private long mQuakeUpdated;
+
+    // URL address of the earthquake's GeoJSON detail feed
+    private String mDetailURL;
+
+    // Hypocentre of the earthquake, NaN when not known
+    private double mLatitude = Double.NaN;
+    private double mLongitude = Double.NaN;
+    private double mDepthKm = Double.NaN;
+
+    // Whether USGS has deleted the event, reported only by incremental syncs
+    private boolean mDeleted;
+
     /**
      * Create a new {@link Quake} object
      *
@@ -51,6 +68,48 @@ public class Quake {
         mQuakeURL = quakeURL;
     }
 
+    /**
+     * Create a new {@link Quake} object that can be matched to its USGS detail feed
+     *
+     * @param quakeMagnitude is a double with the magnitude of the earthquake
+     * @param quakeLocation  is a String with the location of the earthquake
+     * @param quakeUnixTime  is a long with the unix time of the earthquake
+     * @param warnTsunami    is a binary integer that tells whether there is a tsunami warning
+     * @param quakeURL       is a String with the URL address of the earthquake's details
+     * @param quakeId        is a String with the USGS event ID of the earthquake
+     * @param quakeUpdated   is a long with the unix time the event was last revised
+     * @param detailURL      is a String with the URL address of the GeoJSON detail feed
+     * @param latitude       is a double with the latitude of the earthquake
+     * @param longitude      is a double with the longitude of the earthquake
+     * @param depthKm        is a double with the depth of the earthquake in kilometres
+     */
+    public Quake(Double quakeMagnitude, String quakeLocation, Long quakeUnixTime,
+                 int warnTsunami, String quakeURL, String quakeId, long quakeUpdated,
+                 String detailURL, double latitude, double longitude, double depthKm) {
+        this(quakeMagnitude, quakeLocation, quakeUnixTime, warnTsunami, quakeURL);
+        mQuakeId = quakeId;
+        mQuakeUpdated = quakeUpdated;
+        mDetailURL = detailURL;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mDepthKm = depthKm;
+    }
+
+    /**
+     * Create a record of an event USGS has deleted, which removes the event when merged
+     *
+     * @param quakeId       is a String with the USGS event ID of the earthquake
+     * @param quakeUnixTime is a long with the unix time of the earthquake
+     * @param quakeUpdated  is a long with the unix time the event was deleted
+     * @return              the deleted event, with no magnitude, place or coordinates
+     */
+    public static Quake deleted(String quakeId, long quakeUnixTime, long quakeUpdated) {
+        Quake quake = new Quake(0.0, "", quakeUnixTime, 0, null, quakeId, quakeUpdated, null,
+                Double.NaN, Double.NaN, Double.NaN);
+        quake.mDeleted = true;
+        return quake;
+    }
+
     /** Getter method for magnitude of the earthquake */
     public double getQuakeMagnitude() {
         return mQuakeMagnitude;
@@ -61,6 +120,11 @@ public class Quake {
         return mQuakeLocation;
     }
 
+    /** Swap the location for an equal shared String, before the earthquake is published */
+    void setQuakeLocation(String quakeLocation) {
+        mQuakeLocation = quakeLocation;
+    }
+
     /** Getter method for time of the earthquake */
     public Long getQuakeUnixTime() {
         return mQuakeUnixTime;
@@ -75,4 +139,39 @@ public class Quake {
     public String getQuakeURL() {
         return mQuakeURL;
     }
+
+    /** Getter method for USGS event ID of the earthquake */
+    public String getQuakeId() {
+        return mQuakeId;
+    }
+
+    /** Getter method for time the earthquake's record was last revised */
+    public long getQuakeUpdated() {
+        return mQuakeUpdated;
+    }
+
+    /** Getter method for URL address of the earthquake's GeoJSON detail feed */
+    public String getDetailURL() {
+        return mDetailURL;
+    }
+
+    /** Getter method for latitude of the earthquake */
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    /** Getter method for longitude of the earthquake */
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    /** Getter method for depth of the earthquake in kilometres */
+    public double getDepthKm() {
+        return mDepthKm;
+    }
+
+    /** Getter method for whether USGS has deleted the event */
+    public boolean isDeleted() {
+        return mDeleted;
+    }
 }
\ No newline at end of file
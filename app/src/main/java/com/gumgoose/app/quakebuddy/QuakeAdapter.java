@@ -17,9 +17,8 @@
 package com.gumgoose.app.quakebuddy;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.SharedPreferences;
-import android.graphics.Color;
-import android.graphics.drawable.GradientDrawable;
 import android.preference.PreferenceManager;
 import android.support.v4.content.ContextCompat;
 import android.text.format.DateFormat;
@@ -30,10 +29,7 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
-import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.TimeZone;
 
 /**
  * Class that binds earthquake data from the USGS API service to the ListView
@@ -46,19 +42,30 @@ public class QuakeAdapter extends ArrayAdapter<Quake> {
      */
     private static final String LOCATION_SEPARATOR = " of ";
 
+    // Text colors resolved once rather than on every bind
+    private final int mDetailsColor;
+    private final int mAccentColor;
+
     public QuakeAdapter(Activity context, ArrayList<Quake> earthquakes) {
         // Initialize the ArrayAdapter's internal storage
         super(context, 0, earthquakes);
+        mDetailsColor = ContextCompat.getColor(context, R.color.textColorEarthquakeDetails);
+        mAccentColor = ContextCompat.getColor(context, R.color.colorAccent);
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
+        // Time the bind and its sub-steps while the list scrolls
+        FrameTrace trace = FrameMonitor.getInstance().getTrace();
+        trace.beginBind(position);
+
         // Check if the existing view is being reused, otherwise inflate the view
         View listItemView = convertView;
         if (listItemView == null) {
             listItemView = LayoutInflater.from(getContext()).inflate(
                     R.layout.earthquake_list_item, parent, false);
         }
+        trace.mark(FrameTrace.Step.INFLATE);
 
         // Initiate user's shared preferences for customising the ListView item
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getContext());
@@ -102,10 +109,21 @@ public class QuakeAdapter extends ArrayAdapter<Quake> {
         TextView secondaryTextView =
                 (TextView) listItemView.findViewById(R.id.list_location_heading);
         // Change the secondaryTextView color to textColorEarthquakeDetails
-        secondaryTextView.setTextColor(ContextCompat.getColor(getContext(), R.color.textColorEarthquakeDetails));
+        secondaryTextView.setTextColor(mDetailsColor);
         // Populate the secondaryTextView with the earthquake's location offset
         secondaryTextView.setText(locationOffset);
 
+        // Show the felt estimate computed when the result arrived, if the earthquake is felt
+        TextView feltView = (TextView) listItemView.findViewById(R.id.list_felt);
+        FeltEstimator.Estimate estimate = FeltEstimator.getInstance().get(currentEarthquake);
+        if (estimate != null) {
+            feltView.setText(estimate.getLabel());
+            feltView.setVisibility(View.VISIBLE);
+        }
+        else {
+            feltView.setVisibility(View.GONE);
+        }
+
         // Find a reference to the list_magnitude TextView
         TextView magnitudeView = (TextView) listItemView.findViewById(R.id.list_magnitude);
         // Format the magnitude to show 1 decimal place
@@ -132,29 +150,28 @@ public class QuakeAdapter extends ArrayAdapter<Quake> {
             // Populate the fourthView TextView with the earthquake date
             fourthView.setText(getDate(currentEarthquake.getQuakeUnixTime()));
         }
+        trace.mark(FrameTrace.Step.TEXT);
 
         // Obtain user's preference on whether to display 'Tsunami Watch' theme
         String tsunamiPref = prefs.getString("tsunami_watch_theme", "enabled");
-        // Find a reference to the drawable circle object
-        GradientDrawable magnitudeCircle = (GradientDrawable) magnitudeView.getBackground();
+        // Reference the circle of the earthquake's magnitude
+        int circleBucket = MagnitudeCircles.bucketOf(currentEarthquake.getQuakeMagnitude());
 
         if (tsunamiPref.equals("enabled") && currentEarthquake.getTsunamiWarning() == 1) {
             // Display current Tsunami watches within the last 24 hours
             if (DateUtils.isToday(currentEarthquake.getQuakeUnixTime())) {
-                // Change the circle color to black
-                magnitudeCircle.setColor(Color.BLACK);
+                // Change the circle to the black one
+                circleBucket = MagnitudeCircles.TSUNAMI;
                 // Change the secondaryTextView color to colorAccent
-                secondaryTextView.setTextColor(ContextCompat.getColor(getContext(), R.color.colorAccent));
+                secondaryTextView.setTextColor(mAccentColor);
                 // Populate the secondaryTextView to "Check for Tsunamis"
                 secondaryTextView.setText(R.string.tsunami_header);
             }
         }
-        else {
-            // Reference the circle color with respect to the magnitude
-            int magnitudeColor = getMagnitudeColor(currentEarthquake.getQuakeMagnitude());
-            // Change the circle color
-            magnitudeCircle.setColor(magnitudeColor);
-        }
+        // Swap in the row's ready colored circle
+        MagnitudeCircles.getInstance(getContext()).bind(magnitudeView, circleBucket);
+        trace.mark(FrameTrace.Step.RECOLOUR);
+        trace.endBind();
         // Return the whole list item layout so it can be displayed
         return listItemView;
     }
@@ -166,54 +183,19 @@ public class QuakeAdapter extends ArrayAdapter<Quake> {
      * @return          the magnitude as a String
      */
     private String formatMagnitude(double magnitude) {
-        DecimalFormat magnitudeFormat = new DecimalFormat("0.0");
-        return magnitudeFormat.format(magnitude);
+        return Formatters.getInstance().magnitude().format(magnitude);
     }
 
     /**
      * Helper method to intensify circle color with respect to magnitude
      *
+     * @param context   is the context the colors are resolved with
      * @param magnitude is the earthquake magnitude
      * @return          the circle color as an integer
      */
-    private int getMagnitudeColor(double magnitude) {
-        int magnitudeColorResourceId;
-        int magnitudeFloor = (int) Math.floor(magnitude);
-        switch (magnitudeFloor) {
-            case 0:
-            case 1:
-                magnitudeColorResourceId = R.color.magnitude1;
-                break;
-            case 2:
-                magnitudeColorResourceId = R.color.magnitude2;
-                break;
-            case 3:
-                magnitudeColorResourceId = R.color.magnitude3;
-                break;
-            case 4:
-                magnitudeColorResourceId = R.color.magnitude4;
-                break;
-            case 5:
-                magnitudeColorResourceId = R.color.magnitude5;
-                break;
-            case 6:
-                magnitudeColorResourceId = R.color.magnitude6;
-                break;
-            case 7:
-                magnitudeColorResourceId = R.color.magnitude7;
-                break;
-            case 8:
-                magnitudeColorResourceId = R.color.magnitude8;
-                break;
-            case 9:
-                magnitudeColorResourceId = R.color.magnitude9;
-                break;
-            default:
-                magnitudeColorResourceId = R.color.magnitude10plus;
-                break;
-        }
-        // Return the relevant circle color
-        return ContextCompat.getColor(getContext(), magnitudeColorResourceId);
+    static int getMagnitudeColor(Context context, double magnitude) {
+        // Resolved once for the whole app
+        return MagnitudeCircles.getInstance(context).getColor(magnitude);
     }
 
     /**
@@ -268,12 +250,8 @@ public class QuakeAdapter extends ArrayAdapter<Quake> {
      * @return     the earthquake date as a String
      */
     private String getDate(long date) {
-        // Our target date format is "Feb 11, 2017"
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM d, yyyy");
-        // Detect the system time zone
-        sdf.setTimeZone(TimeZone.getDefault());
-        // Return the local date
-        return sdf.format(date);
+        // Our target date format is "Feb 11, 2017", in the system time zone
+        return Formatters.getInstance().date().format(date);
     }
 
     /**
@@ -283,21 +261,7 @@ public class QuakeAdapter extends ArrayAdapter<Quake> {
      * @return     the earthquake time as a String
      */
     private String getStandardTime(long time) {
-        if (DateFormat.is24HourFormat(getContext())) {
-            // System is using the 24-hour time format
-            SimpleDateFormat sdf = new SimpleDateFormat("HH:mm");
-            // Detect the system time zone
-            sdf.setTimeZone(TimeZone.getDefault());
-            // Return the local time in 24-hour format
-            return sdf.format(time);
-        }
-        else {
-            // System is using the 12-hour time format
-            SimpleDateFormat sdf = new SimpleDateFormat("hh:mm a");
-            // Detect the system time zone
-            sdf.setTimeZone(TimeZone.getDefault());
-            // Return the local time in 12-hour format
-            return sdf.format(time);
-        }
+        // Return the local time in the system's 24-hour or 12-hour format
+        return Formatters.getInstance().time(DateFormat.is24HourFormat(getContext())).format(time);
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.os.StrictMode;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Application class that sets up the app-wide caches and trims them under memory pressure
+ */
+public class QuakeBuddyApp extends Application {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = QuakeBuddyApp.class.getSimpleName();
+
+    // Held here, as preferences only keep weak references to their listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener mOrderListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                    // The widget lists earthquakes in the same order as the list
+                    if (getString(R.string.settings_order_by_key).equals(key)) {
+                        QuakeWidgetProvider.pushUpdate(QuakeBuddyApp.this);
+                    }
+                    else if (getString(R.string.settings_data_budget_key).equals(key)) {
+                        applyDataBudget(prefs);
+                    }
+                    else if (getString(R.string.settings_data_source_key).equals(key)) {
+                        applyDataSource(prefs);
+                    }
+                }
+            };
+
+    // Follows the active network, so every response is counted against the right budget
+    private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            DataBudget.getInstance().setMetered(DataBudget.isActiveNetworkMetered(context));
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Time the cold start from here to the first row of earthquakes
+        StartupTracer.getInstance().begin();
+
+        if (BuildConfig.DEBUG) {
+            // Let the platform log the main thread I/O the scheduler's own checks miss
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyLog()
+                    .build());
+        }
+
+        // Register every in-process cache with its eviction tier
+        CacheManager cacheManager = CacheManager.getInstance();
+        cacheManager.register(CacheTier.DETAIL_PAYLOADS, QuakeDetailLoader.getDetailMemoryCache());
+        cacheManager.register(CacheTier.FORMATTERS, Formatters.getInstance());
+        cacheManager.register(CacheTier.PARSED_RESULTS, QuakeRepository.getInstance());
+        cacheManager.register(CacheTier.PARSED_RESULTS, FeltEstimator.getInstance().getCache());
+        cacheManager.register(CacheTier.INTERNED_PLACES, PlaceInterner.getInstance());
+
+        // The memory caches whose hit rates the diagnostics screen shows
+        Metrics metrics = Metrics.getInstance();
+        metrics.registerCache("details", QuakeDetailLoader.getDetailMemoryCache());
+        metrics.registerCache("felt_estimates", FeltEstimator.getInstance().getCache());
+
+        // The home-screen widget follows what every fetch changes in the shared results
+        QuakeRepository.getInstance().subscribe(new QuakeRepository.Subscriber() {
+            @Override
+            public void onPublished(QuakeRepository.Snapshot snapshot,
+                                    QuakeRepository.Delta delta) {
+                List<Quake> changed = delta.getChanged();
+                List<String> removed = WidgetSnapshot.removedWithin(snapshot.getEarthquakes(),
+                        delta.getRemoved());
+                if (!changed.isEmpty() || !removed.isEmpty()) {
+                    QuakeWidgetProvider.onHistoryMerged(QuakeBuddyApp.this, changed, removed);
+                }
+            }
+        }, null);
+
+        // Keep the place search index in step with every refresh and import, and the
+        // widget with imports, which never reach the shared results
+        EventHistory.getInstance(this).addOnMergeListener(new EventHistory.OnMergeListener() {
+            @Override
+            public void onMerged(List<Quake> earthquakes) {
+                if (earthquakes == null) {
+                    QuakeWidgetProvider.onHistoryMerged(QuakeBuddyApp.this, null);
+                }
+                PlaceSearchIndex.getInstance().onHistoryMerged(earthquakes);
+                if (earthquakes != null) {
+                    // Loaded lists also fill the archive of past days, written on the
+                    // disk pool
+                    EventArchive.getInstance(QuakeBuddyApp.this).addQuietly(earthquakes);
+                }
+            }
+        });
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        sharedPrefs.registerOnSharedPreferenceChangeListener(mOrderListener);
+
+        // Sync less on metered networks, within the user's daily mobile data budget
+        DataBudget.getInstance().attach(this);
+        applyDataBudget(sharedPrefs);
+        registerReceiver(mConnectivityReceiver,
+                new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        // Ask the user's data source first; the sources are probed only once one fails.
+        // The earthquakes already seen keep their IDs if a mirror answers after a restart
+        applyDataSource(sharedPrefs);
+        AppScheduler.getInstance().getExecutor(AppScheduler.Pool.DISK).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SourceRouter.getInstance().seed(EventHistory.getInstance(QuakeBuddyApp.this)
+                            .readRecent(SourceRouter.SEED_COUNT));
+                }
+                catch (IOException e) {
+                    Log.w(LOG_TAG, "Problem with reading the history for the data sources", e);
+                }
+            }
+        });
+    }
+
+    private void applyDataSource(SharedPreferences prefs) {
+        SourceRouter.getInstance().setPreferred(prefs.getString(
+                getString(R.string.settings_data_source_key),
+                getString(R.string.settings_data_source_default)));
+    }
+
+    private void applyDataBudget(SharedPreferences prefs) {
+        long limitBytes = Long.parseLong(prefs.getString(
+                getString(R.string.settings_data_budget_key),
+                getString(R.string.settings_data_budget_default)));
+        DataBudget.getInstance().setMeteredLimitBytes(
+                limitBytes < 0 ? DataBudget.UNLIMITED : limitBytes);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        CacheManager cacheManager = CacheManager.getInstance();
+        Log.i(LOG_TAG, "Trim level " + level + ", caches before: " + cacheManager.describeUsage());
+        cacheManager.onTrimMemory(level);
+        Log.i(LOG_TAG, "Caches after: " + cacheManager.describeUsage());
+        // Backgrounding is a natural point to see how work flowed while in use
+        AppScheduler.getInstance().logSummary();
+        Log.i(LOG_TAG, "Data used: " + DataBudget.getInstance());
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        // The system is about to kill background processes, give everything back
+        CacheManager.getInstance().onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+}
\ No newline at end of file
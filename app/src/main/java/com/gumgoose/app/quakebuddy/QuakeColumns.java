@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that holds the magnitudes and times of many earthquakes as primitive columns, so
+ * the {@link SeismicKernels} can run tight loops over them without boxing or chasing a
+ * pointer per earthquake
+ */
+public class QuakeColumns {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private double[] mMagnitudes;
+    private long[] mTimes;
+    private int mSize;
+
+    /**
+     * Construct a new, empty {@link QuakeColumns}
+     */
+    public QuakeColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Construct a new, empty {@link QuakeColumns}
+     *
+     * @param capacity is the number of earthquakes expected
+     */
+    public QuakeColumns(int capacity) {
+        mMagnitudes = new double[Math.max(1, capacity)];
+        mTimes = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * @param earthquakes is a list of earthquakes
+     * @return            the columns of the list, in the same order
+     */
+    public static QuakeColumns of(List<Quake> earthquakes) {
+        QuakeColumns columns = new QuakeColumns(earthquakes.size());
+        for (Quake quake : earthquakes) {
+            columns.add(quake);
+        }
+        return columns;
+    }
+
+    /**
+     * @param quake is the earthquake to append
+     */
+    public void add(Quake quake) {
+        add(quake.getQuakeMagnitude(), quake.getQuakeUnixTime());
+    }
+
+    /**
+     * @param magnitude is the magnitude of the earthquake to append
+     * @param time      is the time of the earthquake to append
+     */
+    public void add(double magnitude, long time) {
+        if (mSize == mMagnitudes.length) {
+            int capacity = mSize + (mSize >> 1) + 1;
+            mMagnitudes = Arrays.copyOf(mMagnitudes, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+        }
+        mMagnitudes[mSize] = magnitude;
+        mTimes[mSize] = time;
+        mSize++;
+    }
+
+    /**
+     * @return the number of earthquakes
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the magnitude column; only the first {@link #size()} values are set
+     */
+    public double[] getMagnitudes() {
+        return mMagnitudes;
+    }
+
+    /**
+     * @return the time column; only the first {@link #size()} values are set
+     */
+    public long[] getTimes() {
+        return mTimes;
+    }
+}
\ No newline at end of file
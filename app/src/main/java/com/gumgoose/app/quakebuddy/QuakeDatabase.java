@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_DEPTH_KM;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_DETAIL_URL;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_EVENT_ID;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_LATITUDE;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_LONGITUDE;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_MAGNITUDE;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_PLACE;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_TIME;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_TSUNAMI;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_UPDATED;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.COLUMN_URL;
+import static com.gumgoose.app.quakebuddy.QuakeSchema.TABLE_QUAKES;
+
+/**
+ * Class that keeps loaded earthquakes in a local SQLite database, indexed by event ID,
+ * time and magnitude
+ *
+ * Earthquakes are written in bulk: one compiled statement bound once per earthquake, all
+ * in a single transaction, on the disk pool. The database runs in write-ahead logging
+ * mode and reads go through a connection of their own that no write holds, so a reader
+ * never waits for a bulk insert. Each write in the background also drops the earthquakes
+ * older than {@link EventArchive#RETENTION_DAYS}
+ *
+ * No screen reads the database yet, so the app does not write to it either; the past days
+ * are listed from the {@link EventArchive} until a screen queries this instead
+ */
+public class QuakeDatabase {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = QuakeDatabase.class.getSimpleName();
+
+    private static final String FILE_NAME = "quakes.db";
+
+    /**
+     * Age past which earthquakes are dropped, the same as the {@link EventArchive}'s
+     */
+    static final long RETENTION_MILLIS = EventArchive.RETENTION_DAYS * 24 * 60 * 60 * 1000L;
+
+    private static final String COLUMNS = COLUMN_EVENT_ID + ", " + COLUMN_MAGNITUDE + ", "
+            + COLUMN_PLACE + ", " + COLUMN_TIME + ", " + COLUMN_TSUNAMI + ", " + COLUMN_URL + ", "
+            + COLUMN_UPDATED + ", " + COLUMN_DETAIL_URL + ", " + COLUMN_LATITUDE + ", "
+            + COLUMN_LONGITUDE + ", " + COLUMN_DEPTH_KM;
+
+    // Replaces an event's row unless the row already holds this revision or a newer one,
+    // so a refresh rewrites only what changed; ?1 is the event ID and ?7 the revision time
+    private static final String UPSERT = "INSERT OR REPLACE INTO " + TABLE_QUAKES
+            + " (" + COLUMNS + ") SELECT ?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, ?11"
+            + " WHERE NOT EXISTS (SELECT 1 FROM " + TABLE_QUAKES
+            + " WHERE " + COLUMN_EVENT_ID + " = ?1 AND " + COLUMN_UPDATED + " >= ?7)";
+
+    // Removes the row of an event USGS has deleted
+    private static final String DELETE = "DELETE FROM " + TABLE_QUAKES
+            + " WHERE " + COLUMN_EVENT_ID + " = ?";
+
+    private static QuakeDatabase sInstance;
+
+    /**
+     * Class that creates and upgrades the database file through {@link QuakeSchema}
+     */
+    private static class OpenHelper extends SQLiteOpenHelper {
+
+        OpenHelper(Context context) {
+            super(context, FILE_NAME, null, QuakeSchema.VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            QuakeSchema.migrate(new AndroidSqlConnection(db));
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            QuakeSchema.migrate(new AndroidSqlConnection(db));
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            super.onOpen(db);
+            // Readers see the last commit while a bulk insert is being written
+            db.enableWriteAheadLogging();
+        }
+    }
+
+    private final SqlConnection.Opener mWriteOpener;
+    private final SqlConnection.Opener mReadOpener;
+    // Held by writes only; reads never wait for a bulk insert to finish
+    private final Object mWriteLock = new Object();
+    private SqlConnection mWriter;
+    private SqlConnection mReader;
+
+    /**
+     * Get the app-wide database, stored in the app's databases directory
+     *
+     * @param context of the caller
+     * @return        the shared {@link QuakeDatabase}
+     */
+    public static synchronized QuakeDatabase getInstance(Context context) {
+        if (sInstance == null) {
+            final OpenHelper helper = new OpenHelper(context.getApplicationContext());
+            // With write-ahead logging the SQLiteDatabase keeps a pool of connections: a
+            // write holds the primary one and reads on other threads take their own, so
+            // both sides can wrap the same database
+            SqlConnection.Opener opener = new SqlConnection.Opener() {
+                @Override
+                public SqlConnection open() {
+                    return new AndroidSqlConnection(helper.getWritableDatabase());
+                }
+            };
+            sInstance = new QuakeDatabase(opener, opener);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link QuakeDatabase} that reads and writes through one connection
+     *
+     * @param opener opens the connection, with its schema up to date, on first use
+     */
+    public QuakeDatabase(SqlConnection.Opener opener) {
+        this(opener, opener);
+    }
+
+    /**
+     * Construct a new {@link QuakeDatabase}
+     *
+     * @param writeOpener opens the connection of the writes, with its schema up to date
+     * @param readOpener  opens the connection of the reads, which several threads may use
+     *                    at once
+     */
+    public QuakeDatabase(SqlConnection.Opener writeOpener, SqlConnection.Opener readOpener) {
+        mWriteOpener = writeOpener;
+        mReadOpener = readOpener;
+    }
+
+    private synchronized SqlConnection writer(String operation) {
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.DISK, operation);
+        if (mWriter == null) {
+            mWriter = mWriteOpener.open();
+        }
+        return mWriter;
+    }
+
+    private synchronized SqlConnection reader(String operation) {
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.DISK, operation);
+        if (mReader == null) {
+            // The writer brings the schema up to date before the first read
+            writer(operation);
+            mReader = mReadOpener == mWriteOpener ? mWriter : mReadOpener.open();
+        }
+        return mReader;
+    }
+
+    /**
+     * Write earthquakes in a single transaction; an earthquake replaces the row of the same
+     * event unless that row holds the same revision or a newer one, and a deleted event
+     * removes its row. Earthquakes without an event ID are skipped, as nothing would tell a
+     * later copy apart from a new earthquake
+     *
+     * @param earthquakes is the earthquakes to write
+     * @return            the number of rows written
+     */
+    public int insertAll(Collection<Quake> earthquakes) {
+        synchronized (mWriteLock) {
+            SqlConnection db = writer("QuakeDatabase.insertAll");
+            int written = 0;
+            db.beginTransaction();
+            try {
+                SqlConnection.Statement upsert = db.prepare(UPSERT);
+                SqlConnection.Statement delete = db.prepare(DELETE);
+                try {
+                    for (Quake quake : earthquakes) {
+                        if (quake.getQuakeId() == null) {
+                            continue;
+                        }
+                        if (quake.isDeleted()) {
+                            delete.clearBindings();
+                            delete.bindString(1, quake.getQuakeId());
+                            written += delete.executeUpdate();
+                            continue;
+                        }
+                        bind(upsert, quake);
+                        written += upsert.executeUpdate();
+                    }
+                }
+                finally {
+                    upsert.close();
+                    delete.close();
+                }
+                db.setTransactionSuccessful();
+            }
+            finally {
+                db.endTransaction();
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Write freshly loaded earthquakes on the disk pool and drop the expired ones, logging
+     * rather than throwing on failure
+     *
+     * @param earthquakes is the earthquakes to write
+     */
+    public void insertInBackground(final List<Quake> earthquakes) {
+        AppScheduler.getInstance().getExecutor(AppScheduler.Pool.DISK).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    insertAll(earthquakes);
+                    deleteExpired(System.currentTimeMillis());
+                }
+                catch (RuntimeException e) {
+                    // Error caught, print the exception to the logs
+                    Log.e(LOG_TAG, "Problem with saving earthquakes to the database", e);
+                }
+            }
+        });
+    }
+
+    private static void bind(SqlConnection.Statement statement, Quake quake) {
+        statement.clearBindings();
+        bindString(statement, 1, quake.getQuakeId());
+        statement.bindDouble(2, quake.getQuakeMagnitude());
+        bindString(statement, 3, quake.getQuakeLocation());
+        statement.bindLong(4, quake.getQuakeUnixTime());
+        statement.bindLong(5, quake.getTsunamiWarning());
+        bindString(statement, 6, quake.getQuakeURL());
+        statement.bindLong(7, quake.getQuakeUpdated());
+        bindString(statement, 8, quake.getDetailURL());
+        bindDouble(statement, 9, quake.getLatitude());
+        bindDouble(statement, 10, quake.getLongitude());
+        bindDouble(statement, 11, quake.getDepthKm());
+    }
+
+    private static void bindString(SqlConnection.Statement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        }
+        else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bindDouble(SqlConnection.Statement statement, int index, double value) {
+        // SQLite has no NaN, an unknown hypocentre is stored as NULL
+        if (Double.isNaN(value)) {
+            statement.bindNull(index);
+        }
+        else {
+            statement.bindDouble(index, value);
+        }
+    }
+
+    /**
+     * Read the earthquakes of a time range, newest first
+     *
+     * @param fromTime     is the earliest time included
+     * @param toTime       is the latest time included
+     * @param minMagnitude is the weakest magnitude included
+     * @param limit        is the maximum number of earthquakes returned
+     * @return             the matching earthquakes, newest first
+     */
+    public List<Quake> query(long fromTime, long toTime, double minMagnitude, int limit) {
+        return read(reader("QuakeDatabase.query").query("SELECT " + COLUMNS + " FROM "
+                        + TABLE_QUAKES + " WHERE " + COLUMN_TIME + " BETWEEN ? AND ? AND "
+                        + COLUMN_MAGNITUDE + " >= ? ORDER BY " + COLUMN_TIME + " DESC"
+                        + " LIMIT " + limit,
+                String.valueOf(fromTime), String.valueOf(toTime), String.valueOf(minMagnitude)));
+    }
+
+    /**
+     * Read the strongest earthquakes of a time range, strongest first
+     *
+     * @param fromTime is the earliest time included
+     * @param toTime   is the latest time included
+     * @param limit    is the maximum number of earthquakes returned
+     * @return         the strongest earthquakes, strongest first
+     */
+    public List<Quake> queryStrongest(long fromTime, long toTime, int limit) {
+        return read(reader("QuakeDatabase.queryStrongest").query("SELECT " + COLUMNS + " FROM "
+                        + TABLE_QUAKES + " WHERE " + COLUMN_TIME + " BETWEEN ? AND ?"
+                        + " ORDER BY " + COLUMN_MAGNITUDE + " DESC, " + COLUMN_TIME + " DESC"
+                        + " LIMIT " + limit,
+                String.valueOf(fromTime), String.valueOf(toTime)));
+    }
+
+    /**
+     * @param eventId is the USGS event ID
+     * @return        the latest revision of the event, or null if it is not stored
+     */
+    public Quake get(String eventId) {
+        List<Quake> quakes = read(reader("QuakeDatabase.get").query("SELECT " + COLUMNS + " FROM "
+                + TABLE_QUAKES + " WHERE " + COLUMN_EVENT_ID + " = ?", eventId));
+        return quakes.isEmpty() ? null : quakes.get(0);
+    }
+
+    /**
+     * @return the number of earthquakes stored
+     */
+    public int count() {
+        SqlConnection.Rows rows = reader("QuakeDatabase.count").query(
+                "SELECT COUNT(*) FROM " + TABLE_QUAKES);
+        try {
+            return rows.moveToNext() ? (int) rows.getLong(0) : 0;
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * @param time is the time before which earthquakes are deleted
+     * @return     the number of earthquakes deleted
+     */
+    public int deleteOlderThan(long time) {
+        synchronized (mWriteLock) {
+            SqlConnection.Statement delete = writer("QuakeDatabase.deleteOlderThan").prepare(
+                    "DELETE FROM " + TABLE_QUAKES + " WHERE " + COLUMN_TIME + " < ?");
+            try {
+                delete.bindLong(1, time);
+                return delete.executeUpdate();
+            }
+            finally {
+                delete.close();
+            }
+        }
+    }
+
+    /**
+     * Drop the earthquakes older than {@link #RETENTION_MILLIS}
+     *
+     * @param now is the current time
+     * @return    the number of earthquakes deleted
+     */
+    int deleteExpired(long now) {
+        return deleteOlderThan(now - RETENTION_MILLIS);
+    }
+
+    private static List<Quake> read(SqlConnection.Rows rows) {
+        List<Quake> quakes = new ArrayList<>();
+        try {
+            while (rows.moveToNext()) {
+                quakes.add(new Quake(rows.getDouble(1), rows.getString(2), rows.getLong(3),
+                        (int) rows.getLong(4), rows.getString(5), rows.getString(0),
+                        rows.getLong(6), rows.getString(7), readDouble(rows, 8),
+                        readDouble(rows, 9), readDouble(rows, 10)));
+            }
+        }
+        finally {
+            rows.close();
+        }
+        // Places repeat a lot, share one String per place as the parser does, taking the
+        // interner's lock once rather than per row
+        PlaceInterner.getInstance().internAll(quakes);
+        return quakes;
+    }
+
+    private static double readDouble(SqlConnection.Rows rows, int column) {
+        return rows.isNull(column) ? Double.NaN : rows.getDouble(column);
+    }
+}
\ No newline at end of file
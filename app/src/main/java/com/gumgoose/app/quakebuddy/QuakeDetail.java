@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Class that holds the details of a single earthquake from its USGS GeoJSON detail feed
+ */
+public class QuakeDetail {
+
+    // Value used when the detail feed does not report a number
+    public static final int NOT_REPORTED = -1;
+
+    // Title of the earthquake (i.e. "M 6.2 - 10km SSW of Basilisa, Philippines")
+    private String mTitle;
+
+    // Magnitude and magnitude type of the earthquake
+    private double mMagnitude;
+    private String mMagnitudeType;
+
+    // Location and time of the earthquake
+    private String mPlace;
+    private long mUnixTime;
+
+    // Hypocentre of the earthquake
+    private double mLatitude;
+    private double mLongitude;
+    private double mDepthKm;
+
+    // Number of "Did You Feel It?" reports submitted for the earthquake
+    private int mFeltReports;
+
+    // Community reported (CDI) and instrumental (MMI) intensities
+    private double mCommunityIntensity;
+    private double mInstrumentalIntensity;
+
+    // PAGER alert level ("green", "yellow", "orange", "red") and review status
+    private String mAlertLevel;
+    private String mStatus;
+
+    // Tsunami warning of the earthquake
+    private int mWarnTsunami;
+
+    // Maximum intensity estimated by the ShakeMap product
+    private double mShakeMapMaxIntensity;
+
+    // Product types published for the earthquake (i.e. "shakemap", "dyfi", "losspager")
+    private List<String> mProducts;
+
+    // URL address of the earthquake's USGS event page
+    private String mEventPageURL;
+
+    private QuakeDetail() {
+        // Instances are only created by fromJson(JSONObject)
+    }
+
+    /**
+     * Build a {@link QuakeDetail} from a USGS detail feed; missing values are not reported
+     *
+     * @param feature       is the GeoJSON feature object of the detail feed
+     * @return              the earthquake's details
+     * @throws JSONException if the feed does not contain a properties object
+     */
+    public static QuakeDetail fromJson(JSONObject feature) throws JSONException {
+        JSONObject properties = feature.getJSONObject("properties");
+        QuakeDetail detail = new QuakeDetail();
+
+        detail.mTitle = properties.optString("title", null);
+        detail.mMagnitude = properties.optDouble("mag", NOT_REPORTED);
+        detail.mMagnitudeType = properties.optString("magType", null);
+        detail.mPlace = properties.optString("place", null);
+        detail.mUnixTime = properties.optLong("time", 0);
+        detail.mFeltReports = properties.optInt("felt", NOT_REPORTED);
+        detail.mCommunityIntensity = properties.optDouble("cdi", NOT_REPORTED);
+        detail.mInstrumentalIntensity = properties.optDouble("mmi", NOT_REPORTED);
+        detail.mAlertLevel = properties.optString("alert", null);
+        detail.mStatus = properties.optString("status", null);
+        detail.mWarnTsunami = properties.optInt("tsunami", 0);
+        detail.mEventPageURL = properties.optString("url", null);
+
+        // GeoJSON coordinates are ordered as longitude, latitude, depth
+        JSONObject geometry = feature.optJSONObject("geometry");
+        JSONArray coordinates = geometry == null ? null : geometry.optJSONArray("coordinates");
+        if (coordinates != null) {
+            detail.mLongitude = coordinates.optDouble(0);
+            detail.mLatitude = coordinates.optDouble(1);
+            detail.mDepthKm = coordinates.optDouble(2);
+        }
+        else {
+            detail.mLongitude = Double.NaN;
+            detail.mLatitude = Double.NaN;
+            detail.mDepthKm = Double.NaN;
+        }
+
+        // Collect the product types and summarise the ShakeMap if one was published
+        detail.mProducts = new ArrayList<>();
+        detail.mShakeMapMaxIntensity = NOT_REPORTED;
+        JSONObject products = properties.optJSONObject("products");
+        if (products != null) {
+            Iterator<String> productTypes = products.keys();
+            while (productTypes.hasNext()) {
+                detail.mProducts.add(productTypes.next());
+            }
+            JSONArray shakeMaps = products.optJSONArray("shakemap");
+            if (shakeMaps != null && shakeMaps.length() > 0) {
+                JSONObject shakeMap = shakeMaps.getJSONObject(0).optJSONObject("properties");
+                if (shakeMap != null) {
+                    detail.mShakeMapMaxIntensity = shakeMap.optDouble("maxmmi", NOT_REPORTED);
+                }
+            }
+        }
+        return detail;
+    }
+
+    /** Getter method for title of the earthquake */
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /** Getter method for magnitude of the earthquake */
+    public double getMagnitude() {
+        return mMagnitude;
+    }
+
+    /** Getter method for magnitude type of the earthquake */
+    public String getMagnitudeType() {
+        return mMagnitudeType;
+    }
+
+    /** Getter method for location of the earthquake */
+    public String getPlace() {
+        return mPlace;
+    }
+
+    /** Getter method for time of the earthquake */
+    public long getUnixTime() {
+        return mUnixTime;
+    }
+
+    /** Getter method for latitude of the earthquake, NaN when not reported */
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    /** Getter method for longitude of the earthquake, NaN when not reported */
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    /** Getter method for depth of the earthquake in kilometres, NaN when not reported */
+    public double getDepthKm() {
+        return mDepthKm;
+    }
+
+    /** Getter method for number of felt reports */
+    public int getFeltReports() {
+        return mFeltReports;
+    }
+
+    /** Getter method for community reported intensity */
+    public double getCommunityIntensity() {
+        return mCommunityIntensity;
+    }
+
+    /** Getter method for instrumental intensity */
+    public double getInstrumentalIntensity() {
+        return mInstrumentalIntensity;
+    }
+
+    /** Getter method for PAGER alert level */
+    public String getAlertLevel() {
+        return mAlertLevel;
+    }
+
+    /** Getter method for review status of the earthquake */
+    public String getStatus() {
+        return mStatus;
+    }
+
+    /** Getter method for earthquake tsunami warning */
+    public int getTsunamiWarning() {
+        return mWarnTsunami;
+    }
+
+    /** Getter method for maximum ShakeMap intensity */
+    public double getShakeMapMaxIntensity() {
+        return mShakeMapMaxIntensity;
+    }
+
+    /** Getter method for product types published for the earthquake */
+    public List<String> getProducts() {
+        return mProducts;
+    }
+
+    /** Getter method for URL address of the earthquake's event page */
+    public String getEventPageURL() {
+        return mEventPageURL;
+    }
+}
\ No newline at end of file
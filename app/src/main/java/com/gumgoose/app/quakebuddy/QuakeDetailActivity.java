@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.app.LoaderManager.LoaderCallbacks;
+import android.content.Context;
+import android.content.Intent;
+import android.content.Loader;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.webkit.URLUtil;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+/**
+ * Activity that displays the details of an earthquake natively from the detail cache
+ *
+ * The launching of QuakeDetailActivity expects the "id", "updated", "detail_url" and "url"
+ * intent extras; the "url" event page is opened in {@link WebViewActivity} on request,
+ * or straight away if the details cannot be loaded
+ */
+public class QuakeDetailActivity extends AppCompatActivity implements LoaderCallbacks<QuakeDetail> {
+
+    /**
+     * Intent extra keys for identifying the earthquake
+     */
+    public static final String EXTRA_EVENT_ID = "id";
+    public static final String EXTRA_UPDATED = "updated";
+    public static final String EXTRA_DETAIL_URL = "detail_url";
+    public static final String EXTRA_URL = "url";
+
+    /**
+     * Unique ID for the detail Loader
+     */
+    private static final int DETAIL_LOADER_ID = 1;
+
+    // URL intent extra String of the earthquake's event page
+    private String quakeUrl;
+
+    private View mLoadingIndicator;
+    private View mContent;
+
+    /**
+     * Build the intent that opens an earthquake natively
+     *
+     * @param activity is the launching activity
+     * @param quake    is the earthquake to display
+     * @return         the intent for starting {@link QuakeDetailActivity}
+     */
+    public static Intent newIntent(Context activity, Quake quake) {
+        Intent detailIntent = new Intent(activity, QuakeDetailActivity.class);
+        detailIntent.putExtra(EXTRA_EVENT_ID, quake.getQuakeId());
+        detailIntent.putExtra(EXTRA_UPDATED, quake.getQuakeUpdated());
+        detailIntent.putExtra(EXTRA_DETAIL_URL, quake.getDetailURL());
+        detailIntent.putExtra(EXTRA_URL, quake.getQuakeURL());
+        return detailIntent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.quake_detail_activity);
+
+        // Locate the "url" extra String for the WebView fallback
+        quakeUrl = getIntent().getStringExtra(EXTRA_URL);
+
+        mLoadingIndicator = findViewById(R.id.detail_loading_indicator);
+        mContent = findViewById(R.id.detail_content);
+        mContent.setVisibility(View.INVISIBLE);
+
+        // Read the details from the cache, or fetch them if they were not prefetched
+        getLoaderManager().initLoader(DETAIL_LOADER_ID, null, this);
+    }
+
+    @Override
+    public Loader<QuakeDetail> onCreateLoader(int id, Bundle args) {
+        Intent intent = getIntent();
+        return new QuakeDetailLoader(this,
+                intent.getStringExtra(EXTRA_EVENT_ID),
+                intent.getLongExtra(EXTRA_UPDATED, 0),
+                intent.getStringExtra(EXTRA_DETAIL_URL));
+    }
+
+    @Override
+    public void onLoadFinished(Loader<QuakeDetail> loader, QuakeDetail detail) {
+        mLoadingIndicator.setVisibility(View.GONE);
+
+        if (detail == null) {
+            // Details are unavailable, fall back to the event page in the WebView
+            openEventPage();
+            finish();
+            return;
+        }
+        bindDetail(detail);
+        mContent.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<QuakeDetail> loader) {
+        // Nothing is held from the Loader's result
+    }
+
+    private void bindDetail(QuakeDetail detail) {
+        DecimalFormat oneDecimal = new DecimalFormat("0.0");
+
+        String title = detail.getTitle() != null ? detail.getTitle() : detail.getPlace();
+        setText(R.id.detail_title, title);
+        setTitle(title);
+
+        String magnitude = oneDecimal.format(detail.getMagnitude());
+        if (detail.getMagnitudeType() != null) {
+            magnitude += " " + detail.getMagnitudeType();
+        }
+        setText(R.id.detail_magnitude, magnitude);
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d, yyyy HH:mm:ss z");
+        dateFormat.setTimeZone(TimeZone.getDefault());
+        setText(R.id.detail_time, dateFormat.format(detail.getUnixTime()));
+
+        if (!Double.isNaN(detail.getLatitude())) {
+            setText(R.id.detail_depth, getString(R.string.detail_depth_value,
+                    oneDecimal.format(detail.getDepthKm())));
+            setText(R.id.detail_coordinates, getString(R.string.detail_coordinates_value,
+                    new DecimalFormat("0.000").format(detail.getLatitude()),
+                    new DecimalFormat("0.000").format(detail.getLongitude())));
+        }
+
+        if (detail.getFeltReports() != QuakeDetail.NOT_REPORTED) {
+            setText(R.id.detail_felt, getString(R.string.detail_felt_value,
+                    detail.getFeltReports()));
+        }
+
+        if (detail.getCommunityIntensity() != QuakeDetail.NOT_REPORTED) {
+            setText(R.id.detail_cdi, oneDecimal.format(detail.getCommunityIntensity()));
+        }
+
+        if (detail.getShakeMapMaxIntensity() != QuakeDetail.NOT_REPORTED) {
+            setText(R.id.detail_shakemap, oneDecimal.format(detail.getShakeMapMaxIntensity()));
+        }
+        else if (detail.getInstrumentalIntensity() != QuakeDetail.NOT_REPORTED) {
+            setText(R.id.detail_shakemap, oneDecimal.format(detail.getInstrumentalIntensity()));
+        }
+
+        if (detail.getAlertLevel() != null) {
+            setText(R.id.detail_alert, detail.getAlertLevel());
+        }
+
+        if (detail.getTsunamiWarning() == 1) {
+            setText(R.id.detail_tsunami, getString(R.string.tsunami_header));
+        }
+
+        if (detail.getStatus() != null) {
+            setText(R.id.detail_status, detail.getStatus());
+        }
+
+        if (!detail.getProducts().isEmpty()) {
+            setText(R.id.detail_products, TextUtils.join(", ", detail.getProducts()));
+        }
+    }
+
+    private void setText(int viewId, String text) {
+        ((TextView) findViewById(viewId)).setText(text);
+    }
+
+    private void openEventPage() {
+        if (URLUtil.isValidUrl(quakeUrl)) {
+            // URL is valid, start WebViewActivity with URL intent
+            Intent websiteIntent = new Intent(this, WebViewActivity.class);
+            websiteIntent.putExtra("url", quakeUrl);
+            startActivity(websiteIntent);
+        }
+        else {
+            // Inform the user by Toast message and exit gracefully
+            Toast.makeText(this, R.string.error_invalid_url, Toast.LENGTH_LONG).show();
+        }
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+
+            // If "Event page" in the menu is clicked on
+            case R.id.action_open_event_page:
+                openEventPage();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.quake_detail, menu);
+        return true;
+    }
+}
\ No newline at end of file
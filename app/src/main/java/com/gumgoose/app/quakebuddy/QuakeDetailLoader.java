@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.text.TextUtils;
+
+/**
+ * Class that obtains the details of an earthquake from the detail cache, falling back
+ * to the USGS detail feed when the earthquake has not been prefetched
+ */
+public class QuakeDetailLoader extends AsyncTaskLoader<QuakeDetail> {
+
+    /**
+     * Estimated size of a parsed detail feed and the size limit of the memory cache
+     */
+    private static final int DETAIL_BYTES = 512;
+    private static final long DETAIL_MEMORY_BYTES = 256 * 1024;
+
+    // Recently opened details, so going back and forth between events skips the disk
+    private static final MemoryCache<String, QuakeDetail> sDetailMemoryCache =
+            new MemoryCache<>(DETAIL_MEMORY_BYTES, new MemoryCache.Weigher<String, QuakeDetail>() {
+                @Override
+                public int weigh(String key, QuakeDetail detail) {
+                    return DETAIL_BYTES + 16 * detail.getProducts().size();
+                }
+            });
+
+    // Initialize local event identifiers
+    private String mEventId;
+    private long mUpdated;
+    private String mDetailUrl;
+
+    // Loaded result, kept so a configuration change does not load again
+    private QuakeDetail mDetail;
+
+    /**
+     * Construct a new {@link QuakeDetailLoader}
+     *
+     * @param context   of the activity
+     * @param eventId   is the USGS event ID
+     * @param updated   is the revision time of the event
+     * @param detailUrl is the URL of the event's GeoJSON detail feed
+     */
+    public QuakeDetailLoader(Context context, String eventId, long updated, String detailUrl) {
+        super(context);
+        mEventId = eventId;
+        mUpdated = updated;
+        mDetailUrl = detailUrl;
+    }
+
+    /**
+     * @return the memory cache of parsed detail feeds shared by all detail Loaders
+     */
+    public static MemoryCache<String, QuakeDetail> getDetailMemoryCache() {
+        return sDetailMemoryCache;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mDetail != null) {
+            deliverResult(mDetail);
+        }
+        else {
+            forceLoad();
+        }
+    }
+
+    @Override
+    /**
+     * This task runs on a background thread
+     */
+    public QuakeDetail loadInBackground() {
+        // If the event cannot be identified, then return early
+        if (mEventId == null || TextUtils.isEmpty(mDetailUrl)) {
+            return null;
+        }
+
+        // Details already parsed in this session need no disk or network access
+        String memoryKey = mEventId + "@" + mUpdated;
+        QuakeDetail detail = sDetailMemoryCache.get(memoryKey);
+        if (detail != null) {
+            return detail;
+        }
+
+        // Prefer the prefetched copy, which makes opening the screen instant
+        DetailCache cache = DetailCache.getInstance(getContext());
+        String json = cache.get(mEventId, mUpdated);
+        if (json == null) {
+            json = QueryUtils.fetchDetailJson(mDetailUrl);
+            if (!TextUtils.isEmpty(json)) {
+                cache.put(mEventId, mUpdated, json);
+            }
+        }
+        detail = QueryUtils.extractDetailFromJson(json);
+        if (detail != null) {
+            sDetailMemoryCache.put(memoryKey, detail);
+        }
+        return detail;
+    }
+
+    @Override
+    public void deliverResult(QuakeDetail detail) {
+        mDetail = detail;
+        super.deliverResult(detail);
+    }
+}
\ No newline at end of file
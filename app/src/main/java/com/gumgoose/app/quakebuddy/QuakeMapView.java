@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * View that plots the clusters of a {@link ClusterIndex} on a Web Mercator map, with
+ * dragging, pinching and double tapping to pan and zoom
+ *
+ * Drawing a frame only visits the cells on screen and reuses its paints and hit testing
+ * arrays, so the map stays smooth however many earthquakes are indexed
+ */
+public class QuakeMapView extends View implements ClusterIndex.ClusterVisitor {
+
+    /**
+     * Interface for being told when a single earthquake on the map is tapped
+     */
+    public interface OnQuakeClickListener {
+
+        /**
+         * @param quake is the earthquake that was tapped
+         */
+        void onQuakeClick(Quake quake);
+    }
+
+    // Zoom range of the map, past the deepest clustered level to show single earthquakes
+    private static final float MIN_ZOOM = 0f;
+    private static final float MAX_ZOOM = ClusterIndex.MAX_ZOOM + 4;
+
+    // Zoom levels added by double tapping or tapping a cluster
+    private static final float TAP_ZOOM_STEP = 2f;
+
+    // Spacing of the latitude and longitude lines in degrees
+    private static final int GRATICULE_DEGREES = 30;
+
+    private ClusterIndex mIndex = new ClusterIndex();
+    private OnQuakeClickListener mOnQuakeClickListener;
+
+    // Map position: world coordinates of the centre of the view and the zoom level
+    private double mCentreX = 0.5;
+    private double mCentreY = 0.5;
+    private float mZoom = 1f;
+
+    private final float mDensity;
+    private final int[] mMagnitudeColors = new int[11];
+    private final int mBackgroundColor;
+    private final Paint mGraticulePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mCirclePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mCountPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final GestureDetector mGestureDetector;
+    private final ScaleGestureDetector mScaleDetector;
+
+    // State of the frame being drawn, shared with onCluster(...)
+    private Canvas mCanvas;
+    private double mFrameLeft;
+    private double mFrameTop;
+    private double mWorldPixels;
+
+    // Clusters drawn in the last frame, kept for hit testing taps
+    private float[] mDrawnX = new float[64];
+    private float[] mDrawnY = new float[64];
+    private float[] mDrawnRadius = new float[64];
+    private int[] mDrawnCount = new int[64];
+    private Quake[] mDrawnQuake = new Quake[64];
+    private int mDrawnSize;
+
+    public QuakeMapView(Context context) {
+        this(context, null);
+    }
+
+    public QuakeMapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mDensity = context.getResources().getDisplayMetrics().density;
+
+        // Resolve the colors once rather than on every frame
+        for (int magnitude = 0; magnitude < mMagnitudeColors.length; magnitude++) {
+            mMagnitudeColors[magnitude] = QuakeAdapter.getMagnitudeColor(context, magnitude);
+        }
+        mBackgroundColor = ContextCompat.getColor(context, R.color.mapBackground);
+        mGraticulePaint.setColor(ContextCompat.getColor(context, R.color.mapGraticule));
+        mGraticulePaint.setStrokeWidth(mDensity);
+        mCountPaint.setColor(Color.WHITE);
+        mCountPaint.setTextAlign(Paint.Align.CENTER);
+        mCountPaint.setTextSize(12 * mDensity);
+
+        mGestureDetector = new GestureDetector(context, new GestureListener());
+        mScaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+    }
+
+    /**
+     * @param index is the index of the earthquakes to plot
+     */
+    public void setIndex(ClusterIndex index) {
+        mIndex = index;
+        invalidate();
+    }
+
+    /**
+     * @param listener is told when a single earthquake is tapped
+     */
+    public void setOnQuakeClickListener(OnQuakeClickListener listener) {
+        mOnQuakeClickListener = listener;
+    }
+
+    /**
+     * Move the map
+     *
+     * @param centreX is the world x coordinate of the centre of the view
+     * @param centreY is the world y coordinate of the centre of the view
+     * @param zoom    is the zoom level
+     */
+    public void setPosition(double centreX, double centreY, float zoom) {
+        mZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        mCentreX = centreX - Math.floor(centreX);
+        mCentreY = Math.max(0, Math.min(1, centreY));
+        invalidate();
+    }
+
+    /** Getter method for the world x coordinate of the centre of the view */
+    public double getCentreX() {
+        return mCentreX;
+    }
+
+    /** Getter method for the world y coordinate of the centre of the view */
+    public double getCentreY() {
+        return mCentreY;
+    }
+
+    /** Getter method for the zoom level */
+    public float getZoom() {
+        return mZoom;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawColor(mBackgroundColor);
+
+        mWorldPixels = ClusterIndex.TILE_PIXELS * mDensity * Math.pow(2, mZoom);
+        mFrameLeft = mCentreX - getWidth() / 2.0 / mWorldPixels;
+        mFrameTop = mCentreY - getHeight() / 2.0 / mWorldPixels;
+        double frameRight = mCentreX + getWidth() / 2.0 / mWorldPixels;
+        double frameBottom = mCentreY + getHeight() / 2.0 / mWorldPixels;
+
+        drawGraticule(canvas, frameRight);
+
+        // Cells are sized for whole zoom levels, so round down to keep them on screen size
+        mCanvas = canvas;
+        mDrawnSize = 0;
+        mIndex.query((int) Math.floor(mZoom), mFrameLeft, mFrameTop, frameRight, frameBottom,
+                this);
+        mCanvas = null;
+    }
+
+    private void drawGraticule(Canvas canvas, double frameRight) {
+        float top = (float) ((0 - mFrameTop) * mWorldPixels);
+        float bottom = (float) ((1 - mFrameTop) * mWorldPixels);
+        // The world repeats east and west of the antimeridian, draw every copy on screen
+        long lastCopy = (long) Math.ceil(frameRight) - 1;
+        for (long copy = (long) Math.floor(mFrameLeft); copy <= lastCopy; copy++) {
+            for (int longitude = -180; longitude < 180; longitude += GRATICULE_DEGREES) {
+                double worldX = copy + ClusterIndex.longitudeToX(longitude);
+                float x = (float) ((worldX - mFrameLeft) * mWorldPixels);
+                canvas.drawLine(x, top, x, bottom, mGraticulePaint);
+            }
+        }
+        for (int latitude = -60; latitude <= 60; latitude += GRATICULE_DEGREES) {
+            float y = (float) ((ClusterIndex.latitudeToY(latitude) - mFrameTop) * mWorldPixels);
+            canvas.drawLine(0, y, getWidth(), y, mGraticulePaint);
+        }
+    }
+
+    @Override
+    public void onCluster(double x, double y, int count, Quake strongest) {
+        float screenX = (float) ((x - mFrameLeft) * mWorldPixels);
+        float screenY = (float) ((y - mFrameTop) * mWorldPixels);
+        // Circles grow with the number of earthquakes but never outgrow their cell
+        float radius = mDensity * Math.min(ClusterIndex.CELL_PIXELS / 2f,
+                6f + 3f * (float) (Math.log(count) / Math.log(2)));
+
+        int magnitude = (int) Math.max(0, Math.min(10, Math.floor(strongest.getQuakeMagnitude())));
+        mCirclePaint.setColor(mMagnitudeColors[magnitude]);
+        mCanvas.drawCircle(screenX, screenY, radius, mCirclePaint);
+        if (count > 1) {
+            mCanvas.drawText(count < 1000 ? String.valueOf(count) : (count / 1000) + "k",
+                    screenX, screenY + mCountPaint.getTextSize() / 3, mCountPaint);
+        }
+        recordDrawn(screenX, screenY, radius, count, strongest);
+    }
+
+    private void recordDrawn(float x, float y, float radius, int count, Quake quake) {
+        if (mDrawnSize == mDrawnX.length) {
+            int capacity = mDrawnSize * 2;
+            mDrawnX = Arrays.copyOf(mDrawnX, capacity);
+            mDrawnY = Arrays.copyOf(mDrawnY, capacity);
+            mDrawnRadius = Arrays.copyOf(mDrawnRadius, capacity);
+            mDrawnCount = Arrays.copyOf(mDrawnCount, capacity);
+            mDrawnQuake = Arrays.copyOf(mDrawnQuake, capacity);
+        }
+        mDrawnX[mDrawnSize] = x;
+        mDrawnY[mDrawnSize] = y;
+        mDrawnRadius[mDrawnSize] = radius;
+        mDrawnCount[mDrawnSize] = count;
+        mDrawnQuake[mDrawnSize] = quake;
+        mDrawnSize++;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = mScaleDetector.onTouchEvent(event);
+        handled = mGestureDetector.onTouchEvent(event) || handled;
+        return handled || super.onTouchEvent(event);
+    }
+
+    /**
+     * Zoom by a number of levels while keeping a point of the view still
+     */
+    private void zoomAround(float levels, float focusX, float focusY) {
+        float zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, mZoom + levels));
+        double worldPixels = ClusterIndex.TILE_PIXELS * mDensity * Math.pow(2, mZoom);
+        double focusWorldX = mCentreX + (focusX - getWidth() / 2.0) / worldPixels;
+        double focusWorldY = mCentreY + (focusY - getHeight() / 2.0) / worldPixels;
+        double scale = Math.pow(2, mZoom - zoom);
+        setPosition(focusWorldX - (focusWorldX - mCentreX) * scale,
+                focusWorldY - (focusWorldY - mCentreY) * scale, zoom);
+    }
+
+    private class GestureListener extends GestureDetector.SimpleOnGestureListener {
+
+        @Override
+        public boolean onDown(MotionEvent event) {
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent first, MotionEvent current,
+                                float distanceX, float distanceY) {
+            double worldPixels = ClusterIndex.TILE_PIXELS * mDensity * Math.pow(2, mZoom);
+            setPosition(mCentreX + distanceX / worldPixels, mCentreY + distanceY / worldPixels,
+                    mZoom);
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(MotionEvent event) {
+            zoomAround(TAP_ZOOM_STEP, event.getX(), event.getY());
+            return true;
+        }
+
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent event) {
+            // Later clusters are drawn on top, so test them first
+            for (int i = mDrawnSize - 1; i >= 0; i--) {
+                float dx = event.getX() - mDrawnX[i];
+                float dy = event.getY() - mDrawnY[i];
+                if (dx * dx + dy * dy > mDrawnRadius[i] * mDrawnRadius[i]) {
+                    continue;
+                }
+                if (mDrawnCount[i] > 1) {
+                    // Open up the cluster
+                    zoomAround(TAP_ZOOM_STEP, mDrawnX[i], mDrawnY[i]);
+                }
+                else if (mOnQuakeClickListener != null) {
+                    mOnQuakeClickListener.onQuakeClick(mDrawnQuake[i]);
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            zoomAround((float) (Math.log(detector.getScaleFactor()) / Math.log(2)),
+                    detector.getFocusX(), detector.getFocusY());
+            return true;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+
+/**
+ * Class that streams earthquakes from a channel one record at a time, the reading
+ * counterpart of {@link QuakeWriter}
+ */
+public abstract class QuakeReader implements Closeable {
+
+    /**
+     * Create a reader for the given format
+     *
+     * @param format  is the import format
+     * @param channel is the channel to read from
+     * @return        a new {@link QuakeReader}
+     */
+    public static QuakeReader create(ExportFormat format, ReadableByteChannel channel)
+            throws IOException {
+        switch (format) {
+            case CSV:
+                return new CsvQuakeReader(channel);
+            case GEOJSON:
+                return new GeoJsonQuakeReader(channel);
+            default:
+                return new BinaryQuakeReader(channel);
+        }
+    }
+
+    /**
+     * Create a reader over earthquakes that are already in memory, such as the current list
+     *
+     * @param earthquakes is the earthquakes to read
+     * @return            a new {@link QuakeReader}
+     */
+    public static QuakeReader of(Iterable<Quake> earthquakes) {
+        final Iterator<Quake> iterator = earthquakes.iterator();
+        return new QuakeReader() {
+            @Override
+            public Quake next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        };
+    }
+
+    /**
+     * @return the next earthquake, or null once every earthquake has been read
+     * @throws IOException if the file is unreadable or malformed
+     */
+    public abstract Quake next() throws IOException;
+
+    /**
+     * Close the underlying channel; readers over memory have nothing to close
+     */
+    @Override
+    public void close() throws IOException {
+        // Nothing to release by default
+    }
+}
\ No newline at end of file
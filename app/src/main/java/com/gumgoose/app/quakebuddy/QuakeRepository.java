@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that holds the app's one copy of the latest earthquakes of every query and
+ * publishes each new version to the screens and the widget that follow it
+ *
+ * Every version of a query is an immutable {@link Snapshot}, swapped in with a compare
+ * and set so readers never lock; subscribers are told what changed since the version
+ * before. Loads of the same query that overlap share a single fetch
+ */
+public class QuakeRepository implements TrimmableCache {
+
+    /**
+     * Estimated size of a parsed earthquake and the size limit of the repository
+     */
+    private static final int QUAKE_BYTES = 160;
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    private static final QuakeRepository sInstance = new QuakeRepository(MAX_BYTES);
+
+    /**
+     * An immutable version of a query's earthquakes
+     */
+    public static final class Snapshot {
+        private final String mKey;
+        private final long mVersion;
+        private final List<Quake> mEarthquakes;
+        private final long mPublishedAt;
+
+        Snapshot(String key, long version, List<Quake> earthquakes, long publishedAt) {
+            mKey = key;
+            mVersion = version;
+            mEarthquakes = Collections.unmodifiableList(new ArrayList<>(earthquakes));
+            mPublishedAt = publishedAt;
+        }
+
+        /** Getter method for the key of the query */
+        public String getKey() {
+            return mKey;
+        }
+
+        /** Getter method for the version, which grows with every publish of any query */
+        public long getVersion() {
+            return mVersion;
+        }
+
+        /** Getter method for the earthquakes, which cannot be modified */
+        public List<Quake> getEarthquakes() {
+            return mEarthquakes;
+        }
+
+        /** Getter method for the time the snapshot was published */
+        public long getPublishedAt() {
+            return mPublishedAt;
+        }
+
+        private long weigh() {
+            return 2 * mKey.length() + QUAKE_BYTES * (long) mEarthquakes.size();
+        }
+    }
+
+    /**
+     * The earthquakes that changed between two snapshots of a query
+     */
+    public static final class Delta {
+        private final List<Quake> mInserted;
+        private final List<Quake> mRevised;
+        private final List<Quake> mRemoved;
+
+        Delta(List<Quake> inserted, List<Quake> revised, List<Quake> removed) {
+            mInserted = Collections.unmodifiableList(inserted);
+            mRevised = Collections.unmodifiableList(revised);
+            mRemoved = Collections.unmodifiableList(removed);
+        }
+
+        /**
+         * @param previous is the earthquakes of the previous snapshot, or null if none
+         * @param current  is the earthquakes of the new snapshot
+         * @return         the earthquakes inserted, revised and removed by the new snapshot
+         */
+        static Delta between(List<Quake> previous, List<Quake> current) {
+            List<Quake> inserted = new ArrayList<>();
+            List<Quake> revised = new ArrayList<>();
+            List<Quake> removed = new ArrayList<>();
+            Map<String, Quake> before = new HashMap<>();
+            if (previous != null) {
+                for (Quake quake : previous) {
+                    if (quake.getQuakeId() != null) {
+                        before.put(quake.getQuakeId(), quake);
+                    }
+                }
+            }
+            for (Quake quake : current) {
+                Quake old = quake.getQuakeId() == null ? null : before.remove(quake.getQuakeId());
+                if (old == null) {
+                    // Earthquakes without an event ID cannot be matched, so they count as new
+                    inserted.add(quake);
+                }
+                else if (old.getQuakeUpdated() != quake.getQuakeUpdated()) {
+                    revised.add(quake);
+                }
+            }
+            removed.addAll(before.values());
+            return new Delta(inserted, revised, removed);
+        }
+
+        /** Getter method for the earthquakes the previous snapshot did not have */
+        public List<Quake> getInserted() {
+            return mInserted;
+        }
+
+        /** Getter method for the earthquakes with a newer revision than before */
+        public List<Quake> getRevised() {
+            return mRevised;
+        }
+
+        /** Getter method for the earthquakes the new snapshot dropped */
+        public List<Quake> getRemoved() {
+            return mRemoved;
+        }
+
+        /**
+         * @return the inserted and revised earthquakes together
+         */
+        public List<Quake> getChanged() {
+            List<Quake> changed = new ArrayList<>(mInserted.size() + mRevised.size());
+            changed.addAll(mInserted);
+            changed.addAll(mRevised);
+            return changed;
+        }
+
+        /**
+         * @return true if nothing changed
+         */
+        public boolean isEmpty() {
+            return mInserted.isEmpty() && mRevised.isEmpty() && mRemoved.isEmpty();
+        }
+    }
+
+    /**
+     * Interface for following the snapshots of the repository
+     */
+    public interface Subscriber {
+
+        /**
+         * Called on the subscriber's executor for every snapshot that changed something
+         *
+         * @param snapshot is the new snapshot
+         * @param delta    is what changed since the previous snapshot of the same query
+         */
+        void onPublished(Snapshot snapshot, Delta delta);
+    }
+
+    /**
+     * Interface for the fetch that loads of the same query share
+     */
+    public interface Fetcher {
+
+        /**
+         * Called on the thread of the first load; the others wait for its outcome
+         *
+         * @param current is the current snapshot of the query, or null if there is none
+         * @return        the outcome of the fetch; a successful outcome's earthquakes are
+         *                published as the next snapshot
+         */
+        FetchOutcome<List<Quake>> fetch(Snapshot current);
+    }
+
+    private static final class Subscription {
+        final Subscriber mSubscriber;
+        final Executor mExecutor;
+
+        Subscription(Subscriber subscriber, Executor executor) {
+            mSubscriber = subscriber;
+            mExecutor = executor;
+        }
+    }
+
+    private final long mMaxBytes;
+    private final AtomicLong mVersions = new AtomicLong();
+    private final ConcurrentHashMap<String, Snapshot> mSnapshots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, FutureTask<FetchOutcome<List<Quake>>>> mInFlight =
+            new ConcurrentHashMap<>();
+    private final List<Subscription> mSubscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the app-wide {@link QuakeRepository}
+     */
+    public static QuakeRepository getInstance() {
+        return sInstance;
+    }
+
+    QuakeRepository(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @param key is the key of the query
+     * @return    the latest snapshot of the query, or null if it has none
+     */
+    public Snapshot get(String key) {
+        return mSnapshots.get(key);
+    }
+
+    /**
+     * Publish the latest earthquakes of a query and tell the subscribers what changed
+     *
+     * @param key         is the key of the query
+     * @param earthquakes is the latest earthquakes of the query
+     * @return            the new snapshot
+     */
+    public Snapshot publish(String key, List<Quake> earthquakes) {
+        Snapshot previous;
+        Snapshot next;
+        do {
+            previous = mSnapshots.get(key);
+            next = new Snapshot(key, mVersions.incrementAndGet(), earthquakes,
+                    System.currentTimeMillis());
+        } while (previous == null ? mSnapshots.putIfAbsent(key, next) != null
+                : !mSnapshots.replace(key, previous, next));
+
+        Delta delta = Delta.between(previous == null ? null : previous.mEarthquakes,
+                next.mEarthquakes);
+        if (previous == null || !delta.isEmpty()) {
+            notifySubscribers(next, delta);
+        }
+        if (getSizeBytes() > mMaxBytes) {
+            trimToSize(mMaxBytes);
+        }
+        return next;
+    }
+
+    /**
+     * Called when a load joins the fetch of its query already running, before it waits
+     *
+     * @param key is the key of the query
+     */
+    void onJoined(String key) {
+        // Only tests follow the loads joining a fetch
+    }
+
+    /**
+     * Fetch a query, sharing the fetch with any load of the same query already running
+     *
+     * @param key     is the key of the query
+     * @param fetcher performs the fetch if no other load is running it
+     * @return        the outcome of the shared fetch
+     */
+    public FetchOutcome<List<Quake>> fetch(final String key, final Fetcher fetcher) {
+        FutureTask<FetchOutcome<List<Quake>>> task = new FutureTask<>(
+                new Callable<FetchOutcome<List<Quake>>>() {
+                    @Override
+                    public FetchOutcome<List<Quake>> call() {
+                        FetchOutcome<List<Quake>> outcome = fetcher.fetch(mSnapshots.get(key));
+                        if (outcome != null && outcome.isSuccess()
+                                && outcome.getValue() != null) {
+                            publish(key, outcome.getValue());
+                        }
+                        return outcome;
+                    }
+                });
+        FutureTask<FetchOutcome<List<Quake>>> running = mInFlight.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            }
+            finally {
+                mInFlight.remove(key, task);
+            }
+            running = task;
+        }
+        else {
+            onJoined(key);
+        }
+        try {
+            return running.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @param subscriber is told about every snapshot that changes something
+     * @param executor   runs the subscriber, or null to run it on the publishing thread
+     */
+    public void subscribe(Subscriber subscriber, Executor executor) {
+        mSubscriptions.add(new Subscription(subscriber, executor));
+    }
+
+    /**
+     * @param subscriber is the subscriber to stop telling about snapshots
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.mSubscriber == subscriber) {
+                mSubscriptions.remove(subscription);
+            }
+        }
+    }
+
+    private void notifySubscribers(final Snapshot snapshot, final Delta delta) {
+        for (final Subscription subscription : mSubscriptions) {
+            if (subscription.mExecutor == null) {
+                subscription.mSubscriber.onPublished(snapshot, delta);
+                continue;
+            }
+            subscription.mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    subscription.mSubscriber.onPublished(snapshot, delta);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the number of queries with a snapshot
+     */
+    public int size() {
+        return mSnapshots.size();
+    }
+
+    @Override
+    public long getSizeBytes() {
+        long bytes = 0;
+        for (Snapshot snapshot : mSnapshots.values()) {
+            bytes += snapshot.weigh();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void trimToFraction(float fraction) {
+        trimToSize((long) (getSizeBytes() * fraction));
+    }
+
+    private void trimToSize(long maxBytes) {
+        // Drop the snapshots published longest ago first
+        List<Snapshot> snapshots = new ArrayList<>(mSnapshots.values());
+        Collections.sort(snapshots, new Comparator<Snapshot>() {
+            @Override
+            public int compare(Snapshot a, Snapshot b) {
+                return a.mVersion < b.mVersion ? -1 : (a.mVersion == b.mVersion ? 0 : 1);
+            }
+        });
+        long bytes = 0;
+        for (Snapshot snapshot : snapshots) {
+            bytes += snapshot.weigh();
+        }
+        for (Snapshot snapshot : snapshots) {
+            if (bytes <= maxBytes) {
+                break;
+            }
+            // A snapshot replaced meanwhile is newer, and is left alone
+            if (mSnapshots.remove(snapshot.mKey, snapshot)) {
+                bytes -= snapshot.weigh();
+            }
+        }
+    }
+}
\ No newline at end of file
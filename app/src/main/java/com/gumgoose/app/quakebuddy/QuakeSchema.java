@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Class that defines the schema of the {@link QuakeDatabase} and the migrations that bring
+ * an older database up to {@link #VERSION}
+ *
+ * A change to the schema adds a migration to the end of {@link #MIGRATIONS} and raises
+ * the version; migrations already shipped are never edited
+ */
+public final class QuakeSchema {
+
+    /**
+     * Table of earthquakes and its columns
+     */
+    public static final String TABLE_QUAKES = "quakes";
+    public static final String COLUMN_EVENT_ID = "event_id";
+    public static final String COLUMN_MAGNITUDE = "magnitude";
+    public static final String COLUMN_PLACE = "place";
+    public static final String COLUMN_TIME = "time";
+    public static final String COLUMN_TSUNAMI = "tsunami";
+    public static final String COLUMN_URL = "url";
+    public static final String COLUMN_UPDATED = "updated";
+    public static final String COLUMN_DETAIL_URL = "detail_url";
+    public static final String COLUMN_LATITUDE = "latitude";
+    public static final String COLUMN_LONGITUDE = "longitude";
+    public static final String COLUMN_DEPTH_KM = "depth_km";
+
+    /**
+     * The statements of each migration; the migration at index i brings a database at
+     * version i to version i + 1
+     */
+    static final String[][] MIGRATIONS = {
+            // 0 -> 1: the earthquakes, looked up by event ID and listed by time or magnitude
+            {
+                    "CREATE TABLE " + TABLE_QUAKES + " ("
+                            + "_id INTEGER PRIMARY KEY, "
+                            + COLUMN_EVENT_ID + " TEXT, "
+                            + COLUMN_MAGNITUDE + " REAL NOT NULL, "
+                            + COLUMN_PLACE + " TEXT, "
+                            + COLUMN_TIME + " INTEGER NOT NULL, "
+                            + COLUMN_TSUNAMI + " INTEGER NOT NULL DEFAULT 0, "
+                            + COLUMN_URL + " TEXT, "
+                            + COLUMN_UPDATED + " INTEGER NOT NULL DEFAULT 0, "
+                            + COLUMN_DETAIL_URL + " TEXT, "
+                            + COLUMN_LATITUDE + " REAL, "
+                            + COLUMN_LONGITUDE + " REAL, "
+                            + COLUMN_DEPTH_KM + " REAL)",
+                    "CREATE UNIQUE INDEX quakes_event_id ON " + TABLE_QUAKES
+                            + " (" + COLUMN_EVENT_ID + ")",
+                    "CREATE INDEX quakes_time ON " + TABLE_QUAKES + " (" + COLUMN_TIME + ")",
+                    "CREATE INDEX quakes_magnitude ON " + TABLE_QUAKES
+                            + " (" + COLUMN_MAGNITUDE + ")"
+            }
+    };
+
+    /**
+     * Version of the schema the app expects
+     */
+    public static final int VERSION = MIGRATIONS.length;
+
+    private QuakeSchema() {
+    }
+
+    /**
+     * Bring a database up to {@link #VERSION}, running the migrations in order
+     *
+     * @param db is the database
+     */
+    public static void migrate(SqlConnection db) {
+        migrate(db, MIGRATIONS);
+    }
+
+    /**
+     * Run every migration newer than the database's version in one transaction, so a failed
+     * migration rolls the whole upgrade back and leaves the database at the version it had.
+     * SQLiteOpenHelper already runs onCreate and onUpgrade in a transaction, and a nested
+     * transaction only commits with the outer one, so migrations cannot commit one by one
+     *
+     * @param db         is the database
+     * @param migrations is the statements of each migration
+     */
+    static void migrate(SqlConnection db, String[][] migrations) {
+        int version = db.getVersion();
+        if (version > migrations.length) {
+            throw new IllegalStateException("Database version " + version
+                    + " is newer than the app's schema version " + migrations.length);
+        }
+        if (version == migrations.length) {
+            return;
+        }
+        db.beginTransaction();
+        try {
+            for (; version < migrations.length; version++) {
+                for (String statement : migrations[version]) {
+                    db.execute(statement);
+                }
+            }
+            db.setVersion(migrations.length);
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+        }
+    }
+}
\ No newline at end of file
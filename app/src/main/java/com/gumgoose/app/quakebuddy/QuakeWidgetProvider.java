@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.text.format.DateFormat;
+import android.util.Log;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Home-screen widget that lists the latest or strongest earthquakes from the
+ * {@link WidgetSnapshot}
+ *
+ * The widget never fetches on its own and has no update period; it is updated when a
+ * refresh changes the earthquakes it shows, or when the user changes the list order
+ */
+public class QuakeWidgetProvider extends AppWidgetProvider {
+
+    // Rows of the widget layout, one per snapshot entry
+    private static final int[] ROW_IDS = {
+            R.id.widget_row_0, R.id.widget_row_1, R.id.widget_row_2,
+            R.id.widget_row_3, R.id.widget_row_4};
+    private static final int[] MAGNITUDE_IDS = {
+            R.id.widget_magnitude_0, R.id.widget_magnitude_1, R.id.widget_magnitude_2,
+            R.id.widget_magnitude_3, R.id.widget_magnitude_4};
+    private static final int[] PLACE_IDS = {
+            R.id.widget_place_0, R.id.widget_place_1, R.id.widget_place_2,
+            R.id.widget_place_3, R.id.widget_place_4};
+    private static final int[] TIME_IDS = {
+            R.id.widget_time_0, R.id.widget_time_1, R.id.widget_time_2,
+            R.id.widget_time_3, R.id.widget_time_4};
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        // The snapshot is a few hundred bytes, reading it here is cheap; the widget has no
+        // update period, so the week's strongest earthquakes are aged out here too
+        WidgetSnapshot.getInstance(context).expire(System.currentTimeMillis());
+        appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context));
+    }
+
+    /**
+     * Bring the snapshot up to date after a merge into the event history, and update the
+     * widgets only if what they show has changed
+     *
+     * @param context     of the caller
+     * @param earthquakes is the earthquakes merged, or null if the whole history should be read
+     */
+    public static void onHistoryMerged(Context context, List<Quake> earthquakes) {
+        onHistoryMerged(context, earthquakes, Collections.<String>emptySet());
+    }
+
+    /**
+     * Bring the snapshot up to date after a refresh changed the shared results, and update
+     * the widgets only if what they show has changed
+     *
+     * @param context     of the caller
+     * @param earthquakes is the earthquakes merged, or null if the whole history should be read
+     * @param removedIds  is the event IDs dropped from the results, i.e. deleted by USGS
+     */
+    public static void onHistoryMerged(Context context, List<Quake> earthquakes,
+                                       Collection<String> removedIds) {
+        WidgetSnapshot snapshot = WidgetSnapshot.getInstance(context);
+        boolean changed;
+        if (earthquakes != null) {
+            changed = snapshot.merge(earthquakes, removedIds, System.currentTimeMillis());
+        }
+        else {
+            changed = rebuildFromHistory(context, snapshot);
+        }
+        if (changed) {
+            pushUpdate(context);
+        }
+    }
+
+    /**
+     * Update every placed widget from the current snapshot
+     *
+     * @param context of the caller
+     */
+    public static void pushUpdate(Context context) {
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds =
+                manager.getAppWidgetIds(new ComponentName(context, QuakeWidgetProvider.class));
+        if (appWidgetIds == null || appWidgetIds.length == 0) {
+            // No widget is placed, so there is nothing to draw
+            return;
+        }
+        manager.updateAppWidget(appWidgetIds, buildViews(context));
+    }
+
+    private static boolean rebuildFromHistory(Context context, WidgetSnapshot snapshot) {
+        try {
+            QuakeReader reader = EventHistory.getInstance(context).openReader();
+            if (reader == null) {
+                return false;
+            }
+            try {
+                return snapshot.rebuild(reader, System.currentTimeMillis());
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException e) {
+            // Error caught, print the exception to the logs
+            Log.e(EventHistory.LOG_TAG, "Problem with rebuilding the widget snapshot", e);
+            return false;
+        }
+    }
+
+    private static RemoteViews buildViews(Context context) {
+        // Follow the list's order preference: strongest or most recent first
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String orderBy = sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default));
+        boolean strongest =
+                orderBy.equals(context.getString(R.string.settings_order_by_magnitude_value));
+
+        WidgetSnapshot snapshot = WidgetSnapshot.getInstance(context);
+        List<WidgetSnapshot.Entry> entries =
+                strongest ? snapshot.getStrongest() : snapshot.getRecent();
+
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.quake_widget);
+        views.setTextViewText(R.id.widget_title, context.getString(
+                strongest ? R.string.widget_title_strongest : R.string.widget_title_recent));
+        views.setViewVisibility(R.id.widget_empty, entries.isEmpty() ? View.VISIBLE : View.GONE);
+
+        // Show the date and time rather than "minutes ago", which would need timed updates
+        DecimalFormat magnitudeFormat = new DecimalFormat("0.0");
+        SimpleDateFormat timeFormat = new SimpleDateFormat(
+                DateFormat.is24HourFormat(context) ? "MMM d, HH:mm" : "MMM d, h:mm a");
+        for (int row = 0; row < ROW_IDS.length; row++) {
+            if (row >= entries.size()) {
+                views.setViewVisibility(ROW_IDS[row], View.GONE);
+                continue;
+            }
+            WidgetSnapshot.Entry entry = entries.get(row);
+            views.setViewVisibility(ROW_IDS[row], View.VISIBLE);
+            views.setTextViewText(MAGNITUDE_IDS[row], magnitudeFormat.format(entry.getMagnitude()));
+            views.setInt(MAGNITUDE_IDS[row], "setTextColor",
+                    QuakeAdapter.getMagnitudeColor(context, entry.getMagnitude()));
+            views.setTextViewText(PLACE_IDS[row], entry.getPlace());
+            views.setTextViewText(TIME_IDS[row], timeFormat.format(new Date(entry.getTime())));
+        }
+
+        // Tapping the widget opens the full list
+        PendingIntent openApp = PendingIntent.getActivity(context, 0,
+                new Intent(context, EarthquakeActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        views.setOnClickPendingIntent(R.id.widget_root, openApp);
+        return views;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class that streams earthquakes to a channel one record at a time, so that the memory
+ * used by an export does not grow with the number of earthquakes
+ */
+public abstract class QuakeWriter {
+
+    // Buffered channel the records are written to
+    protected final ChannelSink mSink;
+
+    private int mCount;
+
+    protected QuakeWriter(WritableByteChannel channel) {
+        mSink = new ChannelSink(channel);
+    }
+
+    /**
+     * Create a writer for the given format
+     *
+     * @param format  is the export format
+     * @param channel is the channel to write to
+     * @return        a new {@link QuakeWriter}
+     */
+    public static QuakeWriter create(ExportFormat format, WritableByteChannel channel) {
+        switch (format) {
+            case CSV:
+                return new CsvQuakeWriter(channel);
+            case GEOJSON:
+                return new GeoJsonQuakeWriter(channel);
+            default:
+                return new BinaryQuakeWriter(channel);
+        }
+    }
+
+    /**
+     * Stream every earthquake from a reader to a channel
+     *
+     * @param format      is the export format
+     * @param earthquakes is the source of the earthquakes
+     * @param channel     is the channel to write to
+     * @return            the number of earthquakes written
+     */
+    public static int export(ExportFormat format, QuakeReader earthquakes,
+                             WritableByteChannel channel) throws IOException {
+        QuakeWriter writer = create(format, channel);
+        writer.begin();
+        Quake quake = earthquakes.next();
+        while (quake != null) {
+            writer.write(quake);
+            quake = earthquakes.next();
+        }
+        writer.finish();
+        return writer.getCount();
+    }
+
+    /**
+     * Write the file header
+     */
+    public void begin() throws IOException {
+        writeHeader();
+    }
+
+    /**
+     * @param quake is the next earthquake to write
+     */
+    public void write(Quake quake) throws IOException {
+        writeRecord(quake);
+        mCount++;
+    }
+
+    /**
+     * Write the file trailer and flush everything to the channel; the channel is left open
+     */
+    public void finish() throws IOException {
+        writeTrailer();
+        mSink.flush();
+    }
+
+    /** Getter method for number of earthquakes written */
+    public int getCount() {
+        return mCount;
+    }
+
+    /** Getter method for bytes written to the channel so far */
+    public long getBytesWritten() {
+        return mSink.getBytesWritten();
+    }
+
+    protected abstract void writeHeader() throws IOException;
+
+    protected abstract void writeRecord(Quake quake) throws IOException;
+
+    protected abstract void writeTrailer() throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for a named earthquake query shown as a tab of the list, i.e. "Global M6+"
+ *
+ * A profile may leave its minimum magnitude to the user's settings, narrow the query to
+ * a circle around a point, and keep only the earthquakes that raised a tsunami flag
+ */
+public class QueryProfile {
+
+    /**
+     * ID of the profile that follows the user's settings, which cannot be removed
+     */
+    public static final String SETTINGS_ID = "settings";
+
+    private static final String KEY_ID = "id";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_MIN_MAGNITUDE = "minMagnitude";
+    private static final String KEY_TSUNAMI_ONLY = "tsunamiOnly";
+    private static final String KEY_LATITUDE = "latitude";
+    private static final String KEY_LONGITUDE = "longitude";
+    private static final String KEY_RADIUS_KM = "radiusKm";
+
+    private final String mId;
+    private final String mName;
+    // NaN when the minimum magnitude follows the user's settings
+    private final double mMinMagnitude;
+    private final boolean mTsunamiOnly;
+    // NaN when the profile is not limited to a region
+    private final double mLatitude;
+    private final double mLongitude;
+    private final double mRadiusKm;
+
+    /**
+     * Construct a new {@link QueryProfile}
+     *
+     * @param id           is the stable ID the profile's results are cached under
+     * @param name         is the name shown on the profile's tab
+     * @param minMagnitude is the smallest magnitude to show, or NaN to follow the settings
+     * @param tsunamiOnly  is true to keep only earthquakes with a tsunami flag
+     * @param latitude     is the latitude of the region's centre, or NaN for anywhere
+     * @param longitude    is the longitude of the region's centre, or NaN for anywhere
+     * @param radiusKm     is the radius of the region in kilometres, or NaN for anywhere
+     */
+    public QueryProfile(String id, String name, double minMagnitude, boolean tsunamiOnly,
+                        double latitude, double longitude, double radiusKm) {
+        mId = id;
+        mName = name;
+        mMinMagnitude = minMagnitude;
+        mTsunamiOnly = tsunamiOnly;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mRadiusKm = radiusKm;
+    }
+
+    /**
+     * Build the profiles offered before the user has changed any
+     *
+     * @param settingsName is the name of the profile following the user's settings
+     * @param globalName   is the name of the worldwide M6+ profile
+     * @param pacificName  is the name of the Pacific tsunami profile
+     * @return             the default profiles, the settings profile first
+     */
+    public static List<QueryProfile> defaults(String settingsName, String globalName,
+                                              String pacificName) {
+        List<QueryProfile> profiles = new ArrayList<>();
+        profiles.add(new QueryProfile(SETTINGS_ID, settingsName, Double.NaN, false,
+                Double.NaN, Double.NaN, Double.NaN));
+        profiles.add(new QueryProfile("global_m6", globalName, 6.0, false,
+                Double.NaN, Double.NaN, Double.NaN));
+        // A circle reaching from Japan and New Zealand to Alaska and Chile
+        profiles.add(new QueryProfile("pacific_tsunami", pacificName, 4.5, true,
+                0.0, -170.0, 11000.0));
+        return profiles;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public double getMinMagnitude() {
+        return mMinMagnitude;
+    }
+
+    public boolean isTsunamiOnly() {
+        return mTsunamiOnly;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public double getRadiusKm() {
+        return mRadiusKm;
+    }
+
+    public boolean hasRegion() {
+        return !Double.isNaN(mLatitude) && !Double.isNaN(mLongitude) && !Double.isNaN(mRadiusKm);
+    }
+
+    /**
+     * Build the USGS query URL of the profile
+     *
+     * @param baseUrl              is the URL of the USGS query endpoint
+     * @param startTime            is the formatted time of the oldest earthquake to fetch
+     * @param limit                is the number of earthquakes to fetch
+     * @param orderBy              is the FDSN order, "time" or "magnitude"
+     * @param settingsMinMagnitude is the user's minimum magnitude setting
+     * @return                     the query URL
+     */
+    public String buildUrl(String baseUrl, String startTime, int limit, String orderBy,
+                           String settingsMinMagnitude) {
+        StringBuilder url = new StringBuilder(baseUrl);
+        url.append(baseUrl.indexOf('?') < 0 ? '?' : '&').append("format=geojson");
+        appendParameter(url, "starttime", startTime);
+        appendParameter(url, "limit", String.valueOf(limit));
+        appendParameter(url, "minmagnitude", Double.isNaN(mMinMagnitude)
+                ? settingsMinMagnitude : String.valueOf(mMinMagnitude));
+        appendParameter(url, "orderby", orderBy);
+        if (hasRegion()) {
+            appendParameter(url, "latitude", String.valueOf(mLatitude));
+            appendParameter(url, "longitude", String.valueOf(mLongitude));
+            appendParameter(url, "maxradiuskm", String.valueOf(mRadiusKm));
+        }
+        return url.toString();
+    }
+
+    private static void appendParameter(StringBuilder url, String name, String value) {
+        try {
+            url.append('&').append(name).append('=').append(URLEncoder.encode(value, "UTF-8"));
+        }
+        catch (UnsupportedEncodingException e) {
+            // Every JVM supports UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Keep the earthquakes the query itself cannot filter on; the FDSN query has no
+     * parameter for the tsunami flag
+     *
+     * @param earthquakes is the earthquakes returned by the query
+     * @return            the earthquakes the profile shows
+     */
+    public List<Quake> filter(List<Quake> earthquakes) {
+        if (!mTsunamiOnly || earthquakes == null) {
+            return earthquakes;
+        }
+        List<Quake> flagged = new ArrayList<>();
+        for (Quake quake : earthquakes) {
+            if (quake.getTsunamiWarning() == 1) {
+                flagged.add(quake);
+            }
+        }
+        return flagged;
+    }
+
+    /**
+     * @return the profile as a JSON object for storing in the preferences
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(KEY_ID, mId);
+        json.put(KEY_NAME, mName);
+        json.put(KEY_TSUNAMI_ONLY, mTsunamiOnly);
+        // JSON has no NaN, so unset values are left out
+        if (!Double.isNaN(mMinMagnitude)) {
+            json.put(KEY_MIN_MAGNITUDE, mMinMagnitude);
+        }
+        if (hasRegion()) {
+            json.put(KEY_LATITUDE, mLatitude);
+            json.put(KEY_LONGITUDE, mLongitude);
+            json.put(KEY_RADIUS_KM, mRadiusKm);
+        }
+        return json;
+    }
+
+    /**
+     * @param json is a profile stored by {@link #toJson()}
+     * @return     the stored profile
+     */
+    public static QueryProfile fromJson(JSONObject json) throws JSONException {
+        return new QueryProfile(json.getString(KEY_ID), json.getString(KEY_NAME),
+                json.optDouble(KEY_MIN_MAGNITUDE, Double.NaN),
+                json.optBoolean(KEY_TSUNAMI_ONLY, false),
+                json.optDouble(KEY_LATITUDE, Double.NaN),
+                json.optDouble(KEY_LONGITUDE, Double.NaN),
+                json.optDouble(KEY_RADIUS_KM, Double.NaN));
+    }
+}
\ No newline at end of file
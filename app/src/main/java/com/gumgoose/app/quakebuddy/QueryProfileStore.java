@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that keeps the user's {@link QueryProfile} tabs in a private preferences file
+ */
+public final class QueryProfileStore {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = QueryProfileStore.class.getSimpleName();
+
+    private static final String PREFS_NAME = "query_profiles";
+    private static final String PROFILES_KEY = "profiles";
+
+    private QueryProfileStore() {
+    }
+
+    /**
+     * Read the stored profiles, or the default profiles if none have been stored
+     *
+     * @param context of the caller
+     * @return        the profiles in tab order
+     */
+    public static List<QueryProfile> load(Context context) {
+        String stored = prefs(context).getString(PROFILES_KEY, null);
+        if (stored != null) {
+            try {
+                JSONArray array = new JSONArray(stored);
+                List<QueryProfile> profiles = new ArrayList<>(array.length());
+                for (int i = 0; i < array.length(); i++) {
+                    profiles.add(QueryProfile.fromJson(array.getJSONObject(i)));
+                }
+                if (!profiles.isEmpty()) {
+                    return profiles;
+                }
+            }
+            catch (JSONException e) {
+                // Error caught, print the exception to the logs and start over
+                Log.e(LOG_TAG, "Problem with reading the stored profiles", e);
+            }
+        }
+        return QueryProfile.defaults(context.getString(R.string.profile_settings_name),
+                context.getString(R.string.profile_global_name),
+                context.getString(R.string.profile_pacific_name));
+    }
+
+    /**
+     * @param context  of the caller
+     * @param profiles is the profiles to store, in tab order
+     */
+    public static void save(Context context, List<QueryProfile> profiles) {
+        JSONArray array = new JSONArray();
+        try {
+            for (QueryProfile profile : profiles) {
+                array.put(profile.toJson());
+            }
+        }
+        catch (JSONException e) {
+            // Error caught, print the exception to the logs
+            Log.e(LOG_TAG, "Problem with storing the profiles", e);
+            return;
+        }
+        prefs(context).edit().putString(PROFILES_KEY, array.toString()).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
\ No newline at end of file
@@ -16,23 +16,27 @@
 
 package com.gumgoose.app.quakebuddy;
 
-import android.text.TextUtils;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * Class that tries an HTTP request, parses the data,
@@ -45,6 +49,19 @@ public final class QueryUtils {
      */
     public static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
+    /**
+     * Shortest response body parsed on several threads, about a thousand features
+     */
+    static final int PARALLEL_PARSE_CHARS = 1024 * 1024;
+
+    // Rough length of one GeoJSON feature, for sizing the chunks before they are found
+    private static final int FEATURE_CHARS = 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Counters of the lenient parser, kept for the whole session
+    private static final ParseReport sParseTotals = new ParseReport();
+
     private QueryUtils() {
         // Unused, empty constructor
     }
@@ -55,7 +72,7 @@ public final class QueryUtils {
      * @param stringUrl is the URL given by the Loader
      * @return          the validated URL object
      */
-    private static URL createUrl(String stringUrl) {
+    static URL createUrl(String stringUrl) {
         URL url = null;
         try {
             url = new URL(stringUrl);
@@ -68,22 +85,42 @@ public final class QueryUtils {
     }
 
     /**
-     * Make an HTTP request on the URL and return a String as the response
-     *
-     * @param url          is the URL object
-     * @return             the formatted JSON response String
-     * @throws IOException is an expected operation error, which is caught automatically
+     * Parser of USGS GeoJSON query responses, which also measures the size of an event
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    static final FetchOutcome.Parser<List<Quake>> EARTHQUAKE_PARSER =
+            new FetchOutcome.Parser<List<Quake>>() {
+                @Override
+                public List<Quake> parse(String body) {
+                    List<Quake> earthquakes = extractFeatureFromJson(body);
+                    if (earthquakes != null) {
+                        ThroughputEstimator.getInstance().recordEvents(utf8Length(body),
+                                earthquakes.size());
+                    }
+                    return earthquakes;
+                }
+            };
 
+    /**
+     * Make a single HTTP GET request on the URL and classify its outcome
+     *
+     * @param url    is the URL object
+     * @param parser is the parser of a successful response body
+     * @return       the outcome, holding the parsed body if the request succeeded
+     */
+    static <T> FetchOutcome<T> request(URL url, FetchOutcome.Parser<T> parser) {
         // If the URL is null, then return early
         if (url == null) {
-            return jsonResponse;
+            return FetchOutcome.failure(FetchOutcome.Kind.CLIENT_ERROR,
+                    FetchOutcome.NO_RESPONSE, -1);
         }
+        AppScheduler.getInstance().checkBackground(AppScheduler.Pool.NETWORK,
+                "GET " + url.getHost() + url.getPath());
 
         HttpURLConnection urlConnection = null;
         InputStream inputStream = null;
+        int responseCode = FetchOutcome.NO_RESPONSE;
+        Metrics metrics = Metrics.getInstance();
+        long startTime = SystemClock.elapsedRealtime();
 
         try {
             urlConnection = (HttpURLConnection) url.openConnection();
@@ -91,95 +128,238 @@ public final class QueryUtils {
             urlConnection.setConnectTimeout(15000);
             urlConnection.setRequestMethod("GET");
             urlConnection.connect();
+            responseCode = urlConnection.getResponseCode();
 
             // If the request was successful (response code 200),
             // then read the input stream and parse the response
-            if (urlConnection.getResponseCode() == 200) {
+            if (responseCode == 200) {
+                long responseTime = SystemClock.elapsedRealtime();
                 inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            }
-            else {
-                Log.e(LOG_TAG, "HTTP error response code: " + urlConnection.getResponseCode());
+                byte[] body = readFromStream(inputStream);
+                String response = new String(body, UTF_8);
+                // Measure the request so later queries can be sized to the connection
+                ThroughputEstimator.getInstance().recordRequest(responseTime - startTime,
+                        body.length, SystemClock.elapsedRealtime() - responseTime);
+                DataBudget.getInstance().record(body.length);
+                long parseStart = System.nanoTime();
+                T value;
+                try {
+                    value = parser.parse(response);
+                }
+                catch (RuntimeException e) {
+                    // A body the parser chokes on is as malformed as one it rejects
+                    Log.e(LOG_TAG, "Parser failed on the response body", e);
+                    value = null;
+                }
+                long parseMicros = (System.nanoTime() - parseStart) / 1000L;
+                if (value == null) {
+                    Log.e(LOG_TAG, "Malformed response body from " + url);
+                    metrics.recordRequest(FetchOutcome.Kind.MALFORMED_BODY,
+                            responseTime - startTime, body.length, parseMicros);
+                    return FetchOutcome.failure(FetchOutcome.Kind.MALFORMED_BODY,
+                            responseCode, -1);
+                }
+                metrics.recordRequest(FetchOutcome.Kind.SUCCESS, responseTime - startTime,
+                        body.length, parseMicros);
+                return FetchOutcome.success(value, responseCode);
             }
+
+            Log.e(LOG_TAG, "HTTP error response code: " + responseCode);
+            metrics.recordRequest(kindOf(responseCode),
+                    SystemClock.elapsedRealtime() - startTime, -1, -1);
+            long retryAfter = parseRetryAfter(urlConnection.getHeaderField("Retry-After"),
+                    System.currentTimeMillis());
+            return FetchOutcome.failure(kindOf(responseCode), responseCode, retryAfter);
+        }
+        catch (SocketTimeoutException e) {
+            // Error caught, print the exception to the logs
+            Log.e(LOG_TAG, "Timed out retrieving the earthquake JSON results", e);
+            metrics.recordRequest(FetchOutcome.Kind.TIMEOUT,
+                    SystemClock.elapsedRealtime() - startTime, -1, -1);
+            return FetchOutcome.failure(FetchOutcome.Kind.TIMEOUT, responseCode, -1);
         }
         catch (IOException e) {
             // Error caught, print the exception to the logs
             Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results", e);
+            metrics.recordRequest(FetchOutcome.Kind.NETWORK_ERROR,
+                    SystemClock.elapsedRealtime() - startTime, -1, -1);
+            return FetchOutcome.failure(FetchOutcome.Kind.NETWORK_ERROR, responseCode, -1);
         }
         finally {
             if (urlConnection != null) {
                 urlConnection.disconnect();
             }
             if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies that an IOException
-                // could be thrown
-                inputStream.close();
+                try {
+                    inputStream.close();
+                }
+                catch (IOException e) {
+                    // The body has been read or abandoned, nothing is lost
+                }
             }
         }
-        return jsonResponse;
     }
 
     /**
-     * Method for converting the InputStream into a String that contains the JSON response
+     * @param responseCode is an HTTP status code other than 200
+     * @return             the kind of failure the code stands for
+     */
+    static FetchOutcome.Kind kindOf(int responseCode) {
+        if (responseCode == 304) {
+            return FetchOutcome.Kind.NOT_MODIFIED;
+        }
+        if (responseCode == 429) {
+            return FetchOutcome.Kind.RATE_LIMITED;
+        }
+        if (responseCode >= 500) {
+            return FetchOutcome.Kind.SERVER_ERROR;
+        }
+        return FetchOutcome.Kind.CLIENT_ERROR;
+    }
+
+    /**
+     * Read a Retry-After header, which holds either a number of seconds or an HTTP date
+     *
+     * @param header    is the header value, or null
+     * @param nowMillis is the current wall clock time
+     * @return          the wait asked for, or -1 if there is no valid header
+     */
+    static long parseRetryAfter(String header, long nowMillis) {
+        if (header == null || header.trim().isEmpty()) {
+            return -1;
+        }
+        String value = header.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        }
+        catch (NumberFormatException e) {
+            // Not a number of seconds, try an HTTP date
+        }
+        SimpleDateFormat httpDate =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, httpDate.parse(value).getTime() - nowMillis);
+        }
+        catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Method for reading the whole InputStream, which holds the UTF-8 JSON response
      *
      * @param inputStream  is the InputStream object
-     * @return             a JSON response String
+     * @return             the bytes of the response, counted as they were read
      * @throws IOException is an expected operation error, which is caught automatically
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
+    private static byte[] readFromStream(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
         if (inputStream != null) {
-            InputStreamReader inputStreamReader =
-                    new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
+            byte[] buffer = new byte[8192];
+            int read = inputStream.read(buffer);
+            while (read >= 0) {
+                output.write(buffer, 0, read);
+                read = inputStream.read(buffer);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * @param text is a response body, or part of one
+     * @return     the number of bytes the text takes up in UTF-8, as sent by the server
+     */
+    static long utf8Length(CharSequence text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            }
+            else if (c < 0x800) {
+                bytes += 2;
+            }
+            else if (Character.isHighSurrogate(c)) {
+                // The pair makes a single four byte character
+                bytes += 4;
+                i++;
+            }
+            else {
+                bytes += 3;
             }
         }
-        return output.toString();
+        return bytes;
+    }
+
+    /**
+     * @return the counters of every feature parsed from a query response since launch
+     */
+    public static ParseReport getParseTotals() {
+        return sParseTotals;
     }
 
     /**
      * Parses the JSON response and returns a list of earthquakes
      *
      * @param earthquakeJSON is the JSON response String
-     * @return               a list of earthquakes
+     * @return               a list of earthquakes, or null if the response is not a
+     *                       FeatureCollection
      */
     public static List<Quake> extractFeatureFromJson(String earthquakeJSON) {
+        ParseReport report = new ParseReport();
+        List<Quake> earthquakes;
+        if (earthquakeJSON != null && earthquakeJSON.length() >= PARALLEL_PARSE_CHARS) {
+            // A large body, i.e. a backfill of months of history, is parsed on every core
+            earthquakes = ParallelFeatureParser.parse(earthquakeJSON, report,
+                    AppScheduler.getInstance().getExecutor(AppScheduler.Pool.PARSE),
+                    ParallelChunks.chunksFor(earthquakeJSON.length() / FEATURE_CHARS,
+                            ParallelFeatureParser.MIN_CHUNK_FEATURES));
+        }
+        else {
+            earthquakes = extractFeatureFromJson(earthquakeJSON, report);
+        }
+        sParseTotals.addAll(report);
+        if (!report.isClean()) {
+            Log.w(LOG_TAG, "Parsed the earthquake JSON results leniently: " + report);
+        }
+        return earthquakes;
+    }
+
+    /**
+     * Parses the JSON response leniently: each feature is validated on its own, so a bad
+     * feature is skipped or has its bad fields defaulted without losing the rest
+     *
+     * @param earthquakeJSON is the JSON response String
+     * @param report         is told about every feature skipped and field defaulted
+     * @return               a list of earthquakes, or null if the response is not a
+     *                       FeatureCollection
+     */
+    static List<Quake> extractFeatureFromJson(String earthquakeJSON, ParseReport report) {
         // If the JSON String is empty or null, then return early
-        if (TextUtils.isEmpty(earthquakeJSON)) {
+        if (earthquakeJSON == null || earthquakeJSON.isEmpty()) {
             return null;
         }
 
-        // Create an empty ArrayList
-        ArrayList<Quake> earthquakes = new ArrayList<>();
-
+        // A body that does not parse as a whole, i.e. a cut off response, is malformed
+        JSONArray earthQuakeArray;
         try {
-            // Try to parse the earthquake JSON response
-            JSONObject data = new JSONObject(earthquakeJSON);
-            JSONArray earthQuakeArray = data.getJSONArray("features");
-
-            for (int i = 0; i < earthQuakeArray.length(); i++) {
-                String url = null;
-                JSONObject currentEarthquake = earthQuakeArray.getJSONObject(i);
-                JSONObject properties = currentEarthquake.getJSONObject("properties");
-                double magnitude = properties.getDouble("mag");
-                String location = properties.getString("place");
-                long unix_time = properties.getLong("time");
-                int warning = properties.getInt("tsunami");
-                if(properties.has("url")) {
-                    url = properties.getString("url");
-                }
-                Quake earthquake = new Quake(magnitude, location, unix_time, warning, url);
-                earthquakes.add(earthquake);
-            }
+            earthQuakeArray = new JSONObject(earthquakeJSON).getJSONArray("features");
         }
         catch (JSONException e) {
             // Error caught, print the exception to the logs
-            Log.e(LOG_TAG, "Problem with parsing the earthquake JSON results", e);
+            Log.e(LOG_TAG, "Malformed earthquake JSON response", e);
+            return null;
+        }
+
+        // Create an empty ArrayList
+        ArrayList<Quake> earthquakes = new ArrayList<>(earthQuakeArray.length());
+        for (int i = 0; i < earthQuakeArray.length(); i++) {
+            report.recordFeature();
+            Quake earthquake = extractFeature(earthQuakeArray.optJSONObject(i), report);
+            if (earthquake != null) {
+                earthquakes.add(earthquake);
+            }
         }
 
         // Return a list of earthquakes
@@ -187,30 +367,192 @@ public final class QueryUtils {
     }
 
     /**
-     * Caller method for interacting with other methods in this class
-     *
-     * @param requestUrl is the URL provided by the Loader
-     * @return           the list of earthquakes
+     * @return the earthquake of a single feature, or null if it cannot be listed
      */
-    public static List<Quake> fetchEarthquakeData(String requestUrl) {
-        // Create URL object
-        URL url = createUrl(requestUrl);
+    static Quake extractFeature(JSONObject currentEarthquake, ParseReport report) {
+        return extractFeature(currentEarthquake, report, PlaceInterner.getInstance());
+    }
 
-        // Perform HTTP request on the URL in order to receive a JSON response
-        String jsonResponse = null;
+    /**
+     * @param interner shares one String per place, or null to leave the place names to the
+     *                 caller, i.e. to intern a whole batch at once
+     * @return         the earthquake of a single feature, or null if it cannot be listed
+     */
+    static Quake extractFeature(JSONObject currentEarthquake, ParseReport report,
+                                PlaceInterner interner) {
+        if (currentEarthquake == null) {
+            report.recordSkipped("feature");
+            return null;
+        }
+        JSONObject properties = currentEarthquake.optJSONObject("properties");
+        if (properties == null) {
+            report.recordSkipped("properties");
+            return null;
+        }
+
+        // A deleted event, only sent to incremental syncs, is kept as a record to drop it by
+        if ("deleted".equals(properties.optString("status", null))) {
+            String deletedId = currentEarthquake.optString("id", null);
+            if (deletedId == null) {
+                report.recordSkipped("id");
+                return null;
+            }
+            long deletedTime = (long) readDouble(properties, "time");
+            double deletedAt = readDouble(properties, "updated");
+            return Quake.deleted(deletedId, deletedTime,
+                    Double.isNaN(deletedAt) ? deletedTime : (long) deletedAt);
+        }
+
+        // Without a magnitude or a time the earthquake cannot be sorted or shown
+        double magnitude = readDouble(properties, "mag");
+        if (Double.isNaN(magnitude) || Double.isInfinite(magnitude)) {
+            report.recordSkipped("mag");
+            return null;
+        }
+        double time = readDouble(properties, "time");
+        if (Double.isNaN(time) || time <= 0) {
+            report.recordSkipped("time");
+            return null;
+        }
+        long unix_time = (long) time;
+
+        String place = readString(properties, "place", report);
+        if (properties.isNull("place")) {
+            // Every listed earthquake is expected to have a place
+            report.recordDefaulted("place");
+        }
+        // Share one String per place across refreshes and cached results
+        String location = place == null ? "" : place;
+        if (interner != null) {
+            location = interner.intern(location);
+        }
+
+        // USGS flags a tsunami with 1 and anything else with 0
+        double tsunami = readDouble(properties, "tsunami");
+        int warning = tsunami == 1 ? 1 : 0;
+        if (Double.isNaN(tsunami) || (tsunami != 0 && tsunami != 1)) {
+            report.recordDefaulted("tsunami");
+        }
+
+        String url = readString(properties, "url", report);
+        // Identify the event so its detail feed can be prefetched and cached
+        String id = readString(currentEarthquake, "id", report);
+        String detail = readString(properties, "detail", report);
+        double updated = readDouble(properties, "updated");
+        if (Double.isNaN(updated) || updated < time) {
+            if (properties.has("updated")) {
+                report.recordDefaulted("updated");
+            }
+            updated = time;
+        }
+
+        // GeoJSON coordinates are ordered as longitude, latitude, depth
+        double longitude = Double.NaN;
+        double latitude = Double.NaN;
+        double depth = Double.NaN;
+        JSONObject geometry = currentEarthquake.optJSONObject("geometry");
+        JSONArray coordinates = geometry == null ? null : geometry.optJSONArray("coordinates");
+        if (coordinates != null) {
+            longitude = coordinates.optDouble(0);
+            latitude = coordinates.optDouble(1);
+            depth = coordinates.optDouble(2);
+        }
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            // A missing or impossible position leaves the earthquake off the map only
+            report.recordDefaulted("coordinates");
+            longitude = Double.NaN;
+            latitude = Double.NaN;
+            depth = Double.NaN;
+        }
+        return new Quake(magnitude, location, unix_time, warning, url,
+                id, (long) updated, detail, latitude, longitude, depth);
+    }
+
+    /**
+     * @return the number held by the field, which may be sent as a String, or NaN if none
+     */
+    private static double readDouble(JSONObject object, String name) {
+        Object value = object.opt(name);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            }
+            catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @return the String held by the field, or null if it is missing or not a String;
+     *         only a value of another type is counted as defaulted
+     */
+    private static String readString(JSONObject object, String name, ParseReport report) {
+        Object value = object.opt(name);
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (!object.isNull(name)) {
+            report.recordDefaulted(name);
+        }
+        return null;
+    }
+
+    /**
+     * Parses the JSON response of a USGS event detail feed
+     *
+     * @param detailJSON is the JSON response String of a single event
+     * @return           the earthquake's details, or null if the response could not be parsed
+     */
+    public static QuakeDetail extractDetailFromJson(String detailJSON) {
+        // If the JSON String is empty or null, then return early
+        if (detailJSON == null || detailJSON.isEmpty()) {
+            return null;
+        }
 
         try {
-            jsonResponse = makeHttpRequest(url);
+            return QuakeDetail.fromJson(new JSONObject(detailJSON));
         }
-        catch (IOException e) {
+        catch (JSONException e) {
             // Error caught, print the exception to the logs
-            Log.e(LOG_TAG, "Problem with making the HTTP request", e);
+            Log.e(LOG_TAG, "Problem with parsing the earthquake detail JSON", e);
         }
+        return null;
+    }
 
-        // Parse JSON response to get a list of earthquakes
-        List<Quake> earthquakes = extractFeatureFromJson(jsonResponse);
+    /**
+     * Fetches the raw JSON of a USGS event detail feed, ready for caching
+     *
+     * @param detailUrl is the URL of the event's GeoJSON detail feed
+     * @return          the JSON response String, or an empty String if the request failed
+     */
+    public static String fetchDetailJson(String detailUrl) {
+        FetchOutcome<String> outcome = request(createUrl(detailUrl), FetchOutcome.RAW);
+        return outcome.isSuccess() ? outcome.getValue() : "";
+    }
 
-        // Return the list of earthquakes
-        return earthquakes;
+    /**
+     * Caller method for interacting with other methods in this class, sending a single
+     * request; {@link ResilientFetcher} retries failed requests
+     *
+     * @param requestUrl is the URL provided by the Loader
+     * @return           the list of earthquakes, or null if the request failed
+     */
+    public static List<Quake> fetchEarthquakeData(String requestUrl) {
+        return fetchEarthquakes(requestUrl).getValue();
+    }
+
+    /**
+     * Fetch the earthquakes of a query with a single request
+     *
+     * @param requestUrl is the URL provided by the Loader
+     * @return           the outcome, holding the earthquakes if the request succeeded
+     */
+    public static FetchOutcome<List<Quake>> fetchEarthquakes(String requestUrl) {
+        return request(createUrl(requestUrl), EARTHQUAKE_PARSER);
     }
-}
\ No newline at end of file
+}
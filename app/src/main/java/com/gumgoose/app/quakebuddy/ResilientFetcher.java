@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.util.Log;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that fetches from USGS with retries, a circuit breaker per host and optional
+ * hedged requests, returning a typed {@link FetchOutcome} rather than an empty result
+ *
+ * Retryable failures are sent again after a jittered exponential backoff, or after the
+ * wait asked for by a Retry-After header. A hedged request sends a second copy of a GET
+ * that has not answered within the hedge delay and takes whichever answers first
+ */
+public class ResilientFetcher {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = ResilientFetcher.class.getSimpleName();
+
+    /**
+     * Defaults of the app-wide fetcher
+     */
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_BACKOFF_MILLIS = 500;
+    static final long DEFAULT_MAX_WAIT_MILLIS = 8000;
+    static final long DEFAULT_HEDGE_DELAY_MILLIS = 3000;
+
+    /**
+     * Consecutive failures that open a host's circuit breaker, and how long it stays open
+     */
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long BREAKER_COOL_DOWN_MILLIS = 30 * 1000;
+    private static final long BREAKER_MAX_COOL_DOWN_MILLIS = 5 * 60 * 1000;
+
+    private static ResilientFetcher sInstance;
+
+    private final int mMaxAttempts;
+    private final long mBaseBackoffMillis;
+    private final long mMaxWaitMillis;
+    private final long mHedgeDelayMillis;
+    private final Random mRandom;
+
+    // One breaker per host, so a failing detail host does not block the query host
+    private final Map<String, CircuitBreaker> mBreakers = new HashMap<>();
+
+    // Runs both copies of hedged requests, on the app's network pool
+    private final ExecutorService mHedgeExecutor;
+
+    private final AtomicInteger mHedgeCount = new AtomicInteger();
+
+    // Picks the data source of each earthquake query, if any
+    private volatile SourceRouter mRouter;
+
+    /**
+     * @return the app-wide {@link ResilientFetcher}
+     */
+    public static synchronized ResilientFetcher getInstance() {
+        if (sInstance == null) {
+            sInstance = new ResilientFetcher(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF_MILLIS,
+                    DEFAULT_MAX_WAIT_MILLIS, DEFAULT_HEDGE_DELAY_MILLIS, new Random());
+            sInstance.setRouter(SourceRouter.getInstance());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link ResilientFetcher}
+     *
+     * @param maxAttempts       is the number of requests sent before giving up
+     * @param baseBackoffMillis is the backoff before the first retry, doubled for each retry
+     * @param maxWaitMillis     is the longest wait before a retry; a server asking for a
+     *                          longer wait is not retried
+     * @param hedgeDelayMillis  is the time after which a hedged copy is sent, or 0 for none
+     * @param random            is the source of the backoff jitter
+     */
+    public ResilientFetcher(int maxAttempts, long baseBackoffMillis, long maxWaitMillis,
+                            long hedgeDelayMillis, Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxWaitMillis = maxWaitMillis;
+        mHedgeDelayMillis = hedgeDelayMillis;
+        mRandom = random;
+        mHedgeExecutor = AppScheduler.getInstance().getExecutor(AppScheduler.Pool.NETWORK);
+    }
+
+    /**
+     * Fetch and parse the earthquakes of a query, from the best data source if the fetcher
+     * has a router and the query is built on {@link DataSource#CANONICAL_QUERY_URL}
+     *
+     * @param url is the query URL
+     * @return    the outcome, holding the earthquakes if the fetch succeeded
+     */
+    public FetchOutcome<List<Quake>> fetchEarthquakes(String url) {
+        SourceRouter router = mRouter;
+        if (router != null && url.startsWith(DataSource.CANONICAL_QUERY_URL)) {
+            // Sent to the best source that answers, rather than always to USGS
+            return router.fetch(url, this);
+        }
+        return fetch(url, QueryUtils.EARTHQUAKE_PARSER);
+    }
+
+    /**
+     * @param router spreads earthquake queries over the data sources, or null to send
+     *               them to the URL as given
+     */
+    public void setRouter(SourceRouter router) {
+        mRouter = router;
+    }
+
+    /**
+     * Fetch and parse a URL, retrying failures the server may recover from
+     *
+     * This task blocks while waiting between retries, so it must run on a background thread
+     *
+     * @param url    is the URL to fetch
+     * @param parser is the parser of the response body
+     * @return       the outcome of the last request sent
+     */
+    public <T> FetchOutcome<T> fetch(String url, FetchOutcome.Parser<T> parser) {
+        CircuitBreaker breaker = breakerFor(url);
+        FetchOutcome<T> outcome = null;
+        int attempt = 0;
+        while (attempt < mMaxAttempts) {
+            if (!breaker.allowRequest(nowMillis())) {
+                Log.w(LOG_TAG, "Circuit open, not fetching " + url);
+                FetchOutcome<T> refused = FetchOutcome.failure(FetchOutcome.Kind.CIRCUIT_OPEN,
+                        FetchOutcome.NO_RESPONSE, breaker.getRemainingCoolDownMillis(nowMillis()));
+                return outcome == null ? refused : outcome.withAttempts(attempt);
+            }
+            attempt++;
+            outcome = requestHedged(url, parser);
+
+            // Rejected requests say nothing about the server's health
+            FetchOutcome.Kind kind = outcome.getKind();
+            if (kind.isRetryable()) {
+                breaker.recordFailure(nowMillis());
+            }
+            else {
+                breaker.recordSuccess();
+            }
+            if (!kind.isRetryable() || attempt >= mMaxAttempts) {
+                break;
+            }
+
+            long wait = outcome.getRetryAfterMillis() >= 0
+                    ? outcome.getRetryAfterMillis() : backoffMillis(attempt);
+            if (wait > mMaxWaitMillis) {
+                // The server asked for a longer pause than the user should wait for
+                break;
+            }
+            Log.w(LOG_TAG, outcome + ", retrying in " + wait + " ms");
+            try {
+                Thread.sleep(wait);
+            }
+            catch (InterruptedException e) {
+                // The Loader was cancelled, give up
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return outcome.withAttempts(attempt);
+    }
+
+    /**
+     * Full jitter: a random wait between zero and the exponential backoff of the attempt
+     *
+     * @param attempt is the number of requests already sent
+     * @return        the wait before the next request
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(mMaxWaitMillis, mBaseBackoffMillis << Math.min(attempt - 1, 16));
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * ceiling);
+        }
+    }
+
+    /**
+     * Send a request, and a second copy of it if the first is slower than the hedge delay
+     */
+    private <T> FetchOutcome<T> requestHedged(final String url,
+                                              final FetchOutcome.Parser<T> parser) {
+        if (mHedgeDelayMillis <= 0) {
+            return QueryUtils.request(QueryUtils.createUrl(url), parser);
+        }
+        Callable<FetchOutcome<T>> request = new Callable<FetchOutcome<T>>() {
+            @Override
+            public FetchOutcome<T> call() {
+                return QueryUtils.request(QueryUtils.createUrl(url), parser);
+            }
+        };
+
+        CompletionService<FetchOutcome<T>> requests =
+                new ExecutorCompletionService<>(mHedgeExecutor);
+        Future<FetchOutcome<T>> primary = requests.submit(request);
+        Future<FetchOutcome<T>> hedge = null;
+        try {
+            Future<FetchOutcome<T>> first = requests.poll(mHedgeDelayMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                // Slower than nearly every response, race a second copy against it
+                mHedgeCount.incrementAndGet();
+                hedge = requests.submit(request);
+                first = requests.take();
+            }
+            FetchOutcome<T> outcome = first.get();
+            if (outcome.isSuccess() || hedge == null) {
+                return outcome;
+            }
+            // The first to answer failed, the other copy may still succeed
+            return requests.take().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FetchOutcome.failure(FetchOutcome.Kind.NETWORK_ERROR,
+                    FetchOutcome.NO_RESPONSE, -1);
+        }
+        catch (ExecutionException e) {
+            // Only the parser throws out of a request, and it threw on this body
+            Log.e(LOG_TAG, "Hedged request failed", e.getCause());
+            return FetchOutcome.failure(FetchOutcome.Kind.MALFORMED_BODY,
+                    FetchOutcome.NO_RESPONSE, -1);
+        }
+        finally {
+            // The loser keeps its connection until it times out, but its result is dropped
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private CircuitBreaker breakerFor(String url) {
+        String host;
+        try {
+            host = new URL(url).getHost();
+        }
+        catch (MalformedURLException e) {
+            host = "";
+        }
+        synchronized (mBreakers) {
+            CircuitBreaker breaker = mBreakers.get(host);
+            if (breaker == null) {
+                breaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_COOL_DOWN_MILLIS,
+                        BREAKER_MAX_COOL_DOWN_MILLIS);
+                mBreakers.put(host, breaker);
+            }
+            return breaker;
+        }
+    }
+
+    /**
+     * @param url is a URL on the host
+     * @return    the circuit breaker of the URL's host
+     */
+    public CircuitBreaker getBreaker(String url) {
+        return breakerFor(url);
+    }
+
+    /**
+     * @return the number of hedged copies sent so far
+     */
+    public int getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    private static long nowMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+}
\ No newline at end of file
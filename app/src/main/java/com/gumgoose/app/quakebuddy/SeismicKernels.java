@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Class of the seismological statistics the stats screen shows, computed in tight loops
+ * over the primitive columns of {@link QuakeColumns}
+ *
+ * Large columns are split into chunks run on an executor by {@link ParallelChunks}
+ */
+public final class SeismicKernels {
+
+    /**
+     * Columns shorter than this are summed on the calling thread alone
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 17;
+
+    /**
+     * Width of the magnitude bins USGS reports magnitudes in
+     */
+    public static final double DEFAULT_BIN_WIDTH = 0.1;
+
+    private static final double LN_10 = Math.log(10);
+    private static final double LOG10_E = Math.log10(Math.E);
+
+    private SeismicKernels() {
+    }
+
+    /**
+     * The result of fitting the Gutenberg-Richter law log10 N = a - b M
+     */
+    public static final class BValueFit {
+        private final double mB;
+        private final double mA;
+        private final double mStandardError;
+        private final double mCompleteness;
+        private final int mCount;
+
+        BValueFit(double b, double a, double standardError, double completeness, int count) {
+            mB = b;
+            mA = a;
+            mStandardError = standardError;
+            mCompleteness = completeness;
+            mCount = count;
+        }
+
+        /** Getter method for the b-value, NaN if too few earthquakes were fitted */
+        public double getB() {
+            return mB;
+        }
+
+        /** Getter method for the a-value, the log10 of the count at magnitude zero */
+        public double getA() {
+            return mA;
+        }
+
+        /** Getter method for Aki's standard error of the b-value */
+        public double getStandardError() {
+            return mStandardError;
+        }
+
+        /** Getter method for the magnitude of completeness the fit started from */
+        public double getCompleteness() {
+            return mCompleteness;
+        }
+
+        /** Getter method for the number of earthquakes fitted */
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public String toString() {
+            return "b=" + mB + " +/- " + mStandardError + ", a=" + mA + ", Mc=" + mCompleteness
+                    + ", n=" + mCount;
+        }
+    }
+
+    /**
+     * A kernel that reduces a range of the columns to a sum
+     */
+    private interface RangeSum {
+        double sum(int from, int to);
+    }
+
+    /**
+     * @param magnitude is a magnitude
+     * @return          the radiated energy in joules, 10^(1.5 M + 4.8)
+     */
+    public static double energyJoules(double magnitude) {
+        return Math.exp(LN_10 * (1.5 * magnitude + 4.8));
+    }
+
+    /**
+     * @param magnitude is a moment magnitude
+     * @return          the seismic moment in newton metres, 10^(1.5 M + 9.1)
+     */
+    public static double momentNewtonMetres(double magnitude) {
+        return Math.exp(LN_10 * (1.5 * magnitude + 9.1));
+    }
+
+    /**
+     * @param energyJoules is an energy in joules
+     * @return             the magnitude that radiates it
+     */
+    public static double magnitudeOfEnergy(double energyJoules) {
+        return (Math.log10(energyJoules) - 4.8) / 1.5;
+    }
+
+    /**
+     * Compute the energy of every earthquake
+     *
+     * @param magnitudes is the magnitude column
+     * @param from       is the first index computed
+     * @param to         is the index after the last one computed
+     * @param energies   receives the energies at the same indices
+     */
+    public static void energies(double[] magnitudes, int from, int to, double[] energies) {
+        for (int i = from; i < to; i++) {
+            energies[i] = Math.exp(LN_10 * (1.5 * magnitudes[i] + 4.8));
+        }
+    }
+
+    /**
+     * @param magnitudes is the magnitude column
+     * @param from       is the first index summed
+     * @param to         is the index after the last one summed
+     * @return           the total energy in joules
+     */
+    public static double totalEnergy(double[] magnitudes, int from, int to) {
+        // 10^(1.5 M + 4.8) = 10^4.8 * e^(1.5 ln10 M), with the constant taken out of the loop
+        double scale = LN_10 * 1.5;
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += Math.exp(scale * magnitudes[i]);
+        }
+        return sum * Math.exp(LN_10 * 4.8);
+    }
+
+    /**
+     * @param columns  is the earthquakes
+     * @param executor runs the chunks of large columns, or null to stay on this thread
+     * @return         the total energy in joules
+     */
+    public static double totalEnergy(QuakeColumns columns, Executor executor) {
+        final double[] magnitudes = columns.getMagnitudes();
+        return sumInChunks(columns.size(), executor, new RangeSum() {
+            @Override
+            public double sum(int from, int to) {
+                return totalEnergy(magnitudes, from, to);
+            }
+        });
+    }
+
+    /**
+     * Sum the seismic moment released in consecutive time windows, running total
+     *
+     * @param times        is the time column
+     * @param magnitudes   is the magnitude column
+     * @param size         is the number of earthquakes
+     * @param fromTime     is the start of the first window
+     * @param windowMillis is the length of each window
+     * @param windows      is the number of windows
+     * @return             the moment in newton metres released from fromTime to the end
+     *                     of each window; earthquakes outside the windows are left out
+     */
+    public static double[] cumulativeMoment(long[] times, double[] magnitudes, int size,
+                                            long fromTime, long windowMillis, int windows) {
+        double[] moment = new double[windows];
+        double scale = LN_10 * 1.5;
+        long toTime = fromTime + windowMillis * windows;
+        for (int i = 0; i < size; i++) {
+            long time = times[i];
+            if (time >= fromTime && time < toTime) {
+                moment[(int) ((time - fromTime) / windowMillis)] += Math.exp(scale * magnitudes[i]);
+            }
+        }
+        double constant = Math.exp(LN_10 * 9.1);
+        double total = 0;
+        for (int w = 0; w < windows; w++) {
+            total += moment[w] * constant;
+            moment[w] = total;
+        }
+        return moment;
+    }
+
+    /**
+     * Estimate the magnitude of completeness by maximum curvature: the most populated
+     * magnitude bin, below which the catalog misses earthquakes
+     *
+     * @param magnitudes is the magnitude column
+     * @param size       is the number of earthquakes
+     * @param binWidth   is the width of the magnitude bins
+     * @return           the lower edge of the most populated bin, or NaN with no earthquakes
+     */
+    public static double completenessMagnitude(double[] magnitudes, int size, double binWidth) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, magnitudes[i]);
+            max = Math.max(max, magnitudes[i]);
+        }
+        // The small offset keeps values like 2.3 out of the bin below through rounding
+        int lowest = (int) Math.floor(min / binWidth + 1e-6);
+        int[] counts = new int[(int) Math.floor(max / binWidth + 1e-6) - lowest + 1];
+        for (int i = 0; i < size; i++) {
+            counts[(int) Math.floor(magnitudes[i] / binWidth + 1e-6) - lowest]++;
+        }
+        int mode = 0;
+        for (int bin = 1; bin < counts.length; bin++) {
+            if (counts[bin] > counts[mode]) {
+                mode = bin;
+            }
+        }
+        return (lowest + mode) * binWidth;
+    }
+
+    /**
+     * Fit the Gutenberg-Richter b-value by Aki's maximum likelihood estimate
+     *
+     * @param columns      is the earthquakes
+     * @param completeness is the magnitude of completeness; weaker earthquakes are left out
+     * @param binWidth     is the width of the magnitude bins the catalog rounds to
+     * @param executor     runs the chunks of large columns, or null to stay on this thread
+     * @return             the fit
+     */
+    public static BValueFit fitBValue(QuakeColumns columns, final double completeness,
+                                      double binWidth, Executor executor) {
+        final double[] magnitudes = columns.getMagnitudes();
+        // Binned magnitudes are compared against the bin's lower edge
+        final double cutoff = completeness - binWidth / 2;
+        double count = sumInChunks(columns.size(), executor, new RangeSum() {
+            @Override
+            public double sum(int from, int to) {
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    if (magnitudes[i] >= cutoff) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        });
+        double sum = sumInChunks(columns.size(), executor, new RangeSum() {
+            @Override
+            public double sum(int from, int to) {
+                double sum = 0;
+                for (int i = from; i < to; i++) {
+                    double magnitude = magnitudes[i];
+                    if (magnitude >= cutoff) {
+                        sum += magnitude;
+                    }
+                }
+                return sum;
+            }
+        });
+        int n = (int) count;
+        if (n < 2) {
+            return new BValueFit(Double.NaN, Double.NaN, Double.NaN, completeness, n);
+        }
+        double b = LOG10_E / (sum / n - cutoff);
+        return new BValueFit(b, Math.log10(n) + b * completeness, b / Math.sqrt(n),
+                completeness, n);
+    }
+
+    /**
+     * Sum a kernel over a column, in chunks on the executor once the column is large
+     */
+    private static double sumInChunks(int size, Executor executor, final RangeSum kernel) {
+        if (executor == null || size < PARALLEL_THRESHOLD) {
+            return kernel.sum(0, size);
+        }
+        final double[] sums = new double[ParallelChunks.chunksFor(size, PARALLEL_THRESHOLD / 4)];
+        ParallelChunks.run(size, sums.length, executor, new ParallelChunks.Body() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                sums[chunk] = kernel.sum(from, to);
+            }
+        });
+        // Added in chunk order, so the result does not depend on the scheduling
+        double sum = 0;
+        for (double chunkSum : sums) {
+            sum += chunkSum;
+        }
+        return sum;
+    }
+}
\ No newline at end of file
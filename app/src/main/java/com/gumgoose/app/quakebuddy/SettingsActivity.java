@@ -23,6 +23,7 @@ import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.text.format.Formatter;
 
 /**
  * Activity that binds QuakeBuddy's user filters and settings
@@ -62,6 +63,29 @@ public class SettingsActivity extends AppCompatActivity {
             Preference tsunamiWatchTheme =
                     findPreference(getString(R.string.settings_tsunami_watch_theme_key));
             bindPreferenceSummaryToValue(tsunamiWatchTheme);
+
+            Preference detailView =
+                    findPreference(getString(R.string.settings_detail_view_key));
+            bindPreferenceSummaryToValue(detailView);
+
+            Preference dataBudget =
+                    findPreference(getString(R.string.settings_data_budget_key));
+            bindPreferenceSummaryToValue(dataBudget);
+
+            Preference dataSource =
+                    findPreference(getString(R.string.settings_data_source_key));
+            bindPreferenceSummaryToValue(dataSource);
+        }
+
+        @Override
+        public void onResume() {
+            super.onResume();
+            // Show the data used today on each kind of network
+            DataBudget budget = DataBudget.getInstance();
+            findPreference(getString(R.string.settings_data_usage_key)).setSummary(getString(
+                    R.string.settings_data_usage_summary,
+                    Formatter.formatShortFileSize(getActivity(), budget.getBytesToday(true)),
+                    Formatter.formatShortFileSize(getActivity(), budget.getBytesToday(false))));
         }
 
         @Override
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Class that sends each earthquake query to the best {@link DataSource}, failing over to
+ * the next one when a source cannot answer
+ *
+ * Sources are ranked by health first and then by their measured latency, weighted by the
+ * user's preference so a mirror only wins while it is much faster. Latency comes from
+ * every answered query and from small health probes, which also find out when a failed
+ * source is back. Earthquakes from every source pass through one {@link EventReconciler}
+ */
+public class SourceRouter {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = SourceRouter.class.getSimpleName();
+
+    /**
+     * Latency assumed for a source that has not been measured yet
+     */
+    static final long UNMEASURED_MILLIS = 1000;
+
+    /**
+     * Latency penalty of each step down the preference order; a source must be this many
+     * times faster than the one before it, plus one, to be ranked above it
+     */
+    static final double PREFERENCE_PENALTY = 1.0;
+
+    /**
+     * Number of the most recent earthquakes of the history remembered at start
+     */
+    static final int SEED_COUNT = 2000;
+
+    /**
+     * Least time between two rounds of probes
+     */
+    static final long PROBE_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+    // Weight of the newest latency in the moving average
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    // Accepts any answer, a probe only measures whether and how fast it arrives
+    private static final FetchOutcome.Parser<Boolean> PROBE_PARSER =
+            new FetchOutcome.Parser<Boolean>() {
+                @Override
+                public Boolean parse(String body) {
+                    return body.isEmpty() ? null : Boolean.TRUE;
+                }
+            };
+
+    private static SourceRouter sInstance;
+
+    /**
+     * How a source has been doing
+     */
+    private static final class Health {
+        // Moving average of the answer time, or -1 before the first answer
+        double mLatencyMillis = -1;
+        int mConsecutiveFailures;
+    }
+
+    private final List<DataSource> mDefaultOrder;
+    private final List<DataSource> mSources = new ArrayList<>();
+    private final Map<DataSource, Health> mHealth = new HashMap<>();
+    private final EventReconciler mReconciler;
+    private final Executor mProbeExecutor;
+
+    private long mLastProbeMillis = Long.MIN_VALUE;
+    private String mLastSource;
+    private int mFailoverCount;
+
+    /**
+     * @return the app-wide {@link SourceRouter}: USGS, then the EMSC, then the USGS
+     *         summary feeds
+     */
+    public static synchronized SourceRouter getInstance() {
+        if (sInstance == null) {
+            List<DataSource> sources = new ArrayList<>();
+            sources.add(FdsnDataSource.usgs(DataSource.CANONICAL_QUERY_URL));
+            sources.add(FdsnDataSource.emsc(FdsnDataSource.EMSC_QUERY_URL));
+            sources.add(new SummaryFeedDataSource(SummaryFeedDataSource.USGS_FEED_URL));
+            sInstance = new SourceRouter(sources,
+                    new EventReconciler(EventReconciler.DEFAULT_CAPACITY),
+                    AppScheduler.getInstance().getExecutor(AppScheduler.Pool.NETWORK));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link SourceRouter}
+     *
+     * @param sources       is the sources in the user's order of preference
+     * @param reconciler    matches the earthquakes of different sources
+     * @param probeExecutor runs the health probes due after a failure, or null to probe
+     *                      only when {@link #probe} is called
+     */
+    public SourceRouter(List<DataSource> sources, EventReconciler reconciler,
+                        Executor probeExecutor) {
+        mDefaultOrder = new ArrayList<>(sources);
+        mSources.addAll(sources);
+        for (DataSource source : sources) {
+            mHealth.put(source, new Health());
+        }
+        mReconciler = reconciler;
+        mProbeExecutor = probeExecutor;
+    }
+
+    /**
+     * Move a source to the front of the preference order, ahead of the others in their
+     * default order
+     *
+     * @param name is the name of the source, an unknown name changes nothing
+     */
+    public synchronized void setPreferred(String name) {
+        for (DataSource source : mDefaultOrder) {
+            if (source.getName().equals(name)) {
+                // The rest keep their default order
+                mSources.clear();
+                mSources.addAll(mDefaultOrder);
+                mSources.remove(source);
+                mSources.add(0, source);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the sources in the order they are tried, the best first
+     */
+    public synchronized List<DataSource> ranked() {
+        final Map<DataSource, Double> scores = new HashMap<>();
+        for (int i = 0; i < mSources.size(); i++) {
+            DataSource source = mSources.get(i);
+            Health health = mHealth.get(source);
+            double latency = health.mLatencyMillis < 0 ? UNMEASURED_MILLIS
+                    : health.mLatencyMillis;
+            scores.put(source, latency * (1 + i * PREFERENCE_PENALTY));
+        }
+        List<DataSource> ranked = new ArrayList<>(mSources);
+        Collections.sort(ranked, new Comparator<DataSource>() {
+            @Override
+            public int compare(DataSource a, DataSource b) {
+                int failures = Integer.compare(mHealth.get(a).mConsecutiveFailures,
+                        mHealth.get(b).mConsecutiveFailures);
+                return failures != 0 ? failures : Double.compare(scores.get(a), scores.get(b));
+            }
+        });
+        return ranked;
+    }
+
+    /**
+     * Fetch a query from the best source that answers it
+     *
+     * This task blocks while sources are tried in turn, so it must run on a background thread
+     *
+     * @param canonicalUrl is a query built on {@link DataSource#CANONICAL_QUERY_URL}
+     * @param fetcher      sends the requests, with its retries and circuit breakers
+     * @return             the outcome from the first source to answer, or the failure of
+     *                     the best source if none did
+     */
+    public FetchOutcome<List<Quake>> fetch(String canonicalUrl, ResilientFetcher fetcher) {
+        FetchOutcome<List<Quake>> failure = null;
+        long now = System.currentTimeMillis();
+        List<DataSource> ranked = ranked();
+        if (!ranked.isEmpty() && isFailing(ranked.get(ranked.size() - 1))) {
+            // Find out whether the failing sources are back
+            probeLater();
+        }
+        for (DataSource source : ranked) {
+            String url = source.queryUrl(canonicalUrl, now);
+            if (url == null) {
+                // The source cannot answer the query, i.e. it reaches back too far
+                continue;
+            }
+            long start = System.nanoTime();
+            FetchOutcome<List<Quake>> outcome = fetcher.fetch(url, source.getParser());
+            if (outcome.isSuccess()) {
+                recordAnswer(source, (System.nanoTime() - start) / 1000000L);
+                List<Quake> earthquakes = mReconciler.reconcile(source.getName(),
+                        source.isCanonical(),
+                        source.select(canonicalUrl, outcome.getValue()));
+                synchronized (this) {
+                    mLastSource = source.getName();
+                }
+                return FetchOutcome.success(earthquakes, outcome.getHttpCode())
+                        .withAttempts(outcome.getAttempts());
+            }
+            if (outcome.getKind() == FetchOutcome.Kind.NOT_MODIFIED) {
+                // Nothing new is an answer, not a failure
+                return outcome;
+            }
+            recordFailure(source);
+            synchronized (this) {
+                mFailoverCount++;
+            }
+            if (failure == null) {
+                failure = outcome;
+            }
+            Log.w(LOG_TAG, source + " failed with " + outcome + ", trying the next source");
+        }
+        if (failure != null) {
+            return failure;
+        }
+        return FetchOutcome.failure(FetchOutcome.Kind.CLIENT_ERROR, FetchOutcome.NO_RESPONSE, -1);
+    }
+
+    /**
+     * Send a single request to every source's probe URL and rank the sources by the answers
+     *
+     * This task blocks until every probe has answered, so it must run on a background thread
+     */
+    public void probe() {
+        List<DataSource> sources;
+        synchronized (this) {
+            mLastProbeMillis = System.nanoTime() / 1000000L;
+            sources = new ArrayList<>(mSources);
+        }
+        for (DataSource source : sources) {
+            long start = System.nanoTime();
+            FetchOutcome<Boolean> outcome =
+                    QueryUtils.request(QueryUtils.createUrl(source.getProbeUrl()), PROBE_PARSER);
+            if (outcome.isSuccess()) {
+                recordAnswer(source, (System.nanoTime() - start) / 1000000L);
+            }
+            else {
+                recordFailure(source);
+            }
+        }
+    }
+
+    /**
+     * Remember the earthquakes shown before the app started, so a mirror's reports of them
+     * keep their IDs after a failover
+     *
+     * @param earthquakes is the earthquakes as the app shows them
+     */
+    public void seed(List<Quake> earthquakes) {
+        mReconciler.seed(earthquakes);
+    }
+
+    /**
+     * @return the name of the source that answered the last query, or null if none has
+     */
+    public synchronized String getLastSource() {
+        return mLastSource;
+    }
+
+    /**
+     * @return the number of times a query went on past a failing source
+     */
+    public synchronized int getFailoverCount() {
+        return mFailoverCount;
+    }
+
+    private synchronized void recordAnswer(DataSource source, long millis) {
+        Health health = mHealth.get(source);
+        health.mConsecutiveFailures = 0;
+        health.mLatencyMillis = health.mLatencyMillis < 0 ? millis
+                : health.mLatencyMillis + LATENCY_WEIGHT * (millis - health.mLatencyMillis);
+    }
+
+    private synchronized void recordFailure(DataSource source) {
+        mHealth.get(source).mConsecutiveFailures++;
+    }
+
+    private synchronized boolean isFailing(DataSource source) {
+        return mHealth.get(source).mConsecutiveFailures > 0;
+    }
+
+    /**
+     * Probe every source in the background, at most once per interval, so a failed source
+     * is ranked again once it recovers; no probe is sent while the data budget is spent
+     */
+    private void probeLater() {
+        if (!DataBudget.getInstance().getPolicy().sendsRequests()) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime() / 1000000L;
+            if (mProbeExecutor == null || (mLastProbeMillis != Long.MIN_VALUE
+                    && now - mLastProbeMillis < PROBE_INTERVAL_MILLIS)) {
+                return;
+            }
+            mLastProbeMillis = now;
+        }
+        mProbeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                probe();
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Interface of the few SQLite operations the {@link QuakeDatabase} needs, so the same
+ * schema and queries run on the platform's SQLite on a device and through a JDBC driver
+ * on the JVM
+ */
+public interface SqlConnection {
+
+    /**
+     * Interface for opening the connection the first time it is needed, off the main thread
+     */
+    interface Opener {
+
+        /**
+         * @return the connection, with the schema brought up to date
+         */
+        SqlConnection open();
+    }
+
+    /**
+     * Interface of a compiled statement, bound and executed many times over
+     */
+    interface Statement {
+
+        void bindString(int index, String value);
+
+        void bindLong(int index, long value);
+
+        void bindDouble(int index, double value);
+
+        void bindNull(int index);
+
+        void clearBindings();
+
+        /**
+         * @return the number of rows the statement inserted, updated or deleted
+         */
+        int executeUpdate();
+
+        void close();
+    }
+
+    /**
+     * Interface of the rows a query returns, read one at a time
+     */
+    interface Rows {
+
+        boolean moveToNext();
+
+        String getString(int column);
+
+        long getLong(int column);
+
+        double getDouble(int column);
+
+        boolean isNull(int column);
+
+        void close();
+    }
+
+    /**
+     * @param sql is a statement that returns no rows, i.e. a schema change
+     */
+    void execute(String sql);
+
+    /**
+     * @param sql is the statement, with ? for every value bound later
+     * @return    the compiled statement; the caller must close it
+     */
+    Statement prepare(String sql);
+
+    /**
+     * @param sql  is the query, with ? for every argument
+     * @param args is the arguments of the query
+     * @return     the rows of the result; the caller must close them
+     */
+    Rows query(String sql, String... args);
+
+    void beginTransaction();
+
+    void setTransactionSuccessful();
+
+    /**
+     * Commit the transaction if it was marked successful, otherwise roll it back
+     */
+    void endTransaction();
+
+    /**
+     * @return the schema version stored in the database, 0 for a new database
+     */
+    int getVersion();
+
+    void setVersion(int version);
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class that sends the first query of a cold start before the layout is inflated, so the
+ * request is in flight while the activity is still being built
+ *
+ * The Loader of the query claims the request instead of sending its own, or cancels it when
+ * it answers from a cached result. The start time of the query is left out when matching,
+ * as the Loader builds its URL a little later
+ */
+public final class StartupPrefetch {
+
+    private static final StartupPrefetch sInstance = new StartupPrefetch();
+
+    private String mKey;
+    private Future<FetchOutcome<List<Quake>>> mRequest;
+
+    /**
+     * @return the app-wide {@link StartupPrefetch}
+     */
+    public static StartupPrefetch getInstance() {
+        return sInstance;
+    }
+
+    StartupPrefetch() {
+        // Use getInstance() outside of tests
+    }
+
+    /**
+     * Send a query in the background, replacing any earlier query not claimed
+     *
+     * @param url      is the query URL
+     * @param fetcher  is the fetcher sending the query
+     * @param executor is the executor the query is sent from
+     */
+    public synchronized void start(final String url, final ResilientFetcher fetcher,
+                                   ExecutorService executor) {
+        if (mRequest != null) {
+            mRequest.cancel(true);
+        }
+        mKey = EarthquakeLoader.cacheKeyFor(url);
+        mRequest = executor.submit(new Callable<FetchOutcome<List<Quake>>>() {
+            @Override
+            public FetchOutcome<List<Quake>> call() {
+                return fetcher.fetchEarthquakes(url);
+            }
+        });
+    }
+
+    /**
+     * Take the outcome of the query sent at start-up, waiting for it if it is in flight
+     *
+     * This task blocks, so it must run on a background thread
+     *
+     * @param url is the query URL of the caller
+     * @return    the outcome of the query, or null if no matching query was sent
+     */
+    public FetchOutcome<List<Quake>> claim(String url) {
+        Future<FetchOutcome<List<Quake>>> request = take(url);
+        if (request == null) {
+            return null;
+        }
+        try {
+            return request.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.cancel(true);
+            return null;
+        }
+        catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drop the query sent at start-up, for a caller that will not wait for it
+     *
+     * @param url is the query URL of the caller
+     * @return    true if a matching query was dropped
+     */
+    public boolean cancel(String url) {
+        Future<FetchOutcome<List<Quake>>> request = take(url);
+        if (request == null) {
+            return false;
+        }
+        request.cancel(true);
+        return true;
+    }
+
+    private synchronized Future<FetchOutcome<List<Quake>>> take(String url) {
+        if (mRequest == null || !mKey.equals(EarthquakeLoader.cacheKeyFor(url))) {
+            return null;
+        }
+        Future<FetchOutcome<List<Quake>>> request = mRequest;
+        mRequest = null;
+        mKey = null;
+        return request;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class that times the way from process start to the first row of earthquakes on screen,
+ * phase by phase, and logs the result to the instrumentation log
+ */
+public final class StartupTracer {
+
+    /**
+     * Class name String for Log messages
+     */
+    public static final String LOG_TAG = StartupTracer.class.getSimpleName();
+
+    private static final StartupTracer sInstance = new StartupTracer();
+
+    private boolean mTracing;
+    private long mStartNanos;
+
+    // Elapsed milliseconds at the end of each phase, in the order they were reached
+    private final Map<String, Long> mPhases = new LinkedHashMap<>();
+
+    private long mTimeToFirstRowMillis = -1;
+
+    /**
+     * @return the app-wide {@link StartupTracer}
+     */
+    public static StartupTracer getInstance() {
+        return sInstance;
+    }
+
+    StartupTracer() {
+        // Use getInstance() outside of tests
+    }
+
+    /**
+     * Start timing a startup, forgetting the phases of any previous one
+     */
+    public synchronized void begin() {
+        mTracing = true;
+        mStartNanos = System.nanoTime();
+        mPhases.clear();
+    }
+
+    /**
+     * @return true while a startup is being timed
+     */
+    public synchronized boolean isTracing() {
+        return mTracing;
+    }
+
+    /**
+     * Record the end of a startup phase
+     *
+     * @param phase names the phase
+     */
+    public synchronized void mark(String phase) {
+        if (mTracing) {
+            mPhases.put(phase, (System.nanoTime() - mStartNanos) / 1000000L);
+        }
+    }
+
+    /**
+     * Stop timing once the first row is on screen, and log every phase
+     *
+     * @return true if a startup was being timed
+     */
+    public synchronized boolean finish() {
+        if (!mTracing) {
+            return false;
+        }
+        mark("first row");
+        mTracing = false;
+        mTimeToFirstRowMillis = mPhases.get("first row");
+        Log.i(LOG_TAG, "Time to first row " + mTimeToFirstRowMillis + " ms " + mPhases);
+        return true;
+    }
+
+    /**
+     * @return the time to first row of the last finished startup, or -1 if none finished
+     */
+    public synchronized long getTimeToFirstRowMillis() {
+        return mTimeToFirstRowMillis;
+    }
+
+    /**
+     * @param phase names a phase
+     * @return      the elapsed time at the end of the phase, or -1 if it was not reached
+     */
+    public synchronized long getPhaseMillis(String phase) {
+        Long millis = mPhases.get(phase);
+        return millis == null ? -1 : millis;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.app.LoaderManager.LoaderCallbacks;
+import android.content.Loader;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.TextView;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Activity that shows the seismic statistics of the archived past year: the energy
+ * released, the Gutenberg-Richter fit and the seismic moment released month by month
+ */
+public class StatsActivity extends AppCompatActivity implements LoaderCallbacks<StatsLoader.Stats> {
+
+    /**
+     * Unique ID for the stats Loader
+     */
+    private static final int STATS_LOADER_ID = 1;
+
+    private View mLoadingIndicator;
+    private View mContent;
+    private TextView mEmptyTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.stats_activity);
+
+        mLoadingIndicator = findViewById(R.id.stats_loading_indicator);
+        mContent = findViewById(R.id.stats_content);
+        mEmptyTextView = (TextView) findViewById(R.id.stats_empty_view);
+        mContent.setVisibility(View.INVISIBLE);
+
+        getLoaderManager().initLoader(STATS_LOADER_ID, null, this);
+    }
+
+    @Override
+    public Loader<StatsLoader.Stats> onCreateLoader(int id, Bundle args) {
+        return new StatsLoader(this);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<StatsLoader.Stats> loader, StatsLoader.Stats stats) {
+        mLoadingIndicator.setVisibility(View.GONE);
+
+        if (stats.getCount() == 0) {
+            mEmptyTextView.setVisibility(View.VISIBLE);
+            return;
+        }
+        bindStats(stats);
+        mContent.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<StatsLoader.Stats> loader) {
+        // Nothing is held from the Loader's result
+    }
+
+    private void bindStats(StatsLoader.Stats stats) {
+        DecimalFormat oneDecimal = new DecimalFormat("0.0");
+        DecimalFormat twoDecimals = new DecimalFormat("0.00");
+        DecimalFormat scientific = new DecimalFormat("0.00E0");
+
+        setText(R.id.stats_count, String.valueOf(stats.getCount()));
+        setText(R.id.stats_energy, getString(R.string.stats_energy_value,
+                scientific.format(stats.getTotalEnergy()),
+                oneDecimal.format(SeismicKernels.magnitudeOfEnergy(stats.getTotalEnergy()))));
+
+        SeismicKernels.BValueFit fit = stats.getFit();
+        if (!Double.isNaN(fit.getB())) {
+            setText(R.id.stats_b_value, getString(R.string.stats_b_value_value,
+                    twoDecimals.format(fit.getB()), twoDecimals.format(fit.getStandardError()),
+                    fit.getCount()));
+            setText(R.id.stats_a_value, twoDecimals.format(fit.getA()));
+        }
+        setText(R.id.stats_completeness, oneDecimal.format(fit.getCompleteness()));
+
+        // One line per window, labelled with the month the window ends in, in the user's
+        // language
+        SimpleDateFormat monthFormat = new SimpleDateFormat("MMM yyyy", Locale.getDefault());
+        monthFormat.setTimeZone(TimeZone.getDefault());
+        double[] moment = stats.getCumulativeMoment();
+        StringBuilder lines = new StringBuilder();
+        for (int w = 0; w < moment.length; w++) {
+            long windowEnd = stats.getFromTime() + (w + 1) * StatsLoader.WINDOW_MILLIS - 1;
+            if (lines.length() > 0) {
+                lines.append('\n');
+            }
+            lines.append(getString(R.string.stats_moment_line,
+                    monthFormat.format(new Date(windowEnd)), scientific.format(moment[w])));
+        }
+        setText(R.id.stats_moment, lines.toString());
+    }
+
+    private void setText(int viewId, String text) {
+        ((TextView) findViewById(viewId)).setText(text);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Class that reads the archived past year into columns and runs the {@link SeismicKernels}
+ * over them for the stats screen, on the compute pool for large archives
+ */
+public class StatsLoader extends AsyncTaskLoader<StatsLoader.Stats> {
+
+    /**
+     * Length of the windows the cumulative moment is summed over
+     */
+    static final long WINDOW_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    static final int WINDOWS = 12;
+
+    /**
+     * The statistics of the archived past year
+     */
+    public static final class Stats {
+        private final int mCount;
+        private final double mTotalEnergy;
+        private final SeismicKernels.BValueFit mFit;
+        private final long mFromTime;
+        private final double[] mCumulativeMoment;
+
+        Stats(int count, double totalEnergy, SeismicKernels.BValueFit fit, long fromTime,
+              double[] cumulativeMoment) {
+            mCount = count;
+            mTotalEnergy = totalEnergy;
+            mFit = fit;
+            mFromTime = fromTime;
+            mCumulativeMoment = cumulativeMoment;
+        }
+
+        /** Getter method for the number of earthquakes in the archive */
+        public int getCount() {
+            return mCount;
+        }
+
+        /** Getter method for the total radiated energy in joules */
+        public double getTotalEnergy() {
+            return mTotalEnergy;
+        }
+
+        /** Getter method for the Gutenberg-Richter fit */
+        public SeismicKernels.BValueFit getFit() {
+            return mFit;
+        }
+
+        /** Getter method for the start of the first moment window */
+        public long getFromTime() {
+            return mFromTime;
+        }
+
+        /** Getter method for the running total of the moment at the end of each window */
+        public double[] getCumulativeMoment() {
+            return mCumulativeMoment;
+        }
+    }
+
+    // Loaded result, kept so a configuration change does not load again
+    private Stats mStats;
+
+    /**
+     * Construct a new {@link StatsLoader}
+     *
+     * @param context of the activity
+     */
+    public StatsLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mStats != null) {
+            deliverResult(mStats);
+        }
+        if (mStats == null || takeContentChanged()) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    /**
+     * This task runs on a background thread
+     */
+    public Stats loadInBackground() {
+        long now = System.currentTimeMillis();
+        long fromTime = now - WINDOW_MILLIS * WINDOWS;
+        QuakeColumns columns;
+        try {
+            columns = EventArchive.getInstance(getContext()).readColumns(fromTime, now,
+                    EventArchive.MIN_MAGNITUDE);
+        }
+        catch (IOException e) {
+            // Error caught, print the exception to the logs
+            Log.e(EventArchive.LOG_TAG, "Problem with reading the earthquake archive", e);
+            columns = new QuakeColumns();
+        }
+        return compute(columns, fromTime,
+                AppScheduler.getInstance().getExecutor(AppScheduler.Pool.COMPUTE));
+    }
+
+    /**
+     * @param columns  is the earthquakes
+     * @param fromTime is the start of the first moment window
+     * @param executor runs the chunks of large columns
+     * @return         the statistics of the earthquakes
+     */
+    static Stats compute(QuakeColumns columns, long fromTime, Executor executor) {
+        double completeness = SeismicKernels.completenessMagnitude(columns.getMagnitudes(),
+                columns.size(), SeismicKernels.DEFAULT_BIN_WIDTH);
+        return new Stats(columns.size(),
+                SeismicKernels.totalEnergy(columns, executor),
+                SeismicKernels.fitBValue(columns, completeness,
+                        SeismicKernels.DEFAULT_BIN_WIDTH, executor),
+                fromTime,
+                SeismicKernels.cumulativeMoment(columns.getTimes(), columns.getMagnitudes(),
+                        columns.size(), fromTime, WINDOW_MILLIS, WINDOWS));
+    }
+
+    @Override
+    public void deliverResult(Stats stats) {
+        mStats = stats;
+        super.deliverResult(stats);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class of the USGS summary feeds, static GeoJSON files of the past hour, day, week or
+ * month served from a CDN, which stay up when the query service struggles
+ *
+ * The feeds take no parameters, so the smallest feed reaching back to the query's start
+ * time is fetched and the query is applied to it here
+ */
+public class SummaryFeedDataSource extends DataSource {
+
+    /**
+     * Name of the built-in summary feed source
+     */
+    public static final String NAME = "usgs_feed";
+
+    /**
+     * Folder of the USGS summary feeds
+     */
+    static final String USGS_FEED_URL =
+            "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/";
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    // Feeds from the smallest, with the time each reaches back
+    private static final String[] FEEDS = {"all_hour", "all_day", "all_week", "all_month"};
+    private static final long[] FEED_SPANS = {HOUR_MILLIS, DAY_MILLIS, 7 * DAY_MILLIS,
+            30 * DAY_MILLIS};
+
+    private final String mFeedUrl;
+
+    /**
+     * Construct a new {@link SummaryFeedDataSource}
+     *
+     * @param feedUrl is the folder holding the feeds, ending with a slash
+     */
+    public SummaryFeedDataSource(String feedUrl) {
+        super(NAME);
+        mFeedUrl = feedUrl;
+    }
+
+    @Override
+    public String queryUrl(String canonicalUrl, long nowMillis) {
+        long startTime = timeOf(canonicalUrl, "starttime");
+        if (startTime == Long.MIN_VALUE) {
+            return null;
+        }
+        for (int i = 0; i < FEEDS.length; i++) {
+            if (nowMillis - startTime <= FEED_SPANS[i]) {
+                return mFeedUrl + FEEDS[i] + ".geojson";
+            }
+        }
+        // Older than any feed reaches
+        return null;
+    }
+
+    @Override
+    public boolean isCanonical() {
+        return true;
+    }
+
+    @Override
+    public String getProbeUrl() {
+        return mFeedUrl + FEEDS[0] + ".geojson";
+    }
+
+    @Override
+    public List<Quake> select(String canonicalUrl, List<Quake> earthquakes) {
+        long startTime = timeOf(canonicalUrl, "starttime");
+        long endTime = timeOf(canonicalUrl, "endtime");
+        long updatedAfter = timeOf(canonicalUrl, "updatedafter");
+        double minMagnitude = numberOf(canonicalUrl, "minmagnitude");
+        double maxMagnitude = numberOf(canonicalUrl, "maxmagnitude");
+        double latitude = numberOf(canonicalUrl, "latitude");
+        double longitude = numberOf(canonicalUrl, "longitude");
+        double radiusKm = numberOf(canonicalUrl, "maxradiuskm");
+        boolean region = !Double.isNaN(latitude) && !Double.isNaN(longitude)
+                && !Double.isNaN(radiusKm);
+
+        List<Quake> selected = new ArrayList<>();
+        for (Quake quake : earthquakes) {
+            long time = quake.getQuakeUnixTime();
+            double magnitude = quake.getQuakeMagnitude();
+            if (time < startTime || (endTime != Long.MIN_VALUE && time > endTime)
+                    || quake.getQuakeUpdated() <= updatedAfter
+                    || magnitude < minMagnitude || magnitude > maxMagnitude) {
+                // Comparisons with a missing NaN bound are false, keeping the earthquake
+                continue;
+            }
+            if (region && !(FeltIntensity.distanceKm(latitude, longitude, quake.getLatitude(),
+                    quake.getLongitude()) <= radiusKm)) {
+                continue;
+            }
+            selected.add(quake);
+        }
+        Collections.sort(selected, OrderedQuakeSet.Order.forUrl(canonicalUrl).comparator());
+
+        // FDSN offsets count from 1
+        double offset = numberOf(canonicalUrl, "offset");
+        double limit = numberOf(canonicalUrl, "limit");
+        int from = Double.isNaN(offset) ? 0
+                : Math.max(0, Math.min(selected.size(), (int) offset - 1));
+        int to = Double.isNaN(limit) ? selected.size()
+                : (int) Math.min(selected.size(), from + (long) limit);
+        return new ArrayList<>(selected.subList(from, Math.max(from, to)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The ways the app syncs, chosen by whether the active network is metered and whether
+ * the day's mobile data budget is spent; see {@link DataBudget}
+ */
+public enum SyncPolicy {
+
+    /** Wi-Fi or Ethernet: fetch whole queries, prefetch details and backfill the archive */
+    UNMETERED(Double.NaN, false, true, true, true),
+
+    /** Cellular or a metered hotspot: fetch only revisions of stronger earthquakes */
+    METERED(SyncPolicy.METERED_MIN_MAGNITUDE, true, false, false, true),
+
+    /** Metered with the day's budget spent: show what is cached and send no requests */
+    BUDGET_SPENT(SyncPolicy.METERED_MIN_MAGNITUDE, true, false, false, false);
+
+    /**
+     * Weakest magnitude fetched over a metered network
+     */
+    static final double METERED_MIN_MAGNITUDE = 4.0;
+
+    private static final Pattern MIN_MAGNITUDE_PARAMETER =
+            Pattern.compile("([?&])minmagnitude=([^&]*)");
+
+    private final double mMinMagnitude;
+    private final boolean mDeltasOnly;
+    private final boolean mPrefetchesDetails;
+    private final boolean mBackfills;
+    private final boolean mSendsRequests;
+
+    SyncPolicy(double minMagnitude, boolean deltasOnly, boolean prefetchesDetails,
+               boolean backfills, boolean sendsRequests) {
+        mMinMagnitude = minMagnitude;
+        mDeltasOnly = deltasOnly;
+        mPrefetchesDetails = prefetchesDetails;
+        mBackfills = backfills;
+        mSendsRequests = sendsRequests;
+    }
+
+    /**
+     * @param metered     is true if the active network is metered
+     * @param budgetSpent is true if the day's mobile data budget is spent
+     * @return            the policy for the network
+     */
+    public static SyncPolicy forNetwork(boolean metered, boolean budgetSpent) {
+        if (!metered) {
+            return UNMETERED;
+        }
+        return budgetSpent ? BUDGET_SPENT : METERED;
+    }
+
+    /**
+     * @return true if the policy applies to a metered network
+     */
+    public boolean isMetered() {
+        return this != UNMETERED;
+    }
+
+    /**
+     * @return true if a cached result is only ever brought up to date with its revisions,
+     *         even when so many changed that the revisions may have been cut short
+     */
+    public boolean isDeltasOnly() {
+        return mDeltasOnly;
+    }
+
+    /**
+     * @return true if the details of the rows near the screen are fetched ahead of time
+     */
+    public boolean prefetchesDetails() {
+        return mPrefetchesDetails;
+    }
+
+    /**
+     * @return true if days missing from the archive are downloaded
+     */
+    public boolean backfills() {
+        return mBackfills;
+    }
+
+    /**
+     * @return true if requests may be sent at all
+     */
+    public boolean sendsRequests() {
+        return mSendsRequests;
+    }
+
+    /**
+     * Leave out the earthquakes weaker than the policy fetches
+     *
+     * @param earthquakes is a result fetched under any policy
+     * @return            the earthquakes the policy shows, or the same list if it shows all
+     */
+    public List<Quake> filter(List<Quake> earthquakes) {
+        if (Double.isNaN(mMinMagnitude)) {
+            return earthquakes;
+        }
+        List<Quake> shown = new ArrayList<>(earthquakes.size());
+        for (Quake quake : earthquakes) {
+            if (quake.getQuakeMagnitude() >= mMinMagnitude) {
+                shown.add(quake);
+            }
+        }
+        return shown;
+    }
+
+    /**
+     * Raise a query's minimum magnitude to the policy's, adding it if the query has none
+     *
+     * @param url is the query URL
+     * @return    the query URL the policy fetches
+     */
+    public String applyTo(String url) {
+        if (Double.isNaN(mMinMagnitude)) {
+            return url;
+        }
+        String floor = String.format(Locale.US, "%.1f", mMinMagnitude);
+        Matcher matcher = MIN_MAGNITUDE_PARAMETER.matcher(url);
+        if (!matcher.find()) {
+            return url + (url.indexOf('?') < 0 ? '?' : '&') + "minmagnitude=" + floor;
+        }
+        try {
+            if (Double.parseDouble(matcher.group(2)) >= mMinMagnitude) {
+                return url;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Not a magnitude the server would accept either, replace it
+        }
+        return url.substring(0, matcher.start()) + matcher.group(1) + "minmagnitude=" + floor
+                + url.substring(matcher.end());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Class that keeps moving averages of the server latency and download bandwidth seen by
+ * recent requests, so that queries can be sized to finish within a time budget
+ */
+public final class ThroughputEstimator {
+
+    /**
+     * Weight of the newest sample in each moving average
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * Estimates used until requests have been measured: a slow mobile connection
+     */
+    static final double DEFAULT_LATENCY_MILLIS = 800;
+    static final double DEFAULT_BYTES_PER_MILLI = 40;
+    static final double DEFAULT_BYTES_PER_EVENT = 1100;
+
+    // Transfers shorter than this are mostly noise and say little about the bandwidth
+    private static final long MIN_TRANSFER_BYTES = 8 * 1024;
+
+    private static final ThroughputEstimator sInstance = new ThroughputEstimator();
+
+    private double mLatencyMillis = DEFAULT_LATENCY_MILLIS;
+    private double mBytesPerMilli = DEFAULT_BYTES_PER_MILLI;
+    private double mBytesPerEvent = DEFAULT_BYTES_PER_EVENT;
+    private int mSampleCount;
+
+    /**
+     * @return the app-wide {@link ThroughputEstimator}
+     */
+    public static ThroughputEstimator getInstance() {
+        return sInstance;
+    }
+
+    ThroughputEstimator() {
+        // Use getInstance() outside of tests
+    }
+
+    /**
+     * Record the timings of a completed request
+     *
+     * @param latencyMillis  is the time from sending the request until the response headers
+     * @param bytes          is the size of the response body
+     * @param transferMillis is the time spent reading the response body
+     */
+    public synchronized void recordRequest(long latencyMillis, long bytes, long transferMillis) {
+        mLatencyMillis = smooth(mLatencyMillis, Math.max(0, latencyMillis));
+        if (bytes >= MIN_TRANSFER_BYTES) {
+            // A body read within the clock's resolution still took some time
+            mBytesPerMilli = smooth(mBytesPerMilli, (double) bytes / Math.max(1, transferMillis));
+        }
+        mSampleCount++;
+    }
+
+    /**
+     * Record the size of a parsed response, so the bytes needed per earthquake are known
+     *
+     * @param bytes  is the size of the response body
+     * @param events is the number of earthquakes in the response
+     */
+    public synchronized void recordEvents(long bytes, int events) {
+        if (events > 0) {
+            mBytesPerEvent = smooth(mBytesPerEvent, (double) bytes / events);
+        }
+    }
+
+    /**
+     * @param events is the number of earthquakes to request
+     * @return       the estimated time a query for that many earthquakes takes
+     */
+    public synchronized long estimateMillis(int events) {
+        return Math.round(mLatencyMillis + events * mBytesPerEvent / mBytesPerMilli);
+    }
+
+    /**
+     * @param budgetMillis is the time a query may take
+     * @return             the number of earthquakes a query can return within the budget
+     */
+    public synchronized int eventsWithin(long budgetMillis) {
+        double transferMillis = budgetMillis - mLatencyMillis;
+        if (transferMillis <= 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, transferMillis * mBytesPerMilli / mBytesPerEvent);
+    }
+
+    /** Getter method for the average server latency in milliseconds */
+    public synchronized double getLatencyMillis() {
+        return mLatencyMillis;
+    }
+
+    /** Getter method for the average bandwidth in bytes per millisecond */
+    public synchronized double getBytesPerMilli() {
+        return mBytesPerMilli;
+    }
+
+    /** Getter method for the average response size of an earthquake */
+    public synchronized double getBytesPerEvent() {
+        return mBytesPerEvent;
+    }
+
+    /** Getter method for the number of requests measured */
+    public synchronized int getSampleCount() {
+        return mSampleCount;
+    }
+
+    private static double smooth(double average, double sample) {
+        return average + SMOOTHING * (sample - average);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Interface for an in-process cache that gives memory back when the system runs low
+ */
+public interface TrimmableCache {
+
+    /**
+     * @return the estimated memory held by the cache in bytes
+     */
+    long getSizeBytes();
+
+    /**
+     * Evict entries until the cache holds no more than a fraction of its current size
+     *
+     * @param fraction is the share of the current size to keep, where 0 evicts everything
+     */
+    void trimToFraction(float fraction);
+}
\ No newline at end of file
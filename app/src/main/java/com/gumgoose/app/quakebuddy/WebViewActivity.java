@@ -57,6 +57,10 @@ public class WebViewActivity extends AppCompatActivity {
         viewSettings.setLoadWithOverviewMode(true);
         viewSettings.setUseWideViewPort(true);
 
+        // Let the USGS event pages reuse their cached scripts and styles between visits
+        viewSettings.setDomStorageEnabled(true);
+        viewSettings.setCacheMode(WebSettings.LOAD_DEFAULT);
+
         // Begin loading the website URL
         webView.loadUrl(quakeUrl);
     }
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.gumgoose.app.quakebuddy;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that keeps the few earthquakes shown by the home-screen widget in a small file,
+ * written by the refresh path so the widget never fetches or reads the full history
+ *
+ * The snapshot holds the most recent earthquakes and the strongest earthquakes of the last
+ * week. Merging reports whether either list changed, so the widget is only updated when
+ * what it shows is different
+ */
+public class WidgetSnapshot {
+
+    /**
+     * Number of earthquakes in each list
+     */
+    public static final int TOP_COUNT = 5;
+
+    /**
+     * Age of the oldest earthquake that may be listed as one of the strongest
+     */
+    static final long STRONGEST_WINDOW_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    private static final String FILE_NAME = "widget_snapshot.bin";
+    private static final int VERSION = 1;
+
+    private static WidgetSnapshot sInstance;
+
+    /**
+     * An earthquake as shown by the widget
+     */
+    public static final class Entry {
+
+        private final String mId;
+        private final double mMagnitude;
+        private final String mPlace;
+        private final long mTime;
+        private final long mUpdated;
+
+        Entry(String id, double magnitude, String place, long time, long updated) {
+            mId = id;
+            mMagnitude = magnitude;
+            mPlace = place;
+            mTime = time;
+            mUpdated = updated;
+        }
+
+        static Entry of(Quake quake) {
+            return new Entry(quake.getQuakeId(), quake.getQuakeMagnitude(),
+                    quake.getQuakeLocation(), quake.getQuakeUnixTime(), quake.getQuakeUpdated());
+        }
+
+        /** Getter method for the event ID of the earthquake */
+        public String getId() {
+            return mId;
+        }
+
+        /** Getter method for the magnitude of the earthquake */
+        public double getMagnitude() {
+            return mMagnitude;
+        }
+
+        /** Getter method for the location of the earthquake */
+        public String getPlace() {
+            return mPlace;
+        }
+
+        /** Getter method for the time of the earthquake */
+        public long getTime() {
+            return mTime;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) other;
+            // A revision of an event shows up as a changed update time
+            return mId.equals(entry.mId) && mUpdated == entry.mUpdated
+                    && mMagnitude == entry.mMagnitude && mTime == entry.mTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return mId.hashCode() * 31 + (int) (mUpdated ^ (mUpdated >>> 32));
+        }
+    }
+
+    private static final Comparator<Entry> NEWEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.mTime < b.mTime ? 1 : (a.mTime > b.mTime ? -1 : 0);
+        }
+    };
+
+    private static final Comparator<Entry> STRONGEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int order = Double.compare(b.mMagnitude, a.mMagnitude);
+            return order != 0 ? order : NEWEST_FIRST.compare(a, b);
+        }
+    };
+
+    private final File mFile;
+
+    // Lists as last written, read from the file on first use
+    private List<Entry> mRecent;
+    private List<Entry> mStrongest;
+
+    /**
+     * Get the app-wide widget snapshot, stored in the app's files directory
+     *
+     * @param context of the caller
+     * @return        the shared {@link WidgetSnapshot}
+     */
+    public static synchronized WidgetSnapshot getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WidgetSnapshot(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Construct a new {@link WidgetSnapshot}
+     *
+     * @param file is the file backing the snapshot
+     */
+    public WidgetSnapshot(File file) {
+        mFile = file;
+    }
+
+    /**
+     * @return the most recent earthquakes, newest first
+     */
+    public synchronized List<Entry> getRecent() {
+        load();
+        return mRecent;
+    }
+
+    /**
+     * @return the strongest earthquakes of the last week, strongest first
+     */
+    public synchronized List<Entry> getStrongest() {
+        load();
+        return mStrongest;
+    }
+
+    /**
+     * Merge freshly loaded earthquakes into the snapshot
+     *
+     * Only the listed earthquakes and the incoming ones are compared, so merging costs the
+     * same however large the history has grown
+     *
+     * @param earthquakes is the earthquakes to merge
+     * @param now         is the current time, for ageing out the strongest earthquakes
+     * @return            true if either list changed and the widget should be updated
+     */
+    public boolean merge(Iterable<Quake> earthquakes, long now) {
+        return merge(earthquakes, Collections.<String>emptySet(), now);
+    }
+
+    /**
+     * Merge freshly loaded earthquakes into the snapshot, and drop the events removed from
+     * the results, i.e. those USGS has deleted
+     *
+     * @param earthquakes is the earthquakes to merge
+     * @param removedIds  is the event IDs to drop
+     * @param now         is the current time, for ageing out the strongest earthquakes
+     * @return            true if either list changed and the widget should be updated
+     */
+    public synchronized boolean merge(Iterable<Quake> earthquakes, Collection<String> removedIds,
+                                      long now) {
+        load();
+        Map<String, Entry> candidates = new LinkedHashMap<>();
+        for (Entry entry : mRecent) {
+            candidates.put(entry.mId, entry);
+        }
+        for (Entry entry : mStrongest) {
+            candidates.put(entry.mId, entry);
+        }
+        // Incoming earthquakes replace older revisions of the same event
+        for (Quake quake : earthquakes) {
+            if (quake.getQuakeId() != null) {
+                candidates.put(quake.getQuakeId(), Entry.of(quake));
+            }
+        }
+        candidates.keySet().removeAll(removedIds);
+        return replace(candidates.values(), now);
+    }
+
+    /**
+     * Drop the strongest earthquakes that have aged out of the last week, which otherwise
+     * only happens when a merge changes something
+     *
+     * @param now is the current time
+     * @return    true if the strongest list changed
+     */
+    public synchronized boolean expire(long now) {
+        load();
+        List<Entry> strongest = new ArrayList<>(mStrongest.size());
+        for (Entry entry : mStrongest) {
+            if (entry.mTime >= now - STRONGEST_WINDOW_MILLIS) {
+                strongest.add(entry);
+            }
+        }
+        return commit(new ArrayList<>(mRecent), strongest);
+    }
+
+    /**
+     * Rebuild the snapshot from every earthquake in a reader, i.e. after an import
+     *
+     * @param reader is the source of the earthquakes, not closed by this method
+     * @param now    is the current time, for ageing out the strongest earthquakes
+     * @return       true if either list changed and the widget should be updated
+     */
+    public synchronized boolean rebuild(QuakeReader reader, long now) throws IOException {
+        load();
+        // Keep a running top list rather than every earthquake in the reader
+        List<Entry> recent = new ArrayList<>();
+        List<Entry> strongest = new ArrayList<>();
+        Quake quake = reader.next();
+        while (quake != null) {
+            if (quake.getQuakeId() != null) {
+                Entry entry = Entry.of(quake);
+                offer(recent, entry, NEWEST_FIRST);
+                if (entry.mTime >= now - STRONGEST_WINDOW_MILLIS) {
+                    offer(strongest, entry, STRONGEST_FIRST);
+                }
+            }
+            quake = reader.next();
+        }
+        return commit(recent, strongest);
+    }
+
+    /**
+     * @param earthquakes is the new result of a query
+     * @param removed     is the earthquakes the result no longer holds
+     * @return            the IDs of the removed earthquakes no older than the oldest one still
+     *                    held, which left the result because USGS deleted them rather than by
+     *                    ageing off its end
+     */
+    static List<String> removedWithin(List<Quake> earthquakes, List<Quake> removed) {
+        List<String> ids = new ArrayList<>();
+        if (removed.isEmpty() || earthquakes.isEmpty()) {
+            return ids;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (Quake quake : earthquakes) {
+            oldest = Math.min(oldest, quake.getQuakeUnixTime());
+        }
+        for (Quake quake : removed) {
+            if (quake.getQuakeId() != null && quake.getQuakeUnixTime() >= oldest) {
+                ids.add(quake.getQuakeId());
+            }
+        }
+        return ids;
+    }
+
+    private boolean replace(Iterable<Entry> candidates, long now) {
+        List<Entry> recent = new ArrayList<>();
+        List<Entry> strongest = new ArrayList<>();
+        for (Entry entry : candidates) {
+            offer(recent, entry, NEWEST_FIRST);
+            if (entry.mTime >= now - STRONGEST_WINDOW_MILLIS) {
+                offer(strongest, entry, STRONGEST_FIRST);
+            }
+        }
+        return commit(recent, strongest);
+    }
+
+    /**
+     * Insert an entry into a sorted top list, dropping the entry that falls off the end
+     */
+    private static void offer(List<Entry> top, Entry entry, Comparator<Entry> order) {
+        for (int i = 0; i < top.size(); i++) {
+            if (top.get(i).mId.equals(entry.mId)) {
+                top.remove(i);
+                break;
+            }
+        }
+        int position = Collections.binarySearch(top, entry, order);
+        top.add(position < 0 ? -position - 1 : position, entry);
+        if (top.size() > TOP_COUNT) {
+            top.remove(top.size() - 1);
+        }
+    }
+
+    private boolean commit(List<Entry> recent, List<Entry> strongest) {
+        if (recent.equals(mRecent) && strongest.equals(mStrongest)) {
+            return false;
+        }
+        mRecent = Collections.unmodifiableList(recent);
+        mStrongest = Collections.unmodifiableList(strongest);
+        try {
+            save();
+        }
+        catch (IOException e) {
+            // The widget still updates from memory, the file catches up on the next merge
+            mFile.delete();
+        }
+        return true;
+    }
+
+    private void load() {
+        if (mRecent != null) {
+            return;
+        }
+        mRecent = Collections.emptyList();
+        mStrongest = Collections.emptyList();
+        if (!mFile.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            try {
+                if (in.readInt() == VERSION) {
+                    mRecent = Collections.unmodifiableList(readEntries(in));
+                    mStrongest = Collections.unmodifiableList(readEntries(in));
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            // A damaged snapshot is rebuilt by the next merge
+            mRecent = Collections.emptyList();
+            mStrongest = Collections.emptyList();
+        }
+    }
+
+    private void save() throws IOException {
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(VERSION);
+            writeEntries(out, mRecent);
+            writeEntries(out, mStrongest);
+        }
+        finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            throw new IOException("Could not replace " + mFile);
+        }
+    }
+
+    private static List<Entry> readEntries(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(in.readUTF(), in.readDouble(), in.readUTF(), in.readLong(),
+                    in.readLong()));
+        }
+        return entries;
+    }
+
+    private static void writeEntries(DataOutputStream out, List<Entry> entries)
+            throws IOException {
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.mId);
+            out.writeDouble(entry.mMagnitude);
+            out.writeUTF(entry.mPlace == null ? "" : entry.mPlace);
+            out.writeLong(entry.mTime);
+            out.writeLong(entry.mUpdated);
+        }
+    }
+}
\ No newline at end of file
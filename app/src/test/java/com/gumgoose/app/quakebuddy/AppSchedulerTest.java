@@ -0,0 +1,96 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppSchedulerTest {
+
+    @Test
+    public void measuresQueueDepthWaitAndRunTime() throws Exception {
+        AppScheduler scheduler = new AppScheduler(1);
+        ExecutorService compute = scheduler.getExecutor(AppScheduler.Pool.COMPUTE);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // One thread: the first task holds it while the others queue up behind it
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(compute.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }));
+        for (int i = 0; i < 4; i++) {
+            futures.add(compute.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // Nothing to do, only the wait is measured
+                }
+            }));
+        }
+        Thread.sleep(50);
+        AppScheduler.PoolStats stats = scheduler.getStats(AppScheduler.Pool.COMPUTE);
+        assertEquals(1, stats.getRunning());
+        assertTrue(stats.getQueueDepth() >= 4);
+
+        release.countDown();
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        // The counters are updated after each task, just after its Future completes
+        Thread.sleep(20);
+        assertEquals(5, stats.getCompleted());
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(0, stats.getRunning());
+        assertTrue(stats.getMaxQueueDepth() >= 4);
+        assertTrue(stats.getMaxWaitMillis() >= 40);
+        assertTrue(stats.getMaxRunMillis() >= 40);
+        assertEquals(0, scheduler.getStats(AppScheduler.Pool.DISK).getCompleted());
+        assertTrue(scheduler.describe().startsWith("NETWORK: 0 done"));
+    }
+
+    @Test
+    public void poolsRunSideBySide() throws Exception {
+        AppScheduler scheduler = new AppScheduler(1);
+        final CountDownLatch both = new CountDownLatch(2);
+        Runnable meet = new Runnable() {
+            @Override
+            public void run() {
+                both.countDown();
+                try {
+                    both.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        // A slow disk task never holds up network work
+        Future<?> disk = scheduler.getExecutor(AppScheduler.Pool.DISK).submit(meet);
+        Future<?> network = scheduler.getExecutor(AppScheduler.Pool.NETWORK).submit(meet);
+        disk.get(5, TimeUnit.SECONDS);
+        network.get(5, TimeUnit.SECONDS);
+        assertEquals(0, both.getCount());
+    }
+
+    @Test
+    public void backgroundThreadsAreNotViolations() {
+        AppScheduler scheduler = new AppScheduler(1);
+        assertFalse(scheduler.checkBackground(AppScheduler.Pool.DISK, "test"));
+        assertEquals(0, scheduler.getStats(AppScheduler.Pool.DISK).getViolations());
+    }
+}
\ No newline at end of file
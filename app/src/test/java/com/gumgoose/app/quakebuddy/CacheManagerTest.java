@@ -0,0 +1,151 @@
+package com.gumgoose.app.quakebuddy;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CacheManager}, simulating the trim levels reported by the system
+ */
+public class CacheManagerTest {
+
+    private CacheManager mManager;
+    private List<String> mEvictions;
+
+    private FakeCache mDetails;
+    private FakeCache mFormatters;
+    private FakeCache mResults;
+    private FakeCache mPlaces;
+
+    @Before
+    public void setUp() {
+        mManager = new CacheManager();
+        mEvictions = new ArrayList<>();
+        mDetails = new FakeCache("details", 4000);
+        mFormatters = new FakeCache("formatters", 1000);
+        mResults = new FakeCache("results", 8000);
+        mPlaces = new FakeCache("places", 2000);
+
+        // Register out of tier order to check the manager orders them itself
+        mManager.register(CacheTier.INTERNED_PLACES, mPlaces);
+        mManager.register(CacheTier.PARSED_RESULTS, mResults);
+        mManager.register(CacheTier.FORMATTERS, mFormatters);
+        mManager.register(CacheTier.DETAIL_PAYLOADS, mDetails);
+    }
+
+    @Test
+    public void runningModerate_onlyHalvesDetails() throws Exception {
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+
+        assertEquals(Collections.singletonList("details@0.5"), mEvictions);
+        assertEquals(2000, mDetails.getSizeBytes());
+        assertEquals(8000, mResults.getSizeBytes());
+    }
+
+    @Test
+    public void runningLow_clearsDetailsOnly() throws Exception {
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        assertEquals(Collections.singletonList("details@0.0"), mEvictions);
+    }
+
+    @Test
+    public void runningCritical_evictsTiersInPriorityOrder() throws Exception {
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+
+        assertEquals(Arrays.asList("details@0.0", "formatters@0.5", "results@0.5"), mEvictions);
+        assertEquals(2000, mPlaces.getSizeBytes());
+    }
+
+    @Test
+    public void background_keepsOnlyHalfOfThePlaces() throws Exception {
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        assertEquals(Arrays.asList("details@0.0", "formatters@0.0", "results@0.0", "places@0.5"),
+                mEvictions);
+        assertEquals(1000, mManager.getTotalUsage());
+    }
+
+    @Test
+    public void complete_clearsEveryTier() throws Exception {
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        assertEquals(Arrays.asList("details@0.0", "formatters@0.0", "results@0.0", "places@0.0"),
+                mEvictions);
+        assertEquals(0, mManager.getTotalUsage());
+    }
+
+    @Test
+    public void usageIsReportedPerTier() throws Exception {
+        FakeCache moreDetails = new FakeCache("more details", 500);
+        mManager.register(CacheTier.DETAIL_PAYLOADS, moreDetails);
+
+        Map<CacheTier, Long> usage = mManager.getUsageByTier();
+        assertEquals(Long.valueOf(4500), usage.get(CacheTier.DETAIL_PAYLOADS));
+        assertEquals(Long.valueOf(1000), usage.get(CacheTier.FORMATTERS));
+        assertEquals(Long.valueOf(8000), usage.get(CacheTier.PARSED_RESULTS));
+        assertEquals(Long.valueOf(2000), usage.get(CacheTier.INTERNED_PLACES));
+        assertEquals(15500, mManager.getTotalUsage());
+
+        mManager.unregister(moreDetails);
+        assertEquals(Long.valueOf(4000), mManager.getUsageByTier().get(CacheTier.DETAIL_PAYLOADS));
+    }
+
+    @Test
+    public void memoryCache_trimsLeastRecentlyUsedFirst() throws Exception {
+        MemoryCache<String, String> cache = new MemoryCache<>(1000,
+                new MemoryCache.Weigher<String, String>() {
+                    @Override
+                    public int weigh(String key, String value) {
+                        return 100;
+                    }
+                });
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.put("d", "4");
+        cache.get("a");
+
+        mManager.register(CacheTier.DETAIL_PAYLOADS, cache);
+        mManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+
+        assertEquals(200, cache.getSizeBytes());
+        assertNull(cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals("4", cache.get("d"));
+        assertEquals("1", cache.get("a"));
+    }
+
+    /**
+     * Cache that records the order in which it is trimmed
+     */
+    private class FakeCache implements TrimmableCache {
+        private final String mName;
+        private long mSizeBytes;
+
+        FakeCache(String name, long sizeBytes) {
+            mName = name;
+            mSizeBytes = sizeBytes;
+        }
+
+        @Override
+        public long getSizeBytes() {
+            return mSizeBytes;
+        }
+
+        @Override
+        public void trimToFraction(float fraction) {
+            mEvictions.add(mName + "@" + fraction);
+            mSizeBytes = (long) (mSizeBytes * fraction);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterIndexTest {
+
+    static Quake quake(String id, double magnitude, double latitude, double longitude) {
+        return new Quake(magnitude, "Somewhere", 1500000000000L, 0, null,
+                id, 1500000000000L, null, latitude, longitude, 10);
+    }
+
+    /**
+     * Collects the clusters of a query
+     */
+    static class Collector implements ClusterIndex.ClusterVisitor {
+        final List<Quake> strongest = new ArrayList<>();
+        final List<double[]> centroids = new ArrayList<>();
+        int clusters;
+        int total;
+
+        @Override
+        public void onCluster(double x, double y, int count, Quake quake) {
+            clusters++;
+            total += count;
+            strongest.add(quake);
+            centroids.add(new double[]{x, y});
+        }
+    }
+
+    private static Collector queryWorld(ClusterIndex index, int zoom) {
+        Collector collector = new Collector();
+        index.query(zoom, 0, 0, 1, 1, collector);
+        return collector;
+    }
+
+    @Test
+    public void everyLevelCountsEveryEarthquake() {
+        ClusterIndex index = new ClusterIndex();
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            index.put(quake("e" + i, random.nextDouble() * 8,
+                    random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180));
+        }
+        assertEquals(2000, index.size());
+        int previousClusters = 0;
+        for (int zoom = 0; zoom <= ClusterIndex.MAX_ZOOM + 1; zoom++) {
+            Collector collector = queryWorld(index, zoom);
+            assertEquals(2000, collector.total);
+            assertTrue(collector.clusters >= previousClusters);
+            previousClusters = collector.clusters;
+        }
+        assertEquals(2000, previousClusters);
+    }
+
+    @Test
+    public void clusterHasCentroidAndStrongest() {
+        ClusterIndex index = new ClusterIndex();
+        Quake weak = quake("a", 2.0, 10.0, 20.0);
+        Quake strong = quake("b", 5.0, 10.2, 20.2);
+        index.put(weak);
+        index.put(strong);
+
+        Collector collector = queryWorld(index, 0);
+        assertEquals(1, collector.clusters);
+        assertSame(strong, collector.strongest.get(0));
+        double expectedX = (ClusterIndex.longitudeToX(20.0) + ClusterIndex.longitudeToX(20.2)) / 2;
+        assertEquals(expectedX, collector.centroids.get(0)[0], 1e-12);
+
+        // Above the deepest clustered level every earthquake is its own cluster
+        assertEquals(2, queryWorld(index, ClusterIndex.MAX_ZOOM + 1).clusters);
+    }
+
+    @Test
+    public void removalRecomputesStrongest() {
+        ClusterIndex index = new ClusterIndex();
+        Quake weak = quake("a", 2.0, 10.0, 20.0);
+        Quake middle = quake("b", 3.0, 40.0, -100.0);
+        Quake strong = quake("c", 6.0, 10.001, 20.001);
+        index.put(weak);
+        index.put(middle);
+        index.put(strong);
+
+        assertTrue(index.remove("c"));
+        for (int zoom = 0; zoom <= ClusterIndex.MAX_ZOOM; zoom++) {
+            Collector collector = queryWorld(index, zoom);
+            assertEquals(2, collector.total);
+            assertTrue(collector.strongest.contains(middle) || zoom > 0);
+            assertTrue(!collector.strongest.contains(strong));
+        }
+        assertSame(middle, queryWorld(index, 0).strongest.get(0));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void putReplacesEventWithSameId() {
+        ClusterIndex index = new ClusterIndex();
+        index.put(quake("a", 2.0, 10.0, 20.0));
+        Quake moved = quake("a", 2.5, -30.0, 150.0);
+        index.put(moved);
+        assertEquals(1, index.size());
+
+        // Only the relocated revision is found in its viewport
+        Collector collector = new Collector();
+        double x = ClusterIndex.longitudeToX(150.0);
+        double y = ClusterIndex.latitudeToY(-30.0);
+        index.query(8, x - 0.001, y - 0.001, x + 0.001, y + 0.001, collector);
+        assertEquals(1, collector.total);
+        assertSame(moved, collector.strongest.get(0));
+
+        collector = new Collector();
+        x = ClusterIndex.longitudeToX(20.0);
+        y = ClusterIndex.latitudeToY(10.0);
+        index.query(8, x - 0.001, y - 0.001, x + 0.001, y + 0.001, collector);
+        assertEquals(0, collector.total);
+    }
+
+    @Test
+    public void skipsEarthquakesWithoutCoordinates() {
+        ClusterIndex index = new ClusterIndex();
+        assertTrue(!index.put(quake("a", 2.0, Double.NaN, Double.NaN)));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void viewportWrapsAcrossTheAntimeridian() {
+        ClusterIndex index = new ClusterIndex();
+        Quake fiji = quake("fiji", 5.0, -18.0, 178.0);
+        Quake samoa = quake("samoa", 4.0, -14.0, -172.0);
+        Quake chile = quake("chile", 6.0, -33.0, -72.0);
+        index.put(fiji);
+        index.put(samoa);
+        index.put(chile);
+
+        // Centred on the antimeridian, reaching 20 degrees to either side
+        int zoom = ClusterIndex.MAX_ZOOM + 1;
+        double halfWidth = 20.0 / 360;
+        Collector east = new Collector();
+        index.query(zoom, 1 - halfWidth, 0, 1 + halfWidth, 1, east);
+        assertEquals(2, east.clusters);
+        for (int i = 0; i < east.clusters; i++) {
+            // Both are drawn to the right of the left edge, in the copy they show in
+            double x = east.centroids.get(i)[0];
+            assertTrue(x > 1 - halfWidth && x < 1 + halfWidth);
+            if (east.strongest.get(i) == samoa) {
+                assertEquals(1 + ClusterIndex.longitudeToX(-172.0), x, 1e-12);
+            }
+        }
+
+        // The same view from the west of the world finds the same earthquakes
+        Collector west = new Collector();
+        index.query(zoom, -halfWidth, 0, halfWidth, 1, west);
+        assertEquals(2, west.clusters);
+        assertTrue(west.strongest.contains(fiji) && west.strongest.contains(samoa));
+
+        // Zoomed out past a world's width, every copy on screen is visited
+        Collector wide = new Collector();
+        index.query(0, -0.5, 0, 1.5, 1, wide);
+        assertEquals(6, wide.total);
+    }
+
+    @Test
+    public void projectionRoundTrips() {
+        assertEquals(0.5, ClusterIndex.latitudeToY(0), 1e-12);
+        assertEquals(45.0, ClusterIndex.yToLatitude(ClusterIndex.latitudeToY(45.0)), 1e-9);
+        assertEquals(0.0, ClusterIndex.longitudeToX(-180), 1e-12);
+    }
+}
\ No newline at end of file
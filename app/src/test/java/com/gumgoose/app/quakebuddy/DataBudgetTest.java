@@ -0,0 +1,87 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataBudgetTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long NOW = 1500000000000L;
+
+    /**
+     * @return the local midnight starting the day of NOW
+     */
+    private static long midnight() {
+        return NOW - (NOW + TimeZone.getDefault().getOffset(NOW)) % DAY;
+    }
+
+    @Test
+    public void countsBytesByNetwork() {
+        DataBudget budget = new DataBudget();
+        long morning = midnight() + 8 * HOUR;
+        budget.record(1000, morning);
+        budget.setMetered(true);
+        budget.record(300, morning + HOUR);
+        budget.record(200, morning + 2 * HOUR);
+
+        assertEquals(500, budget.getBytesToday(true, morning + 3 * HOUR));
+        assertEquals(1000, budget.getBytesToday(false, morning + 3 * HOUR));
+    }
+
+    @Test
+    public void spendingTheBudgetStopsMeteredRequests() {
+        DataBudget budget = new DataBudget();
+        budget.setMeteredLimitBytes(1000);
+        long morning = midnight() + 8 * HOUR;
+
+        budget.setMetered(true);
+        assertEquals(SyncPolicy.METERED, budget.getPolicy(morning));
+        budget.record(999, morning);
+        assertEquals(SyncPolicy.METERED, budget.getPolicy(morning));
+        budget.record(1, morning);
+        assertEquals(SyncPolicy.BUDGET_SPENT, budget.getPolicy(morning));
+
+        // Wi-Fi is never limited
+        budget.setMetered(false);
+        assertEquals(SyncPolicy.UNMETERED, budget.getPolicy(morning));
+        budget.setMetered(true);
+
+        // A higher limit or a new day lets requests through again
+        budget.setMeteredLimitBytes(DataBudget.UNLIMITED);
+        assertEquals(SyncPolicy.METERED, budget.getPolicy(morning));
+        budget.setMeteredLimitBytes(1000);
+        assertEquals(SyncPolicy.METERED, budget.getPolicy(midnight() + DAY));
+        assertEquals(0, budget.getBytesToday(true, midnight() + DAY));
+    }
+
+    @Test
+    public void startsEachDayFromZero() {
+        DataBudget budget = new DataBudget();
+        budget.record(5000, midnight() + DAY - 1);
+        assertEquals(5000, budget.getBytesToday(false, midnight() + DAY - 1));
+        budget.record(10, midnight() + DAY);
+        assertEquals(10, budget.getBytesToday(false, midnight() + DAY));
+    }
+
+    @Test
+    public void addsTheSavedCountsOfTheSameDay() {
+        DataBudget budget = new DataBudget();
+        long morning = midnight() + 8 * HOUR;
+        budget.setMetered(true);
+        // Counted before the saved counts were read
+        budget.record(100, morning);
+        long today = (morning + TimeZone.getDefault().getOffset(morning)) / DAY;
+        budget.restore(today, 4000, 7000, morning);
+        assertEquals(4100, budget.getBytesToday(true, morning));
+        assertEquals(7000, budget.getBytesToday(false, morning));
+
+        // Yesterday's counts are dropped
+        DataBudget later = new DataBudget();
+        later.restore(today - 1, 4000, 7000, morning);
+        assertEquals(0, later.getBytesToday(true, morning));
+    }
+}
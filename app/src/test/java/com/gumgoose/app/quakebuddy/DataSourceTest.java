@@ -0,0 +1,120 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how each {@link DataSource} rewrites, reads and narrows a canonical USGS query
+ */
+public class DataSourceTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    private static final String CANONICAL = DataSource.CANONICAL_QUERY_URL
+            + "?format=geojson&starttime=2017-06-14T12%3A00%3A00&limit=3&minmagnitude=2.5"
+            + "&orderby=magnitude&latitude=35.0&longitude=139.0&maxradiuskm=1111.9";
+
+    @Test
+    public void readsQueryParameters() {
+        assertEquals("3", DataSource.parameterOf(CANONICAL, "limit"));
+        assertEquals("2017-06-14T12:00:00", DataSource.parameterOf(CANONICAL, "starttime"));
+        assertNull(DataSource.parameterOf(CANONICAL, "endtime"));
+        assertEquals(2.5, DataSource.numberOf(CANONICAL, "minmagnitude"), 0.0);
+        assertTrue(Double.isNaN(DataSource.numberOf(CANONICAL, "maxmagnitude")));
+        assertEquals(NOW - 12 * HOUR, DataSource.timeOf(CANONICAL, "starttime"));
+        assertEquals(Long.MIN_VALUE, DataSource.timeOf(CANONICAL, "endtime"));
+    }
+
+    @Test
+    public void rebasesUsgsQueries() {
+        FdsnDataSource mirror = FdsnDataSource.usgs("http://127.0.0.1:8080/query");
+        String url = mirror.queryUrl(CANONICAL, NOW);
+        assertTrue(url.startsWith("http://127.0.0.1:8080/query?format=geojson&"));
+        assertTrue(url.endsWith("&maxradiuskm=1111.9"));
+        assertEquals(QueryUtils.EARTHQUAKE_PARSER, mirror.getParser());
+    }
+
+    @Test
+    public void rewritesEmscQueries() {
+        FdsnDataSource emsc = FdsnDataSource.emsc(FdsnDataSource.EMSC_QUERY_URL);
+        String url = emsc.queryUrl(CANONICAL, NOW);
+        assertTrue(url.startsWith(FdsnDataSource.EMSC_QUERY_URL + "?format=json&"));
+        assertTrue(url.contains("&maxradius=10.0000"));
+        assertFalse(url.contains("maxradiuskm"));
+        assertTrue(emsc.getProbeUrl().endsWith("?format=json&limit=1"));
+    }
+
+    @Test
+    public void parsesEmscEvents() {
+        String body = "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"id\":\"20170615_0000010\",\"properties\":{"
+                + "\"unid\":\"20170615_0000010\",\"time\":\"2017-06-14T23:59:58.4Z\","
+                + "\"lastupdate\":\"2017-06-15T00:10:00.123456Z\",\"mag\":4.7,"
+                + "\"lat\":-35.5,\"lon\":-72.25,\"depth\":33.0,"
+                + "\"flynn_region\":\"NEAR COAST OF CENTRAL CHILE\"}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"unid\":\"no_magnitude\","
+                + "\"time\":\"2017-06-14T23:00:00Z\"}}]}";
+        List<Quake> earthquakes = EmscQuakeParser.INSTANCE.parse(body);
+        assertEquals(1, earthquakes.size());
+        Quake quake = earthquakes.get(0);
+        assertEquals("20170615_0000010", quake.getQuakeId());
+        assertEquals(NOW - 1600, (long) quake.getQuakeUnixTime());
+        assertEquals(NOW + 600123, quake.getQuakeUpdated());
+        assertEquals(4.7, quake.getQuakeMagnitude(), 0.0);
+        assertEquals("Near Coast Of Central Chile", quake.getQuakeLocation());
+        assertEquals(-35.5, quake.getLatitude(), 0.0);
+        assertEquals(33.0, quake.getDepthKm(), 0.0);
+        assertEquals(0, quake.getTsunamiWarning());
+        assertNull(quake.getDetailURL());
+
+        assertNull(EmscQuakeParser.INSTANCE.parse("<html>Maintenance</html>"));
+        assertEquals(Long.MIN_VALUE, EmscQuakeParser.parseTime("yesterday"));
+    }
+
+    @Test
+    public void picksTheSmallestFeed() {
+        SummaryFeedDataSource feed = new SummaryFeedDataSource("http://feeds/");
+        assertEquals("http://feeds/all_day.geojson", feed.queryUrl(CANONICAL, NOW));
+        assertEquals("http://feeds/all_hour.geojson",
+                feed.queryUrl(CANONICAL, NOW - 12 * HOUR + HOUR / 2));
+        assertEquals("http://feeds/all_month.geojson",
+                feed.queryUrl(CANONICAL, NOW + 20 * 24 * HOUR));
+        // Older than a month, or without a start, only a query can answer
+        assertNull(feed.queryUrl(CANONICAL, NOW + 40 * 24 * HOUR));
+        assertNull(feed.queryUrl(DataSource.CANONICAL_QUERY_URL + "?format=geojson", NOW));
+    }
+
+    @Test
+    public void selectsWhatTheQueryAsksFor() {
+        List<Quake> feed = new ArrayList<>();
+        feed.add(quake("small", 2.0, NOW - HOUR, 35.0, 139.0));
+        feed.add(quake("old", 6.0, NOW - 13 * HOUR, 35.0, 139.0));
+        feed.add(quake("far", 6.0, NOW - HOUR, -35.0, -72.0));
+        feed.add(quake("a", 3.0, NOW - HOUR, 36.0, 140.0));
+        feed.add(quake("b", 5.0, NOW - 2 * HOUR, 34.0, 138.0));
+        feed.add(quake("c", 4.0, NOW - 3 * HOUR, 35.0, 139.0));
+        feed.add(quake("d", 2.6, NOW - 4 * HOUR, 35.0, 139.0));
+
+        List<Quake> selected = new SummaryFeedDataSource("http://feeds/").select(CANONICAL, feed);
+        assertEquals(3, selected.size());
+        // Largest first, as ordered by magnitude, cut at the limit
+        assertEquals("b", selected.get(0).getQuakeId());
+        assertEquals("c", selected.get(1).getQuakeId());
+        assertEquals("a", selected.get(2).getQuakeId());
+
+        List<Quake> second = new SummaryFeedDataSource("http://feeds/")
+                .select(CANONICAL + "&offset=4", feed);
+        assertEquals(1, second.size());
+        assertEquals("d", second.get(0).getQuakeId());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DetailCacheTest {
+
+    // Every feed written by the tests is ten bytes long
+    private static final String FEED = "{\"id\":\"x\"}";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static Quake quake(String id, long updated) {
+        return TestQuakes.quake(id, 5.0, updated, updated);
+    }
+
+    @Test
+    public void keysFeedsByRevision() throws Exception {
+        DetailCache cache = new DetailCache(mFolder.newFolder(), 1024);
+        cache.put("us1000abc", 100, FEED);
+        assertEquals(FEED, cache.get("us1000abc", 100));
+        assertTrue(cache.contains(quake("us1000abc", 100)));
+
+        // A revised event misses until its new revision is fetched
+        assertNull(cache.get("us1000abc", 200));
+        assertFalse(cache.contains(quake("us1000abc", 200)));
+
+        // IDs are made safe for the file system
+        cache.put("ak/../x", 100, FEED);
+        assertEquals(FEED, cache.get("ak/../x", 100));
+        assertEquals(2, cache.entryCount());
+        assertEquals(2 * FEED.length(), cache.sizeBytes());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedFeeds() throws Exception {
+        DetailCache cache = new DetailCache(mFolder.newFolder(), 3 * FEED.length());
+        cache.put("a", 1, FEED);
+        cache.put("b", 1, FEED);
+        cache.put("c", 1, FEED);
+        // Reading a feed moves it to the most recently used end
+        assertEquals(FEED, cache.get("a", 1));
+
+        cache.put("d", 1, FEED);
+        assertEquals(3, cache.entryCount());
+        assertEquals(3 * FEED.length(), cache.sizeBytes());
+        assertNull(cache.get("b", 1));
+        assertEquals(FEED, cache.get("a", 1));
+        assertEquals(FEED, cache.get("c", 1));
+        assertEquals(FEED, cache.get("d", 1));
+
+        // Rewriting a feed replaces it rather than counting it twice
+        cache.put("d", 1, FEED);
+        assertEquals(3 * FEED.length(), cache.sizeBytes());
+
+        cache.clear();
+        assertEquals(0, cache.entryCount());
+        assertEquals(0, cache.sizeBytes());
+        assertNull(cache.get("a", 1));
+    }
+
+    @Test
+    public void restoresTheUsageOrderFromDisk() throws Exception {
+        File directory = mFolder.newFolder();
+        DetailCache cache = new DetailCache(directory, 1024);
+        cache.put("a", 1, FEED);
+        cache.put("b", 1, FEED);
+        cache.put("c", 1, FEED);
+        // Pin the access times, the file system may only keep whole seconds
+        new File(directory, "a@1.json").setLastModified(3000000L);
+        new File(directory, "b@1.json").setLastModified(1000000L);
+        new File(directory, "c@1.json").setLastModified(2000000L);
+
+        // A partial write left behind by a crash is deleted
+        File leftover = new File(directory, "e@1.tmp");
+        FileOutputStream out = new FileOutputStream(leftover);
+        out.write(1);
+        out.close();
+
+        // Reopened with room for two feeds, the least recently used one goes
+        DetailCache reopened = new DetailCache(directory, 2 * FEED.length());
+        assertFalse(leftover.exists());
+        assertEquals(2, reopened.entryCount());
+        assertNull(reopened.get("b", 1));
+        assertFalse(new File(directory, "b@1.json").exists());
+        assertEquals(FEED, reopened.get("a", 1));
+        assertEquals(FEED, reopened.get("c", 1));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DetailPrefetcherTest {
+
+    private static final long NOW = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<Quake> rows(int count) {
+        List<Quake> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Quake(5.0, "Place " + i, NOW - i, 0, null, "e" + i, NOW,
+                    "http://127.0.0.1:1/detail/e" + i + ".geojson",
+                    Double.NaN, Double.NaN, Double.NaN));
+        }
+        return rows;
+    }
+
+    @Test
+    public void cancelsOnlyItsOwnQueuedFetches() throws Exception {
+        // Holds the work as a shared pool's queue would
+        final List<Runnable> queued = new ArrayList<>();
+        Executor pool = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        };
+        DetailPrefetcher prefetcher =
+                new DetailPrefetcher(new DetailCache(mFolder.newFolder(), 1024), pool);
+        prefetcher.prefetchAround(rows(20), 0, 3);
+        // The visible rows and the rows ahead
+        assertEquals(8, queued.size());
+        assertEquals(8, prefetcher.getPendingCount());
+
+        prefetcher.shutdown();
+        assertEquals(0, prefetcher.getPendingCount());
+        // The pool still runs the cancelled tasks, which do nothing, and takes no new ones
+        for (Runnable runnable : queued) {
+            runnable.run();
+            assertTrue(((Future<?>) runnable).isCancelled());
+        }
+        prefetcher.reset();
+        prefetcher.prefetchAround(rows(20), 5, 3);
+        assertEquals(8, queued.size());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,331 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventArchiveTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = EventArchive.DAY_MILLIS;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+    private static final int TODAY = EventArchive.dayOf(NOW);
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<String> ids(List<Quake> quakes) {
+        List<String> ids = new ArrayList<>();
+        for (Quake quake : quakes) {
+            ids.add(quake.getQuakeId());
+        }
+        return ids;
+    }
+
+    private EventArchive archive() throws Exception {
+        return new EventArchive(new File(mFolder.getRoot(), "archive"));
+    }
+
+    @Test
+    public void queriesAcrossDaysNewestFirst() throws Exception {
+        EventArchive archive = archive();
+        archive.add(Arrays.asList(
+                quake("a", 3.0, NOW - 3 * DAY + HOUR, 0),
+                quake("b", 5.5, NOW - 2 * DAY + HOUR, 0),
+                quake("c", 2.6, NOW - DAY + HOUR, 0),
+                quake("d", 4.1, NOW - DAY + 2 * HOUR, 0)));
+        assertEquals(3, archive.segmentCount());
+
+        assertEquals(Arrays.asList("d", "c", "b", "a"),
+                ids(archive.query(0, NOW, 0, 10)));
+        assertEquals(Arrays.asList("d", "b"), ids(archive.query(0, NOW, 4, 10)));
+        assertEquals(Arrays.asList("c", "b"),
+                ids(archive.query(NOW - 2 * DAY, NOW - DAY + HOUR, 0, 10)));
+        assertEquals(Arrays.asList("d", "c"), ids(archive.query(0, NOW, 0, 2)));
+        assertTrue(archive.query(0, NOW, 6, 10).isEmpty());
+    }
+
+    @Test
+    public void keepsTheLatestRevision() throws Exception {
+        EventArchive archive = archive();
+        long time = NOW - 5 * DAY;
+        archive.add(Arrays.asList(quake("a", 3.0, time, time), quake("b", 2.7, time + 1, time)));
+        archive.add(Arrays.asList(quake("a", 4.2, time, time + HOUR)));
+        // An older revision arriving late does not win
+        archive.add(Arrays.asList(quake("a", 3.1, time, time + 1)));
+        assertEquals(3, archive.segmentCount());
+
+        List<Quake> quakes = archive.query(0, NOW, 0, 10);
+        assertEquals(Arrays.asList("b", "a"), ids(quakes));
+        assertEquals(4.2, quakes.get(1).getQuakeMagnitude(), 0);
+        assertEquals(Arrays.asList("a"), ids(archive.query(0, NOW, 4, 10)));
+    }
+
+    @Test
+    public void pagesBackwardsWithoutGapsOrRepeats() throws Exception {
+        EventArchive archive = archive();
+        List<Quake> quakes = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            quakes.add(quake("e" + i, 2.5 + (i % 40) / 10.0, NOW - i * HOUR, 0));
+        }
+        archive.add(quakes);
+
+        Set<String> seen = new HashSet<>();
+        Quake last = null;
+        List<Quake> page = archive.page(last, 0, 100);
+        int pages = 0;
+        while (!page.isEmpty()) {
+            for (Quake quake : page) {
+                assertTrue(last == null || quake.getQuakeUnixTime() < last.getQuakeUnixTime());
+                last = quake;
+                assertTrue(seen.add(quake.getQuakeId()));
+            }
+            pages++;
+            page = archive.page(last, 0, 100);
+        }
+        assertEquals(250, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    public void pagesThroughEarthquakesOfTheSameMillisecond() throws Exception {
+        EventArchive archive = archive();
+        List<Quake> quakes = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            quakes.add(quake("t" + i, 3.0, NOW - DAY, 0));
+        }
+        archive.add(quakes);
+
+        Set<String> seen = new HashSet<>();
+        List<Quake> page = archive.page(null, 0, 3);
+        while (!page.isEmpty()) {
+            for (Quake quake : page) {
+                assertTrue(seen.add(quake.getQuakeId()));
+            }
+            page = archive.page(page.get(page.size() - 1), 0, 3);
+        }
+        assertEquals(7, seen.size());
+    }
+
+    @Test
+    public void compactsSettledDays() throws Exception {
+        EventArchive archive = archive();
+        long settled = NOW - 10 * DAY;
+        long recent = NOW - HOUR;
+        archive.add(Arrays.asList(quake("a", 3.0, settled, settled),
+                quake("r", 3.0, recent, recent)));
+        archive.add(Arrays.asList(quake("a", 3.5, settled, settled + 1),
+                quake("b", 2.8, settled + HOUR, settled)));
+        archive.add(Arrays.asList(quake("r", 3.3, recent, recent + 1)));
+        assertEquals(4, archive.segmentCount());
+        assertTrue(archive.needsCompaction(TODAY));
+
+        // The settled day is folded, today keeps taking new segments
+        assertEquals(1, archive.compact(TODAY));
+        assertEquals(3, archive.segmentCount());
+        assertFalse(archive.needsCompaction(TODAY));
+        File[] files = new File(mFolder.getRoot(), "archive").listFiles();
+        assertEquals(3 + 1, files.length);
+
+        List<Quake> quakes = archive.query(0, NOW, 0, 10);
+        assertEquals(Arrays.asList("r", "b", "a"), ids(quakes));
+        assertEquals(3.5, quakes.get(2).getQuakeMagnitude(), 0);
+        assertEquals(3.3, quakes.get(0).getQuakeMagnitude(), 0);
+    }
+
+    @Test
+    public void compactsBusyDaysBeforeTheySettle() throws Exception {
+        EventArchive archive = archive();
+        for (int i = 0; i < EventArchive.COMPACT_SEGMENTS; i++) {
+            archive.add(Arrays.asList(quake("a", 3.0 + i, NOW - HOUR, NOW + i)));
+        }
+        assertTrue(archive.needsCompaction(TODAY));
+        assertEquals(1, archive.compact(TODAY));
+        assertEquals(1, archive.segmentCount());
+        assertEquals(6.0, archive.query(0, NOW, 0, 10).get(0).getQuakeMagnitude(), 0);
+    }
+
+    @Test
+    public void reloadsFromTheManifest() throws Exception {
+        EventArchive archive = archive();
+        archive.add(Arrays.asList(quake("a", 3.0, NOW - 4 * DAY, 0),
+                quake("b", 6.1, NOW - DAY, 0)));
+        archive.markCovered(TODAY - 30, TODAY - 2);
+
+        EventArchive reopened = archive();
+        assertEquals(2, reopened.segmentCount());
+        assertEquals(Arrays.asList("b", "a"), ids(reopened.query(0, NOW, 0, 10)));
+        assertTrue(reopened.isCovered(TODAY - 30));
+        assertTrue(reopened.isCovered(TODAY - 2));
+        assertFalse(reopened.isCovered(TODAY - 1));
+        assertFalse(reopened.isCovered(TODAY - 31));
+    }
+
+    @Test
+    public void keepsAnUnreadableManifest() throws Exception {
+        EventArchive archive = archive();
+        archive.add(Arrays.asList(quake("a", 3.0, NOW - 4 * DAY, 0)));
+        archive.markCovered(TODAY - 30, TODAY - 2);
+        File manifest = new File(new File(mFolder.getRoot(), "archive"), "manifest.json");
+        String text = new String(Files.readAllBytes(manifest.toPath()), "UTF-8");
+        Files.write(manifest.toPath(), text.substring(0, text.length() / 2).getBytes("UTF-8"));
+
+        EventArchive reopened = archive();
+        for (int i = 0; i < 2; i++) {
+            try {
+                reopened.markCovered(TODAY - 1, TODAY - 1);
+                fail("Wrote over an unreadable manifest");
+            }
+            catch (IOException e) {
+                // Every call fails until the manifest can be read
+            }
+        }
+        assertEquals(text.length() / 2, manifest.length());
+    }
+
+    @Test
+    public void dropsDaysPastTheRetention() throws Exception {
+        EventArchive archive = archive();
+        long expired = NOW - EventArchive.RETENTION_DAYS * DAY;
+        archive.add(Arrays.asList(quake("old", 5.0, expired, 0),
+                quake("kept", 5.0, expired + DAY, 0)));
+        archive.markCovered(TODAY - EventArchive.RETENTION_DAYS, TODAY - 2);
+        assertTrue(archive.needsCompaction(TODAY));
+
+        archive.compact(TODAY);
+        assertFalse(archive.needsCompaction(TODAY));
+        assertEquals(1, archive.segmentCount());
+        assertEquals(Arrays.asList("kept"), ids(archive.query(0, NOW, 0, 10)));
+        assertFalse(archive.isCovered(TODAY - EventArchive.RETENTION_DAYS));
+        assertTrue(archive.isCovered(TODAY - EventArchive.RETENTION_DAYS + 1));
+        assertEquals(1 + 1, new File(mFolder.getRoot(), "archive").listFiles().length);
+    }
+
+    @Test
+    public void archivesLoadedListsInOneWrite() throws Exception {
+        final List<Runnable> queued = new ArrayList<>();
+        EventArchive archive = new EventArchive(new File(mFolder.getRoot(), "archive"),
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        queued.add(command);
+                    }
+                });
+        long now = System.currentTimeMillis();
+        archive.addQuietly(Arrays.asList(quake("a", 3.0, now - HOUR, 0),
+                quake("small", EventArchive.MIN_MAGNITUDE - 0.1, now - HOUR, 0),
+                quake("expired", 6.0, now - EventArchive.RETENTION_DAYS * DAY, 0)));
+        archive.addQuietly(Arrays.asList(quake("b", 4.0, now - 2 * HOUR, 0)));
+        assertEquals(1, queued.size());
+
+        queued.get(0).run();
+        assertEquals(Arrays.asList("a", "b"), ids(archive.query(0, now, 0, 10)));
+        assertEquals(1, archive.segmentCount());
+    }
+
+    @Test
+    public void countsByMagnitudeFromTheManifest() throws Exception {
+        EventArchive archive = archive();
+        archive.add(Arrays.asList(
+                quake("a", 2.5, NOW - 3 * DAY, 0),
+                quake("b", 2.9, NOW - 3 * DAY + 1, 0),
+                quake("c", 4.0, NOW - 2 * DAY, 0),
+                quake("d", 9.5, NOW - 2 * DAY + 1, 0),
+                quake("e", 5.0, NOW - DAY, 0)));
+        int[] expected = new int[EventArchive.MAGNITUDE_BUCKETS];
+        expected[2] = 2;
+        expected[4] = 1;
+        expected[9] = 1;
+        assertArrayEquals(expected, archive.countByMagnitude(TODAY - 3, TODAY - 2));
+    }
+
+    @Test
+    public void backfillsUncoveredDaysOnce() throws Exception {
+        UsgsStandInServer server =
+                new UsgsStandInServer(SyntheticCatalog.generate(3, 400, NOW, 90 * DAY), 3);
+        try {
+            EventArchive archive = archive();
+            ResilientFetcher fetcher = new ResilientFetcher(3, 10, 2000, 0, new Random(1));
+            ArchiveBackfill backfill =
+                    new ArchiveBackfill(archive, fetcher, server.getQueryUrl(), 2.5);
+            final List<Integer> progress = new ArrayList<>();
+            ArchiveBackfill.Listener listener = new ArchiveBackfill.Listener() {
+                @Override
+                public boolean onProgress(int daysDone, int daysTotal) {
+                    progress.add(daysDone);
+                    assertEquals(91, daysTotal);
+                    return true;
+                }
+            };
+
+            assertEquals(FetchOutcome.Kind.SUCCESS, backfill.run(TODAY - 90, TODAY, listener));
+            assertEquals(Arrays.asList(30, 60, 90, 91), progress);
+            assertEquals(4, server.getQueries().size());
+            assertTrue(archive.isCovered(TODAY - 90));
+            assertTrue(archive.isCovered(TODAY - EventArchive.SETTLED_DAYS));
+            assertFalse(archive.isCovered(TODAY - 1));
+
+            List<Quake> archived = archive.query(Long.MIN_VALUE / 2, Long.MAX_VALUE / 2, 2.5,
+                    10000);
+            assertEquals(backfill.getArchivedCount(), archived.size());
+            assertTrue(archived.size() > 0);
+
+            // Only the unsettled days are asked for again
+            backfill.run(TODAY - 90, TODAY, null);
+            assertEquals(5, server.getQueries().size());
+        }
+        finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void splitsBusyDaysAndLeavesTruncatedOnesUncovered() throws Exception {
+        long busyDay = (TODAY - 10) * DAY;
+        long burstDay = (TODAY - 20) * DAY;
+        // Spread over six hours, and crowded into twenty seconds
+        List<JSONObject> catalog = new ArrayList<>(
+                SyntheticCatalog.generate(4, 40, busyDay + 7 * HOUR, 6 * HOUR));
+        catalog.addAll(SyntheticCatalog.generate(5, 15, burstDay + 12 * HOUR, 20000));
+        UsgsStandInServer server = new UsgsStandInServer(catalog, 4);
+        try {
+            EventArchive archive = archive();
+            ResilientFetcher fetcher = new ResilientFetcher(3, 10, 2000, 0, new Random(1));
+            ArchiveBackfill backfill =
+                    new ArchiveBackfill(archive, fetcher, server.getQueryUrl(), 0, 10);
+            assertEquals(FetchOutcome.Kind.SUCCESS, backfill.run(TODAY - 25, TODAY - 5, null));
+
+            assertEquals(40, archive.query(busyDay, busyDay + DAY - 1, 0, 100).size());
+            assertTrue(archive.isCovered(TODAY - 10));
+            // Cut short even within a minute, the day is archived in part and asked for again
+            int burst = archive.query(burstDay, burstDay + DAY - 1, 0, 100).size();
+            assertTrue(burst >= 10 && burst < 15);
+            assertFalse(archive.isCovered(TODAY - 20));
+            assertTrue(archive.isCovered(TODAY - 21));
+            assertTrue(archive.isCovered(TODAY - 19));
+        }
+        finally {
+            server.close();
+        }
+    }
+}
\ No newline at end of file
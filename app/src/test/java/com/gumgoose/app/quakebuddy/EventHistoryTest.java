@@ -0,0 +1,125 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventHistoryTest {
+
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<Quake> readAll(EventHistory history) throws Exception {
+        List<Quake> quakes = new ArrayList<>();
+        QuakeReader reader = history.openReader();
+        if (reader == null) {
+            return quakes;
+        }
+        Quake quake;
+        while ((quake = reader.next()) != null) {
+            quakes.add(quake);
+        }
+        reader.close();
+        return quakes;
+    }
+
+    private static List<String> ids(List<Quake> quakes) {
+        List<String> ids = new ArrayList<>();
+        for (Quake quake : quakes) {
+            ids.add(quake.getQuakeId());
+        }
+        return ids;
+    }
+
+    /**
+     * Records what every merge tells its listeners
+     */
+    private static class Recorder implements EventHistory.OnMergeListener {
+
+        final List<List<Quake>> mMerges = new ArrayList<>();
+
+        @Override
+        public void onMerged(List<Quake> earthquakes) {
+            mMerges.add(earthquakes);
+        }
+    }
+
+    @Test
+    public void replacesEarthquakesById() throws Exception {
+        EventHistory history = new EventHistory(new File(mFolder.getRoot(), "history.qbev"));
+        assertNull(history.openReader());
+        history.mergeQuietly(Arrays.asList(
+                quake("a", 3.0, NOW - 2000, NOW - 2000),
+                quake("b", 4.0, NOW - 1000, NOW - 1000)));
+        history.mergeQuietly(Arrays.asList(
+                quake("b", 4.4, NOW - 1000, NOW),
+                quake("c", 5.0, NOW, NOW),
+                // A list never holds one event twice, the first one wins
+                quake("c", 1.0, NOW, NOW)));
+
+        List<Quake> all = readAll(history);
+        assertEquals(Arrays.asList("b", "c", "a"), ids(all));
+        assertEquals(4.4, all.get(0).getQuakeMagnitude(), 0.0);
+        assertEquals(5.0, all.get(1).getQuakeMagnitude(), 0.0);
+        assertEquals(Arrays.asList("c", "b", "a"), ids(history.readRecent(10)));
+        assertEquals(Arrays.asList("c"), ids(history.readRecent(1)));
+    }
+
+    @Test
+    public void skipsRefreshesWithoutNewRevisions() throws Exception {
+        File file = new File(mFolder.getRoot(), "history.qbev");
+        EventHistory history = new EventHistory(file);
+        Recorder recorder = new Recorder();
+        history.addOnMergeListener(recorder);
+        List<Quake> loaded = Arrays.asList(
+                quake("a", 3.0, NOW - 2000, NOW - 2000),
+                quake("b", 4.0, NOW - 1000, NOW - 1000));
+        history.mergeQuietly(loaded);
+        assertEquals(1, recorder.mMerges.size());
+
+        // The same list again leaves the file alone and tells no one
+        file.setLastModified(1000000L);
+        history.mergeQuietly(loaded);
+        assertEquals(1000000L, file.lastModified());
+        assertEquals(1, recorder.mMerges.size());
+
+        // Only the revised earthquake is merged and reported
+        history.mergeQuietly(Arrays.asList(
+                quake("a", 3.0, NOW - 2000, NOW - 2000),
+                quake("b", 4.2, NOW - 1000, NOW)));
+        assertEquals(2, recorder.mMerges.size());
+        assertEquals(Collections.singletonList("b"), ids(recorder.mMerges.get(1)));
+        assertEquals(Arrays.asList("b", "a"), ids(readAll(history)));
+    }
+
+    @Test
+    public void dropsTheEarthquakesMergedLongestAgo() throws Exception {
+        EventHistory history = new EventHistory(new File(mFolder.getRoot(), "history.qbev"), 3);
+        history.mergeQuietly(Arrays.asList(
+                quake("a", 3.0, NOW, NOW),
+                quake("b", 3.0, NOW, NOW)));
+        history.mergeQuietly(Collections.singletonList(quake("c", 3.0, NOW - 5000, NOW)));
+        history.mergeQuietly(Collections.singletonList(quake("d", 3.0, NOW - 9000, NOW)));
+        assertEquals(Arrays.asList("d", "c", "a"), ids(readAll(history)));
+
+        // An import replaces what it brings and is cut at the limit too
+        int count = history.merge(QuakeReader.of(Arrays.asList(
+                quake("x", 3.0, NOW, NOW),
+                quake("c", 3.5, NOW, NOW))));
+        assertEquals(3, count);
+        assertEquals(Arrays.asList("x", "c", "d"), ids(readAll(history)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EventReconcilerTest {
+
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    @Test
+    public void renamesMatchesFromOtherSources() {
+        EventReconciler reconciler = new EventReconciler(100);
+        reconciler.reconcile("usgs", true, Arrays.asList(
+                quake("us1", 5.0, NOW, 35.0, 139.0),
+                quake("us2", 4.0, NOW + 10000, 35.1, 139.1)));
+
+        // Seconds apart, a few kilometres off and a tenth of a magnitude different
+        List<Quake> emsc = reconciler.reconcile("emsc", false, Arrays.asList(
+                quake("em1", 5.1, NOW + 4000, 35.05, 139.02),
+                quake("em9", 6.0, NOW + 5000, -35.0, -72.0)));
+        assertEquals("us1", emsc.get(0).getQuakeId());
+        assertEquals("em9", emsc.get(1).getQuakeId());
+        assertEquals(1, reconciler.getMatchCount());
+
+        // A known alias is renamed without being matched again
+        List<Quake> again = reconciler.reconcile("emsc", false,
+                Collections.singletonList(quake("em1", 5.2, NOW + 4000, 35.05, 139.02)));
+        assertEquals("us1", again.get(0).getQuakeId());
+        assertEquals(1, reconciler.getMatchCount());
+
+        // The EMSC earthquake is now known to USGS reports under its own ID
+        List<Quake> usgs = reconciler.reconcile("usgs", true,
+                Collections.singletonList(quake("us3", 6.1, NOW + 6000, -35.1, -72.1)));
+        assertEquals("em9", usgs.get(0).getQuakeId());
+    }
+
+    @Test
+    public void keepsTheFieldsOfCanonicalReports() {
+        EventReconciler reconciler = new EventReconciler(100);
+        Quake known = new Quake(5.0, "Place us1", NOW, 1, "https://usgs/us1", "us1", NOW + 100,
+                "https://usgs/detail/us1", 35.0, 139.0, 10.0);
+        reconciler.reconcile("usgs", true, Collections.singletonList(known));
+
+        // The mirror's report of a USGS earthquake shows as the USGS report
+        List<Quake> emsc = reconciler.reconcile("emsc", false, Arrays.asList(
+                new Quake(5.3, "Mirror place", NOW + 4000, 0, null, "em1", NOW + 90000, null,
+                        35.05, 139.02, 12.0),
+                quake("em2", 4.0, NOW + 60000, -35.0, -72.0)));
+        assertSame(known, emsc.get(0));
+        assertEquals(1, emsc.get(0).getTsunamiWarning());
+        // An earthquake only the mirror reported has no revision time to sync from
+        assertEquals("em2", emsc.get(1).getQuakeId());
+        assertEquals(0, emsc.get(1).getQuakeUpdated());
+        assertEquals(NOW + 100, IncrementalSync.cursorOf(emsc));
+
+        // Once USGS reports it, its fields replace the mirror's, still under the mirror's ID
+        reconciler.reconcile("usgs", true,
+                Collections.singletonList(quake("us2", 4.1, NOW + 61000, -35.0, -72.0)));
+        List<Quake> again = reconciler.reconcile("emsc", false,
+                Collections.singletonList(quake("em2", 4.0, NOW + 60000, -35.0, -72.0)));
+        assertEquals("em2", again.get(0).getQuakeId());
+        assertEquals(4.1, again.get(0).getQuakeMagnitude(), 0.0);
+        assertEquals(NOW + 61000, again.get(0).getQuakeUpdated());
+    }
+
+    @Test
+    public void matchesMirrorReportsOfSeededEarthquakes() {
+        EventReconciler reconciler = new EventReconciler(100);
+        Quake cached = quake("us1", 5.0, NOW, 35.0, 139.0);
+        reconciler.seed(Collections.singletonList(cached));
+
+        List<Quake> emsc = reconciler.reconcile("emsc", false,
+                Collections.singletonList(quake("em1", 5.1, NOW + 4000, 35.05, 139.02)));
+        assertSame(cached, emsc.get(0));
+        assertEquals(1, reconciler.getMatchCount());
+
+        // USGS shares the seeded IDs, so its other earthquakes are never matched to them
+        List<Quake> usgs = reconciler.reconcile("usgs", true,
+                Collections.singletonList(quake("us2", 5.0, NOW + 1000, 35.0, 139.0)));
+        assertEquals("us2", usgs.get(0).getQuakeId());
+        assertEquals(1, reconciler.getMatchCount());
+    }
+
+    @Test
+    public void passesDeletedEventsThrough() {
+        EventReconciler reconciler = new EventReconciler(100);
+        reconciler.reconcile("usgs", true,
+                Collections.singletonList(quake("us1", 5.0, NOW, 35.0, 139.0)));
+        Quake deleted = Quake.deleted("us1", NOW, NOW + 5000);
+        List<Quake> usgs = reconciler.reconcile("usgs", true,
+                Arrays.asList(deleted, Quake.deleted("us9", NOW, NOW + 5000)));
+        assertSame(deleted, usgs.get(0));
+        assertEquals("us9", usgs.get(1).getQuakeId());
+        assertEquals(0, reconciler.getMatchCount());
+    }
+
+    @Test
+    public void keepsDistinctEarthquakesApart() {
+        EventReconciler reconciler = new EventReconciler(100);
+        reconciler.reconcile("usgs", true,
+                Collections.singletonList(quake("us1", 5.0, NOW, 35, 139)));
+        List<Quake> emsc = reconciler.reconcile("emsc", false, Arrays.asList(
+                // Too late, too far and too different in magnitude
+                quake("late", 5.0, NOW + EventReconciler.MATCH_WINDOW_MILLIS + 1, 35, 139),
+                quake("far", 5.0, NOW, 37, 139),
+                quake("weak", 3.5, NOW, 35, 139)));
+        assertEquals("late", emsc.get(0).getQuakeId());
+        assertEquals("far", emsc.get(1).getQuakeId());
+        assertEquals("weak", emsc.get(2).getQuakeId());
+
+        // One source never reports one earthquake twice
+        List<Quake> usgs = reconciler.reconcile("usgs", true,
+                Collections.singletonList(quake("us2", 5.0, NOW - 1000, 35, 139)));
+        assertEquals("us2", usgs.get(0).getQuakeId());
+        assertEquals(0, reconciler.getMatchCount());
+    }
+
+    @Test
+    public void forgetsTheOldestEarthquakes() {
+        EventReconciler reconciler = new EventReconciler(2);
+        reconciler.reconcile("usgs", true, Arrays.asList(
+                quake("us1", 5.0, NOW, 35, 139),
+                quake("us2", 5.0, NOW + 60000, 10, 20),
+                quake("us3", 5.0, NOW + 120000, -10, -20)));
+        List<Quake> emsc = reconciler.reconcile("emsc", false, Arrays.asList(
+                quake("em1", 5.0, NOW, 35, 139),
+                quake("em3", 5.0, NOW + 120000, -10, -20)));
+        assertEquals("em1", emsc.get(0).getQuakeId());
+        assertEquals("us3", emsc.get(1).getQuakeId());
+    }
+}
\ No newline at end of file
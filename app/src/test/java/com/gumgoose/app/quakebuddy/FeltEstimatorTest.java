@@ -0,0 +1,137 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeltEstimatorTest {
+
+    private static final String FORMAT = "~MMI %1$s at %2$s";
+    private static final FeltEstimator.PointOfInterest HOME =
+            new FeltEstimator.PointOfInterest("Home", 35.68, 139.69);
+    private static final FeltEstimator.PointOfInterest CABIN =
+            new FeltEstimator.PointOfInterest("Cabin", 43.06, 141.35);
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private static Quake quake(String id, double magnitude, double latitude, double longitude,
+                               long updated) {
+        return TestQuakes.quake(id, magnitude, 1000L, updated, latitude, longitude);
+    }
+
+    private static FeltEstimator estimator() {
+        FeltEstimator estimator = new FeltEstimator(1 << 24);
+        estimator.setPointsOfInterest(Arrays.asList(HOME, CABIN), FORMAT);
+        return estimator;
+    }
+
+    @Test
+    public void labelsThePlaceShakenMost() {
+        FeltEstimator estimator = estimator();
+        Quake nearHome = quake("a", 5.0, 35.9, 139.9, 1);
+        Quake nearCabin = quake("b", 5.0, 43.0, 141.0, 1);
+        Quake farAway = quake("c", 4.0, -40.0, -70.0, 1);
+        Quake unlocated = quake("d", 6.0, Double.NaN, Double.NaN, 1);
+        assertEquals(4, estimator.enrich(Arrays.asList(nearHome, nearCabin, farAway, unlocated),
+                null));
+
+        FeltEstimator.Estimate home = estimator.get(nearHome);
+        assertEquals("Home", home.getPlace());
+        assertEquals(home.getDistanceKm(), FeltIntensity.distanceKm(35.9, 139.9, 35.68, 139.69),
+                1e-9);
+        assertEquals("~MMI " + FeltIntensity.romanNumeral(home.getIntensity()) + " at Home",
+                home.getLabel());
+        assertEquals("Cabin", estimator.get(nearCabin).getPlace());
+        assertNull(estimator.get(farAway));
+        assertNull(estimator.get(unlocated));
+    }
+
+    @Test
+    public void estimatesEachRevisionOnce() {
+        FeltEstimator estimator = estimator();
+        Quake first = quake("a", 4.5, 35.7, 139.7, 1);
+        Quake other = quake("b", 3.0, -40.0, -70.0, 1);
+        assertEquals(2, estimator.enrich(Arrays.asList(first, other), null));
+        // Neither the felt nor the unfelt earthquake is computed again
+        assertEquals(0, estimator.enrich(Arrays.asList(first, other), null));
+
+        // A revision is a new estimate, the unchanged earthquake is not
+        Quake revised = quake("a", 6.5, 35.7, 139.7, 2);
+        assertNull(estimator.get(revised));
+        assertEquals(1, estimator.enrich(Arrays.asList(revised, other), null));
+        assertNotNull(estimator.get(revised));
+        assertTrue(estimator.get(revised).getIntensity() > estimator.get(first).getIntensity());
+    }
+
+    @Test
+    public void startsOverWhenThePointsChange() {
+        FeltEstimator estimator = estimator();
+        // Strong enough to be felt at both places
+        Quake quake = quake("a", 7.5, 39.0, 141.0, 1);
+        estimator.enrich(Collections.singletonList(quake), null);
+        // The same points again keep the estimates
+        estimator.setPointsOfInterest(Arrays.asList(HOME, CABIN), FORMAT);
+        assertEquals(0, estimator.enrich(Collections.singletonList(quake), null));
+
+        estimator.setPointsOfInterest(Collections.singletonList(CABIN), FORMAT);
+        assertNull(estimator.get(quake));
+        assertEquals(1, estimator.enrich(Collections.singletonList(quake), null));
+        assertEquals("Cabin", estimator.get(quake).getPlace());
+
+        // With no points there is nothing to estimate
+        estimator.setPointsOfInterest(new ArrayList<FeltEstimator.PointOfInterest>(), FORMAT);
+        assertEquals(0, estimator.enrich(Collections.singletonList(quake), null));
+        assertNull(estimator.get(quake));
+    }
+
+    @Test
+    public void parallelBatchesMatchSerialOnes() {
+        Random random = new Random(45);
+        List<Quake> earthquakes = new ArrayList<>();
+        for (int i = 0; i < 4 * FeltEstimator.PARALLEL_THRESHOLD; i++) {
+            earthquakes.add(quake("e" + i, 2.5 + random.nextDouble() * 5,
+                    30 + random.nextDouble() * 20, 130 + random.nextDouble() * 20, 1));
+        }
+        FeltEstimator serial = estimator();
+        FeltEstimator parallel = estimator();
+        assertEquals(earthquakes.size(), serial.enrich(earthquakes, null));
+        assertEquals(earthquakes.size(), parallel.enrich(earthquakes, mExecutor));
+        for (Quake quake : earthquakes) {
+            FeltEstimator.Estimate expected = serial.get(quake);
+            FeltEstimator.Estimate actual = parallel.get(quake);
+            if (expected == null) {
+                assertNull(actual);
+            }
+            else {
+                assertEquals(expected.getLabel(), actual.getLabel());
+                assertEquals(expected.getIntensity(), actual.getIntensity(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void pointsAreTheRegionProfileCentres() {
+        List<QueryProfile> profiles = QueryProfile.defaults("Settings", "Global", "Pacific");
+        profiles.add(new QueryProfile("home", "Home", 2.5, false, 35.68, 139.69, 300));
+        // Neither the whole world nor the Pacific is a place to estimate shaking at
+        List<FeltEstimator.PointOfInterest> points = FeltEstimator.pointsOf(profiles);
+        assertEquals(Collections.singletonList(HOME), points);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeltIntensityTest {
+
+    @Test
+    public void measuresGreatCircleDistances() {
+        assertEquals(0, FeltIntensity.distanceKm(35.0, 139.0, 35.0, 139.0), 1e-9);
+        // A degree of latitude is about 111 km anywhere
+        assertEquals(111.19, FeltIntensity.distanceKm(10.0, 20.0, 11.0, 20.0), 0.01);
+        // San Francisco to Los Angeles
+        assertEquals(559, FeltIntensity.distanceKm(37.7749, -122.4194, 34.0522, -118.2437), 2);
+        // Across the antimeridian
+        assertEquals(FeltIntensity.distanceKm(0, 179.5, 0, -179.5),
+                FeltIntensity.distanceKm(0, -0.5, 0, 0.5), 1e-9);
+        assertEquals(Math.PI * FeltIntensity.EARTH_RADIUS_KM,
+                FeltIntensity.distanceKm(0, 0, 0, 180), 1e-6);
+    }
+
+    @Test
+    public void estimatesIntensityFromMagnitudeAndDistance() {
+        // A magnitude 6 right underfoot shakes at about MMI VII
+        assertEquals(6.8, FeltIntensity.intensity(6.0, 0), 0.05);
+        assertEquals("VII", FeltIntensity.romanNumeral(FeltIntensity.intensity(6.0, 0)));
+        // A magnitude 5 a hundred kilometres away is weakly felt
+        assertEquals("III", FeltIntensity.romanNumeral(FeltIntensity.intensity(5.0, 100)));
+        // Shaking weakens with distance and grows with magnitude
+        double previous = Double.MAX_VALUE;
+        for (int km = 0; km <= 500; km += 25) {
+            double mmi = FeltIntensity.intensity(5.5, km);
+            assertTrue(mmi < previous);
+            previous = mmi;
+        }
+        assertTrue(FeltIntensity.intensity(7.0, 50) > FeltIntensity.intensity(6.0, 50));
+        // Clamped to the scale
+        assertEquals(12, FeltIntensity.intensity(9.5, 0), 0);
+        assertEquals(1, FeltIntensity.intensity(2.5, 2000), 0);
+    }
+
+    @Test
+    public void addsDepthToTheDistance() {
+        assertEquals(5, FeltIntensity.hypocentralKm(3, 4), 1e-9);
+        assertEquals(3, FeltIntensity.hypocentralKm(3, Double.NaN), 0);
+        assertEquals(3, FeltIntensity.hypocentralKm(3, -1), 0);
+    }
+
+    @Test
+    public void roundsToRomanNumerals() {
+        assertEquals("I", FeltIntensity.romanNumeral(1.2));
+        assertEquals("IV", FeltIntensity.romanNumeral(3.5));
+        assertEquals("IX", FeltIntensity.romanNumeral(9.4));
+        assertEquals("XII", FeltIntensity.romanNumeral(12));
+        assertEquals("I", FeltIntensity.romanNumeral(0.2));
+    }
+}
\ No newline at end of file
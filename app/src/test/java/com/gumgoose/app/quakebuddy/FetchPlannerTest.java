@@ -0,0 +1,150 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that queries are split to fit the latency budget of the measured connection
+ */
+public class FetchPlannerTest {
+
+    private static final String QUERY = "https://earthquake.usgs.gov/fdsnws/event/1/query"
+            + "?format=geojson&starttime=2017-01-01&limit=50&minmagnitude=1&orderby=time";
+
+    @Test
+    public void fastConnectionFetchesEverythingAtOnce() {
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        // 200 ms latency and 1 MB/s for 100 KB responses of 100 earthquakes
+        for (int i = 0; i < 20; i++) {
+            estimator.recordRequest(200, 100 * 1024, 100);
+            estimator.recordEvents(100 * 1024, 100);
+        }
+        FetchPlanner planner = new FetchPlanner(estimator, FetchPlanner.DEFAULT_BUDGET_MILLIS);
+        assertEquals(50, planner.nextPageSize(0, 50));
+    }
+
+    @Test
+    public void coldStartFetchesEverythingAtOnce() {
+        // Before any measurement the defaults describe a slow link with a long round trip,
+        // on which a second request for the rest would cost more than it saves
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        FetchPlanner planner = new FetchPlanner(estimator, FetchPlanner.DEFAULT_BUDGET_MILLIS);
+        assertEquals(50, planner.nextPageSize(0, 50));
+        assertTrue(planner.nextPageSize(0, 500) < 500);
+    }
+
+    @Test
+    public void keepsEachEarthquakeOnceAcrossPages() throws Exception {
+        // 2017-06-15T00:00:00Z
+        long now = 1497484800000L;
+        List<JSONObject> catalog = SyntheticCatalog.generate(29, 60, now, 24 * 60 * 60 * 1000L);
+        final JSONObject reported = new JSONObject(catalog.get(0).toString());
+        reported.put("id", "new1");
+        reported.getJSONObject("properties").put("time", now + 60000);
+        final UsgsStandInServer server = new UsgsStandInServer(catalog, 29);
+        try {
+            ThroughputEstimator estimator = new ThroughputEstimator();
+            for (int i = 0; i < 20; i++) {
+                estimator.recordRequest(1000, 20 * 1024, 2000);
+                estimator.recordEvents(20 * 1024, 20);
+            }
+            FetchPlanner planner = new FetchPlanner(estimator, FetchPlanner.DEFAULT_BUDGET_MILLIS);
+            String url = server.getQueryUrl() + "?format=geojson&orderby=time";
+            List<Quake> earthquakes = planner.fetchPages(url, 40, new FetchPlanner.PageListener() {
+                @Override
+                public boolean onPageFetched(List<Quake> earthquakes) {
+                    // A new earthquake pushes every later one down by a position
+                    if (earthquakes.size() == FetchPlanner.MIN_PAGE_SIZE) {
+                        server.addFeature(reported);
+                    }
+                    return true;
+                }
+            });
+
+            assertTrue(server.getQueries().size() > 2);
+            assertEquals(40, earthquakes.size());
+            List<String> ids = new ArrayList<>();
+            for (Quake quake : earthquakes) {
+                ids.add(quake.getQuakeId());
+            }
+            assertEquals(40, new HashSet<>(ids).size());
+            for (int i = 1; i < earthquakes.size(); i++) {
+                assertTrue(earthquakes.get(i - 1).getQuakeUnixTime()
+                        >= earthquakes.get(i).getQuakeUnixTime());
+            }
+        }
+        finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void slowConnectionShrinksTheFirstPage() {
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        // 1 s latency and 10 KB/s
+        for (int i = 0; i < 20; i++) {
+            estimator.recordRequest(1000, 20 * 1024, 2000);
+            estimator.recordEvents(20 * 1024, 20);
+        }
+        FetchPlanner planner = new FetchPlanner(estimator, FetchPlanner.DEFAULT_BUDGET_MILLIS);
+        int first = planner.nextPageSize(0, 500);
+        assertEquals(FetchPlanner.MIN_PAGE_SIZE, first);
+        assertTrue(estimator.estimateMillis(first) >= FetchPlanner.DEFAULT_BUDGET_MILLIS);
+
+        // Later pages get a larger budget, and the whole query is eventually covered
+        int fetched = first;
+        int pages = 1;
+        int size;
+        while ((size = planner.nextPageSize(fetched, 500)) > 0) {
+            assertTrue(size >= first);
+            fetched += size;
+            pages++;
+        }
+        assertEquals(500, fetched);
+        assertTrue(pages > 2);
+    }
+
+    @Test
+    public void firstPageFitsTheBudget() {
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        for (int i = 0; i < 20; i++) {
+            estimator.recordRequest(300, 64 * 1024, 1000);
+            estimator.recordEvents(64 * 1024, 64);
+        }
+        FetchPlanner planner = new FetchPlanner(estimator, 2000);
+        int first = planner.nextPageSize(0, 1000);
+        assertTrue(first > FetchPlanner.MIN_PAGE_SIZE);
+        assertTrue(estimator.estimateMillis(first) <= 2000);
+        assertTrue(estimator.estimateMillis(first + 5) > 2000);
+    }
+
+    @Test
+    public void smallRemainderJoinsThePage() {
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        FetchPlanner planner = new FetchPlanner(estimator, 0);
+        assertEquals(15, planner.nextPageSize(0, 15));
+        assertEquals(0, planner.nextPageSize(15, 15));
+    }
+
+    @Test
+    public void pageUrlReplacesLimitAndOffset() {
+        assertEquals(50, FetchPlanner.limitOf(QUERY, 10));
+        String page = FetchPlanner.pageUrl(QUERY, 20, 30);
+        assertEquals("https://earthquake.usgs.gov/fdsnws/event/1/query"
+                + "?format=geojson&starttime=2017-01-01&minmagnitude=1&orderby=time"
+                + "&limit=30&offset=21", page);
+        assertEquals(30, FetchPlanner.limitOf(page, 10));
+        assertEquals(FetchPlanner.pageUrl(QUERY, 40, 10),
+                FetchPlanner.pageUrl(page, 40, 10));
+        assertEquals("http://host/query?limit=5&offset=1",
+                FetchPlanner.pageUrl("http://host/query", 0, 5));
+        assertEquals(7, FetchPlanner.limitOf("http://host/query", 7));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FormattersTest {
+
+    // 2017-02-11 23:30 UTC
+    private static final long TIME = 1486855800000L;
+
+    private Locale mLocale;
+    private TimeZone mTimeZone;
+
+    @Before
+    public void setUp() {
+        mLocale = Locale.getDefault();
+        mTimeZone = TimeZone.getDefault();
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(mLocale);
+        TimeZone.setDefault(mTimeZone);
+    }
+
+    @Test
+    public void followsTheSystemLocaleAndTimeZone() {
+        Formatters formatters = Formatters.getInstance();
+        assertEquals("Feb 11, 2017", formatters.date().format(TIME));
+        assertEquals("23:30", formatters.time(true).format(TIME));
+        assertEquals("1.5", formatters.magnitude().format(1.5));
+        // Unchanged settings keep the cached formatters
+        assertSame(formatters.date(), formatters.date());
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Auckland"));
+        assertEquals("Feb 12, 2017", formatters.date().format(TIME));
+        assertEquals("12:30 PM", formatters.time(false).format(TIME));
+
+        Locale.setDefault(Locale.GERMANY);
+        SimpleDateFormat german = new SimpleDateFormat("MMM d, yyyy", Locale.GERMANY);
+        german.setTimeZone(TimeZone.getTimeZone("Pacific/Auckland"));
+        assertEquals(german.format(TIME), formatters.date().format(TIME));
+        assertEquals("1,5", formatters.magnitude().format(1.5));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameTraceTest {
+
+    private static final long MS = 1000000L;
+
+    /**
+     * Record a row bind of the given sub-step durations starting at the given time
+     */
+    private static long bind(FrameTrace trace, int position, long nanos, long inflate,
+                             long text, long recolour) {
+        trace.beginBind(position, nanos);
+        nanos += inflate;
+        trace.mark(FrameTrace.Step.INFLATE, nanos);
+        nanos += text;
+        trace.mark(FrameTrace.Step.TEXT, nanos);
+        nanos += recolour;
+        trace.mark(FrameTrace.Step.RECOLOUR, nanos);
+        trace.endBind(nanos);
+        return nanos;
+    }
+
+    @Test
+    public void recordsNothingUntilStarted() {
+        FrameTrace trace = new FrameTrace(16);
+        trace.onFrame(0);
+        trace.onFrame(16 * MS);
+        bind(trace, 0, 1 * MS, MS, MS, MS);
+        assertFalse(trace.isRecording());
+        assertEquals(0, trace.getFrameCount());
+        assertEquals("frames=0 slow=0 p50=0.0ms p90=0.0ms max=0.0ms", trace.export());
+    }
+
+    @Test
+    public void blamesSlowFramesOnTheirBinds() {
+        FrameTrace trace = new FrameTrace(16);
+        trace.start();
+        assertTrue(trace.isRecording());
+        trace.onFrame(0);
+        bind(trace, 3, 2 * MS, 0, 2 * MS, MS);
+        trace.onFrame(16 * MS);
+        // A slow frame inflating two new rows
+        long nanos = bind(trace, 10, 18 * MS, 20 * MS, 3 * MS, MS);
+        bind(trace, 11, nanos, 15 * MS, 2 * MS, 0);
+        trace.onFrame(66 * MS);
+        trace.onFrame(82 * MS);
+        trace.stop();
+        // Frames after stopping are not recorded
+        trace.onFrame(200 * MS);
+
+        assertEquals(3, trace.getFrameCount());
+        assertEquals(1, trace.getSlowFrameCount());
+        assertArrayEquals(new long[] {16 * MS, 50 * MS, 16 * MS}, trace.getFrameNanos());
+        assertEquals("frames=3 slow=1 p50=16.0ms p90=50.0ms max=50.0ms\n"
+                + "slow +16.0ms 50.0ms binds=2 bind=41.0ms inflate=35.0ms text=5.0ms"
+                + " recolour=1.0ms rows=10-11", trace.export());
+    }
+
+    @Test
+    public void keepsTheLatestFramesAndBinds() {
+        FrameTrace trace = new FrameTrace(4);
+        trace.start();
+        long nanos = 0;
+        for (int frame = 0; frame < 10; frame++) {
+            trace.onFrame(nanos);
+            bind(trace, frame, nanos + MS, 0, MS, 0);
+            // Every third frame is slow
+            nanos += frame % 3 == 2 ? 40 * MS : 16 * MS;
+        }
+        trace.onFrame(nanos);
+
+        // Four frame starts bound three frames
+        assertEquals(3, trace.getFrameCount());
+        assertArrayEquals(new long[] {16 * MS, 40 * MS, 16 * MS}, trace.getFrameNanos());
+        assertTrue(trace.export().endsWith("binds=1 bind=1.0ms inflate=0.0ms text=1.0ms"
+                + " recolour=0.0ms rows=8-8"));
+
+        // Starting again forgets the last recording
+        trace.start();
+        assertEquals(0, trace.getFrameCount());
+    }
+
+    @Test
+    public void ignoresMarksOutsideABind() {
+        FrameTrace trace = new FrameTrace(8);
+        trace.start();
+        trace.onFrame(0);
+        trace.mark(FrameTrace.Step.TEXT, 5 * MS);
+        trace.endBind(6 * MS);
+        bind(trace, 1, 10 * MS, 0, 0, 2 * MS);
+        trace.onFrame(60 * MS);
+        assertTrue(trace.export().endsWith("binds=1 bind=2.0ms inflate=0.0ms text=0.0ms"
+                + " recolour=2.0ms rows=1-1"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithoutGaps() {
+        assertEquals(0, Histogram.lowestOf(0));
+        for (int i = 1; i < Histogram.BUCKET_COUNT; i++) {
+            assertEquals(Histogram.highestOf(i - 1) + 1, Histogram.lowestOf(i));
+            assertEquals(i, Histogram.bucketOf(Histogram.lowestOf(i)));
+            assertEquals(i, Histogram.bucketOf(Histogram.highestOf(i)));
+        }
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void bucketsAreNarrowerThanAOneSixteenth() {
+        for (int i = 2 * Histogram.SUB_BUCKETS; i < Histogram.BUCKET_COUNT - 1; i++) {
+            long width = Histogram.highestOf(i) - Histogram.lowestOf(i) + 1;
+            assertTrue(width * Histogram.SUB_BUCKETS <= Histogram.lowestOf(i));
+        }
+    }
+
+    @Test
+    public void findsPercentilesWithinTheBucketWidth() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 1e-9);
+        assertEquals(5000, histogram.getValueAtPercentile(50), 5000 / Histogram.SUB_BUCKETS);
+        assertEquals(9900, histogram.getValueAtPercentile(99), 9900 / Histogram.SUB_BUCKETS);
+        // Never above the largest value
+        assertEquals(10000, histogram.getValueAtPercentile(100));
+        // Small values are exact
+        assertEquals(1, histogram.getValueAtPercentile(0));
+
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void countsEveryValueFromManyThreads() throws Exception {
+        final Histogram histogram = new Histogram();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            final Random random = new Random(t);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(random.nextInt(1000000));
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        assertEquals(400000, histogram.getCount());
+        assertTrue(histogram.getMax() < 1000000);
+    }
+
+    @Test
+    public void exportsTheNonEmptyBuckets() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(1000);
+        JSONObject json = histogram.toJson();
+        assertEquals(3, json.getLong("count"));
+        assertEquals(1000, json.getLong("max"));
+        assertEquals(3, json.getLong("p50"));
+        JSONArray buckets = json.getJSONArray("buckets");
+        assertEquals(2, buckets.length());
+        assertEquals(3, buckets.getJSONArray(0).getLong(0));
+        assertEquals(2, buckets.getJSONArray(0).getLong(1));
+        assertEquals(Histogram.lowestOf(Histogram.bucketOf(1000)),
+                buckets.getJSONArray(1).getLong(0));
+    }
+}
\ No newline at end of file
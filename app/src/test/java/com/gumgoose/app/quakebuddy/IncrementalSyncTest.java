@@ -0,0 +1,151 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalSyncTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+    private static final String URL = "http://localhost/query?format=geojson"
+            + "&starttime=2017-06-14T00%3A00%3A00%2B0000&limit=3&orderby=time";
+
+    private UsgsStandInServer mServer;
+    private List<JSONObject> mCatalog;
+
+    @Before
+    public void setUp() throws Exception {
+        mCatalog = SyntheticCatalog.generate(7, 200, NOW, 7 * DAY);
+        mServer = new UsgsStandInServer(mCatalog, 7);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    private static List<String> ids(List<Quake> quakes) {
+        List<String> ids = new ArrayList<>();
+        for (Quake quake : quakes) {
+            ids.add(quake.getQuakeId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void cursorIsNewestRevision() {
+        assertEquals(0, IncrementalSync.cursorOf(new ArrayList<Quake>()));
+        assertEquals(NOW + 5, IncrementalSync.cursorOf(Arrays.asList(
+                quake("a", 2, NOW, NOW + 5), quake("b", 2, NOW, NOW - 5))));
+    }
+
+    @Test
+    public void updatesUrlReplacesCursor() {
+        String url = IncrementalSync.updatesUrl(URL, NOW);
+        assertTrue(url.endsWith("&includedeleted=true&updatedafter=2017-06-15T00:00:00.001"));
+        assertEquals(url, IncrementalSync.updatesUrl(
+                IncrementalSync.updatesUrl(URL, NOW - DAY), NOW));
+        assertEquals(NOW - DAY, IncrementalSync.startTimeOf(URL));
+    }
+
+    @Test
+    public void mergeReplacesRevisionsAndKeepsQueryShape() {
+        List<Quake> cached = Arrays.asList(
+                quake("a", 2.0, NOW - HOUR, NOW - HOUR),
+                quake("b", 3.0, NOW - 2 * HOUR, NOW - 2 * HOUR),
+                quake("c", 4.0, NOW - 3 * HOUR, NOW - 3 * HOUR));
+        List<Quake> updates = Arrays.asList(
+                // A revision, a new earthquake and one older than the query's start
+                quake("b", 3.5, NOW - 2 * HOUR, NOW),
+                quake("d", 1.0, NOW, NOW),
+                quake("e", 7.0, NOW - 2 * DAY, NOW));
+
+        List<Quake> merged = IncrementalSync.merge(cached, updates, URL, 3);
+        assertEquals(Arrays.asList("d", "a", "b"), ids(merged));
+        assertEquals(3.5, merged.get(2).getQuakeMagnitude(), 0);
+
+        List<Quake> strongest = IncrementalSync.merge(cached, updates,
+                URL.replace("orderby=time", "orderby=magnitude"), 3);
+        assertEquals(Arrays.asList("c", "b", "a"), ids(strongest));
+    }
+
+    @Test
+    public void mergeDropsDeletedEvents() {
+        List<Quake> cached = Arrays.asList(
+                quake("a", 2.0, NOW - HOUR, NOW - HOUR),
+                quake("b", 3.0, NOW - 2 * HOUR, NOW - 2 * HOUR));
+        List<Quake> updates = Arrays.asList(
+                Quake.deleted("a", NOW - HOUR, NOW),
+                // Deleting an event the result never held changes nothing
+                Quake.deleted("z", NOW - HOUR, NOW));
+        assertEquals(Arrays.asList("b"), ids(IncrementalSync.merge(cached, updates, URL, 3)));
+        assertEquals(NOW, IncrementalSync.cursorOf(updates));
+    }
+
+    @Test
+    public void syncLearnsOfDeletionsFromServer() throws Exception {
+        String url = mServer.getQueryUrl() + "?format=geojson&limit=20&orderby=time";
+        List<Quake> full = QueryUtils.fetchEarthquakeData(url);
+        long cursor = IncrementalSync.cursorOf(full);
+
+        // USGS deletes the newest event, revising it one last time
+        Quake newest = full.get(0);
+        mServer.close();
+        List<JSONObject> catalog = new ArrayList<>();
+        for (JSONObject feature : mCatalog) {
+            if (feature.getString("id").equals(newest.getQuakeId())) {
+                feature = new JSONObject(feature.toString());
+                feature.getJSONObject("properties")
+                        .put("status", "deleted").put("updated", cursor + 1000);
+            }
+            catalog.add(feature);
+        }
+        mServer = new UsgsStandInServer(catalog, 7);
+        url = mServer.getQueryUrl() + "?format=geojson&limit=20&orderby=time";
+
+        List<Quake> updates = QueryUtils.fetchEarthquakeData(
+                IncrementalSync.updatesUrl(url, cursor));
+        assertEquals(1, updates.size());
+        assertTrue(updates.get(0).isDeleted());
+        assertEquals(newest.getQuakeId(), updates.get(0).getQuakeId());
+
+        List<Quake> merged = IncrementalSync.merge(full, updates, url, 20);
+        assertEquals(full.subList(1, full.size()), merged.subList(0, 19));
+        // A full query no longer lists it
+        assertEquals(ids(QueryUtils.fetchEarthquakeData(url)).subList(0, 19), ids(merged));
+    }
+
+    @Test
+    public void syncFetchesOnlyRevisionsFromServer() {
+        String url = mServer.getQueryUrl() + "?format=geojson&limit=100&orderby=time";
+        List<Quake> full = QueryUtils.fetchEarthquakeData(url);
+        assertEquals(100, full.size());
+
+        // Nothing has been revised since the newest revision already fetched
+        long cursor = IncrementalSync.cursorOf(full);
+        List<Quake> updates = QueryUtils.fetchEarthquakeData(
+                IncrementalSync.updatesUrl(url, cursor));
+        assertTrue(updates.isEmpty());
+
+        // Events revised after an earlier cursor are all that comes back
+        long earlier = cursor - 6 * HOUR;
+        updates = QueryUtils.fetchEarthquakeData(IncrementalSync.updatesUrl(url, earlier));
+        assertTrue(!updates.isEmpty() && updates.size() < full.size());
+        for (Quake quake : updates) {
+            assertTrue(quake.getQuakeUpdated() > earlier);
+        }
+        assertEquals(ids(full), ids(IncrementalSync.merge(full, updates, url, 100)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,303 @@
+package com.gumgoose.app.quakebuddy;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * {@link SqlConnection} on the JVM through the SQLite JDBC driver, so the database layer's
+ * schema, statements and queries run against the same engine as on a device
+ */
+public final class JdbcSqlConnection implements SqlConnection {
+
+    private final Connection mConnection;
+    private int mTransactionDepth;
+    private boolean mSuccessful;
+    private boolean mMarked;
+
+    private JdbcSqlConnection(Connection connection) {
+        mConnection = connection;
+    }
+
+    /**
+     * Open a database file in write-ahead logging mode, as the app does
+     *
+     * @param file is the database file, created if it does not exist
+     * @return     the connection
+     */
+    public static JdbcSqlConnection open(File file) {
+        try {
+            JdbcSqlConnection db = new JdbcSqlConnection(
+                    DriverManager.getConnection("jdbc:sqlite:" + file.getPath()));
+            db.execute("PRAGMA journal_mode=WAL");
+            return db;
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param file is the database file
+     * @return     an opener that opens the file and brings its schema up to date
+     */
+    public static SqlConnection.Opener opener(final File file) {
+        return new SqlConnection.Opener() {
+            @Override
+            public SqlConnection open() {
+                JdbcSqlConnection db = JdbcSqlConnection.open(file);
+                QuakeSchema.migrate(db);
+                return db;
+            }
+        };
+    }
+
+    public void close() {
+        try {
+            mConnection.close();
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void execute(String sql) {
+        try {
+            // The nested Statement of SqlConnection hides java.sql.Statement here
+            java.sql.Statement statement = mConnection.createStatement();
+            try {
+                statement.execute(sql);
+            }
+            finally {
+                statement.close();
+            }
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    @Override
+    public SqlConnection.Statement prepare(final String sql) {
+        final PreparedStatement statement;
+        try {
+            statement = mConnection.prepareStatement(sql);
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+        return new SqlConnection.Statement() {
+            @Override
+            public void bindString(int index, String value) {
+                try {
+                    statement.setString(index, value);
+                }
+                catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void bindLong(int index, long value) {
+                try {
+                    statement.setLong(index, value);
+                }
+                catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void bindDouble(int index, double value) {
+                try {
+                    statement.setDouble(index, value);
+                }
+                catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void bindNull(int index) {
+                try {
+                    statement.setNull(index, Types.NULL);
+                }
+                catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void clearBindings() {
+                try {
+                    statement.clearParameters();
+                }
+                catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public int executeUpdate() {
+                try {
+                    return statement.executeUpdate();
+                }
+                catch (SQLException e) {
+                    throw new IllegalStateException(sql, e);
+                }
+            }
+
+            @Override
+            public void close() {
+                try {
+                    statement.close();
+                }
+                catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Rows query(String sql, String... args) {
+        try {
+            PreparedStatement statement = mConnection.prepareStatement(sql);
+            for (int i = 0; i < args.length; i++) {
+                statement.setString(i + 1, args[i]);
+            }
+            final ResultSet results = statement.executeQuery();
+            return new Rows() {
+                @Override
+                public boolean moveToNext() {
+                    try {
+                        return results.next();
+                    }
+                    catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public String getString(int column) {
+                    try {
+                        return results.getString(column + 1);
+                    }
+                    catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public long getLong(int column) {
+                    try {
+                        return results.getLong(column + 1);
+                    }
+                    catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public double getDouble(int column) {
+                    try {
+                        return results.getDouble(column + 1);
+                    }
+                    catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public boolean isNull(int column) {
+                    try {
+                        results.getObject(column + 1);
+                        return results.wasNull();
+                    }
+                    catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public void close() {
+                    try {
+                        results.getStatement().close();
+                    }
+                    catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    /**
+     * Transactions nest as on a device: only the outermost one commits, and it rolls back
+     * if any nested one was not marked successful
+     */
+    @Override
+    public void beginTransaction() {
+        try {
+            if (mTransactionDepth == 0) {
+                mConnection.setAutoCommit(false);
+                mSuccessful = true;
+            }
+            mTransactionDepth++;
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        mMarked = true;
+    }
+
+    @Override
+    public void endTransaction() {
+        mSuccessful &= mMarked;
+        mMarked = false;
+        mTransactionDepth--;
+        if (mTransactionDepth > 0) {
+            return;
+        }
+        try {
+            if (mSuccessful) {
+                mConnection.commit();
+            }
+            else {
+                mConnection.rollback();
+            }
+            mConnection.setAutoCommit(true);
+        }
+        catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int getVersion() {
+        Rows rows = query("PRAGMA user_version");
+        try {
+            return rows.moveToNext() ? (int) rows.getLong(0) : 0;
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    @Override
+    public void setVersion(int version) {
+        execute("PRAGMA user_version = " + version);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MagnitudeCirclesTest {
+
+    @Test
+    public void bucketsByWholeMagnitude() {
+        assertEquals(1, MagnitudeCircles.bucketOf(0.4));
+        assertEquals(1, MagnitudeCircles.bucketOf(1.99));
+        assertEquals(2, MagnitudeCircles.bucketOf(2.0));
+        assertEquals(4, MagnitudeCircles.bucketOf(4.95));
+        assertEquals(9, MagnitudeCircles.bucketOf(9.5));
+        assertEquals(10, MagnitudeCircles.bucketOf(10.0));
+        assertEquals(10, MagnitudeCircles.bucketOf(12.3));
+        // Negative and unknown magnitudes get the weakest color, not the strongest
+        assertEquals(1, MagnitudeCircles.bucketOf(-0.8));
+        assertEquals(1, MagnitudeCircles.bucketOf(Double.NaN));
+    }
+
+    @Test
+    public void everyBucketHasItsOwnColor() {
+        Set<Integer> resources = new HashSet<>();
+        for (int bucket = 1; bucket < MagnitudeCircles.BUCKETS; bucket++) {
+            assertTrue(resources.add(MagnitudeCircles.colorResourceOf(bucket)));
+        }
+        assertEquals(R.color.magnitude1, MagnitudeCircles.colorResourceOf(1));
+        assertEquals(R.color.magnitude10plus,
+                MagnitudeCircles.colorResourceOf(MagnitudeCircles.bucketOf(11)));
+        assertTrue(MagnitudeCircles.TSUNAMI < 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    @Test
+    public void countsRequestsAndRefreshes() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.recordRequest(FetchOutcome.Kind.SUCCESS, 120, 50000, 8000);
+        metrics.recordRequest(FetchOutcome.Kind.SERVER_ERROR, 40, -1, -1);
+        metrics.recordRefresh(FetchOutcome.Kind.SUCCESS, 300, 25);
+        metrics.recordRefresh(FetchOutcome.Kind.TIMEOUT, 10000, -1);
+
+        assertEquals(1, metrics.getRequestCount(FetchOutcome.Kind.SUCCESS));
+        assertEquals(1, metrics.getRequestCount(FetchOutcome.Kind.SERVER_ERROR));
+        assertEquals(1, metrics.getRefreshCount(FetchOutcome.Kind.TIMEOUT));
+        assertEquals(2, metrics.getHistogram(Metrics.Series.FETCH_MILLIS).getCount());
+        // Failed requests have no body to measure
+        assertEquals(1, metrics.getHistogram(Metrics.Series.PAYLOAD_BYTES).getCount());
+        assertEquals(1, metrics.getHistogram(Metrics.Series.PARSE_MICROS).getCount());
+        assertEquals(2, metrics.getHistogram(Metrics.Series.LOAD_MILLIS).getCount());
+        assertEquals(25, metrics.getHistogram(Metrics.Series.REFRESH_EVENTS).getMax());
+
+        JSONObject json = metrics.toJson();
+        assertEquals(1, json.getJSONObject("requests").getLong("server_error"));
+        assertFalse(json.getJSONObject("requests").has("timeout"));
+        assertEquals(1, json.getJSONObject("refreshes").getLong("timeout"));
+        assertEquals(10000, json.getJSONObject("histograms").getJSONObject("load_ms")
+                .getLong("max"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getRequestCount(FetchOutcome.Kind.SUCCESS));
+        assertEquals(0, metrics.getHistogram(Metrics.Series.FETCH_MILLIS).getCount());
+    }
+
+    @Test
+    public void reportsCacheHitRates() throws Exception {
+        Metrics metrics = new Metrics();
+        MemoryCache<String, String> cache = new MemoryCache<>(1024,
+                new MemoryCache.Weigher<String, String>() {
+                    @Override
+                    public int weigh(String key, String value) {
+                        return value.length();
+                    }
+                });
+        metrics.registerCache("names", cache);
+        assertTrue(metrics.getCacheHitRates().get("names").isNaN());
+
+        cache.put("a", "alpha");
+        cache.get("a");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        assertEquals(0.75, metrics.getCacheHitRates().get("names"), 1e-9);
+        JSONObject names = metrics.toJson().getJSONObject("caches").getJSONObject("names");
+        assertEquals(3, names.getLong("hits"));
+        assertEquals(1, names.getLong("misses"));
+    }
+
+    @Test
+    public void timesEveryRequest() throws Exception {
+        UsgsStandInServer server =
+                new UsgsStandInServer(SyntheticCatalog.generate(5, 40, NOW, DAY), 5);
+        try {
+            Metrics metrics = Metrics.getInstance();
+            long successes = metrics.getRequestCount(FetchOutcome.Kind.SUCCESS);
+            long errors = metrics.getRequestCount(FetchOutcome.Kind.SERVER_ERROR);
+            long payloads = metrics.getHistogram(Metrics.Series.PAYLOAD_BYTES).getCount();
+
+            server.enqueueFaults(UsgsStandInServer.Fault.SERVER_ERROR);
+            String url = server.getQueryUrl() + "?format=geojson&limit=20";
+            assertFalse(QueryUtils.fetchEarthquakes(url).isSuccess());
+            List<Quake> earthquakes = QueryUtils.fetchEarthquakeData(url);
+            assertEquals(20, earthquakes.size());
+
+            // At least, as the counters are shared with anything else still running
+            assertTrue(metrics.getRequestCount(FetchOutcome.Kind.SUCCESS) > successes);
+            assertTrue(metrics.getRequestCount(FetchOutcome.Kind.SERVER_ERROR) > errors);
+            assertTrue(metrics.getHistogram(Metrics.Series.PAYLOAD_BYTES).getCount() > payloads);
+            assertTrue(metrics.getHistogram(Metrics.Series.PAYLOAD_BYTES).getMax() > 1000);
+        }
+        finally {
+            server.close();
+        }
+    }
+}
\ No newline at end of file
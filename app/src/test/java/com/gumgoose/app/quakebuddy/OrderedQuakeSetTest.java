@@ -0,0 +1,216 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedQuakeSetTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long NOW = 1500000000000L;
+
+    private static List<String> ids(List<Quake> quakes) {
+        List<String> ids = new ArrayList<>();
+        for (Quake quake : quakes) {
+            ids.add(quake.getQuakeId());
+        }
+        return ids;
+    }
+
+    /**
+     * Replays the listener's positional changes on a plain list, as the adapter does
+     */
+    private static class Replay implements OrderedQuakeSet.OnChangeListener {
+        final List<Quake> mRows = new ArrayList<>();
+        int mChanges;
+
+        @Override
+        public void onInserted(int position, Quake quake) {
+            mRows.add(position, quake);
+            mChanges++;
+        }
+
+        @Override
+        public void onRemoved(int position, Quake quake) {
+            assertEquals(quake.getQuakeId(), mRows.remove(position).getQuakeId());
+            mChanges++;
+        }
+
+        @Override
+        public void onMoved(int from, int to, Quake quake) {
+            assertEquals(quake.getQuakeId(), mRows.remove(from).getQuakeId());
+            mRows.add(to, quake);
+            mChanges++;
+        }
+
+        @Override
+        public void onChanged(int position, Quake quake) {
+            assertEquals(quake.getQuakeId(), mRows.set(position, quake).getQuakeId());
+            mChanges++;
+        }
+    }
+
+    @Test
+    public void keepsBothOrders() {
+        OrderedQuakeSet set = new OrderedQuakeSet(OrderedQuakeSet.Order.NEWEST_FIRST);
+        assertTrue(set.put(quake("a", 3.0, NOW - 3 * HOUR)));
+        assertTrue(set.put(quake("b", 5.0, NOW - HOUR)));
+        assertTrue(set.put(quake("c", 4.0, NOW - 2 * HOUR)));
+        assertTrue(set.put(quake("d", 5.0, NOW)));
+
+        assertEquals(Arrays.asList("d", "b", "c", "a"),
+                ids(set.toList(OrderedQuakeSet.Order.NEWEST_FIRST, 10)));
+        assertEquals(Arrays.asList("d", "b", "c", "a"),
+                ids(set.toList(OrderedQuakeSet.Order.STRONGEST_FIRST, 10)));
+        assertEquals(Arrays.asList("d", "b"),
+                ids(set.toList(OrderedQuakeSet.Order.NEWEST_FIRST, 2)));
+        assertEquals("c", set.get(OrderedQuakeSet.Order.NEWEST_FIRST, 2).getQuakeId());
+        assertEquals(3, set.positionOf(OrderedQuakeSet.Order.STRONGEST_FIRST, "a"));
+        assertEquals(-1, set.positionOf(OrderedQuakeSet.Order.STRONGEST_FIRST, "x"));
+        assertEquals(2, set.countAtLeast(5.0));
+        assertEquals(3, set.countAtLeast(3.5));
+        assertEquals(3, set.countSince(NOW - 2 * HOUR));
+    }
+
+    @Test
+    public void revisesInPlaceOrMoves() {
+        OrderedQuakeSet set = new OrderedQuakeSet(OrderedQuakeSet.Order.STRONGEST_FIRST);
+        Replay replay = new Replay();
+        set.setOnChangeListener(replay);
+        set.putAll(Arrays.asList(quake("a", 3.0, NOW - 3 * HOUR), quake("b", 5.0, NOW - HOUR),
+                quake("c", 4.0, NOW - 2 * HOUR)));
+        assertEquals(Arrays.asList("b", "c", "a"), ids(replay.mRows));
+
+        // Same magnitude and time, only the row's contents change
+        Quake revised = quake("c", 4.0, NOW - 2 * HOUR, NOW);
+        assertFalse(set.put(revised));
+        assertTrue(replay.mRows.get(1) == revised);
+
+        // Upgraded past every other earthquake
+        assertFalse(set.put(quake("a", 6.0, NOW - 3 * HOUR, NOW)));
+        assertEquals(Arrays.asList("a", "b", "c"), ids(replay.mRows));
+        assertEquals(3, set.size());
+        assertEquals(Arrays.asList("b", "c", "a"),
+                ids(set.toList(OrderedQuakeSet.Order.NEWEST_FIRST, 10)));
+
+        // The same revision, loaded again, is no change at all
+        int changes = replay.mChanges;
+        set.put(revised);
+        set.put(quake("c", 4.0, NOW - 2 * HOUR, NOW));
+        assertEquals(changes, replay.mChanges);
+        assertTrue(replay.mRows.get(2) == revised);
+
+        assertEquals("b", set.remove("b").getQuakeId());
+        assertNull(set.remove("b"));
+        assertEquals(Arrays.asList("a", "c"), ids(replay.mRows));
+    }
+
+    @Test
+    public void removesAgedOutEarthquakes() {
+        OrderedQuakeSet set = new OrderedQuakeSet(OrderedQuakeSet.Order.NEWEST_FIRST);
+        for (int i = 0; i < 10; i++) {
+            set.put(quake("e" + i, 2.5, NOW - i * HOUR));
+        }
+        // Earthquakes at the cut-off time stay
+        assertEquals(4, set.removeOlderThan(NOW - 5 * HOUR));
+        assertEquals(6, set.size());
+        assertEquals("e5", set.get(OrderedQuakeSet.Order.NEWEST_FIRST, 5).getQuakeId());
+        assertEquals(0, set.removeOlderThan(NOW - 5 * HOUR));
+    }
+
+    @Test
+    public void keepsUnidentifiedEarthquakesApart() {
+        OrderedQuakeSet set = new OrderedQuakeSet(OrderedQuakeSet.Order.NEWEST_FIRST);
+        set.put(quake(null, 3.0, NOW));
+        set.put(quake(null, 3.0, NOW));
+        set.put(quake("a", 3.0, NOW));
+        assertEquals(3, set.size());
+        set.replaceWith(Collections.singletonList(quake(null, 2.0, NOW - HOUR)));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void detectsTheOrderOfAList() {
+        assertEquals(OrderedQuakeSet.Order.NEWEST_FIRST, OrderedQuakeSet.Order.of(Arrays.asList(
+                quake("a", 3.0, NOW), quake("b", 5.0, NOW - HOUR))));
+        assertEquals(OrderedQuakeSet.Order.STRONGEST_FIRST, OrderedQuakeSet.Order.of(
+                Arrays.asList(quake("a", 5.0, NOW - HOUR), quake("b", 3.0, NOW))));
+        assertNull(OrderedQuakeSet.Order.of(Arrays.asList(quake("a", 3.0, NOW - HOUR),
+                quake("b", 5.0, NOW), quake("c", 4.0, NOW - 2 * HOUR))));
+        assertEquals(OrderedQuakeSet.Order.STRONGEST_FIRST,
+                OrderedQuakeSet.Order.forUrl("http://x/query?orderby=magnitude&limit=5"));
+        assertEquals(OrderedQuakeSet.Order.NEWEST_FIRST,
+                OrderedQuakeSet.Order.forUrl("http://x/query?limit=5"));
+    }
+
+    @Test
+    public void matchesSortingUnderRandomChanges() {
+        Random random = new Random(5);
+        for (OrderedQuakeSet.Order order : OrderedQuakeSet.Order.values()) {
+            OrderedQuakeSet set = new OrderedQuakeSet(order);
+            Replay replay = new Replay();
+            set.setOnChangeListener(replay);
+            Map<String, Quake> expected = new HashMap<>();
+            for (int step = 0; step < 5000; step++) {
+                String id = "e" + random.nextInt(300);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(id) != null, set.remove(id) != null);
+                }
+                else {
+                    // Coarse times and magnitudes, so there are plenty of ties
+                    Quake quake = quake(id, random.nextInt(20) / 2.0,
+                            NOW - random.nextInt(50) * HOUR, NOW + step);
+                    assertEquals(!expected.containsKey(id), set.put(quake));
+                    expected.put(id, quake);
+                }
+            }
+            List<Quake> sorted = new ArrayList<>(expected.values());
+            Collections.sort(sorted, order.comparator());
+            List<Quake> actual = set.toList(order, Integer.MAX_VALUE);
+            assertEquals(sorted.size(), actual.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                // Ties may be broken either way, the sort keys must agree
+                assertEquals(0, order.comparator().compare(sorted.get(i), actual.get(i)));
+                assertEquals(i, set.positionOf(order, actual.get(i).getQuakeId()));
+                assertTrue(actual.get(i) == set.get(order, i));
+            }
+            assertEquals(ids(actual), ids(replay.mRows));
+        }
+    }
+
+    @Test
+    public void replaceWithTouchesOnlyChangedRows() {
+        List<Quake> shown = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            shown.add(quake("e" + i, 2.5, NOW - i * HOUR));
+        }
+        OrderedQuakeSet set = new OrderedQuakeSet(OrderedQuakeSet.Order.NEWEST_FIRST);
+        set.putAll(shown);
+        Replay replay = new Replay();
+        replay.mRows.addAll(set.toList(OrderedQuakeSet.Order.NEWEST_FIRST, 100));
+        set.setOnChangeListener(replay);
+
+        // A refresh: one new earthquake on top, one revised, the oldest aged out
+        List<Quake> refreshed = new ArrayList<>();
+        refreshed.add(quake("new", 4.0, NOW + HOUR));
+        refreshed.addAll(shown.subList(0, 99));
+        refreshed.set(10, quake("e9", 3.1, NOW - 9 * HOUR, NOW));
+        set.replaceWith(refreshed);
+
+        assertEquals(3, replay.mChanges);
+        assertEquals(ids(refreshed), ids(replay.mRows));
+        assertEquals(10, set.positionOf(OrderedQuakeSet.Order.NEWEST_FIRST, "e9"));
+    }
+}
\ No newline at end of file
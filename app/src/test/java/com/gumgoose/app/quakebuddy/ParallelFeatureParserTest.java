@@ -0,0 +1,142 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that {@link ParallelFeatureParser} finds every feature and parses a response into
+ * the same earthquakes, in the same order, as the serial parser
+ */
+public class ParallelFeatureParserTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the features as a USGS FeatureCollection with metadata before the features
+     */
+    static String collectionOf(List<JSONObject> features) {
+        StringBuilder json = new StringBuilder(1024 * features.size() + 256);
+        json.append("{\"type\":\"FeatureCollection\",\"metadata\":{\"title\":\"Test {features}\","
+                + "\"count\":").append(features.size()).append("},\"features\":[");
+        for (int i = 0; i < features.size(); i++) {
+            if (i > 0) {
+                json.append(",\n");
+            }
+            json.append(features.get(i).toString());
+        }
+        return json.append("],\"bbox\":[-180,-90,0,180,90,700]}").toString();
+    }
+
+    private static void assertSameEarthquakes(List<Quake> expected, List<Quake> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Quake a = expected.get(i);
+            Quake b = actual.get(i);
+            assertEquals(a.getQuakeId(), b.getQuakeId());
+            assertEquals(a.getQuakeMagnitude(), b.getQuakeMagnitude(), 0);
+            assertEquals(a.getQuakeUnixTime(), b.getQuakeUnixTime());
+            assertEquals(a.getQuakeLocation(), b.getQuakeLocation());
+            assertEquals(a.getLatitude(), b.getLatitude(), 0);
+        }
+    }
+
+    @Test
+    public void findsEveryFeature() {
+        String json = "{\"metadata\":{\"note\":\"\\\"features\\\": [1]\"},\"features\" : [ "
+                + "{\"id\":\"a\",\"properties\":{\"place\":\"} of {\"}},"
+                + "{\"id\":\"b\",\"geometry\":{\"coordinates\":[1,[2]]}} ]}";
+        int[] bounds = ParallelFeatureParser.featureBounds(json);
+        assertEquals(4, bounds.length);
+        assertEquals("{\"id\":\"a\",\"properties\":{\"place\":\"} of {\"}}",
+                json.substring(bounds[0], bounds[1]));
+        assertEquals("{\"id\":\"b\",\"geometry\":{\"coordinates\":[1,[2]]}}",
+                json.substring(bounds[2], bounds[3]));
+        assertArrayEquals(new int[0], ParallelFeatureParser.featureBounds("{\"features\":[]}"));
+    }
+
+    @Test
+    public void rejectsWhatIsNotAPlainCollection() {
+        // Cut off, without features, and with a feature that is not an object
+        assertNull(ParallelFeatureParser.featureBounds("{\"features\":[{\"id\":\"a\"},{\"id"));
+        assertNull(ParallelFeatureParser.featureBounds("{\"features\":[{\"id\":\"a\"}"));
+        assertNull(ParallelFeatureParser.featureBounds("{\"type\":\"FeatureCollection\"}"));
+        assertNull(ParallelFeatureParser.featureBounds("{\"features\":[{},\"feature\"]}"));
+        assertNull(ParallelFeatureParser.featureBounds("{\"features\":[{},null]}"));
+        assertNull(ParallelFeatureParser.featureBounds("<html>Maintenance</html>"));
+        assertNull(ParallelFeatureParser.featureBounds(null));
+    }
+
+    @Test
+    public void parsesLikeTheSerialParser() {
+        String json = collectionOf(SyntheticCatalog.generate(3, 2000, NOW, DAY));
+        ParseReport serialReport = new ParseReport();
+        List<Quake> serial = QueryUtils.extractFeatureFromJson(json, serialReport);
+        for (int chunks : new int[] {1, 3, 16, 5000}) {
+            ParseReport report = new ParseReport();
+            List<Quake> parallel = ParallelFeatureParser.parse(json, report, mExecutor, chunks);
+            assertSameEarthquakes(serial, parallel);
+            assertEquals(2000, report.getFeatureCount());
+        }
+        assertEquals(2000, serialReport.getFeatureCount());
+    }
+
+    @Test
+    public void mergesTheReportsOfEveryChunk() {
+        StringBuilder json = new StringBuilder("{\"features\":[");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            // Every tenth feature has no magnitude, every third no place
+            json.append("{\"id\":\"e").append(i).append("\",\"properties\":{")
+                    .append(i % 10 == 0 ? "" : "\"mag\":4.0,")
+                    .append("\"place\":").append(i % 3 == 0 ? "null" : "\"Here\"")
+                    .append(",\"time\":").append(NOW + i).append("}}");
+        }
+        String body = json.append("]}").toString();
+        ParseReport serialReport = new ParseReport();
+        List<Quake> serial = QueryUtils.extractFeatureFromJson(body, serialReport);
+        ParseReport report = new ParseReport();
+        List<Quake> parallel = ParallelFeatureParser.parse(body, report, mExecutor, 7);
+        assertSameEarthquakes(serial, parallel);
+        assertEquals(90, parallel.size());
+        assertEquals(serialReport.toString(), report.toString());
+        // The chunks' place names are interned once merged, so every chunk shares one String
+        String here = serial.get(0).getQuakeLocation();
+        for (Quake quake : parallel) {
+            if (here.equals(quake.getQuakeLocation())) {
+                assertSame(here, quake.getQuakeLocation());
+            }
+        }
+    }
+
+    @Test
+    public void leavesBrokenBodiesToTheSerialParser() {
+        ParseReport report = new ParseReport();
+        // Balanced, so the features are found, but the second is not valid JSON
+        assertNull(ParallelFeatureParser.parse("{\"features\":[{\"id\":\"a\"},{\"id\" \"b\"}]}",
+                report, mExecutor, 2));
+        assertNull(ParallelFeatureParser.parse("{\"features\":[{\"id\":\"a\"},{\"id",
+                report, mExecutor, 2));
+        assertEquals(0, report.getFeatureCount());
+    }
+}
\ No newline at end of file
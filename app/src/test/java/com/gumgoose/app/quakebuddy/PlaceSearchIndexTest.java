@@ -0,0 +1,148 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceSearchIndexTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long NOW = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static Quake quake(String id, String place, long time) {
+        return new Quake(2.5, place, time, 0, null, id, time, null,
+                Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    private static List<String> ids(List<Quake> quakes) {
+        List<String> ids = new ArrayList<>();
+        for (Quake quake : quakes) {
+            ids.add(quake.getQuakeId());
+        }
+        return ids;
+    }
+
+    private static PlaceSearchIndex sample() {
+        PlaceSearchIndex index = new PlaceSearchIndex();
+        index.addAll(Arrays.asList(
+                quake("a", "10km NE of Anchorage, Alaska", NOW - 5 * HOUR),
+                quake("b", "Alaska Peninsula", NOW - 4 * HOUR),
+                quake("c", "5km S of Volcano, Hawaii", NOW - 3 * HOUR),
+                quake("d", "Off the coast of Oregon", NOW - 2 * HOUR),
+                quake("e", "12km W of Ciudad Hidalgo, M\u00e9xico", NOW - HOUR)));
+        return index;
+    }
+
+    @Test
+    public void tokenizesPlaceNames() {
+        assertEquals(Arrays.asList("10km", "ne", "of", "anchorage", "alaska"),
+                PlaceSearchIndex.tokenize("10km NE of Anchorage, Alaska"));
+        assertEquals(Arrays.asList("ciudad", "hidalgo", "mexico"),
+                PlaceSearchIndex.tokenize("Ciudad Hidalgo, M\u00e9xico"));
+        assertTrue(PlaceSearchIndex.tokenize(" , ").isEmpty());
+    }
+
+    @Test
+    public void matchesEveryWordAsPrefixNewestFirst() {
+        PlaceSearchIndex index = sample();
+        assertEquals(Arrays.asList("b", "a"), ids(index.search("alas", 0, 10)));
+        assertEquals(Collections.singletonList("a"), ids(index.search("Alaska anch", 0, 10)));
+        assertEquals(Collections.singletonList("e"), ids(index.search("mexi", 0, 10)));
+        assertEquals(Collections.singletonList("d"), ids(index.search("oregon coast", 0, 10)));
+        assertTrue(index.search("alaska hawaii", 0, 10).isEmpty());
+        assertTrue(index.search("", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void ignoresDistancesAndDirections() {
+        PlaceSearchIndex index = sample();
+        assertTrue(index.search("ne", 0, 10).isEmpty());
+        assertTrue(index.search("10km", 0, 10).isEmpty());
+        // Still a prefix of other words
+        assertEquals(Collections.singletonList("d"), ids(index.search("of", 0, 10)));
+    }
+
+    @Test
+    public void appliesTimeAndLimit() {
+        PlaceSearchIndex index = sample();
+        index.add(quake("f", "Alaska Peninsula", NOW));
+        assertEquals(Arrays.asList("f", "b"), ids(index.search("alaska", NOW - 4 * HOUR, 10)));
+        assertEquals(Collections.singletonList("f"), ids(index.search("alaska", 0, 1)));
+    }
+
+    @Test
+    public void replacesRevisedEvents() {
+        PlaceSearchIndex index = sample();
+        index.add(quake("a", "20km N of Homer, Alaska", NOW - 5 * HOUR));
+        assertEquals(5, index.size());
+        assertTrue(index.search("anchorage", 0, 10).isEmpty());
+        assertEquals(Collections.singletonList("a"), ids(index.search("homer", 0, 10)));
+    }
+
+    @Test
+    public void compactsAfterManyRevisions() {
+        PlaceSearchIndex index = new PlaceSearchIndex();
+        for (int round = 0; round < 5; round++) {
+            List<Quake> batch = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                batch.add(quake("e" + i, "Place" + i + " round" + round, NOW - i));
+            }
+            index.addAll(batch);
+        }
+        assertEquals(1000, index.size());
+        assertTrue(index.search("round0", 0, 10).isEmpty());
+        assertEquals(Collections.singletonList("e999"), ids(index.search("place999 round4", 0, 10)));
+        assertEquals(10, index.search("round4", 0, 10).size());
+    }
+
+    @Test
+    public void followsHistoryMerges() throws Exception {
+        final PlaceSearchIndex index = new PlaceSearchIndex();
+        File file = new File(mFolder.getRoot(), "history.qbev");
+        new EventHistory(file).merge(QuakeReader.of(Collections.singletonList(
+                quake("x", "Norcia, Italy", NOW - HOUR))));
+        EventHistory history = new EventHistory(file) {
+            @Override
+            public synchronized QuakeReader openReader() throws IOException {
+                QuakeReader reader = super.openReader();
+                // A refresh merged after the file was opened is missing from the read
+                index.onHistoryMerged(Collections.singletonList(
+                        quake("y", "Amatrice, Italy", NOW)));
+                return reader;
+            }
+        };
+
+        // Not yet built from the history, merges are left for the build to pick up
+        index.onHistoryMerged(Collections.singletonList(quake("w", "Visso, Italy", NOW)));
+        assertEquals(0, index.size());
+        assertFalse(index.isBuilt());
+
+        index.ensureBuilt(history);
+        assertTrue(index.isBuilt());
+        assertEquals(Arrays.asList("y", "x"), ids(index.search("italy", 0, 10)));
+        assertEquals(Collections.singletonList("y"), ids(index.search("amat", 0, 10)));
+
+        // Once built, every merge is searchable straight away
+        index.onHistoryMerged(Collections.singletonList(quake("z", "Accumoli, Italy", NOW)));
+        assertEquals(Collections.singletonList("z"), ids(index.search("accu", 0, 10)));
+        assertEquals(3, index.size());
+
+        // An import has to be read again
+        index.onHistoryMerged(null);
+        assertFalse(index.isBuilt());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,335 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QuakeDatabaseTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long NOW = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<String> ids(List<Quake> quakes) {
+        List<String> ids = new ArrayList<>();
+        for (Quake quake : quakes) {
+            ids.add(quake.getQuakeId());
+        }
+        return ids;
+    }
+
+    private File file() {
+        return new File(mFolder.getRoot(), "quakes.db");
+    }
+
+    @Test
+    public void createsSchemaAtCurrentVersion() {
+        JdbcSqlConnection db = JdbcSqlConnection.open(file());
+        try {
+            assertEquals(0, db.getVersion());
+            QuakeSchema.migrate(db);
+            assertEquals(QuakeSchema.VERSION, db.getVersion());
+            // Running the migrations again is a no-op
+            QuakeSchema.migrate(db);
+            assertEquals(QuakeSchema.VERSION, db.getVersion());
+
+            List<String> indices = new ArrayList<>();
+            SqlConnection.Rows rows = db.query(
+                    "SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?",
+                    QuakeSchema.TABLE_QUAKES);
+            while (rows.moveToNext()) {
+                indices.add(rows.getString(0));
+            }
+            rows.close();
+            assertTrue(indices.containsAll(
+                    Arrays.asList("quakes_event_id", "quakes_time", "quakes_magnitude")));
+        }
+        finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void migratesOneVersionAtATime() {
+        JdbcSqlConnection db = JdbcSqlConnection.open(file());
+        try {
+            QuakeSchema.migrate(db);
+            new QuakeDatabase(reopen(db)).insertAll(
+                    Collections.singletonList(quake("a", 4.0, NOW, 1)));
+
+            // A later version adds a column; the rows of the earlier version are kept
+            String[][] migrations = Arrays.copyOf(QuakeSchema.MIGRATIONS,
+                    QuakeSchema.MIGRATIONS.length + 1);
+            migrations[migrations.length - 1] = new String[] {
+                    "ALTER TABLE " + QuakeSchema.TABLE_QUAKES + " ADD COLUMN felt INTEGER"};
+            QuakeSchema.migrate(db, migrations);
+            assertEquals(QuakeSchema.VERSION + 1, db.getVersion());
+            assertEquals(1, new QuakeDatabase(reopen(db)).count());
+
+            // An app older than the database refuses to touch it
+            try {
+                QuakeSchema.migrate(db);
+                fail("Downgrades must be refused");
+            }
+            catch (IllegalStateException expected) {
+                // Expected
+            }
+        }
+        finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void rollsBackFailedMigration() {
+        JdbcSqlConnection db = JdbcSqlConnection.open(file());
+        try {
+            String[][] migrations = Arrays.copyOf(QuakeSchema.MIGRATIONS,
+                    QuakeSchema.MIGRATIONS.length + 1);
+            migrations[migrations.length - 1] = new String[] {
+                    "CREATE TABLE extra (x INTEGER)", "NOT VALID SQL"};
+            // Run inside an outer transaction, as SQLiteOpenHelper runs onCreate
+            db.beginTransaction();
+            try {
+                QuakeSchema.migrate(db, migrations);
+                db.setTransactionSuccessful();
+                fail("The broken migration must fail");
+            }
+            catch (IllegalStateException expected) {
+                // Expected
+            }
+            finally {
+                db.endTransaction();
+            }
+            // The whole upgrade rolled back, including the migrations before the broken one
+            assertEquals(0, db.getVersion());
+            assertEquals(0, tables(db, "extra"));
+            assertEquals(0, tables(db, QuakeSchema.TABLE_QUAKES));
+
+            // From a database at the current version the broken migration leaves it there
+            QuakeSchema.migrate(db);
+            try {
+                QuakeSchema.migrate(db, migrations);
+                fail("The broken migration must fail");
+            }
+            catch (IllegalStateException expected) {
+                // Expected
+            }
+            assertEquals(QuakeSchema.VERSION, db.getVersion());
+            assertEquals(0, tables(db, "extra"));
+        }
+        finally {
+            db.close();
+        }
+    }
+
+    private static long tables(SqlConnection db, String name) {
+        SqlConnection.Rows rows = db.query(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?", name);
+        try {
+            rows.moveToNext();
+            return rows.getLong(0);
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    private static SqlConnection.Opener reopen(final SqlConnection db) {
+        return new SqlConnection.Opener() {
+            @Override
+            public SqlConnection open() {
+                return db;
+            }
+        };
+    }
+
+    @Test
+    public void keepsNewestRevisionOfEachEvent() {
+        QuakeDatabase database = new QuakeDatabase(JdbcSqlConnection.opener(file()));
+        assertEquals(2, database.insertAll(Arrays.asList(
+                quake("a", 4.0, NOW, 10), quake("b", 5.0, NOW - HOUR, 10))));
+
+        // A newer revision replaces the row, an older one is skipped
+        assertEquals(1, database.insertAll(Arrays.asList(
+                quake("a", 4.4, NOW, 20), quake("b", 9.9, NOW - HOUR, 5))));
+        assertEquals(2, database.count());
+        assertEquals(4.4, database.get("a").getQuakeMagnitude(), 0);
+        assertEquals(5.0, database.get("b").getQuakeMagnitude(), 0);
+        assertNull(database.get("missing"));
+    }
+
+    @Test
+    public void skipsEarthquakesWithoutAnIdAndDropsDeletedOnes() {
+        QuakeDatabase database = new QuakeDatabase(JdbcSqlConnection.opener(file()));
+        Quake anonymous = quake(null, 4.0, NOW, 10);
+        assertEquals(1, database.insertAll(Arrays.asList(anonymous, quake("a", 5.0, NOW, 10))));
+        // Nothing tells a second copy apart from a new earthquake, so none is stored
+        assertEquals(0, database.insertAll(Collections.singletonList(anonymous)));
+        assertEquals(1, database.count());
+
+        assertEquals(1, database.insertAll(
+                Collections.singletonList(Quake.deleted("a", NOW, NOW + HOUR))));
+        assertEquals(0, database.count());
+    }
+
+    @Test
+    public void roundTripsEveryField() {
+        QuakeDatabase database = new QuakeDatabase(JdbcSqlConnection.opener(file()));
+        Quake quake = new Quake(6.2, "10km SSW of Basilisa, Philippines", NOW, 1,
+                "https://earthquake.usgs.gov/earthquakes/eventpage/us1", "us1", NOW + 5,
+                "https://earthquake.usgs.gov/detail/us1.geojson", 9.98, 125.57, 10.0);
+        database.insertAll(Arrays.asList(quake,
+                new Quake(3.0, null, NOW - HOUR, 0, null, "us2", 0, null,
+                        Double.NaN, Double.NaN, Double.NaN)));
+
+        Quake read = database.get("us1");
+        assertEquals(quake.getQuakeMagnitude(), read.getQuakeMagnitude(), 0);
+        assertEquals(quake.getQuakeLocation(), read.getQuakeLocation());
+        assertEquals(quake.getQuakeUnixTime(), read.getQuakeUnixTime());
+        assertEquals(1, read.getTsunamiWarning());
+        assertEquals(quake.getQuakeURL(), read.getQuakeURL());
+        assertEquals(NOW + 5, read.getQuakeUpdated());
+        assertEquals(quake.getDetailURL(), read.getDetailURL());
+        assertEquals(9.98, read.getLatitude(), 0);
+        assertEquals(125.57, read.getLongitude(), 0);
+        assertEquals(10.0, read.getDepthKm(), 0);
+
+        // Unknown values come back as they went in
+        Quake sparse = database.get("us2");
+        assertNull(sparse.getQuakeLocation());
+        assertNull(sparse.getQuakeURL());
+        assertTrue(Double.isNaN(sparse.getLatitude()));
+        assertTrue(Double.isNaN(sparse.getDepthKm()));
+    }
+
+    @Test
+    public void queriesByTimeAndMagnitude() {
+        QuakeDatabase database = new QuakeDatabase(JdbcSqlConnection.opener(file()));
+        database.insertAll(Arrays.asList(
+                quake("a", 2.5, NOW - 4 * HOUR, 1),
+                quake("b", 6.0, NOW - 3 * HOUR, 1),
+                quake("c", 4.5, NOW - 2 * HOUR, 1),
+                quake("d", 3.0, NOW - HOUR, 1)));
+
+        assertEquals(Arrays.asList("d", "c", "b"),
+                ids(database.query(NOW - 3 * HOUR, NOW, 0, 10)));
+        assertEquals(Arrays.asList("c", "b"), ids(database.query(0, NOW, 4.5, 10)));
+        assertEquals(Collections.singletonList("d"), ids(database.query(0, NOW, 0, 1)));
+        assertEquals(Arrays.asList("b", "c"), ids(database.queryStrongest(0, NOW, 2)));
+
+        assertEquals(2, database.deleteOlderThan(NOW - 2 * HOUR));
+        assertEquals(Arrays.asList("d", "c"), ids(database.query(0, NOW, 0, 10)));
+    }
+
+    @Test
+    public void dropsEarthquakesPastTheRetention() {
+        QuakeDatabase database = new QuakeDatabase(JdbcSqlConnection.opener(file()));
+        database.insertAll(Arrays.asList(
+                quake("old", 5.0, NOW - QuakeDatabase.RETENTION_MILLIS - HOUR, 1),
+                quake("kept", 5.0, NOW - QuakeDatabase.RETENTION_MILLIS + HOUR, 1),
+                quake("new", 5.0, NOW, 1)));
+
+        assertEquals(1, database.deleteExpired(NOW));
+        assertEquals(Arrays.asList("new", "kept"), ids(database.query(0, NOW, 0, 10)));
+    }
+
+    @Test
+    public void readsWhileABulkInsertIsWritten() throws Exception {
+        final QuakeDatabase database = new QuakeDatabase(JdbcSqlConnection.opener(file()),
+                JdbcSqlConnection.opener(file()));
+        database.insertAll(Collections.singletonList(quake("a", 4.0, NOW - HOUR, 1)));
+
+        // A bulk insert that stalls halfway, inside its transaction
+        final CountDownLatch halfway = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        final List<Quake> batch = Arrays.asList(quake("b", 5.0, NOW, 1), quake("c", 6.0, NOW, 1));
+        final Collection<Quake> stalling = new AbstractCollection<Quake>() {
+            @Override
+            public Iterator<Quake> iterator() {
+                final Iterator<Quake> quakes = batch.iterator();
+                return new Iterator<Quake>() {
+                    @Override
+                    public boolean hasNext() {
+                        return quakes.hasNext();
+                    }
+
+                    @Override
+                    public Quake next() {
+                        Quake next = quakes.next();
+                        if (!quakes.hasNext()) {
+                            halfway.countDown();
+                            try {
+                                resume.await();
+                            }
+                            catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                        return next;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return batch.size();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> written = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return database.insertAll(stalling);
+                }
+            });
+            assertTrue(halfway.await(5, TimeUnit.SECONDS));
+
+            // Reads neither wait for the write nor see its uncommitted rows
+            Future<List<Quake>> read = executor.submit(new Callable<List<Quake>>() {
+                @Override
+                public List<Quake> call() {
+                    return database.query(0, NOW, 0, 10);
+                }
+            });
+            assertEquals(Collections.singletonList("a"), ids(read.get(5, TimeUnit.SECONDS)));
+
+            resume.countDown();
+            assertEquals(2, (int) written.get(5, TimeUnit.SECONDS));
+            assertEquals(3, database.count());
+        }
+        finally {
+            resume.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QuakeDetailTest {
+
+    private static final String DETAIL = "{\"type\":\"Feature\",\"id\":\"us1000abcd\","
+            + "\"properties\":{\"mag\":6.2,\"magType\":\"mww\","
+            + "\"place\":\"10km SSW of Basilisa, Philippines\",\"time\":1497484800000,"
+            + "\"felt\":120,\"cdi\":5.4,\"mmi\":6.1,\"alert\":\"yellow\","
+            + "\"status\":\"reviewed\",\"tsunami\":1,"
+            + "\"url\":\"https://earthquake.usgs.gov/earthquakes/eventpage/us1000abcd\","
+            + "\"title\":\"M 6.2 - 10km SSW of Basilisa, Philippines\","
+            + "\"products\":{\"shakemap\":[{\"properties\":{\"maxmmi\":\"6.8\"}}],"
+            + "\"dyfi\":[{}]}},"
+            + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[125.5,10.1,22.5]}}";
+
+    @Test
+    public void readsTheDetailFeed() throws Exception {
+        QuakeDetail detail = QuakeDetail.fromJson(new JSONObject(DETAIL));
+        assertEquals("M 6.2 - 10km SSW of Basilisa, Philippines", detail.getTitle());
+        assertEquals(6.2, detail.getMagnitude(), 0.0);
+        assertEquals("mww", detail.getMagnitudeType());
+        assertEquals("10km SSW of Basilisa, Philippines", detail.getPlace());
+        assertEquals(1497484800000L, detail.getUnixTime());
+        assertEquals(120, detail.getFeltReports());
+        assertEquals(5.4, detail.getCommunityIntensity(), 0.0);
+        assertEquals(6.1, detail.getInstrumentalIntensity(), 0.0);
+        assertEquals("yellow", detail.getAlertLevel());
+        assertEquals("reviewed", detail.getStatus());
+        assertEquals(1, detail.getTsunamiWarning());
+        assertEquals("https://earthquake.usgs.gov/earthquakes/eventpage/us1000abcd",
+                detail.getEventPageURL());
+
+        // GeoJSON lists longitude first
+        assertEquals(10.1, detail.getLatitude(), 0.0);
+        assertEquals(125.5, detail.getLongitude(), 0.0);
+        assertEquals(22.5, detail.getDepthKm(), 0.0);
+
+        // ShakeMap values arrive as strings
+        assertEquals(6.8, detail.getShakeMapMaxIntensity(), 0.0);
+        Collections.sort(detail.getProducts());
+        assertEquals(Arrays.asList("dyfi", "shakemap"), detail.getProducts());
+    }
+
+    @Test
+    public void marksMissingValuesAsNotReported() throws Exception {
+        QuakeDetail detail = QuakeDetail.fromJson(new JSONObject(
+                "{\"properties\":{\"mag\":2.1,\"felt\":null}}"));
+        assertEquals(2.1, detail.getMagnitude(), 0.0);
+        assertNull(detail.getTitle());
+        assertNull(detail.getAlertLevel());
+        assertEquals(QuakeDetail.NOT_REPORTED, detail.getFeltReports());
+        assertEquals(QuakeDetail.NOT_REPORTED, detail.getCommunityIntensity(), 0.0);
+        assertEquals(QuakeDetail.NOT_REPORTED, detail.getShakeMapMaxIntensity(), 0.0);
+        assertEquals(0, detail.getTsunamiWarning());
+        assertTrue(detail.getProducts().isEmpty());
+        assertTrue(Double.isNaN(detail.getLatitude()));
+        assertTrue(Double.isNaN(detail.getDepthKm()));
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsFeedsWithoutProperties() throws Exception {
+        QuakeDetail.fromJson(new JSONObject("{\"type\":\"Feature\"}"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Round trips earthquakes through the CSV, GeoJSON and binary export formats
+ */
+public class QuakeFormatTest {
+
+    private static List<Quake> sampleQuakes() {
+        return Arrays.asList(
+                new Quake(6.2, "10km SSW of Basilisa, Philippines", 1500000000000L, 1,
+                        "https://earthquake.usgs.gov/earthquakes/eventpage/us1",
+                        "us1", 1500000100000L, "https://earthquake.usgs.gov/detail/us1",
+                        9.9, 125.5, 10.25),
+                new Quake(2.1, "5km N of \"Quoted\", CA,\nline two", 1499990000000L, 0,
+                        "https://earthquake.usgs.gov/earthquakes/eventpage/ci2",
+                        "ci2", 1499990000000L, null,
+                        Double.NaN, Double.NaN, Double.NaN));
+    }
+
+    private static List<Quake> roundTrip(ExportFormat format, List<Quake> quakes)
+            throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = QuakeWriter.export(format, QuakeReader.of(quakes), Channels.newChannel(out));
+        assertEquals(quakes.size(), written);
+
+        byte[] bytes = out.toByteArray();
+        assertEquals(format, ExportFormat.sniff(bytes[0]));
+        QuakeReader reader = QuakeReader.create(format,
+                Channels.newChannel(new ByteArrayInputStream(bytes)));
+        List<Quake> read = new ArrayList<>();
+        Quake quake;
+        while ((quake = reader.next()) != null) {
+            read.add(quake);
+        }
+        reader.close();
+        return read;
+    }
+
+    private static void assertSameQuakes(List<Quake> expected, List<Quake> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Quake a = expected.get(i);
+            Quake b = actual.get(i);
+            assertEquals(a.getQuakeId(), b.getQuakeId());
+            assertEquals(a.getQuakeMagnitude(), b.getQuakeMagnitude(), 0.001);
+            assertEquals(a.getQuakeLocation(), b.getQuakeLocation());
+            assertEquals(a.getQuakeUnixTime(), b.getQuakeUnixTime());
+            assertEquals(a.getQuakeUpdated(), b.getQuakeUpdated());
+            assertEquals(a.getTsunamiWarning(), b.getTsunamiWarning());
+            assertEquals(a.getQuakeURL(), b.getQuakeURL());
+            assertEquals(a.getLatitude(), b.getLatitude(), 0.0001);
+            assertEquals(a.getLongitude(), b.getLongitude(), 0.0001);
+            assertEquals(a.getDepthKm(), b.getDepthKm(), 0.01);
+        }
+    }
+
+    @Test
+    public void csvRoundTrip() throws Exception {
+        List<Quake> quakes = sampleQuakes();
+        assertSameQuakes(quakes, roundTrip(ExportFormat.CSV, quakes));
+    }
+
+    @Test
+    public void geoJsonRoundTrip() throws Exception {
+        List<Quake> quakes = sampleQuakes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QuakeWriter.export(ExportFormat.GEOJSON, QuakeReader.of(quakes), Channels.newChannel(out));
+        byte[] bytes = out.toByteArray();
+        assertEquals(ExportFormat.GEOJSON, ExportFormat.sniff(bytes[0]));
+
+        // The streaming reader needs the framework's JsonReader, so read the file back the
+        // way a USGS response is read; the file must pass for one
+        List<Quake> read = QueryUtils.extractFeatureFromJson(new String(bytes, "UTF-8"));
+        assertSameQuakes(quakes, read);
+        assertEquals("https://earthquake.usgs.gov/detail/us1", read.get(0).getDetailURL());
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        List<Quake> quakes = sampleQuakes();
+        List<Quake> read = roundTrip(ExportFormat.BINARY, quakes);
+        assertSameQuakes(quakes, read);
+        assertNull(read.get(1).getDetailURL());
+    }
+
+    @Test
+    public void formatFromFileName() {
+        assertEquals(ExportFormat.CSV, ExportFormat.fromFileName("quakes.CSV"));
+        assertEquals(ExportFormat.GEOJSON, ExportFormat.fromFileName("quakes.json"));
+        assertEquals(ExportFormat.BINARY, ExportFormat.fromFileName("quakes.qbev"));
+    }
+}
\ No newline at end of file
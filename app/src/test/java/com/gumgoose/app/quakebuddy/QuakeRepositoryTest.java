@@ -0,0 +1,221 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QuakeRepositoryTest {
+
+    private static final long NOW = 1500000000000L;
+
+    private static Quake quake(String id, long updated) {
+        return TestQuakes.quake(id, 4.5, NOW, updated);
+    }
+
+    private static List<String> ids(List<Quake> quakes) {
+        List<String> ids = new ArrayList<>();
+        for (Quake quake : quakes) {
+            ids.add(quake.getQuakeId());
+        }
+        return ids;
+    }
+
+    /**
+     * Records every snapshot published, on the publishing thread
+     */
+    private static class Recorder implements QuakeRepository.Subscriber {
+        final List<QuakeRepository.Snapshot> mSnapshots = new ArrayList<>();
+        final List<QuakeRepository.Delta> mDeltas = new ArrayList<>();
+
+        @Override
+        public void onPublished(QuakeRepository.Snapshot snapshot, QuakeRepository.Delta delta) {
+            mSnapshots.add(snapshot);
+            mDeltas.add(delta);
+        }
+    }
+
+    @Test
+    public void publishesImmutableSnapshots() {
+        QuakeRepository repository = new QuakeRepository(1024 * 1024);
+        assertNull(repository.get("q"));
+        List<Quake> earthquakes = new ArrayList<>(Arrays.asList(quake("a", 1), quake("b", 1)));
+        QuakeRepository.Snapshot first = repository.publish("q", earthquakes);
+        earthquakes.clear();
+        assertSame(first, repository.get("q"));
+        assertEquals(Arrays.asList("a", "b"), ids(first.getEarthquakes()));
+        try {
+            first.getEarthquakes().clear();
+            fail("Snapshots must not be modifiable");
+        }
+        catch (UnsupportedOperationException expected) {
+            // Expected
+        }
+        QuakeRepository.Snapshot second =
+                repository.publish("q", Collections.singletonList(quake("c", 1)));
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals(Arrays.asList("a", "b"), ids(first.getEarthquakes()));
+    }
+
+    @Test
+    public void tellsSubscribersWhatChanged() {
+        QuakeRepository repository = new QuakeRepository(1024 * 1024);
+        Recorder recorder = new Recorder();
+        repository.subscribe(recorder, null);
+
+        repository.publish("q", Arrays.asList(quake("a", 1), quake("b", 1)));
+        assertEquals(Arrays.asList("a", "b"), ids(recorder.mDeltas.get(0).getInserted()));
+
+        repository.publish("q", Arrays.asList(quake("c", 1), quake("a", 2)));
+        QuakeRepository.Delta delta = recorder.mDeltas.get(1);
+        assertEquals(Collections.singletonList("c"), ids(delta.getInserted()));
+        assertEquals(Collections.singletonList("a"), ids(delta.getRevised()));
+        assertEquals(Collections.singletonList("b"), ids(delta.getRemoved()));
+        assertEquals(Arrays.asList("c", "a"), ids(delta.getChanged()));
+
+        // The same earthquakes again refresh the snapshot without telling anyone
+        QuakeRepository.Snapshot same =
+                repository.publish("q", Arrays.asList(quake("c", 1), quake("a", 2)));
+        assertEquals(2, recorder.mSnapshots.size());
+        assertSame(same, repository.get("q"));
+
+        repository.unsubscribe(recorder);
+        repository.publish("q", Collections.singletonList(quake("d", 1)));
+        assertEquals(2, recorder.mSnapshots.size());
+    }
+
+    @Test
+    public void runsSubscribersOnTheirExecutor() throws Exception {
+        QuakeRepository repository = new QuakeRepository(1024 * 1024);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch published = new CountDownLatch(1);
+            final Thread[] thread = new Thread[1];
+            repository.subscribe(new QuakeRepository.Subscriber() {
+                @Override
+                public void onPublished(QuakeRepository.Snapshot snapshot,
+                                        QuakeRepository.Delta delta) {
+                    thread[0] = Thread.currentThread();
+                    published.countDown();
+                }
+            }, executor);
+            repository.publish("q", Collections.singletonList(quake("a", 1)));
+            assertTrue(published.await(5, TimeUnit.SECONDS));
+            assertTrue(thread[0] != Thread.currentThread());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sharesOverlappingFetches() throws Exception {
+        final CountDownLatch joined = new CountDownLatch(2);
+        final QuakeRepository repository = new QuakeRepository(1024 * 1024) {
+            @Override
+            void onJoined(String key) {
+                joined.countDown();
+            }
+        };
+        final AtomicInteger fetches = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final QuakeRepository.Fetcher fetcher = new QuakeRepository.Fetcher() {
+            @Override
+            public FetchOutcome<List<Quake>> fetch(QuakeRepository.Snapshot current) {
+                fetches.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return FetchOutcome.success(Collections.singletonList(quake("a", 1)), 200);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<FetchOutcome<List<Quake>>>> loads = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                loads.add(executor.submit(new java.util.concurrent.Callable<
+                        FetchOutcome<List<Quake>>>() {
+                    @Override
+                    public FetchOutcome<List<Quake>> call() {
+                        return repository.fetch("q", fetcher);
+                    }
+                }));
+                if (i == 0) {
+                    assertTrue(started.await(5, TimeUnit.SECONDS));
+                }
+            }
+            // The other loads join the running fetch before it finishes
+            assertTrue(joined.await(5, TimeUnit.SECONDS));
+            release.countDown();
+            FetchOutcome<List<Quake>> first = loads.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<FetchOutcome<List<Quake>>> load : loads) {
+                assertSame(first, load.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, fetches.get());
+            assertEquals(Collections.singletonList("a"), ids(repository.get("q").getEarthquakes()));
+
+            // Once finished, the next load fetches again
+            repository.fetch("q", fetcher);
+            assertEquals(2, fetches.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void keepsSnapshotWhenFetchFails() {
+        QuakeRepository repository = new QuakeRepository(1024 * 1024);
+        QuakeRepository.Snapshot snapshot =
+                repository.publish("q", Collections.singletonList(quake("a", 1)));
+        FetchOutcome<List<Quake>> outcome = repository.fetch("q", new QuakeRepository.Fetcher() {
+            @Override
+            public FetchOutcome<List<Quake>> fetch(QuakeRepository.Snapshot current) {
+                assertEquals(1, current.getEarthquakes().size());
+                return FetchOutcome.failure(FetchOutcome.Kind.SERVER_ERROR, 503, -1);
+            }
+        });
+        assertEquals(FetchOutcome.Kind.SERVER_ERROR, outcome.getKind());
+        assertSame(snapshot, repository.get("q"));
+    }
+
+    @Test
+    public void evictsOldestSnapshotsFirst() {
+        // Room for about two snapshots of ten earthquakes
+        QuakeRepository repository = new QuakeRepository(2 * 10 * 160 + 100);
+        List<Quake> ten = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ten.add(quake("e" + i, 1));
+        }
+        repository.publish("q1", ten);
+        repository.publish("q2", ten);
+        repository.publish("q3", ten);
+        assertEquals(2, repository.size());
+        assertNull(repository.get("q1"));
+
+        repository.trimToFraction(0.5f);
+        assertEquals(1, repository.size());
+        assertTrue(repository.get("q3") != null);
+        repository.trimToFraction(0f);
+        assertEquals(0, repository.getSizeBytes());
+    }
+}
\ No newline at end of file
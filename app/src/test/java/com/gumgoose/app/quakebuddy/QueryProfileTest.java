@@ -0,0 +1,72 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueryProfileTest {
+
+    private static final String BASE_URL = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    private static Quake quake(String id, int tsunami) {
+        return new Quake(6.1, "Place " + id, 1500000000000L, tsunami, null, id, 1500000000000L,
+                null, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    @Test
+    public void settingsProfileFollowsSettings() {
+        QueryProfile settings = QueryProfile.defaults("Mine", "Global", "Pacific").get(0);
+        assertEquals(QueryProfile.SETTINGS_ID, settings.getId());
+        assertEquals(BASE_URL + "?format=geojson&starttime=2017-06-14T00%3A00%3A00%2B0000"
+                        + "&limit=50&minmagnitude=3&orderby=time",
+                settings.buildUrl(BASE_URL, "2017-06-14T00:00:00+0000", 50, "time", "3"));
+    }
+
+    @Test
+    public void profileSetsMagnitudeAndRegion() {
+        QueryProfile local = new QueryProfile("local", "Local M2+", 2.0, false,
+                34.05, -118.25, 250.0);
+        String url = local.buildUrl(BASE_URL, "2017-06-14", 100, "magnitude", "5");
+        assertTrue(url.contains("&minmagnitude=2.0&"));
+        assertTrue(url.contains("&orderby=magnitude&"));
+        assertTrue(url.endsWith("&latitude=34.05&longitude=-118.25&maxradiuskm=250.0"));
+
+        QueryProfile global = QueryProfile.defaults("Mine", "Global", "Pacific").get(1);
+        assertFalse(global.hasRegion());
+        assertFalse(global.buildUrl(BASE_URL, "2017-06-14", 100, "time", "5")
+                .contains("latitude"));
+    }
+
+    @Test
+    public void tsunamiProfileFiltersFlaggedEvents() {
+        List<Quake> quakes = Arrays.asList(quake("a", 0), quake("b", 1), quake("c", 0));
+        QueryProfile pacific = QueryProfile.defaults("Mine", "Global", "Pacific").get(2);
+        assertTrue(pacific.isTsunamiOnly());
+        List<Quake> flagged = pacific.filter(quakes);
+        assertEquals(1, flagged.size());
+        assertEquals("b", flagged.get(0).getQuakeId());
+
+        QueryProfile global = QueryProfile.defaults("Mine", "Global", "Pacific").get(1);
+        assertEquals(quakes, global.filter(quakes));
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        for (QueryProfile profile : Arrays.asList(
+                new QueryProfile("local", "Local M2+", 2.0, true, 34.05, -118.25, 250.0),
+                QueryProfile.defaults("Mine", "Global", "Pacific").get(0))) {
+            QueryProfile copy = QueryProfile.fromJson(profile.toJson());
+            assertEquals(profile.getId(), copy.getId());
+            assertEquals(profile.getName(), copy.getName());
+            assertEquals(profile.isTsunamiOnly(), copy.isTsunamiOnly());
+            assertEquals(profile.hasRegion(), copy.hasRegion());
+            assertEquals(profile.buildUrl(BASE_URL, "2017-06-14", 10, "time", "4"),
+                    copy.buildUrl(BASE_URL, "2017-06-14", 10, "time", "4"));
+        }
+    }
+}
\ No newline at end of file
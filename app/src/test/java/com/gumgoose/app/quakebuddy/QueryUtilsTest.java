@@ -0,0 +1,135 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds {@link QueryUtils#extractFeatureFromJson} responses with broken features, which must
+ * never cost the rest of the response
+ */
+public class QueryUtilsTest {
+
+    private static final long NOW = 1497484800000L;
+
+    private static String collection(String... features) {
+        StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < features.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(features[i]);
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String feature(String id, String properties) {
+        return "{\"type\":\"Feature\",\"id\":\"" + id + "\",\"properties\":{" + properties
+                + "},\"geometry\":{\"type\":\"Point\",\"coordinates\":[-150.1,61.2,35.5]}}";
+    }
+
+    private static String good(String id) {
+        return feature(id, "\"mag\":4.2,\"place\":\"10km NE of Anchorage, Alaska\",\"time\":"
+                + NOW + ",\"updated\":" + (NOW + 1000) + ",\"tsunami\":0,"
+                + "\"url\":\"https://earthquake.usgs.gov/earthquakes/eventpage/" + id + "\"");
+    }
+
+    @Test
+    public void parsesCleanFeatures() {
+        ParseReport report = new ParseReport();
+        List<Quake> quakes = QueryUtils.extractFeatureFromJson(collection(good("ak1")), report);
+        assertEquals(1, quakes.size());
+        Quake quake = quakes.get(0);
+        assertEquals(4.2, quake.getQuakeMagnitude(), 0);
+        assertEquals("ak1", quake.getQuakeId());
+        assertEquals(NOW + 1000, quake.getQuakeUpdated());
+        assertEquals(61.2, quake.getLatitude(), 0);
+        assertTrue(report.isClean());
+        assertEquals(1, report.getFeatureCount());
+    }
+
+    @Test
+    public void skipsFeaturesThatCannotBeListed() {
+        ParseReport report = new ParseReport();
+        List<Quake> quakes = QueryUtils.extractFeatureFromJson(collection(
+                good("a"),
+                feature("b", "\"mag\":null,\"place\":\"Nowhere\",\"time\":" + NOW),
+                feature("c", "\"place\":\"Nowhere\",\"time\":" + NOW),
+                feature("d", "\"mag\":3.1,\"place\":\"Nowhere\",\"time\":\"yesterday\""),
+                "{\"type\":\"Feature\",\"id\":\"e\"}",
+                "\"not a feature\"",
+                good("f")), report);
+        assertEquals(2, quakes.size());
+        assertEquals("a", quakes.get(0).getQuakeId());
+        assertEquals("f", quakes.get(1).getQuakeId());
+        assertEquals(7, report.getFeatureCount());
+        assertEquals(5, report.getSkippedCount());
+        assertEquals(2, report.getSkipped("mag"));
+        assertEquals(1, report.getSkipped("time"));
+        assertEquals(1, report.getSkipped("properties"));
+        assertEquals(1, report.getSkipped("feature"));
+    }
+
+    @Test
+    public void defaultsBadFields() {
+        ParseReport report = new ParseReport();
+        List<Quake> quakes = QueryUtils.extractFeatureFromJson(collection(
+                "{\"id\":\"a\",\"properties\":{\"mag\":\"2.5\",\"time\":" + NOW
+                        + ",\"place\":null,\"url\":7,\"updated\":5},"
+                        + "\"geometry\":{\"coordinates\":[500,12]}}"), report);
+        assertEquals(1, quakes.size());
+        Quake quake = quakes.get(0);
+        assertEquals(2.5, quake.getQuakeMagnitude(), 0);
+        assertEquals("", quake.getQuakeLocation());
+        assertEquals(0, quake.getTsunamiWarning());
+        assertNull(quake.getQuakeURL());
+        assertEquals(NOW, quake.getQuakeUpdated());
+        assertTrue(Double.isNaN(quake.getLatitude()));
+        assertEquals(0, report.getSkippedCount());
+        assertEquals(1, report.getDefaulted("place"));
+        assertEquals(1, report.getDefaulted("tsunami"));
+        assertEquals(1, report.getDefaulted("url"));
+        assertEquals(1, report.getDefaulted("updated"));
+        assertEquals(1, report.getDefaulted("coordinates"));
+    }
+
+    @Test
+    public void rejectsOnlyResponsesThatAreNotCollections() {
+        assertNull(QueryUtils.extractFeatureFromJson("<html></html>", new ParseReport()));
+        assertNull(QueryUtils.extractFeatureFromJson("{\"features\":[", new ParseReport()));
+        assertTrue(QueryUtils.extractFeatureFromJson(collection(), new ParseReport()).isEmpty());
+    }
+
+    @Test
+    public void keepsLargeResponsesWithScatteredBadFeatures() {
+        String[] features = new String[5000];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = i % 100 == 0
+                    ? feature("bad" + i, "\"mag\":null,\"time\":" + NOW)
+                    : good("ok" + i);
+        }
+        ParseReport report = new ParseReport();
+        List<Quake> quakes = QueryUtils.extractFeatureFromJson(collection(features), report);
+        assertEquals(4950, quakes.size());
+        assertEquals(50, report.getSkipped("mag"));
+
+        ParseReport totals = new ParseReport();
+        totals.addAll(report);
+        totals.addAll(report);
+        assertEquals(10000, totals.getFeatureCount());
+        assertEquals(100, totals.getSkipped("mag"));
+    }
+
+    @Test
+    public void readsStandInResponses() {
+        // Every feature of the synthetic catalog is well formed
+        String body = collection(SyntheticCatalog.generate(3, 20, NOW, 1000000).get(0).toString());
+        ParseReport report = new ParseReport();
+        assertEquals(1, QueryUtils.extractFeatureFromJson(body, report).size());
+        assertTrue(report.toString(), report.isClean());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.gumgoose.app.quakebuddy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load harness that replays storms of pull-to-refresh against the fetch stack, the way
+ * {@link EarthquakeLoader} runs it, and reports latency percentiles and allocation
+ */
+public class RefreshStormHarness {
+
+    /**
+     * Results of a storm
+     */
+    public static class Report {
+
+        private final long[] mLatencyNanos;
+        private final long[] mAllocatedBytes;
+        private final int mFailures;
+        private final int mEarthquakes;
+
+        Report(long[] latencyNanos, long[] allocatedBytes, int failures, int earthquakes) {
+            mLatencyNanos = latencyNanos.clone();
+            mAllocatedBytes = allocatedBytes.clone();
+            Arrays.sort(mLatencyNanos);
+            Arrays.sort(mAllocatedBytes);
+            mFailures = failures;
+            mEarthquakes = earthquakes;
+        }
+
+        /**
+         * @param percentile is the percentile, between 0 and 100
+         * @return           the refresh latency at the percentile in milliseconds
+         */
+        public double latencyMillis(double percentile) {
+            return pick(mLatencyNanos, percentile) / 1e6;
+        }
+
+        /**
+         * @param percentile is the percentile, between 0 and 100
+         * @return           the bytes allocated by a refresh at the percentile, or -1 if unknown
+         */
+        public long allocatedBytes(double percentile) {
+            return pick(mAllocatedBytes, percentile);
+        }
+
+        /** Getter method for the number of refreshes */
+        public int getRefreshes() {
+            return mLatencyNanos.length;
+        }
+
+        /** Getter method for the number of refreshes that returned no earthquakes */
+        public int getFailures() {
+            return mFailures;
+        }
+
+        /** Getter method for the number of earthquakes returned by all refreshes */
+        public int getEarthquakes() {
+            return mEarthquakes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d refreshes, %d failed, latency p50 %.1f ms,"
+                            + " p90 %.1f ms, p99 %.1f ms, max %.1f ms, allocated p50 %d KB,"
+                            + " p99 %d KB", getRefreshes(), mFailures, latencyMillis(50),
+                    latencyMillis(90), latencyMillis(99), latencyMillis(100),
+                    allocatedBytes(50) / 1024, allocatedBytes(99) / 1024);
+        }
+
+        private static long pick(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+
+    private final String mQueryUrl;
+    private final int mTotalLimit;
+    private final long mBudgetMillis;
+    private final ThroughputEstimator mEstimator;
+
+    /**
+     * Construct a new {@link RefreshStormHarness} paging with the app-wide estimates
+     *
+     * @param queryUrl     is the full query URL every refresh loads
+     * @param totalLimit   is the number of earthquakes a refresh asks for
+     * @param budgetMillis is the latency budget of the first page
+     */
+    public RefreshStormHarness(String queryUrl, int totalLimit, long budgetMillis) {
+        this(queryUrl, totalLimit, budgetMillis, ThroughputEstimator.getInstance());
+    }
+
+    /**
+     * Construct a new {@link RefreshStormHarness}
+     *
+     * @param queryUrl     is the full query URL every refresh loads
+     * @param totalLimit   is the number of earthquakes a refresh asks for
+     * @param budgetMillis is the latency budget of the first page
+     * @param estimator    is the source of the estimates the pages are sized from
+     */
+    public RefreshStormHarness(String queryUrl, int totalLimit, long budgetMillis,
+                               ThroughputEstimator estimator) {
+        mQueryUrl = queryUrl;
+        mTotalLimit = totalLimit;
+        mBudgetMillis = budgetMillis;
+        mEstimator = estimator;
+    }
+
+    /**
+     * Run a storm of refreshes and wait for it to finish
+     *
+     * @param clients   is the number of concurrent clients
+     * @param refreshes is the number of back-to-back refreshes made by each client
+     * @return          the report of the storm
+     */
+    public Report run(int clients, final int refreshes) throws InterruptedException {
+        final long[] latencies = new long[clients * refreshes];
+        final long[] allocations = new long[clients * refreshes];
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger earthquakes = new AtomicInteger();
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(clients);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int r = 0; r < refreshes; r++) {
+                            int slot = client * refreshes + r;
+                            long allocatedBefore = allocatedBytes(threads);
+                            long startNanos = System.nanoTime();
+                            List<Quake> result = refresh();
+                            latencies[slot] = System.nanoTime() - startNanos;
+                            long allocatedAfter = allocatedBytes(threads);
+                            allocations[slot] = allocatedBefore < 0
+                                    ? -1 : allocatedAfter - allocatedBefore;
+                            if (result == null || result.isEmpty()) {
+                                failures.incrementAndGet();
+                            }
+                            else {
+                                earthquakes.addAndGet(result.size());
+                            }
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return new Report(latencies, allocations, failures.get(), earthquakes.get());
+    }
+
+    /**
+     * One refresh, fetched page by page like {@link EarthquakeLoader#loadInBackground()}
+     */
+    private List<Quake> refresh() {
+        FetchPlanner planner = new FetchPlanner(mEstimator, mBudgetMillis);
+        return planner.fetchPages(mQueryUrl, mTotalLimit, null);
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
\ No newline at end of file
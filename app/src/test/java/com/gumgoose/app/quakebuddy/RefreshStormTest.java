@@ -0,0 +1,74 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Storms of refreshes against {@link UsgsStandInServer}, paged from fixed estimates so
+ * that every refresh is exactly one request
+ */
+public class RefreshStormTest {
+
+    private static final long NOW = 1497484800000L;
+    private static final long WEEK = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * @return estimates of a fast local link, on which 50 earthquakes fit the first page
+     */
+    private static ThroughputEstimator fastLink() {
+        ThroughputEstimator estimator = new ThroughputEstimator();
+        for (int i = 0; i < 20; i++) {
+            estimator.recordRequest(10, 100 * 1024, 10);
+            estimator.recordEvents(100 * 1024, 100);
+        }
+        return estimator;
+    }
+
+    private static RefreshStormHarness harness(UsgsStandInServer server) {
+        return new RefreshStormHarness(
+                server.getQueryUrl() + "?format=geojson&orderby=time&limit=50", 50,
+                FetchPlanner.DEFAULT_BUDGET_MILLIS, fastLink());
+    }
+
+    @Test
+    public void steadyStorm() throws Exception {
+        UsgsStandInServer server =
+                new UsgsStandInServer(SyntheticCatalog.generate(7, 2000, NOW, WEEK), 7);
+        try {
+            server.setLatency(5, 10);
+            RefreshStormHarness harness = harness(server);
+            harness.run(2, 5);
+            RefreshStormHarness.Report report = harness.run(8, 25);
+            assertEquals(8 * 25, report.getRefreshes());
+            assertEquals(0, report.getFailures());
+            assertEquals(8 * 25 * 50, report.getEarthquakes());
+            // One request per refresh, the warm-up included
+            assertEquals(2 * 5 + 8 * 25, server.getQueries().size());
+            assertTrue(report.latencyMillis(50) <= report.latencyMillis(99));
+        }
+        finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void faultyStorm() throws Exception {
+        UsgsStandInServer server =
+                new UsgsStandInServer(SyntheticCatalog.generate(11, 2000, NOW, WEEK), 11);
+        try {
+            server.setLatency(5, 20).setRandomFault(UsgsStandInServer.Fault.SERVER_ERROR, 0.2);
+            RefreshStormHarness.Report report = harness(server).run(8, 25);
+            assertEquals(8 * 25, server.getQueries().size());
+            // Pages are not retried, so every fault fails exactly one refresh
+            int faults = server.getFaultCount();
+            assertTrue(faults > 0);
+            assertEquals(faults, report.getFailures());
+            assertEquals((8 * 25 - faults) * 50, report.getEarthquakes());
+        }
+        finally {
+            server.close();
+        }
+    }
+}
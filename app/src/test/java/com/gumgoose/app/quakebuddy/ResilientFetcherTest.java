@@ -0,0 +1,188 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link ResilientFetcher} and {@link QueryUtils#request} against scripted faults of
+ * {@link UsgsStandInServer}
+ */
+public class ResilientFetcherTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    private UsgsStandInServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new UsgsStandInServer(SyntheticCatalog.generate(7, 50, NOW, DAY), 7);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    private String query() {
+        return mServer.getQueryUrl() + "?format=geojson&limit=10";
+    }
+
+    private static ResilientFetcher fetcher(long hedgeDelayMillis) {
+        return new ResilientFetcher(3, 10, 2000, hedgeDelayMillis, new Random(1));
+    }
+
+    @Test
+    public void classifiesSingleRequests() {
+        mServer.enqueueFaults(UsgsStandInServer.Fault.SERVER_ERROR,
+                UsgsStandInServer.Fault.RATE_LIMITED,
+                UsgsStandInServer.Fault.MALFORMED_BODY,
+                UsgsStandInServer.Fault.NOT_MODIFIED,
+                // HttpURLConnection quietly sends a GET again when the connection is reset
+                UsgsStandInServer.Fault.CONNECTION_RESET,
+                UsgsStandInServer.Fault.CONNECTION_RESET);
+        assertEquals(FetchOutcome.Kind.SERVER_ERROR, QueryUtils.fetchEarthquakes(query()).getKind());
+        FetchOutcome<List<Quake>> limited = QueryUtils.fetchEarthquakes(query());
+        assertEquals(FetchOutcome.Kind.RATE_LIMITED, limited.getKind());
+        assertEquals(429, limited.getHttpCode());
+        assertEquals(1000, limited.getRetryAfterMillis());
+        assertEquals(FetchOutcome.Kind.MALFORMED_BODY,
+                QueryUtils.fetchEarthquakes(query()).getKind());
+        assertEquals(FetchOutcome.Kind.NOT_MODIFIED, QueryUtils.fetchEarthquakes(query()).getKind());
+        assertEquals(FetchOutcome.Kind.NETWORK_ERROR,
+                QueryUtils.fetchEarthquakes(query()).getKind());
+
+        FetchOutcome<List<Quake>> rejected =
+                QueryUtils.fetchEarthquakes(mServer.getQueryUrl() + "?format=xml");
+        assertEquals(FetchOutcome.Kind.CLIENT_ERROR, rejected.getKind());
+        assertFalse(rejected.getKind().isRetryable());
+        assertNull(rejected.getValue());
+    }
+
+    @Test
+    public void parsesRetryAfter() {
+        assertEquals(120000, QueryUtils.parseRetryAfter("120", NOW));
+        // Sun, 04 Jun 2017 00:00:30 GMT, thirty seconds after the reference time
+        long reference = 1496534400000L;
+        assertEquals(30000, QueryUtils.parseRetryAfter("Sun, 04 Jun 2017 00:00:30 GMT", reference));
+        assertEquals(0, QueryUtils.parseRetryAfter("Sun, 04 Jun 2017 00:00:00 GMT", reference + 1));
+        assertEquals(-1, QueryUtils.parseRetryAfter(null, NOW));
+        assertEquals(-1, QueryUtils.parseRetryAfter("soon", NOW));
+    }
+
+    @Test
+    public void retriesRetryableFailures() {
+        mServer.enqueueFaults(UsgsStandInServer.Fault.SERVER_ERROR,
+                UsgsStandInServer.Fault.MALFORMED_BODY);
+        FetchOutcome<List<Quake>> outcome = fetcher(0).fetchEarthquakes(query());
+        assertTrue(outcome.isSuccess());
+        assertEquals(3, outcome.getAttempts());
+        assertEquals(10, outcome.getValue().size());
+    }
+
+    @Test
+    public void honoursRetryAfter() {
+        mServer.enqueueFaults(UsgsStandInServer.Fault.RATE_LIMITED);
+        long start = System.nanoTime();
+        FetchOutcome<List<Quake>> outcome = fetcher(0).fetchEarthquakes(query());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+        assertTrue(outcome.isSuccess());
+        assertEquals(2, outcome.getAttempts());
+        assertTrue("waited " + elapsedMillis + " ms", elapsedMillis >= 1000);
+
+        // A longer pause than the fetcher may wait is returned straight away
+        mServer.enqueueFaults(UsgsStandInServer.Fault.RATE_LIMITED);
+        outcome = new ResilientFetcher(3, 10, 500, 0, new Random(1)).fetchEarthquakes(query());
+        assertEquals(FetchOutcome.Kind.RATE_LIMITED, outcome.getKind());
+        assertEquals(1, outcome.getAttempts());
+    }
+
+    @Test
+    public void doesNotRetryRejectedQueries() {
+        FetchOutcome<List<Quake>> outcome =
+                fetcher(0).fetchEarthquakes(mServer.getQueryUrl() + "?format=geojson&limit=0");
+        assertEquals(FetchOutcome.Kind.CLIENT_ERROR, outcome.getKind());
+        assertEquals(1, outcome.getAttempts());
+        assertEquals(1, mServer.getQueries().size());
+    }
+
+    @Test
+    public void opensCircuitAfterRepeatedFailures() {
+        mServer.setRandomFault(UsgsStandInServer.Fault.SERVER_ERROR, 1);
+        ResilientFetcher fetcher = fetcher(0);
+        assertEquals(FetchOutcome.Kind.SERVER_ERROR, fetcher.fetchEarthquakes(query()).getKind());
+        assertEquals(FetchOutcome.Kind.SERVER_ERROR, fetcher.fetchEarthquakes(query()).getKind());
+        assertEquals(CircuitBreaker.State.OPEN, fetcher.getBreaker(query()).getState());
+        int sent = mServer.getQueries().size();
+        assertEquals(5, sent);
+
+        FetchOutcome<List<Quake>> refused = fetcher.fetchEarthquakes(query());
+        assertEquals(FetchOutcome.Kind.CIRCUIT_OPEN, refused.getKind());
+        assertTrue(refused.getRetryAfterMillis() > 0);
+        assertEquals(sent, mServer.getQueries().size());
+    }
+
+    @Test
+    public void hedgesSlowRequests() {
+        mServer.setSlowResponse(5000).enqueueFaults(UsgsStandInServer.Fault.SLOW_RESPONSE);
+        ResilientFetcher fetcher = fetcher(200);
+        FetchOutcome<List<Quake>> outcome = fetcher.fetchEarthquakes(query());
+        assertTrue(outcome.isSuccess());
+        // The hedged copy answered, so the slow request was never retried
+        assertEquals(1, outcome.getAttempts());
+        assertEquals(1, fetcher.getHedgeCount());
+        assertEquals(2, mServer.getQueries().size());
+    }
+
+    @Test
+    public void treatsParserFailuresAsMalformedBodies() {
+        FetchOutcome.Parser<String> parser = new FetchOutcome.Parser<String>() {
+            @Override
+            public String parse(String body) {
+                throw new IllegalArgumentException("Unexpected body");
+            }
+        };
+        FetchOutcome<String> direct = fetcher(0).fetch(query(), parser);
+        assertEquals(FetchOutcome.Kind.MALFORMED_BODY, direct.getKind());
+        assertEquals(3, direct.getAttempts());
+
+        FetchOutcome<String> hedged = fetcher(200).fetch(query(), parser);
+        assertEquals(FetchOutcome.Kind.MALFORMED_BODY, hedged.getKind());
+        assertEquals(3, hedged.getAttempts());
+        assertEquals(6, mServer.getQueries().size());
+    }
+
+    @Test
+    public void breakerRecoversThroughTrialRequest() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, 4000);
+        assertTrue(breaker.allowRequest(0));
+        breaker.recordFailure(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordFailure(10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(500));
+        assertEquals(510, breaker.getRemainingCoolDownMillis(500));
+
+        // One trial after the cool-down; failing it doubles the cool-down
+        assertTrue(breaker.allowRequest(1010));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(1010));
+        breaker.recordFailure(1020);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(2020));
+        assertTrue(breaker.allowRequest(3020));
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest(3021));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SeismicKernelsTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long NOW = 1500000000000L;
+
+    /**
+     * @return a catalog following Gutenberg-Richter with the given b-value from M2.0 up,
+     *         rounded to 0.1, with a few incompletely recorded weaker earthquakes below
+     */
+    static QuakeColumns gutenbergRichter(Random random, int count, double b) {
+        QuakeColumns columns = new QuakeColumns();
+        double beta = b * Math.log(10);
+        for (int i = 0; i < count; i++) {
+            double magnitude = 1.95 - Math.log(1 - random.nextDouble()) / beta;
+            columns.add(Math.round(magnitude * 10) / 10.0, NOW - random.nextInt(365) * DAY);
+        }
+        for (int i = 0; i < count / 20; i++) {
+            columns.add(1.5 + random.nextInt(5) / 10.0, NOW - random.nextInt(365) * DAY);
+        }
+        return columns;
+    }
+
+    @Test
+    public void computesEnergyAndMoment() {
+        assertEquals(Math.pow(10, 1.5 * 5.0 + 4.8), SeismicKernels.energyJoules(5.0), 1e6);
+        assertEquals(Math.pow(10, 1.5 * 7.0 + 9.1), SeismicKernels.momentNewtonMetres(7.0),
+                1e12);
+        // One magnitude step is about 31.6 times the energy
+        assertEquals(Math.pow(10, 1.5), SeismicKernels.energyJoules(6.0)
+                / SeismicKernels.energyJoules(5.0), 1e-9);
+        assertEquals(6.3, SeismicKernels.magnitudeOfEnergy(SeismicKernels.energyJoules(6.3)),
+                1e-9);
+    }
+
+    @Test
+    public void sumsEnergyOverColumns() {
+        double[] magnitudes = {4.0, 5.0, 6.0};
+        double[] energies = new double[3];
+        SeismicKernels.energies(magnitudes, 0, 3, energies);
+        double sum = 0;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(SeismicKernels.energyJoules(magnitudes[i]), energies[i],
+                    energies[i] * 1e-12);
+            sum += energies[i];
+        }
+        assertEquals(sum, SeismicKernels.totalEnergy(magnitudes, 0, 3), sum * 1e-12);
+        assertEquals(energies[1], SeismicKernels.totalEnergy(magnitudes, 1, 2), sum * 1e-12);
+        assertEquals(0, SeismicKernels.totalEnergy(magnitudes, 0, 0), 0);
+    }
+
+    @Test
+    public void fitsBValueOfSyntheticCatalog() {
+        QuakeColumns columns = gutenbergRichter(new Random(42), 100000, 1.0);
+        double completeness = SeismicKernels.completenessMagnitude(columns.getMagnitudes(),
+                columns.size(), SeismicKernels.DEFAULT_BIN_WIDTH);
+        assertEquals(2.0, completeness, 1e-9);
+
+        SeismicKernels.BValueFit fit = SeismicKernels.fitBValue(columns, completeness,
+                SeismicKernels.DEFAULT_BIN_WIDTH, null);
+        assertEquals(100000, fit.getCount());
+        assertEquals(1.0, fit.getB(), 0.02);
+        assertEquals(fit.getB() / Math.sqrt(100000), fit.getStandardError(), 1e-12);
+        assertEquals(5 + fit.getB() * 2.0, fit.getA(), 1e-9);
+
+        fit = SeismicKernels.fitBValue(gutenbergRichter(new Random(7), 100000, 0.8), 2.0,
+                SeismicKernels.DEFAULT_BIN_WIDTH, null);
+        assertEquals(0.8, fit.getB(), 0.02);
+    }
+
+    @Test
+    public void leavesTooSmallCatalogsUnfitted() {
+        QuakeColumns columns = new QuakeColumns();
+        assertTrue(Double.isNaN(SeismicKernels.completenessMagnitude(columns.getMagnitudes(),
+                0, SeismicKernels.DEFAULT_BIN_WIDTH)));
+        columns.add(3.0, NOW);
+        SeismicKernels.BValueFit fit = SeismicKernels.fitBValue(columns, 3.0,
+                SeismicKernels.DEFAULT_BIN_WIDTH, null);
+        assertEquals(1, fit.getCount());
+        assertTrue(Double.isNaN(fit.getB()));
+    }
+
+    @Test
+    public void accumulatesMomentByWindow() {
+        long[] times = {NOW - 10 * DAY, NOW + DAY, NOW + 2 * DAY, NOW + 15 * DAY, NOW + 40 * DAY};
+        double[] magnitudes = {9.0, 5.0, 5.0, 6.0, 7.0};
+        double[] moment = SeismicKernels.cumulativeMoment(times, magnitudes, times.length, NOW,
+                10 * DAY, 3);
+        double m5 = SeismicKernels.momentNewtonMetres(5.0);
+        double m6 = SeismicKernels.momentNewtonMetres(6.0);
+        // The earthquakes before the first window and after the last are left out
+        assertArrayEquals(new double[] {2 * m5, 2 * m5 + m6, 2 * m5 + m6}, moment, m6 * 1e-12);
+    }
+
+    @Test
+    public void growsColumns() {
+        QuakeColumns columns = new QuakeColumns(1);
+        for (int i = 0; i < 1000; i++) {
+            columns.add(i / 100.0, i);
+        }
+        assertEquals(1000, columns.size());
+        assertEquals(9.99, columns.getMagnitudes()[999], 0);
+        assertEquals(999, columns.getTimes()[999]);
+        QuakeColumns copied = QuakeColumns.of(Arrays.asList(
+                new Quake(4.5, "Place", NOW, 0, null, "a", NOW, null,
+                        Double.NaN, Double.NaN, Double.NaN)));
+        assertEquals(4.5, copied.getMagnitudes()[0], 0);
+        assertEquals(NOW, copied.getTimes()[0]);
+    }
+
+    @Test
+    public void splitsLargeColumnsAcrossThreads() throws Exception {
+        QuakeColumns columns = gutenbergRichter(new Random(3),
+                SeismicKernels.PARALLEL_THRESHOLD * 4, 1.0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            double serial = SeismicKernels.totalEnergy(columns, null);
+            double parallel = SeismicKernels.totalEnergy(columns, executor);
+            assertEquals(serial, parallel, serial * 1e-9);
+            // The chunks are added in order, so the result does not depend on the threads
+            assertEquals(parallel, SeismicKernels.totalEnergy(columns, executor), 0);
+
+            SeismicKernels.BValueFit serialFit = SeismicKernels.fitBValue(columns, 2.0,
+                    SeismicKernels.DEFAULT_BIN_WIDTH, null);
+            SeismicKernels.BValueFit parallelFit = SeismicKernels.fitBValue(columns, 2.0,
+                    SeismicKernels.DEFAULT_BIN_WIDTH, executor);
+            assertEquals(serialFit.getCount(), parallelFit.getCount());
+            assertEquals(serialFit.getB(), parallelFit.getB(), 1e-9);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void runsChunksOnCallerWhenPoolIsBusy() {
+        QuakeColumns columns = gutenbergRichter(new Random(5),
+                SeismicKernels.PARALLEL_THRESHOLD * 2, 1.0);
+        // A pool that never runs anything, as if every thread were taken by the caller
+        java.util.concurrent.Executor stalled = new java.util.concurrent.Executor() {
+            @Override
+            public void execute(Runnable command) {
+            }
+        };
+        double serial = SeismicKernels.totalEnergy(columns, null);
+        assertEquals(serial, SeismicKernels.totalEnergy(columns, stalled), serial * 1e-9);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link SourceRouter} against two {@link UsgsStandInServer}s, the second a mirror
+ * that reports the same earthquakes under its own IDs, seconds later
+ */
+public class SourceRouterTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+    private static final String QUERY = DataSource.CANONICAL_QUERY_URL
+            + "?format=geojson&starttime=2017-06-14&limit=10&orderby=time";
+
+    private UsgsStandInServer mPrimary;
+    private UsgsStandInServer mMirror;
+    private FdsnDataSource mPrimarySource;
+    private FdsnDataSource mMirrorSource;
+    private ResilientFetcher mFetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        List<JSONObject> catalog = SyntheticCatalog.generate(11, 50, NOW, DAY);
+        List<JSONObject> mirrored = new ArrayList<>(catalog.size());
+        for (JSONObject feature : catalog) {
+            JSONObject copy = new JSONObject(feature.toString());
+            JSONObject properties = copy.getJSONObject("properties");
+            copy.put("id", "mirror_" + feature.getString("id"));
+            properties.put("time", properties.getLong("time") + 3000);
+            mirrored.add(copy);
+        }
+        mPrimary = new UsgsStandInServer(catalog, 11);
+        mMirror = new UsgsStandInServer(mirrored, 12);
+        mPrimarySource = FdsnDataSource.usgs(mPrimary.getQueryUrl());
+        mMirrorSource = new FdsnDataSource("mirror", mMirror.getQueryUrl(), false);
+        // A single attempt per source, so every failure moves on to the next one
+        mFetcher = new ResilientFetcher(1, 10, 100, 0, new Random(1));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mPrimary.close();
+        mMirror.close();
+    }
+
+    private SourceRouter router() {
+        return new SourceRouter(Arrays.<DataSource>asList(mPrimarySource, mMirrorSource),
+                new EventReconciler(EventReconciler.DEFAULT_CAPACITY), null);
+    }
+
+    @Test
+    public void failsOverAndKeepsTheKnownIds() {
+        SourceRouter router = router();
+        FetchOutcome<List<Quake>> first = router.fetch(QUERY, mFetcher);
+        assertTrue(first.isSuccess());
+        assertEquals(10, first.getValue().size());
+        assertEquals(FdsnDataSource.USGS, router.getLastSource());
+        assertEquals(0, mMirror.getQueries().size());
+
+        mPrimary.enqueueFaults(UsgsStandInServer.Fault.SERVER_ERROR);
+        FetchOutcome<List<Quake>> second = router.fetch(QUERY, mFetcher);
+        assertTrue(second.isSuccess());
+        assertEquals("mirror", router.getLastSource());
+        assertEquals(1, router.getFailoverCount());
+        // The mirror's earthquakes carry the IDs and the fields the first answer used
+        for (int i = 0; i < 10; i++) {
+            Quake known = first.getValue().get(i);
+            Quake mirrored = second.getValue().get(i);
+            assertEquals(known.getQuakeId(), mirrored.getQuakeId());
+            assertEquals(known.getQuakeUnixTime(), mirrored.getQuakeUnixTime());
+            assertEquals(known.getQuakeUpdated(), mirrored.getQuakeUpdated());
+        }
+
+        // The failed source goes last until it answers again
+        assertEquals(mMirrorSource, router.ranked().get(0));
+        mMirror.setLatency(400, 0);
+        router.probe();
+        assertEquals(mPrimarySource, router.ranked().get(0));
+    }
+
+    @Test
+    public void returnsTheFirstFailureWhenNoSourceAnswers() {
+        SourceRouter router = router();
+        mPrimary.enqueueFaults(UsgsStandInServer.Fault.SERVER_ERROR);
+        mMirror.enqueueFaults(UsgsStandInServer.Fault.MALFORMED_BODY);
+        FetchOutcome<List<Quake>> outcome = router.fetch(QUERY, mFetcher);
+        assertEquals(FetchOutcome.Kind.SERVER_ERROR, outcome.getKind());
+        assertNull(router.getLastSource());
+        assertEquals(2, router.getFailoverCount());
+    }
+
+    @Test
+    public void ranksByProbedLatencyAndPreference() {
+        SourceRouter router = router();
+        assertEquals(mPrimarySource, router.ranked().get(0));
+        router.setPreferred("mirror");
+        assertEquals(mMirrorSource, router.ranked().get(0));
+        router.setPreferred(FdsnDataSource.USGS);
+        assertEquals(mPrimarySource, router.ranked().get(0));
+
+        // A preferred source only loses to one much faster
+        mPrimary.setLatency(300, 0);
+        router.probe();
+        assertEquals(mMirrorSource, router.ranked().get(0));
+        router.fetch(QUERY, mFetcher);
+        assertEquals("mirror", router.getLastSource());
+        // The probe and the query
+        assertEquals(2, mMirror.getQueries().size());
+    }
+
+    @Test
+    public void routesCanonicalQueriesOfTheFetcher() {
+        mFetcher.setRouter(router());
+        mPrimary.enqueueFaults(UsgsStandInServer.Fault.SERVER_ERROR);
+        FetchOutcome<List<Quake>> outcome = mFetcher.fetchEarthquakes(QUERY);
+        assertTrue(outcome.isSuccess());
+        assertEquals(10, outcome.getValue().size());
+        assertEquals(1, mMirror.getQueries().size());
+
+        // Other URLs go where they point
+        FetchOutcome<List<Quake>> direct =
+                mFetcher.fetchEarthquakes(mPrimary.getQueryUrl() + "?format=geojson&limit=5");
+        assertEquals(5, direct.getValue().size());
+        assertEquals(1, mMirror.getQueries().size());
+    }
+}
\ No newline at end of file
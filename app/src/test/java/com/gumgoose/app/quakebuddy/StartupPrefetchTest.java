@@ -0,0 +1,61 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StartupPrefetchTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    private UsgsStandInServer mServer;
+    private ResilientFetcher mFetcher;
+    private ExecutorService mNetwork;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new UsgsStandInServer(SyntheticCatalog.generate(5, 100, NOW, DAY), 5);
+        mFetcher = new ResilientFetcher(1, 0, 0, 0, new Random(5));
+        mNetwork = new AppScheduler(2).getExecutor(AppScheduler.Pool.NETWORK);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    private String query(String startTime) {
+        return mServer.getQueryUrl() + "?format=geojson&starttime=" + startTime
+                + "&orderby=time&limit=50";
+    }
+
+    @Test
+    public void prefetchIsClaimedOnlyByItsQuery() {
+        StartupPrefetch prefetch = new StartupPrefetch();
+        prefetch.start(query("2017-06-14"), mFetcher, mNetwork);
+        assertNull(prefetch.claim(mServer.getQueryUrl() + "?format=geojson&limit=50"));
+        assertTrue(prefetch.claim(query("2017-06-14T01:00:00")).isSuccess());
+        // Claimed once only, a refresh sends its own query
+        assertNull(prefetch.claim(query("2017-06-14")));
+    }
+
+    @Test
+    public void cancelledPrefetchIsNotClaimed() {
+        StartupPrefetch prefetch = new StartupPrefetch();
+        prefetch.start(query("2017-06-14"), mFetcher, mNetwork);
+        // Another query leaves it alone
+        assertFalse(prefetch.cancel(mServer.getQueryUrl() + "?format=geojson&limit=50"));
+        assertTrue(prefetch.cancel(query("2017-06-14T01:00:00")));
+        assertFalse(prefetch.cancel(query("2017-06-14")));
+        assertNull(prefetch.claim(query("2017-06-14")));
+    }
+}
\ No newline at end of file
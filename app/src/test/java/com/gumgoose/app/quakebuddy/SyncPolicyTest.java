@@ -0,0 +1,66 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SyncPolicyTest {
+
+    private static final String URL = "https://earthquake.usgs.gov/fdsnws/event/1/query"
+            + "?format=geojson&limit=50";
+
+    @Test
+    public void choosesPolicyByNetwork() {
+        assertEquals(SyncPolicy.UNMETERED, SyncPolicy.forNetwork(false, false));
+        // The budget only counts on metered networks
+        assertEquals(SyncPolicy.UNMETERED, SyncPolicy.forNetwork(false, true));
+        assertEquals(SyncPolicy.METERED, SyncPolicy.forNetwork(true, false));
+        assertEquals(SyncPolicy.BUDGET_SPENT, SyncPolicy.forNetwork(true, true));
+    }
+
+    @Test
+    public void meteredSyncsLess() {
+        assertTrue(SyncPolicy.UNMETERED.prefetchesDetails());
+        assertTrue(SyncPolicy.UNMETERED.backfills());
+        assertFalse(SyncPolicy.UNMETERED.isDeltasOnly());
+
+        assertFalse(SyncPolicy.METERED.prefetchesDetails());
+        assertFalse(SyncPolicy.METERED.backfills());
+        assertTrue(SyncPolicy.METERED.isDeltasOnly());
+        assertTrue(SyncPolicy.METERED.sendsRequests());
+        assertFalse(SyncPolicy.BUDGET_SPENT.sendsRequests());
+    }
+
+    @Test
+    public void raisesTheMinimumMagnitude() {
+        assertEquals(URL + "&minmagnitude=2.5",
+                SyncPolicy.UNMETERED.applyTo(URL + "&minmagnitude=2.5"));
+        assertEquals(URL + "&minmagnitude=4.0&orderby=time",
+                SyncPolicy.METERED.applyTo(URL + "&minmagnitude=2.5&orderby=time"));
+        assertEquals(URL + "&minmagnitude=6",
+                SyncPolicy.METERED.applyTo(URL + "&minmagnitude=6"));
+        assertEquals(URL + "&minmagnitude=4.0", SyncPolicy.METERED.applyTo(URL));
+        assertEquals("http://x/query?minmagnitude=4.0",
+                SyncPolicy.METERED.applyTo("http://x/query?minmagnitude=abc"));
+    }
+
+    @Test
+    public void filtersWeakerEarthquakesLocally() {
+        List<Quake> earthquakes = Arrays.asList(quake("a", 5.2), quake("b", 3.9), quake("c", 4.0));
+        assertSame(earthquakes, SyncPolicy.UNMETERED.filter(earthquakes));
+        List<Quake> shown = SyncPolicy.METERED.filter(earthquakes);
+        assertEquals(2, shown.size());
+        assertEquals("a", shown.get(0).getQuakeId());
+        assertEquals("c", shown.get(1).getQuakeId());
+    }
+
+    private static Quake quake(String id, double magnitude) {
+        return TestQuakes.quake(id, magnitude, 0L, 0L);
+    }
+}
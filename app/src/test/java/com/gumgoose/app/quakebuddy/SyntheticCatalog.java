@@ -0,0 +1,112 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic GeoJSON features for {@link UsgsStandInServer}, either generated from a seed
+ * or loaded from a recorded USGS response
+ */
+public final class SyntheticCatalog {
+
+    private static final String[] PLACES = {
+            "Basilisa, Philippines", "Ridgecrest, CA", "Anchorage, Alaska", "Hualien City, Taiwan",
+            "Kaikoura, New Zealand", "Norcia, Italy", "Pahala, Hawaii", "Ierapetra, Greece"};
+    private static final String[] DIRECTIONS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Generate earthquakes spread evenly over a time span, with Gutenberg-Richter magnitudes
+     *
+     * @param seed    is the seed of the generator, the same seed gives the same catalog
+     * @param count   is the number of earthquakes
+     * @param endTime is the time of the newest earthquake
+     * @param span    is the time between the oldest and the newest earthquake
+     * @return        the GeoJSON features
+     */
+    public static List<JSONObject> generate(long seed, int count, long endTime, long span) {
+        Random random = new Random(seed);
+        List<JSONObject> features = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                String id = "sx" + seed + "_" + i;
+                long time = endTime - (count <= 1 ? 0 : span * i / (count - 1));
+                // b-value of 1: every step of one magnitude is ten times rarer
+                double magnitude = Math.min(9.0, 1.0 - Math.log10(1.0 - random.nextDouble()));
+                magnitude = Math.round(magnitude * 100) / 100.0;
+                String place = (1 + random.nextInt(120)) + "km "
+                        + DIRECTIONS[random.nextInt(DIRECTIONS.length)] + " of "
+                        + PLACES[random.nextInt(PLACES.length)];
+
+                JSONObject properties = new JSONObject();
+                properties.put("mag", magnitude);
+                properties.put("place", place);
+                properties.put("time", time);
+                properties.put("updated", time + random.nextInt(3600000));
+                properties.put("tsunami", magnitude >= 6.5 ? 1 : 0);
+                properties.put("url", "https://earthquake.usgs.gov/earthquakes/eventpage/" + id);
+                properties.put("detail", "https://earthquake.usgs.gov/fdsnws/event/1/query?eventid="
+                        + id + "&format=geojson");
+                properties.put("magType", magnitude < 4 ? "ml" : "mww");
+                properties.put("type", "earthquake");
+                properties.put("title", String.format(Locale.US, "M %.1f - %s", magnitude, place));
+
+                JSONArray coordinates = new JSONArray();
+                coordinates.put(Math.round((random.nextDouble() * 360 - 180) * 1e4) / 1e4);
+                coordinates.put(Math.round((random.nextDouble() * 180 - 90) * 1e4) / 1e4);
+                coordinates.put(Math.round(random.nextDouble() * 700 * 100) / 100.0);
+                JSONObject geometry = new JSONObject();
+                geometry.put("type", "Point");
+                geometry.put("coordinates", coordinates);
+
+                JSONObject feature = new JSONObject();
+                feature.put("type", "Feature");
+                feature.put("properties", properties);
+                feature.put("geometry", geometry);
+                feature.put("id", id);
+                features.add(feature);
+            }
+        }
+        catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return features;
+    }
+
+    /**
+     * Load the features of a recorded USGS GeoJSON response
+     *
+     * @param in is the recorded response, closed when read
+     * @return   the GeoJSON features
+     */
+    public static List<JSONObject> load(InputStream in) throws IOException, JSONException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        finally {
+            in.close();
+        }
+        JSONArray array = new JSONObject(bytes.toString("UTF-8")).getJSONArray("features");
+        List<JSONObject> features = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            features.add(array.getJSONObject(i));
+        }
+        return features;
+    }
+}
\ No newline at end of file
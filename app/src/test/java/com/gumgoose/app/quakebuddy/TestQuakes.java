@@ -0,0 +1,42 @@
+package com.gumgoose.app.quakebuddy;
+
+/**
+ * Earthquakes built for tests, named "Place " and their ID
+ */
+final class TestQuakes {
+
+    private TestQuakes() {
+    }
+
+    /**
+     * @return an earthquake revised at its origin time, with an unknown hypocentre
+     */
+    static Quake quake(String id, double magnitude, long time) {
+        return quake(id, magnitude, time, time);
+    }
+
+    /**
+     * @return an earthquake with an unknown hypocentre
+     */
+    static Quake quake(String id, double magnitude, long time, long updated) {
+        return new Quake(magnitude, "Place " + id, time, 0, null, id, updated, null,
+                Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * @return an earthquake revised at its origin time, 10 km deep
+     */
+    static Quake quake(String id, double magnitude, long time, double latitude,
+                       double longitude) {
+        return quake(id, magnitude, time, time, latitude, longitude);
+    }
+
+    /**
+     * @return an earthquake 10 km deep
+     */
+    static Quake quake(String id, double magnitude, long time, long updated, double latitude,
+                       double longitude) {
+        return new Quake(magnitude, "Place " + id, time, 0, null, id, updated, null,
+                latitude, longitude, 10.0);
+    }
+}
\ No newline at end of file
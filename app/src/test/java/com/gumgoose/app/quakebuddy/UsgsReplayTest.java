@@ -0,0 +1,129 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays queries against {@link UsgsStandInServer} through {@link QueryUtils} and the paged
+ * fetch of {@link FetchPlanner}, with no access to earthquake.usgs.gov
+ */
+public class UsgsReplayTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // 2017-06-15T00:00:00Z
+    private static final long NOW = 1497484800000L;
+
+    private List<JSONObject> mCatalog;
+    private UsgsStandInServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mCatalog = SyntheticCatalog.generate(42, 400, NOW, 14 * DAY);
+        mServer = new UsgsStandInServer(mCatalog, 42);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    private String query(String parameters) {
+        return mServer.getQueryUrl() + "?format=geojson&" + parameters;
+    }
+
+    @Test
+    public void catalogIsDeterministic() {
+        assertEquals(mCatalog.toString(),
+                SyntheticCatalog.generate(42, 400, NOW, 14 * DAY).toString());
+    }
+
+    @Test
+    public void honoursOrderLimitAndOffset() {
+        List<Quake> first = QueryUtils.fetchEarthquakeData(query("orderby=magnitude&limit=10"));
+        List<Quake> second =
+                QueryUtils.fetchEarthquakeData(query("orderby=magnitude&limit=10&offset=11"));
+        assertEquals(10, first.size());
+        assertEquals(10, second.size());
+        for (int i = 1; i < first.size(); i++) {
+            assertTrue(first.get(i - 1).getQuakeMagnitude() >= first.get(i).getQuakeMagnitude());
+        }
+        assertTrue(first.get(9).getQuakeMagnitude() >= second.get(0).getQuakeMagnitude());
+
+        List<Quake> oldest = QueryUtils.fetchEarthquakeData(query("orderby=time-asc&limit=1"));
+        assertEquals(NOW - 14 * DAY, (long) oldest.get(0).getQuakeUnixTime());
+    }
+
+    @Test
+    public void honoursStartTimeMagnitudeAndUpdatedAfter() {
+        List<Quake> lastDay = QueryUtils.fetchEarthquakeData(
+                query("starttime=2017-06-14T00:00:00%2B0000&minmagnitude=2&limit=1000"));
+        assertTrue(!lastDay.isEmpty());
+        for (Quake quake : lastDay) {
+            assertTrue(quake.getQuakeUnixTime() >= NOW - DAY);
+            assertTrue(quake.getQuakeMagnitude() >= 2);
+        }
+
+        List<Quake> updated = QueryUtils.fetchEarthquakeData(
+                query("updatedafter=2017-06-14&limit=1000"));
+        for (Quake quake : updated) {
+            assertTrue(quake.getQuakeUpdated() > NOW - DAY);
+        }
+    }
+
+    @Test
+    public void pagedFetchMatchesOneQuery() {
+        FetchPlanner planner = new FetchPlanner(new ThroughputEstimator(), 0);
+        List<Quake> paged = planner.fetchPages(query("orderby=time&limit=120"), 120, null);
+        List<Quake> whole = QueryUtils.fetchEarthquakeData(query("orderby=time&limit=120"));
+        assertEquals(120, paged.size());
+        for (int i = 0; i < whole.size(); i++) {
+            assertEquals(whole.get(i).getQuakeId(), paged.get(i).getQuakeId());
+        }
+        // A zero budget keeps every page at the minimum size
+        assertTrue(mServer.getQueries().size() > 2);
+    }
+
+    @Test
+    public void faultsYieldNoEarthquakes() {
+        mServer.enqueueFaults(UsgsStandInServer.Fault.SERVER_ERROR,
+                UsgsStandInServer.Fault.NOT_MODIFIED);
+        assertNull(QueryUtils.fetchEarthquakeData(query("limit=10")));
+        assertNull(QueryUtils.fetchEarthquakeData(query("limit=10")));
+        assertEquals(10, QueryUtils.fetchEarthquakeData(query("limit=10")).size());
+        assertEquals(2, mServer.getFaultCount());
+    }
+
+    @Test
+    public void resetConnectionIsRetriedOnce() {
+        // HttpURLConnection quietly retries a GET whose connection closed without a response
+        mServer.enqueueFaults(UsgsStandInServer.Fault.CONNECTION_RESET);
+        assertEquals(10, QueryUtils.fetchEarthquakeData(query("limit=10")).size());
+        mServer.enqueueFaults(UsgsStandInServer.Fault.CONNECTION_RESET,
+                UsgsStandInServer.Fault.CONNECTION_RESET);
+        assertNull(QueryUtils.fetchEarthquakeData(query("limit=10")));
+        assertEquals(3, mServer.getFaultCount());
+    }
+
+    @Test
+    public void truncatedBodyDoesNotCrash() {
+        mServer.enqueueFaults(UsgsStandInServer.Fault.TRUNCATED_BODY);
+        List<Quake> earthquakes = QueryUtils.fetchEarthquakeData(query("limit=10"));
+        assertTrue(earthquakes == null || earthquakes.size() < 10);
+    }
+
+    @Test
+    public void laterPageFailureKeepsEarlierPages() {
+        mServer.enqueueFaults(UsgsStandInServer.Fault.NONE, UsgsStandInServer.Fault.SERVER_ERROR);
+        FetchPlanner planner = new FetchPlanner(new ThroughputEstimator(), 0);
+        List<Quake> paged = planner.fetchPages(query("limit=50"), 50, null);
+        assertEquals(FetchPlanner.MIN_PAGE_SIZE, paged.size());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,418 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the USGS FDSN event service, serving a fixed catalog of GeoJSON features
+ *
+ * The query endpoint honours the format, starttime, endtime, updatedafter, minmagnitude,
+ * maxmagnitude, orderby, limit and offset parameters. Latency and faults are injected from
+ * a script or from a seeded generator, so a failing run can be replayed exactly
+ */
+public class UsgsStandInServer implements Closeable {
+
+    public static final String QUERY_PATH = "/fdsnws/event/1/query";
+
+    /**
+     * Faults the server can answer a request with
+     */
+    public enum Fault {
+        /** A normal response */
+        NONE,
+        /** A 503 Service Unavailable response */
+        SERVER_ERROR,
+        /** A 304 Not Modified response without a body */
+        NOT_MODIFIED,
+        /** A 200 response whose body stops half way through its Content-Length */
+        TRUNCATED_BODY,
+        /** The connection is closed before any response is sent */
+        CONNECTION_RESET,
+        /** A 429 Too Many Requests response asking for a one second pause */
+        RATE_LIMITED,
+        /** A 200 response whose body is an HTML error page rather than GeoJSON */
+        MALFORMED_BODY,
+        /** A normal response sent after the slow response delay */
+        SLOW_RESPONSE
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String[] TIME_FORMATS = {
+            "yyyy-MM-dd'T'HH:mm:ssZ", "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss",
+            "yyyy-MM-dd"};
+
+    private final List<JSONObject> mFeatures;
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    // Faults and latency
+    private final Deque<Fault> mScriptedFaults = new ArrayDeque<>();
+    private final Random mRandom;
+    private Fault mRandomFault = Fault.NONE;
+    private double mFaultRate;
+    private long mLatencyMillis;
+    private long mJitterMillis;
+    private long mSlowResponseMillis = 5000;
+
+    // Queries received, in order
+    private final List<String> mQueries = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger mFaultCount = new AtomicInteger();
+
+    /**
+     * Construct and start a new {@link UsgsStandInServer} on a free local port
+     *
+     * @param features is the catalog served
+     * @param seed     is the seed for random faults and latency jitter
+     */
+    public UsgsStandInServer(List<JSONObject> features, long seed) throws IOException {
+        mFeatures = new CopyOnWriteArrayList<>(features);
+        mRandom = new Random(seed);
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+    }
+
+    /**
+     * @return the URL of the query endpoint, without parameters
+     */
+    public String getQueryUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + QUERY_PATH;
+    }
+
+    /**
+     * Add an earthquake to the catalog, as if it had just been reported
+     */
+    public UsgsStandInServer addFeature(JSONObject feature) {
+        mFeatures.add(feature);
+        return this;
+    }
+
+    /**
+     * Answer the next requests with the given faults, in order, before any random fault
+     */
+    public synchronized UsgsStandInServer enqueueFaults(Fault... faults) {
+        Collections.addAll(mScriptedFaults, faults);
+        return this;
+    }
+
+    /**
+     * Answer a share of the requests with a fault, picked by the seeded generator
+     */
+    public synchronized UsgsStandInServer setRandomFault(Fault fault, double rate) {
+        mRandomFault = fault;
+        mFaultRate = rate;
+        return this;
+    }
+
+    /**
+     * Delay every response by a fixed latency plus up to the given jitter
+     */
+    public synchronized UsgsStandInServer setLatency(long latencyMillis, long jitterMillis) {
+        mLatencyMillis = latencyMillis;
+        mJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * Set how long a {@link Fault#SLOW_RESPONSE} is held back
+     */
+    public synchronized UsgsStandInServer setSlowResponse(long delayMillis) {
+        mSlowResponseMillis = delayMillis;
+        return this;
+    }
+
+    /**
+     * @return the decoded query Strings received so far, in order
+     */
+    public List<String> getQueries() {
+        synchronized (mQueries) {
+            return new ArrayList<>(mQueries);
+        }
+    }
+
+    /**
+     * @return the number of requests answered with a fault
+     */
+    public int getFaultCount() {
+        return mFaultCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            }
+            catch (IOException e) {
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handle(socket);
+                    }
+                    catch (IOException e) {
+                        // The client went away, nothing to answer
+                    }
+                    finally {
+                        try {
+                            socket.close();
+                        }
+                        catch (IOException ignored) {
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+        String requestLine = reader.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        // Skip the request headers
+        String header = reader.readLine();
+        while (header != null && !header.isEmpty()) {
+            header = reader.readLine();
+        }
+
+        String[] parts = requestLine.split(" ");
+        String target = parts.length > 1 ? parts[1] : "/";
+        int question = target.indexOf('?');
+        String path = question < 0 ? target : target.substring(0, question);
+        String query = question < 0 ? "" : target.substring(question + 1);
+        Map<String, String> parameters = parseQuery(query);
+        mQueries.add(URLDecoder.decode(query, "UTF-8"));
+
+        Fault fault;
+        long delay;
+        synchronized (this) {
+            fault = mScriptedFaults.isEmpty() ? null : mScriptedFaults.poll();
+            if (fault == null) {
+                fault = mRandom.nextDouble() < mFaultRate ? mRandomFault : Fault.NONE;
+            }
+            delay = mLatencyMillis
+                    + (mJitterMillis > 0 ? (long) (mRandom.nextDouble() * mJitterMillis) : 0);
+            if (fault == Fault.SLOW_RESPONSE) {
+                delay += mSlowResponseMillis;
+            }
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+        if (fault != Fault.NONE) {
+            mFaultCount.incrementAndGet();
+        }
+
+        OutputStream out = socket.getOutputStream();
+        switch (fault) {
+            case CONNECTION_RESET:
+                return;
+            case SERVER_ERROR:
+                respond(out, "503 Service Unavailable", "text/plain", "Service unavailable", false);
+                return;
+            case NOT_MODIFIED:
+                respond(out, "304 Not Modified", null, null, false);
+                return;
+            case RATE_LIMITED:
+                respond(out, "429 Too Many Requests", "text/plain", "Too many requests", false,
+                        "Retry-After: 1\r\n");
+                return;
+            case MALFORMED_BODY:
+                respond(out, "200 OK", "text/html", "<html><body>Maintenance</body></html>", false);
+                return;
+            default:
+                break;
+        }
+
+        if (!QUERY_PATH.equals(path)) {
+            respond(out, "404 Not Found", "text/plain", "Not found", false);
+            return;
+        }
+        String format = parameters.get("format");
+        if (format != null && !"geojson".equals(format)) {
+            respond(out, "400 Bad Request", "text/plain", "Unsupported format", false);
+            return;
+        }
+        String body;
+        try {
+            body = query(parameters);
+        }
+        catch (IllegalArgumentException e) {
+            respond(out, "400 Bad Request", "text/plain", e.getMessage(), false);
+            return;
+        }
+        respond(out, "200 OK", "application/json", body, fault == Fault.TRUNCATED_BODY);
+    }
+
+    /**
+     * Run a query against the catalog and build the GeoJSON FeatureCollection
+     */
+    String query(Map<String, String> parameters) {
+        long startTime = parseTime(parameters.get("starttime"), Long.MIN_VALUE);
+        long endTime = parseTime(parameters.get("endtime"), Long.MAX_VALUE);
+        long updatedAfter = parseTime(parameters.get("updatedafter"), Long.MIN_VALUE);
+        double minMagnitude = parseDouble(parameters.get("minmagnitude"), -10);
+        double maxMagnitude = parseDouble(parameters.get("maxmagnitude"), 10);
+        int offset = (int) parseDouble(parameters.get("offset"), 1);
+        int limit = (int) parseDouble(parameters.get("limit"), 20000);
+        if (offset < 1 || limit < 1) {
+            throw new IllegalArgumentException("offset and limit must be at least 1");
+        }
+
+        // Like USGS, deleted events are only listed when asked for
+        boolean includeDeleted = "true".equals(parameters.get("includedeleted"));
+
+        List<JSONObject> matches = new ArrayList<>();
+        for (JSONObject feature : mFeatures) {
+            JSONObject properties = feature.optJSONObject("properties");
+            if (!includeDeleted && "deleted".equals(properties.optString("status"))) {
+                continue;
+            }
+            long time = properties.optLong("time");
+            double magnitude = properties.optDouble("mag", Double.NaN);
+            if (time >= startTime && time <= endTime
+                    && properties.optLong("updated", time) > updatedAfter
+                    && magnitude >= minMagnitude && magnitude <= maxMagnitude) {
+                matches.add(feature);
+            }
+        }
+        Collections.sort(matches, comparatorFor(parameters.get("orderby")));
+
+        StringBuilder body = new StringBuilder(256 + 1024 * Math.min(limit, matches.size()));
+        int from = Math.min(offset - 1, matches.size());
+        int to = Math.min(from + limit, matches.size());
+        body.append("{\"type\":\"FeatureCollection\",\"metadata\":{\"generated\":")
+                .append(System.currentTimeMillis())
+                .append(",\"status\":200,\"title\":\"USGS Stand-in Earthquakes\",\"count\":")
+                .append(to - from).append("},\"features\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                body.append(',');
+            }
+            body.append(matches.get(i).toString());
+        }
+        return body.append("]}").toString();
+    }
+
+    private static Comparator<JSONObject> comparatorFor(String orderBy) {
+        final String key = orderBy != null && orderBy.startsWith("magnitude") ? "mag" : "time";
+        final boolean ascending = orderBy != null && orderBy.endsWith("-asc");
+        return new Comparator<JSONObject>() {
+            @Override
+            public int compare(JSONObject a, JSONObject b) {
+                double x = a.optJSONObject("properties").optDouble(key);
+                double y = b.optJSONObject("properties").optDouble(key);
+                int order = x < y ? -1 : (x > y ? 1 : 0);
+                return ascending ? order : -order;
+            }
+        };
+    }
+
+    private static void respond(OutputStream out, String status, String contentType, String body,
+                                boolean truncate) throws IOException {
+        respond(out, status, contentType, body, truncate, "");
+    }
+
+    private static void respond(OutputStream out, String status, String contentType, String body,
+                                boolean truncate, String extraHeaders) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(UTF_8);
+        StringBuilder headers = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n")
+                .append(extraHeaders);
+        if (contentType != null) {
+            headers.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        headers.append("Content-Length: ").append(bytes.length).append("\r\n")
+                .append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes(UTF_8));
+        // A truncated body promises every byte but the connection closes half way through
+        out.write(bytes, 0, truncate ? bytes.length / 2 : bytes.length);
+        out.flush();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static long parseTime(String value, long fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        for (String pattern : TIME_FORMATS) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                return format.parse(value).getTime();
+            }
+            catch (ParseException e) {
+                // Try the next pattern
+            }
+        }
+        throw new IllegalArgumentException("Bad time " + value);
+    }
+
+    private static double parseDouble(String value, double fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number " + value);
+        }
+    }
+}
\ No newline at end of file
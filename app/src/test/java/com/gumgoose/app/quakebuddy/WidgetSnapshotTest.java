@@ -0,0 +1,133 @@
+package com.gumgoose.app.quakebuddy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.gumgoose.app.quakebuddy.TestQuakes.quake;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WidgetSnapshotTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long NOW = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void keepsTopRecentAndStrongest() throws Exception {
+        WidgetSnapshot snapshot = new WidgetSnapshot(new File(mFolder.getRoot(), "snapshot"));
+        List<Quake> quakes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            quakes.add(quake("e" + i, i % 7, NOW - i * HOUR, NOW));
+        }
+        // Strong but too old to be listed as one of this week's strongest
+        quakes.add(quake("old", 9.0, NOW - WidgetSnapshot.STRONGEST_WINDOW_MILLIS - HOUR, NOW));
+        assertTrue(snapshot.merge(quakes, NOW));
+
+        List<WidgetSnapshot.Entry> recent = snapshot.getRecent();
+        assertEquals(WidgetSnapshot.TOP_COUNT, recent.size());
+        assertEquals("e0", recent.get(0).getId());
+        assertEquals("e4", recent.get(4).getId());
+
+        List<WidgetSnapshot.Entry> strongest = snapshot.getStrongest();
+        assertEquals(WidgetSnapshot.TOP_COUNT, strongest.size());
+        assertEquals("e6", strongest.get(0).getId());
+        assertEquals(6.0, strongest.get(0).getMagnitude(), 0);
+        for (WidgetSnapshot.Entry entry : strongest) {
+            assertFalse("old".equals(entry.getId()));
+        }
+    }
+
+    @Test
+    public void reportsChangesOnlyWhenTheListsChange() throws Exception {
+        WidgetSnapshot snapshot = new WidgetSnapshot(new File(mFolder.getRoot(), "snapshot"));
+        List<Quake> quakes = Arrays.asList(quake("a", 3, NOW, NOW), quake("b", 4, NOW - HOUR, NOW));
+        assertTrue(snapshot.merge(quakes, NOW));
+        assertFalse(snapshot.merge(quakes, NOW));
+
+        // An earthquake below the top lists changes nothing the widget shows
+        List<Quake> more = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            more.add(quake("n" + i, 5, NOW + i, NOW));
+        }
+        assertTrue(snapshot.merge(more, NOW));
+        assertFalse(snapshot.merge(Collections.singletonList(
+                quake("weak", 1, NOW - 10 * HOUR, NOW)), NOW));
+
+        // A revision of a listed earthquake does
+        assertTrue(snapshot.merge(Collections.singletonList(
+                quake("n4", 5.2, NOW + 4, NOW + HOUR)), NOW));
+    }
+
+    @Test
+    public void dropsDeletedEventsAndAgesOutTheStrongest() throws Exception {
+        WidgetSnapshot snapshot = new WidgetSnapshot(new File(mFolder.getRoot(), "snapshot"));
+        List<Quake> result = Arrays.asList(quake("a", 3, NOW, NOW),
+                quake("b", 6, NOW - HOUR, NOW), quake("c", 4, NOW - 2 * HOUR, NOW),
+                quake("e", 5, NOW - 3 * HOUR, NOW));
+        assertTrue(snapshot.merge(result, NOW));
+
+        // "b" left the middle of the result, so it was deleted; "e" aged off its end
+        Quake d = quake("d", 2, NOW + HOUR, NOW);
+        List<String> removed = WidgetSnapshot.removedWithin(
+                Arrays.asList(d, result.get(0), result.get(2)),
+                Arrays.asList(result.get(1), result.get(3)));
+        assertEquals(Collections.singletonList("b"), removed);
+        assertTrue(snapshot.merge(Collections.singletonList(d), removed, NOW));
+        assertEquals(Arrays.asList("d", "a", "c", "e"), ids(snapshot.getRecent()));
+        assertEquals(Arrays.asList("e", "c", "a", "d"), ids(snapshot.getStrongest()));
+
+        // A week later nothing is strong enough to list, though nothing was merged
+        long later = NOW + WidgetSnapshot.STRONGEST_WINDOW_MILLIS + HOUR;
+        assertTrue(snapshot.expire(later));
+        assertFalse(snapshot.expire(later));
+        assertEquals(Collections.singletonList("d"), ids(snapshot.getStrongest()));
+        assertEquals(4, snapshot.getRecent().size());
+    }
+
+    private static List<String> ids(List<WidgetSnapshot.Entry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (WidgetSnapshot.Entry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void survivesReload() throws Exception {
+        File file = new File(mFolder.getRoot(), "snapshot");
+        WidgetSnapshot snapshot = new WidgetSnapshot(file);
+        snapshot.merge(Arrays.asList(quake("a", 3, NOW, NOW), quake("b", 4, NOW - HOUR, NOW)), NOW);
+
+        WidgetSnapshot reloaded = new WidgetSnapshot(file);
+        assertEquals(snapshot.getRecent(), reloaded.getRecent());
+        assertEquals(snapshot.getStrongest(), reloaded.getStrongest());
+        assertEquals("Place b", reloaded.getStrongest().get(0).getPlace());
+        assertFalse(reloaded.merge(Collections.singletonList(quake("a", 3, NOW, NOW)), NOW));
+    }
+
+    @Test
+    public void rebuildsFromReader() throws Exception {
+        WidgetSnapshot snapshot = new WidgetSnapshot(new File(mFolder.getRoot(), "snapshot"));
+        List<Quake> quakes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            quakes.add(quake("e" + i, (i * 37 % 80) / 10.0, NOW - i * HOUR, NOW));
+        }
+        assertTrue(snapshot.rebuild(QuakeReader.of(quakes), NOW));
+
+        WidgetSnapshot merged = new WidgetSnapshot(new File(mFolder.getRoot(), "merged"));
+        merged.merge(quakes, NOW);
+        assertEquals(merged.getRecent(), snapshot.getRecent());
+        assertEquals(merged.getStrongest(), snapshot.getStrongest());
+    }
+}
\ No newline at end of file